@@ -0,0 +1,371 @@
+package com.jarvis.cache;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.aop.CacheAopProxyChain;
+import com.jarvis.cache.metrics.MethodMetrics;
+import com.jarvis.cache.to.AutoLoadTO;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.type.CacheOpType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 处理返回值为CompletableFuture 的@Cache 方法：缓存的是CompletableFuture 完成后的值；命中缓存时返回已完成的CompletableFuture；
+ * 并发的未命中请求共享同一个正在加载的CompletableFuture，不阻塞任何线程。<br>
+ * 只有在第一次遇到此类方法时才会加载本类，所以在不支持CompletableFuture 的JDK中不受影响。
+ * @author jiayu.qiu
+ */
+@Slf4j
+class AsyncCacheHandler {
+
+    private final CacheHandler cacheHandler;
+
+    /**
+     * 正在加载中的数据
+     */
+    private final ConcurrentHashMap<CacheKeyTO, CompletableFuture<Object>> loading=new ConcurrentHashMap<CacheKeyTO, CompletableFuture<Object>>();
+
+    AsyncCacheHandler(CacheHandler cacheHandler) {
+        this.cacheHandler=cacheHandler;
+    }
+
+    /**
+     * 处理@Cache 拦截
+     * @param pjp 切面
+     * @param cache 注解
+     * @param opType 缓存操作类型
+     * @return CompletableFuture
+     * @throws Throwable 异常
+     */
+    Object proceed(final CacheAopProxyChain pjp, final Cache cache, CacheOpType opType) throws Throwable {
+        final Object[] arguments=pjp.getArgs();
+        if(opType == CacheOpType.LOAD || cache.batchArgIndex() >= 0 || !cacheHandler.getScriptParser().isCacheable(cache, arguments)) {
+            return pjp.doProxyChain(arguments);
+        }
+        if(opType == CacheOpType.WRITE) {
+            return writeOnly(pjp, cache);
+        }
+        final CacheKeyTO cacheKey=cacheHandler.getCacheKey(pjp, cache, arguments);
+        if(null == cacheKey) {
+            return pjp.doProxyChain(arguments);
+        }
+        String bloomFilter=cache.bloomFilter();
+        if(bloomFilter.length() > 0 && !cacheHandler.getBloomFilterHandler().mightContain(bloomFilter, cacheKey)) {// 一定不存在的数据，防止缓存穿透
+            return CompletableFuture.completedFuture(null);
+        }
+        Method method=pjp.getMethod();
+        ICacheManager cacheManager=cacheHandler.getCacheManager();
+        if(!(cacheManager instanceof IAsyncCacheManager)) {
+            CacheWrapper<Object> cacheWrapper=null;
+            try {
+                cacheWrapper=cacheHandler.get(cacheKey, method, arguments);
+            } catch(Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+            return afterGet(pjp, cache, opType, cacheKey, cacheWrapper);
+        }
+        final CacheOpType tmpOpType=opType;
+        // 不在缓存的IO线程中执行后续操作，避免阻塞IO线程
+        return getAsync((IAsyncCacheManager)cacheManager, cacheKey, method, arguments).thenComposeAsync(new Function<CacheWrapper<Object>, CompletionStage<Object>>() {
+
+            @Override
+            public CompletionStage<Object> apply(CacheWrapper<Object> cacheWrapper) {
+                try {
+                    return afterGet(pjp, cache, tmpOpType, cacheKey, cacheWrapper);
+                } catch(Throwable e) {
+                    CompletableFuture<Object> res=new CompletableFuture<Object>();
+                    res.completeExceptionally(e);
+                    return res;
+                }
+            }
+        });
+    }
+
+    /**
+     * 非阻塞地从缓存中获取数据，出现异常时当作缓存中没有数据
+     * @param cacheManager IAsyncCacheManager
+     * @param cacheKey 缓存Key
+     * @param method Method
+     * @param arguments 参数
+     * @return 缓存数据
+     */
+    private CompletableFuture<CacheWrapper<Object>> getAsync(IAsyncCacheManager cacheManager, CacheKeyTO cacheKey, Method method, Object[] arguments) {
+        WriteBehindHandler writeBehindHandler=cacheHandler.getWriteBehindHandler();
+        if(null != writeBehindHandler) {// 还没有写入缓存的数据
+            CacheWrapper<Object> pending=writeBehindHandler.get(cacheKey);
+            if(null != pending) {
+                return CompletableFuture.completedFuture(pending);
+            }
+        }
+        final MethodMetrics metrics=cacheHandler.getMethodMetrics(method);
+        final long startTime=null == metrics ? 0 : System.nanoTime();
+        return cacheManager.getAsync(cacheKey, method, arguments).handle(new BiFunction<CacheWrapper<Object>, Throwable, CacheWrapper<Object>>() {
+
+            @Override
+            public CacheWrapper<Object> apply(CacheWrapper<Object> cacheWrapper, Throwable error) {
+                if(null != metrics) {
+                    metrics.recordRemoteGet(System.nanoTime() - startTime);
+                }
+                if(null != error) {
+                    log.error(error.getMessage(), error);
+                    return null;
+                }
+                return cacheWrapper;
+            }
+        });
+    }
+
+    private CompletableFuture<Object> afterGet(final CacheAopProxyChain pjp, final Cache cache, CacheOpType opType, final CacheKeyTO cacheKey, CacheWrapper<Object> cacheWrapper) throws Throwable {
+        final Object[] arguments=pjp.getArgs();
+        MethodMetrics metrics=cacheHandler.getMethodMetrics(pjp.getMethod());
+        if(opType == CacheOpType.READ_ONLY) {
+            return CompletableFuture.completedFuture(null == cacheWrapper ? null : cacheWrapper.getCacheObject());
+        }
+        if(null != cacheWrapper && !cacheWrapper.isExpired()) {
+            if(null != metrics) {
+                metrics.recordHit();
+            }
+            AutoLoadTO autoLoadTO=cacheHandler.getAutoLoadHandler().putIfAbsent(cacheKey, pjp, cache, cacheWrapper);
+            if(null != autoLoadTO) {// 同步最后加载时间
+                autoLoadTO.setLastRequestTime(System.currentTimeMillis())//
+                    .setLastLoadTime(cacheWrapper.getLastLoadTime())// 同步加载时间
+                    .setExpire(cacheWrapper.getExpire());// 同步过期时间
+            } else {// 如果缓存快要失效，则自动刷新
+                cacheHandler.getRefreshHandler().doRefresh(pjp, cache, cacheKey, cacheWrapper);
+            }
+            return CompletableFuture.completedFuture(cacheWrapper.getCacheObject());
+        }
+        if(null != cacheWrapper && cache.maxStale() > 0 && !cacheWrapper.isExpired(cache.maxStale())) {
+            if(null != metrics) {
+                metrics.recordHit();
+                metrics.recordStaleServe();
+            }
+            cacheHandler.getRefreshHandler().doRefreshStale(pjp, cache, cacheKey, cacheWrapper);
+            return CompletableFuture.completedFuture(cacheWrapper.getCacheObject());
+        }
+        if(null != metrics) {
+            metrics.recordMiss();
+        }
+        final CompletableFuture<Object> newFuture=new CompletableFuture<Object>();
+        CompletableFuture<Object> first=loading.putIfAbsent(cacheKey, newFuture);
+        if(null != first) {// 已经有请求在加载，共享加载结果
+            return copy(first);
+        }
+        final long startTime=System.currentTimeMillis();
+        final long startNanos=System.nanoTime();
+        final MethodMetrics tmpMetrics=metrics;
+        CompletableFuture<?> future;
+        try {
+            future=toFuture(pjp.doProxyChain(arguments));
+        } catch(Throwable e) {
+            loadError(cacheKey, newFuture, e, tmpMetrics);
+            throw e;
+        }
+        future.whenComplete(new BiConsumer<Object, Throwable>() {
+
+            @Override
+            public void accept(Object result, Throwable error) {
+                if(null != error) {
+                    loadError(cacheKey, newFuture, unwrap(error), tmpMetrics);
+                    return;
+                }
+                long loadDataUseTime=System.currentTimeMillis() - startTime;
+                if(null != tmpMetrics) {
+                    tmpMetrics.recordLoad(System.nanoTime() - startNanos);
+                }
+                CacheWrapper<Object> newCacheWrapper=null;
+                try {
+                    newCacheWrapper=buildCacheWrapper(cache, arguments, result, loadDataUseTime);
+                    String bloomFilter=cache.bloomFilter();
+                    if(bloomFilter.length() > 0) {
+                        if(null != result) {
+                            cacheHandler.getBloomFilterHandler().put(bloomFilter, cacheKey);
+                        } else {
+                            cacheHandler.getBloomFilterHandler().falsePositive(bloomFilter);
+                        }
+                    }
+                } catch(Throwable e) {
+                    log.error(e.getMessage(), e);
+                }
+                newFuture.complete(result);// 先返回数据，不等待写缓存
+                if(null == newCacheWrapper) {
+                    loading.remove(cacheKey, newFuture);
+                    return;
+                }
+                writeCache(pjp, cache, cacheKey, newCacheWrapper, newFuture);
+            }
+        });
+        return copy(newFuture);
+    }
+
+    /**
+     * 写入加载的数据：开启异步写缓存时放入写缓存队列，否则在公共线程池中写入，不占用完成数据加载的线程；
+     * 写入完成后才从正在加载的数据中移除，写入期间的请求直接使用已加载的数据，避免重复加载
+     * @param pjp CacheAopProxyChain
+     * @param cache Cache注解
+     * @param cacheKey 缓存Key
+     * @param cacheWrapper 加载的数据
+     * @param future 已完成的加载结果
+     */
+    private void writeCache(final CacheAopProxyChain pjp, final Cache cache, final CacheKeyTO cacheKey, final CacheWrapper<Object> cacheWrapper, final CompletableFuture<Object> future) {
+        final AutoLoadTO autoLoadTO=cacheHandler.getAutoLoadHandler().putIfAbsent(cacheKey, pjp, cache, cacheWrapper);
+        if(null != cacheHandler.getWriteBehindHandler()) {// 写入之前的请求从待写入的数据中获取
+            try {
+                cacheHandler.writeCacheBehind(pjp, pjp.getArgs(), cache, cacheKey, cacheWrapper);
+                afterWrite(autoLoadTO, cacheWrapper);
+            } catch(Throwable e) {
+                log.error(e.getMessage(), e);
+            } finally {
+                loading.remove(cacheKey, future);
+            }
+            return;
+        }
+        CompletableFuture.runAsync(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    cacheHandler.writeCache(pjp, pjp.getArgs(), cache, cacheKey, cacheWrapper);
+                    afterWrite(autoLoadTO, cacheWrapper);
+                } catch(Throwable e) {
+                    log.error(e.getMessage(), e);
+                } finally {
+                    loading.remove(cacheKey, future);// 写入缓存后再移除，避免写入期间的请求重复加载
+                }
+            }
+        });
+    }
+
+    private static void afterWrite(AutoLoadTO autoLoadTO, CacheWrapper<Object> cacheWrapper) {
+        if(null != autoLoadTO) {// 同步最后加载时间
+            autoLoadTO.setLastRequestTime(System.currentTimeMillis())//
+                .setLastLoadTime(cacheWrapper.getLastLoadTime())// 同步加载时间
+                .setExpire(cacheWrapper.getExpire())// 同步过期时间
+                .addUseTotalTime(cacheWrapper.getLoadDataUseTime());// 统计用时
+        }
+    }
+
+    /**
+     * 从数据源中获取最新数据，完成后写入缓存
+     * @param pjp CacheAopProxyChain
+     * @param cache Cache注解
+     * @return CompletableFuture
+     * @throws Throwable 异常
+     */
+    private Object writeOnly(final CacheAopProxyChain pjp, final Cache cache) throws Throwable {
+        final Object[] arguments=pjp.getArgs();
+        final long startTime=System.currentTimeMillis();
+        CompletableFuture<?> future=toFuture(pjp.doProxyChain(arguments));
+        future.whenComplete(new BiConsumer<Object, Throwable>() {
+
+            @Override
+            public void accept(Object result, Throwable error) {
+                if(null != error) {
+                    return;
+                }
+                try {
+                    if(!cacheHandler.getScriptParser().isCacheable(cache, arguments, result)) {
+                        return;
+                    }
+                    CacheKeyTO cacheKey=cacheHandler.getCacheKey(pjp, cache, result);
+                    if(null == cacheKey) {
+                        return;
+                    }
+                    if(null != result && cache.bloomFilter().length() > 0) {// 新增的数据放入布隆过滤器
+                        cacheHandler.getBloomFilterHandler().put(cache.bloomFilter(), cacheKey);
+                    }
+                    CacheWrapper<Object> cacheWrapper=buildCacheWrapper(cache, arguments, result, System.currentTimeMillis() - startTime);
+                    AutoLoadTO autoLoadTO=cacheHandler.getAutoLoadHandler().getAutoLoadTO(cacheKey);
+                    cacheHandler.writeCache(pjp, arguments, cache, cacheKey, cacheWrapper);
+                    if(null != autoLoadTO) {
+                        autoLoadTO.setLastLoadTime(cacheWrapper.getLastLoadTime())// 同步加载时间
+                            .setExpire(cacheWrapper.getExpire());// 同步过期时间
+                    }
+                } catch(Throwable e) {
+                    log.error(e.getMessage(), e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private CacheWrapper<Object> buildCacheWrapper(Cache cache, Object[] arguments, Object result, long loadDataUseTime) {
+        int expire=cache.expire();
+        try {
+            expire=cacheHandler.getScriptParser().getRealExpire(cache.expire(), cache.expireExpression(), arguments, result);
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        CacheWrapper<Object> cacheWrapper=new CacheWrapper<Object>(result, expire);
+        cacheWrapper.setLoadDataUseTime(loadDataUseTime);
+        return cacheWrapper;
+    }
+
+    private void loadError(CacheKeyTO cacheKey, CompletableFuture<Object> future, Throwable error, MethodMetrics metrics) {
+        if(null != metrics) {
+            metrics.recordLoadError();
+        }
+        loading.remove(cacheKey, future);
+        future.completeExceptionally(error);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if(error instanceof CompletionException && null != error.getCause()) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private static CompletableFuture<?> toFuture(Object result) {
+        if(null == result) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return (CompletableFuture<?>)result;
+    }
+
+    /**
+     * 每个请求返回一个新的CompletableFuture，避免调用方complete() 或 cancel() 影响其它请求
+     * @param future 共享的CompletableFuture
+     * @return CompletableFuture
+     */
+    private static CompletableFuture<Object> copy(CompletableFuture<Object> future) {
+        final CompletableFuture<Object> res=new CompletableFuture<Object>();
+        future.whenComplete(new BiConsumer<Object, Throwable>() {
+
+            @Override
+            public void accept(Object result, Throwable error) {
+                if(null != error) {
+                    res.completeExceptionally(unwrap(error));
+                } else {
+                    res.complete(result);
+                }
+            }
+        });
+        return res;
+    }
+
+    /**
+     * 等待CompletableFuture 完成，用于自动加载及异步刷新等后台线程中加载数据
+     * @param result CompletableFuture
+     * @return 完成后的值
+     * @throws Throwable 异常
+     */
+    static Object join(Object result) throws Throwable {
+        try {
+            return ((CompletableFuture<?>)result).get();
+        } catch(ExecutionException e) {
+            throw null == e.getCause() ? e : e.getCause();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.jarvis.cache;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+/**
+ * 把同步的ICacheManager 转换为IAsyncCacheManager：在指定的线程池中执行同步操作
+ * @author jiayu.qiu
+ */
+public class AsyncCacheManagerAdapter implements IAsyncCacheManager {
+
+    private final ICacheManager cacheManager;
+
+    private final Executor executor;
+
+    public AsyncCacheManagerAdapter(ICacheManager cacheManager, Executor executor) {
+        this.cacheManager=cacheManager;
+        this.executor=executor;
+    }
+
+    /**
+     * 本身已经是IAsyncCacheManager 时直接返回，否则使用AsyncCacheManagerAdapter 进行转换
+     * @param cacheManager ICacheManager
+     * @param executor 执行同步操作的线程池
+     * @return IAsyncCacheManager
+     */
+    public static IAsyncCacheManager of(ICacheManager cacheManager, Executor executor) {
+        if(cacheManager instanceof IAsyncCacheManager) {
+            return (IAsyncCacheManager)cacheManager;
+        }
+        return new AsyncCacheManagerAdapter(cacheManager, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> setAsync(final CacheKeyTO cacheKey, final CacheWrapper<Object> result, final Method method, final Object[] args) {
+        final CompletableFuture<Void> future=new CompletableFuture<Void>();
+        execute(future, new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    cacheManager.setCache(cacheKey, result, method, args);
+                    future.complete(null);
+                } catch(Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<CacheWrapper<Object>> getAsync(final CacheKeyTO key, final Method method, final Object[] args) {
+        final CompletableFuture<CacheWrapper<Object>> future=new CompletableFuture<CacheWrapper<Object>>();
+        execute(future, new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    future.complete(cacheManager.get(key, method, args));
+                } catch(Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(final CacheKeyTO key) {
+        final CompletableFuture<Void> future=new CompletableFuture<Void>();
+        execute(future, new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    cacheManager.delete(key);
+                    future.complete(null);
+                } catch(Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private void execute(CompletableFuture<?> future, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch(Throwable e) {// 线程池已满或已关闭
+            future.completeExceptionally(e);
+        }
+    }
+
+    public ICacheManager getCacheManager() {
+        return cacheManager;
+    }
+}
@@ -1,10 +1,17 @@
 package com.jarvis.cache;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.jarvis.cache.annotation.Cache;
 import com.jarvis.cache.aop.CacheAopProxyChain;
@@ -12,11 +19,12 @@ import com.jarvis.cache.to.AutoLoadConfig;
 import com.jarvis.cache.to.AutoLoadTO;
 import com.jarvis.cache.to.CacheKeyTO;
 import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.type.RefreshPolicy;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * 用于处理自动加载缓存，sortThread 从autoLoadMap中取出数据，然后通知threads进行处理。
+ * 用于处理自动加载缓存，每个AutoLoadTO 按下次需要加载的时间放入延迟队列，scheduleThread 只取出已经到期的数据，按sortType 排序后通知threads进行处理。
  * @author jiayu.qiu
  */
 @Slf4j
@@ -29,6 +37,11 @@ public class AutoLoadHandler {
     
     private static final int ONE_THOUSAND_MS = 1000;
 
+    /**
+     * 两次检查同一个AutoLoadTO 的最小间隔，避免加载失败时频繁重试
+     */
+    private static final long MIN_SCHEDULE_INTERVAL=1000L;
+
     public static final String THREAD_NAME_PREFIX="autoLoadThread-";
 
     /**
@@ -44,12 +57,17 @@ public class AutoLoadHandler {
     private final Thread[] threads;
 
     /**
-     * 排序进行，对自动加载队列进行排序
+     * 调度线程，从延迟队列中取出到期的数据，放入自动加载队列
      */
-    private final Thread sortThread;
+    private final Thread scheduleThread;
 
     /**
-     * 自动加载队列
+     * 按下次加载时间排序的延迟队列
+     */
+    private final DelayQueue<DelayedAutoLoad> delayQueue;
+
+    /**
+     * 自动加载队列，只包含已经到期的数据
      */
     private final LinkedBlockingQueue<AutoLoadTO> autoLoadQueue;
 
@@ -83,10 +101,12 @@ public class AutoLoadHandler {
             this.running=true;
             this.threads=new Thread[this.config.getThreadCnt()];
             this.autoLoadMap=new ConcurrentHashMap<CacheKeyTO, AutoLoadTO>(this.config.getMaxElement());
+            this.delayQueue=new DelayQueue<DelayedAutoLoad>();
             this.autoLoadQueue=new LinkedBlockingQueue<AutoLoadTO>(this.config.getMaxElement());
-            this.sortThread=new Thread(new SortRunnable());
-            this.sortThread.setDaemon(true);
-            this.sortThread.start();
+            this.scheduleThread=new Thread(new ScheduleRunnable());
+            this.scheduleThread.setName("autoLoadScheduleThread");
+            this.scheduleThread.setDaemon(true);
+            this.scheduleThread.start();
             for(int i=0; i < this.config.getThreadCnt(); i++) {
                 this.threads[i]=new Thread(new AutoLoadRunnable());
                 this.threads[i].setName(THREAD_NAME_PREFIX + i);
@@ -96,8 +116,9 @@ public class AutoLoadHandler {
         } else {
             this.threads=null;
             this.autoLoadMap=null;
+            this.delayQueue=null;
             this.autoLoadQueue=null;
-            this.sortThread=null;
+            this.scheduleThread=null;
         }
     }
 
@@ -140,6 +161,8 @@ public class AutoLoadHandler {
         running=false;
         if(null != autoLoadMap) {
             autoLoadMap.clear();
+            delayQueue.clear();
+            scheduleThread.interrupt();
         }
         log.info("----------------------AutoLoadHandler.shutdown--------------------");
     }
@@ -175,8 +198,15 @@ public class AutoLoadHandler {
                 arguments=joinPoint.getArgs();
             }
             autoLoadTO=new AutoLoadTO(cacheKey, joinPoint, arguments, cache, expire);
+            autoLoadTO.setLastLoadTime(cacheWrapper.getLastLoadTime());// 放入队列前设置，到期检查时可能调用者还没有同步
             AutoLoadTO tmp=autoLoadMap.putIfAbsent(cacheKey, autoLoadTO);
             if(null == tmp) {
+                // 按缓存数据的加载时间计算，数据可能是重启前或其它服务器加载的，已经需要刷新时立即检查
+                long now=System.currentTimeMillis();
+                long lastLoadTime=cacheWrapper.getLastLoadTime() > 0 ? cacheWrapper.getLastLoadTime() : now;
+                long timeout=getLoadTimeout(autoLoadTO, RANDOM.get());
+                autoLoadTO.setLoadTimeout(timeout);
+                schedule(autoLoadTO, Math.max(lastLoadTime + timeout, now));
                 return autoLoadTO;
             } else {
                 return tmp;
@@ -202,48 +232,109 @@ public class AutoLoadHandler {
         return tmpArr;
     }
 
-    class SortRunnable implements Runnable {
+    /**
+     * 把AutoLoadTO 放入延迟队列，同一个AutoLoadTO 在队列中只有最后一次放入的任务有效
+     * @param autoLoadTO AutoLoadTO
+     * @param nextLoadTime 下次检查是否需要加载的时间
+     */
+    private void schedule(AutoLoadTO autoLoadTO, long nextLoadTime) {
+        autoLoadTO.setNextLoadTime(nextLoadTime);
+        delayQueue.offer(new DelayedAutoLoad(autoLoadTO, nextLoadTime));
+    }
+
+    /**
+     * 计算从上次加载到下次需要加载的时间间隔，单位：毫秒
+     * @param autoLoadTO AutoLoadTO
+     * @param random 随机数，用于把同时过期的数据分散开
+     * @return 时间间隔
+     */
+    private static long getLoadTimeout(AutoLoadTO autoLoadTO, Random random) {
+        int expire=autoLoadTO.getExpire();
+        Cache cache=autoLoadTO.getCache();
+        if(RefreshPolicy.XFETCH == cache.refreshPolicy() && autoLoadTO.getAverageUseTime() > 0) {
+            return CacheUtil.getXFetchTimeout(expire, autoLoadTO.getAverageUseTime(), cache.refreshBeta(), 1D - random.nextDouble());
+        }
+        int rand=random.nextInt(10);
+        int alarmTime=cache.alarmTime();
+        long timeout;
+        if(alarmTime > 0 && alarmTime < expire) {
+            timeout=expire - alarmTime;
+        } else {
+            if(expire >= 600) {
+                timeout=expire - 120;
+            } else {
+                timeout=expire - 60;
+            }
+        }
+        return (timeout + (rand % 2 == 0 ? rand : -rand)) * ONE_THOUSAND_MS;
+    }
+
+    /**
+     * 延迟队列中的任务
+     */
+    static class DelayedAutoLoad implements Delayed {
+
+        private final AutoLoadTO autoLoadTO;
+
+        private final long time;
+
+        DelayedAutoLoad(AutoLoadTO autoLoadTO, long time) {
+            this.autoLoadTO=autoLoadTO;
+            this.time=time;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            long other=((DelayedAutoLoad)o).time;
+            return time < other ? -1 : (time == other ? 0 : 1);
+        }
+
+        /**
+         * @return 是否被后来放入的任务替换或已从自动加载队列中删除
+         */
+        boolean isCancelled(ConcurrentHashMap<CacheKeyTO, AutoLoadTO> autoLoadMap) {
+            return time != autoLoadTO.getNextLoadTime() || autoLoadMap.get(autoLoadTO.getCacheKey()) != autoLoadTO;
+        }
+    }
+
+    class ScheduleRunnable implements Runnable {
 
         @Override
         public void run() {
+            List<DelayedAutoLoad> dueList=new ArrayList<DelayedAutoLoad>();
+            List<AutoLoadTO> batch=new ArrayList<AutoLoadTO>();
             while(running) {
-                int sleep=100;
-                // 如果没有数据 或 还有线程在处理，则继续等待
-                if(autoLoadMap.isEmpty() || autoLoadQueue.size() > 0) {
-                    try {
-                        Thread.sleep(sleep);
-                    } catch(InterruptedException e) {
-                        log.error(e.getMessage(), e);
-                    }
-                    continue;
-                } else if(autoLoadMap.size() <= threads.length * 10) {
-                    sleep=1000;
-                } else if(autoLoadMap.size() <= threads.length * 50) {
-                    sleep=300;
-                }
                 try {
-                    Thread.sleep(sleep);
-                } catch(InterruptedException e) {
-                    log.error(e.getMessage(), e);
-                }
-
-                AutoLoadTO[] tmpArr=getAutoLoadQueue();
-                if(null == tmpArr || tmpArr.length == 0) {
-                    continue;
-                }
-                for(int i=0; i < tmpArr.length; i++) {
-                    try {
-                        AutoLoadTO to=tmpArr[i];
-                        autoLoadQueue.put(to);
-                        if(i > 0 && i % 1000 == 0) {
-                            // Thread.sleep(0);// 触发操作系统立刻重新进行一次CPU竞争, 让其它线程获得CPU控制权的权力。
-                            Thread.yield();
+                    dueList.add(delayQueue.take());// 阻塞到有数据到期
+                    delayQueue.drainTo(dueList);// 只会取出已经到期的数据
+                    for(DelayedAutoLoad delayed: dueList) {
+                        if(!delayed.isCancelled(autoLoadMap)) {
+                            batch.add(delayed.autoLoadTO);
                         }
-                    } catch(InterruptedException e) {
-                        log.error(e.getMessage(), e);
-                    } catch(Exception e) {
-                        log.error(e.getMessage(), e);
                     }
+                    // 同一批到期的数据，按sortType 的优先级处理
+                    Comparator<AutoLoadTO> comparator=null == config.getSortType() ? null : config.getSortType().getComparator();
+                    if(null != comparator && batch.size() > 1) {
+                        Collections.sort(batch, comparator);
+                    }
+                    for(AutoLoadTO to: batch) {
+                        autoLoadQueue.put(to);
+                    }
+                } catch(InterruptedException e) {
+                    if(!running) {
+                        break;
+                    }
+                    log.error(e.getMessage(), e);
+                } catch(Exception e) {
+                    log.error(e.getMessage(), e);
+                } finally {
+                    dueList.clear();
+                    batch.clear();
                 }
             }
         }
@@ -257,7 +348,12 @@ public class AutoLoadHandler {
                 try {
                     AutoLoadTO tmpTO=autoLoadQueue.take();
                     if(null != tmpTO) {
-                        loadCache(tmpTO);
+                        long lastLoadTime=tmpTO.getLastLoadTime();
+                        try {
+                            loadCache(tmpTO);
+                        } finally {
+                            reschedule(tmpTO, lastLoadTime);
+                        }
                         Thread.sleep(config.getAutoLoadPeriod());
                     }
                 } catch(InterruptedException e) {
@@ -267,6 +363,26 @@ public class AutoLoadHandler {
             RANDOM.remove();
         }
 
+        /**
+         * 根据最新的加载时间重新放入延迟队列，已经从自动加载队列中删除的不再处理
+         * @param autoLoadTO AutoLoadTO
+         * @param previousLoadTime 检查前的加载时间，数据没有刷新时继续使用原来的刷新间隔
+         */
+        private void reschedule(AutoLoadTO autoLoadTO, long previousLoadTime) {
+            if(!running || autoLoadMap.get(autoLoadTO.getCacheKey()) != autoLoadTO) {
+                return;
+            }
+            long now=System.currentTimeMillis();
+            long lastLoadTime=autoLoadTO.getLastLoadTime() > 0 ? autoLoadTO.getLastLoadTime() : now;
+            long timeout=autoLoadTO.getLoadTimeout();
+            if(autoLoadTO.getLastLoadTime() != previousLoadTime || timeout <= 0) {// 数据已经刷新，重新生成刷新间隔
+                timeout=getLoadTimeout(autoLoadTO, RANDOM.get());
+                autoLoadTO.setLoadTimeout(timeout);
+            }
+            long nextLoadTime=lastLoadTime + timeout;
+            schedule(autoLoadTO, Math.max(nextLoadTime, now + MIN_SCHEDULE_INTERVAL));
+        }
+
         private void loadCache(AutoLoadTO autoLoadTO) {
             if(null == autoLoadTO) {
                 return;
@@ -303,20 +419,8 @@ public class AutoLoadHandler {
             if(expire < AUTO_LOAD_MIN_EXPIRE) {
                 return;
             }
-            // 计算超时时间
-            int alarmTime=autoLoadTO.getCache().alarmTime();
-            long timeout;
-            if(alarmTime > 0 && alarmTime < expire) {
-                timeout=expire - alarmTime;
-            } else {
-                if(expire >= 600) {
-                    timeout=expire - 120;
-                } else {
-                    timeout=expire - 60;
-                }
-            }
-            int rand=RANDOM.get().nextInt(10);
-            timeout=(timeout + (rand % 2 == 0 ? rand : -rand)) * ONE_THOUSAND_MS;
+            // 使用放入延迟队列时生成的刷新间隔，不重新生成随机数，否则已到期的数据可能被推迟
+            long timeout=autoLoadTO.getLoadTimeout();
             if((now - autoLoadTO.getLastLoadTime()) < timeout) {
                 return;
             }
@@ -0,0 +1,311 @@
+package com.jarvis.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.aop.CacheAopProxyChain;
+import com.jarvis.cache.metrics.MethodMetrics;
+import com.jarvis.cache.reflect.MethodMeta;
+import com.jarvis.cache.script.AbstractScriptParser;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
+import com.jarvis.cache.type.CacheOpType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 批量缓存处理：把集合参数拆分成单个元素，每个元素单独缓存，只使用缓存中没有的元素去加载数据
+ * @author jiayu.qiu
+ */
+@Slf4j
+public class BatchCacheHandler {
+
+    private final CacheHandler cacheHandler;
+
+    public BatchCacheHandler(CacheHandler cacheHandler) {
+        this.cacheHandler=cacheHandler;
+    }
+
+    /**
+     * 处理批量缓存
+     * @param pjp 切面
+     * @param cache 注解
+     * @param opType 缓存操作类型
+     * @return 返回值
+     * @throws Throwable 异常
+     */
+    public Object proceed(CacheAopProxyChain pjp, Cache cache, CacheOpType opType) throws Throwable {
+        Method method=pjp.getMethod();
+        Object[] arguments=pjp.getArgs();
+        int argIndex=cache.batchArgIndex();
+        Class<?> returnType=method.getReturnType();
+        if(null == arguments || argIndex >= arguments.length || !isBatchType(returnType) || !isBatchType(method.getParameterTypes()[argIndex])) {
+            log.error("{}.{}: batch cache needs a Collection or array argument at {} and a Map, Collection or array return type", pjp.getTargetClass().getName(), method.getName(), argIndex);
+            return load(pjp, arguments);
+        }
+        AbstractScriptParser scriptParser=cacheHandler.getScriptParser();
+        if(!scriptParser.isCacheable(cache, arguments)) {
+            return load(pjp, arguments);
+        }
+        List<Object> elements=toList(arguments[argIndex]);
+        if(null == elements || elements.isEmpty()) {
+            return load(pjp, arguments);
+        }
+        Map<Object, CacheKeyTO> elementKeys=new LinkedHashMap<Object, CacheKeyTO>(elements.size());
+        for(Object element: elements) {
+            if(elementKeys.containsKey(element)) {
+                continue;
+            }
+            CacheKeyTO cacheKey=cacheHandler.getCacheKey(pjp, cache, elementArgs(arguments, argIndex, element));
+            if(null == cacheKey) {
+                return load(pjp, arguments);
+            }
+            elementKeys.put(element, cacheKey);
+        }
+
+        Map<Object, Object> values=new HashMap<Object, Object>(elementKeys.size());
+        List<Object> misses=new ArrayList<Object>(elementKeys.size());
+        if(opType == CacheOpType.WRITE) {
+            misses.addAll(elementKeys.keySet());
+        } else {
+            Map<CacheKeyTO, CacheWrapper<Object>> cached=null;
+            try {
+                cached=cacheHandler.mget(method, MethodMeta.get(method).getElementType(), new HashSet<CacheKeyTO>(elementKeys.values()));
+            } catch(Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+            Iterator<Map.Entry<Object, CacheKeyTO>> it=elementKeys.entrySet().iterator();
+            while(it.hasNext()) {
+                Map.Entry<Object, CacheKeyTO> entry=it.next();
+                CacheWrapper<Object> cacheWrapper=null == cached ? null : cached.get(entry.getValue());
+                if(null != cacheWrapper && !cacheWrapper.isExpired()) {
+                    values.put(entry.getKey(), cacheWrapper.getCacheObject());
+                } else {
+                    misses.add(entry.getKey());
+                }
+            }
+            log.trace("batch cache {}.{}, hit:{}, miss:{}", pjp.getTargetClass().getName(), method.getName(), values.size(), misses.size());
+            MethodMetrics metrics=cacheHandler.getMethodMetrics(method);
+            if(null != metrics) {
+                metrics.recordHits(values.size(), misses.size());
+            }
+        }
+        if(opType == CacheOpType.READ_ONLY || misses.isEmpty()) {
+            return buildResult(returnType, elements, values);
+        }
+
+        Object[] missArgs=elementArgs(arguments, argIndex, newArgument(method.getParameterTypes()[argIndex], arguments[argIndex], misses));
+        MethodMetrics metrics=cacheHandler.getMethodMetrics(method);
+        long startTime=null == metrics ? 0 : System.nanoTime();
+        Object result;
+        try {
+            result=load(pjp, missArgs);
+        } catch(Throwable e) {
+            if(null != metrics) {
+                metrics.recordLoadError();
+            }
+            throw e;
+        }
+        if(null != metrics) {
+            metrics.recordLoad(System.nanoTime() - startTime);
+        }
+        Map<Object, Object> loaded=toElementMap(cache, missArgs, result);
+        if(null == loaded) {
+            return result;
+        }
+        List<MSetParam> params=new ArrayList<MSetParam>(misses.size());
+        for(Object element: misses) {
+            Object value=loaded.get(element);
+            Object[] tmpArgs=elementArgs(arguments, argIndex, element);
+            try {
+                int expire=scriptParser.getRealExpire(cache.expire(), cache.expireExpression(), tmpArgs, value);
+                cacheHandler.addWriteParams(params, pjp, tmpArgs, cache, elementKeys.get(element), new CacheWrapper<Object>(value, expire));
+            } catch(Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+            values.put(element, value);
+        }
+        try {
+            cacheHandler.writeCache(method, params);// 一次性写入所有加载到的数据
+        } catch(Exception ex) {
+            log.error(ex.getMessage(), ex);
+        }
+        if(misses.size() == elementKeys.size()) {// 全部都是从数据源加载的，直接使用原始返回值
+            return result;
+        }
+        return buildResult(returnType, elements, values);
+    }
+
+    /**
+     * 直接加载数据（加载后的数据不往缓存放）
+     */
+    private Object load(CacheAopProxyChain pjp, Object[] arguments) throws Throwable {
+        long startTime=System.currentTimeMillis();
+        Object result=pjp.doProxyChain(arguments);
+        long useTime=System.currentTimeMillis() - startTime;
+        AutoLoadConfig config=cacheHandler.getAutoLoadConfig();
+        if(config.isPrintSlowLog() && useTime >= config.getSlowLoadTime()) {
+            log.error("{}.{}, use time:{}ms", pjp.getTargetClass().getName(), pjp.getMethod().getName(), useTime);
+        }
+        return result;
+    }
+
+    /**
+     * 把加载到的数据转换为：参数元素 -&gt; 数据
+     * @param cache Cache注解
+     * @param arguments 参数
+     * @param result 返回值
+     * @return 如果无法对应到参数元素，则返回null
+     * @throws Exception 异常
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Object, Object> toElementMap(Cache cache, Object[] arguments, Object result) throws Exception {
+        if(null == result) {
+            return new HashMap<Object, Object>(0);
+        }
+        if(result instanceof Map) {
+            return (Map<Object, Object>)result;
+        }
+        String idExpression=cache.batchResultId();
+        if(null == idExpression || idExpression.length() == 0) {
+            log.error("batchResultId is required when the return type of batch cache is Collection or array");
+            return null;
+        }
+        List<Object> items=toList(result);
+        Map<Object, Object> res=new HashMap<Object, Object>(items.size());
+        AbstractScriptParser scriptParser=cacheHandler.getScriptParser();
+        for(Object item: items) {
+            if(null == item) {
+                continue;
+            }
+            res.put(scriptParser.getElValue(idExpression, arguments, item, true, Object.class), item);
+        }
+        return res;
+    }
+
+    /**
+     * 按参数元素的顺序组装返回值，缓存值为null的元素会被忽略
+     */
+    private Object buildResult(Class<?> returnType, List<Object> elements, Map<Object, Object> values) {
+        if(Map.class.isAssignableFrom(returnType)) {
+            Map<Object, Object> res=newMap(returnType, elements.size());
+            for(Object element: elements) {
+                Object value=values.get(element);
+                if(null != value) {
+                    res.put(element, value);
+                }
+            }
+            return res;
+        }
+        Collection<Object> res=returnType.isArray() ? new ArrayList<Object>(elements.size()) : newCollection(returnType, elements.size());
+        for(Object element: elements) {
+            Object value=values.get(element);
+            if(null != value) {
+                res.add(value);
+            }
+        }
+        if(returnType.isArray()) {
+            return toArray(returnType.getComponentType(), res);
+        }
+        return res;
+    }
+
+    /**
+     * 生成只包含未命中元素的参数
+     */
+    private Object newArgument(Class<?> paramType, Object original, List<Object> misses) {
+        if(original.getClass().isArray()) {
+            return toArray(original.getClass().getComponentType(), misses);
+        }
+        Collection<Object> res=newCollection(paramType, misses.size());
+        res.addAll(misses);
+        return res;
+    }
+
+    private static Object[] elementArgs(Object[] arguments, int argIndex, Object element) {
+        Object[] res=arguments.clone();
+        res[argIndex]=element;
+        return res;
+    }
+
+    private static boolean isBatchType(Class<?> type) {
+        return type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> toList(Object obj) {
+        if(obj instanceof Collection) {
+            return new ArrayList<Object>((Collection<Object>)obj);
+        }
+        if(null != obj && obj.getClass().isArray()) {
+            int len=Array.getLength(obj);
+            List<Object> res=new ArrayList<Object>(len);
+            for(int i=0; i < len; i++) {
+                res.add(Array.get(obj, i));
+            }
+            return res;
+        }
+        return null;
+    }
+
+    private static Object toArray(Class<?> componentType, Collection<Object> values) {
+        Object res=Array.newInstance(componentType, values.size());
+        int i=0;
+        for(Object value: values) {
+            Array.set(res, i++, value);
+        }
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> newCollection(Class<?> type, int size) {
+        if(!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            try {
+                return (Collection<Object>)type.newInstance();
+            } catch(Exception e) {
+                log.warn("can not create instance of {}: {}", type.getName(), e.getMessage());
+            }
+        }
+        if(SortedSet.class.isAssignableFrom(type)) {
+            return new TreeSet<Object>();
+        }
+        if(Set.class.isAssignableFrom(type)) {
+            return new LinkedHashSet<Object>(size);
+        }
+        return new ArrayList<Object>(size);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> newMap(Class<?> type, int size) {
+        if(!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            try {
+                return (Map<Object, Object>)type.newInstance();
+            } catch(Exception e) {
+                log.warn("can not create instance of {}: {}", type.getName(), e.getMessage());
+            }
+        }
+        if(SortedMap.class.isAssignableFrom(type)) {
+            return new TreeMap<Object, Object>();
+        }
+        return new LinkedHashMap<Object, Object>(size);
+    }
+}
@@ -1,7 +1,13 @@
 package com.jarvis.cache;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -14,14 +20,21 @@ import com.jarvis.cache.annotation.ExCache;
 import com.jarvis.cache.aop.CacheAopProxyChain;
 import com.jarvis.cache.aop.DeleteCacheAopProxyChain;
 import com.jarvis.cache.aop.DeleteCacheTransactionalAopProxyChain;
+import com.jarvis.cache.bloom.BloomFilterHandler;
+import com.jarvis.cache.bloom.IBloomFilterLoader;
 import com.jarvis.cache.clone.ICloner;
 import com.jarvis.cache.exception.CacheCenterConnectionException;
 import com.jarvis.cache.lock.ILock;
+import com.jarvis.cache.metrics.CacheMetricsRegistry;
+import com.jarvis.cache.metrics.MethodMetrics;
+import com.jarvis.cache.notify.ILoadNotifier;
+import com.jarvis.cache.reflect.MethodMeta;
 import com.jarvis.cache.script.AbstractScriptParser;
 import com.jarvis.cache.to.AutoLoadConfig;
 import com.jarvis.cache.to.AutoLoadTO;
 import com.jarvis.cache.to.CacheKeyTO;
 import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
 import com.jarvis.cache.to.ProcessingTO;
 import com.jarvis.cache.type.CacheOpType;
 
@@ -54,13 +67,40 @@ public class CacheHandler {
 
     private final RefreshHandler refreshHandler;
 
+    private final BatchCacheHandler batchCacheHandler;
+
+    /**
+     * 防止缓存穿透的布隆过滤器
+     */
+    private final BloomFilterHandler bloomFilterHandler;
+
+    /**
+     * 异步写缓存，AutoLoadConfig.writeBehind=false 时为null
+     */
+    private final WriteBehindHandler writeBehindHandler;
+
     /**
      * 分布式锁
      */
     private ILock lock;
 
+    /**
+     * 数据加载完成通知，与分布式锁配合使用
+     */
+    private ILoadNotifier loadNotifier;
+
     private ChangeListener changeListener;
 
+    /**
+     * 缓存统计，为null 时不统计
+     */
+    private CacheMetricsRegistry metricsRegistry;
+
+    /**
+     * 处理返回值为CompletableFuture 的方法，第一次遇到此类方法时才创建
+     */
+    private volatile AsyncCacheHandler asyncCacheHandler;
+
     public CacheHandler(ICacheManager cacheManager, AbstractScriptParser scriptParser, AutoLoadConfig config, ICloner cloner) {
         this.processing=new ConcurrentHashMap<CacheKeyTO, ProcessingTO>(config.getProcessingMapSize());
         this.cacheManager=cacheManager;
@@ -70,6 +110,9 @@ public class CacheHandler {
         this.scriptParser=scriptParser;
         registerFunction(config.getFunctions());
         refreshHandler=new RefreshHandler(this, config);
+        batchCacheHandler=new BatchCacheHandler(this);
+        bloomFilterHandler=new BloomFilterHandler(config);
+        writeBehindHandler=config.isWriteBehind() ? new WriteBehindHandler(this, config) : null;
     }
 
     /**
@@ -94,6 +137,9 @@ public class CacheHandler {
         Object[] arguments=pjp.getArgs();
         if(scriptParser.isCacheable(cache, arguments, result)) {
             CacheKeyTO cacheKey=getCacheKey(pjp, cache, result);
+            if(null != cacheKey && null != result && cache.bloomFilter().length() > 0) {// 新增的数据放入布隆过滤器
+                bloomFilterHandler.put(cache.bloomFilter(), cacheKey);
+            }
             AutoLoadTO autoLoadTO=autoLoadHandler.getAutoLoadTO(cacheKey);// 注意：这里只能获取AutoloadTO，不能生成AutoloadTO
             try {
                 writeCache(pjp, pjp.getArgs(), cache, cacheKey, cacheWrapper);
@@ -150,6 +196,14 @@ public class CacheHandler {
         CacheOpType opType=getCacheOpType(cache, arguments);
         log.trace("CacheHandler.proceed-->{}.{}--{})" , pjp.getTargetClass().getName(), pjp.getMethod().getName(), opType.name());
 
+        if(MethodMeta.get(pjp.getMethod()).isAsync()) {// 异步方法
+            return getAsyncCacheHandler().proceed(pjp, cache, opType);
+        }
+
+        if(cache.batchArgIndex() >= 0 && opType != CacheOpType.LOAD) {// 批量缓存
+            return batchCacheHandler.proceed(pjp, cache, opType);
+        }
+
         if(opType == CacheOpType.WRITE) {
             return writeOnly(pjp, cache);
         } else if(opType == CacheOpType.LOAD) {
@@ -164,7 +218,13 @@ public class CacheHandler {
         if(null == cacheKey) {
             return getData(pjp);
         }
+        String bloomFilter=cache.bloomFilter();
+        if(bloomFilter.length() > 0 && !bloomFilterHandler.mightContain(bloomFilter, cacheKey)) {// 一定不存在的数据，直接返回，防止缓存穿透
+            log.trace("cache key:{} is not in bloom filter {}", cacheKey.getCacheKey(), bloomFilter);
+            return null;
+        }
         Method method=pjp.getMethod();
+        MethodMetrics metrics=getMethodMetrics(method);
         CacheWrapper<Object> cacheWrapper=null;
         try {
             cacheWrapper=this.get(cacheKey, method, arguments);// 从缓存中获取数据
@@ -174,10 +234,20 @@ public class CacheHandler {
         log.trace("cache key:{}, cache data is null {} ", cacheKey.getCacheKey(), null == cacheWrapper);
 
         if(opType == CacheOpType.READ_ONLY) {
+            if(null != metrics) {
+                if(null == cacheWrapper) {
+                    metrics.recordMiss();
+                } else {
+                    metrics.recordHit();
+                }
+            }
             return null == cacheWrapper ? null : cacheWrapper.getCacheObject();
         }
 
         if(null != cacheWrapper && !cacheWrapper.isExpired()) {
+            if(null != metrics) {
+                metrics.recordHit();
+            }
             AutoLoadTO autoLoadTO=autoLoadHandler.putIfAbsent(cacheKey, pjp, cache, cacheWrapper);
             if(null != autoLoadTO) {// 同步最后加载时间
                 autoLoadTO.setLastRequestTime(System.currentTimeMillis())//
@@ -188,6 +258,18 @@ public class CacheHandler {
             }
             return cacheWrapper.getCacheObject();
         }
+        // 缓存已过期，但还在允许使用过期数据的时间内，直接返回过期数据，并在后台刷新
+        if(null != cacheWrapper && cache.maxStale() > 0 && !cacheWrapper.isExpired(cache.maxStale())) {
+            if(null != metrics) {
+                metrics.recordHit();
+                metrics.recordStaleServe();
+            }
+            refreshHandler.doRefreshStale(pjp, cache, cacheKey, cacheWrapper);
+            return cacheWrapper.getCacheObject();
+        }
+        if(null != metrics) {
+            metrics.recordMiss();
+        }
         DataLoaderFactory factory=DataLoaderFactory.getInstance();
         DataLoader dataLoader=factory.getDataLoader();
         CacheWrapper<Object> newCacheWrapper=null;
@@ -203,11 +285,22 @@ public class CacheHandler {
             factory.returnObject(dataLoader);
         }
         AutoLoadTO autoLoadTO=null;
+        if(bloomFilter.length() > 0) {
+            if(null != newCacheWrapper.getCacheObject()) {
+                bloomFilterHandler.put(bloomFilter, cacheKey);
+            } else if(isFirst) {
+                bloomFilterHandler.falsePositive(bloomFilter);
+            }
+        }
 
         if(isFirst) {
             autoLoadTO=autoLoadHandler.putIfAbsent(cacheKey, pjp, cache, newCacheWrapper);
             try {
-                writeCache(pjp, pjp.getArgs(), cache, cacheKey, newCacheWrapper);
+                if(null != writeBehindHandler) {// 异步写缓存，直接返回数据
+                    writeCacheBehind(pjp, pjp.getArgs(), cache, cacheKey, newCacheWrapper);
+                } else {
+                    writeCache(pjp, pjp.getArgs(), cache, cacheKey, newCacheWrapper);
+                }
                 if(null != autoLoadTO) {// 同步最后加载时间
                     autoLoadTO.setLastRequestTime(System.currentTimeMillis())//
                         .setLastLoadTime(newCacheWrapper.getLastLoadTime())// 同步加载时间
@@ -237,6 +330,7 @@ public class CacheHandler {
         String className=jp.getTargetClass().getName();
         String methodName=jp.getMethod().getName();
         try {
+            Set<CacheKeyTO> deleteKeys=new LinkedHashSet<CacheKeyTO>();
             for(int i=0; i < keys.length; i++) {
                 CacheDeleteKey keyConfig=keys[i];
                 String[] tempKeys=keyConfig.value();
@@ -247,11 +341,16 @@ public class CacheHandler {
                 for(String tempKey: tempKeys) {
                     CacheKeyTO key=getCacheKey(className, methodName, arguments, tempKey, tempHfield, retVal, true);
                     if(null != key && !CacheHelper.addDeleteCacheKey(key)) {
-                        this.delete(key);
-                        this.getAutoLoadHandler().resetAutoLoadLastLoadTime(key);
+                        deleteKeys.add(key);
                     }
                 }
             }
+            if(!deleteKeys.isEmpty()) {// 一次性删除所有缓存，减少与缓存服务器的交互次数
+                this.delete(deleteKeys);
+                for(CacheKeyTO key: deleteKeys) {
+                    this.getAutoLoadHandler().resetAutoLoadLastLoadTime(key);
+                }
+            }
         } catch(Throwable e) {
             log.error(e.getMessage(), e);
             throw e;
@@ -284,10 +383,8 @@ public class CacheHandler {
         if(isStart) {
             try {
                 if(null != set && set.size() > 0) {
-                    for(CacheKeyTO key: set) {
-                        this.delete(key);
-                        log.trace("proceedDeleteCacheTransactional delete-->{}",  key);
-                    }
+                    this.delete(set);
+                    log.trace("proceedDeleteCacheTransactional delete-->{}", set);
                 } else {
                     log.warn("proceedDeleteCacheTransactional: key set is empty!");
                 }
@@ -327,9 +424,66 @@ public class CacheHandler {
         if(null == cacheKey) {
             return;
         }
-        Method method=pjp.getMethod();
+        List<MSetParam> params=new ArrayList<MSetParam>();
+        addWriteParams(params, pjp, arguments, cache, cacheKey, cacheWrapper);
+        writeCache(pjp.getMethod(), params);
+        if(null != loadNotifier && null != lock && cache.lockExpire() > 0) {// 唤醒其它节点中等待分布式锁的请求
+            loadNotifier.publish(cacheKey.getLockKey());
+        }
+    }
+
+    /**
+     * 把需要写入的缓存（包括扩展缓存）放入异步写缓存队列
+     * @param pjp CacheAopProxyChain
+     * @param arguments 参数
+     * @param cache Cache注解
+     * @param cacheKey 缓存Key
+     * @param cacheWrapper 缓存数据
+     */
+    void writeCacheBehind(CacheAopProxyChain pjp, Object[] arguments, Cache cache, CacheKeyTO cacheKey, CacheWrapper<Object> cacheWrapper) {
+        if(null == cacheKey) {
+            return;
+        }
+        List<MSetParam> params=new ArrayList<MSetParam>();
+        addWriteParams(params, pjp, arguments, cache, cacheKey, cacheWrapper);
+        boolean notify=null != loadNotifier && null != lock && cache.lockExpire() > 0;
+        writeBehindHandler.write(pjp.getMethod(), params, notify ? cacheKey : null);
+    }
+
+    /**
+     * 批量写缓存，并同步自动加载队列中的过期时间
+     * @param method Method
+     * @param params 需要写入的缓存
+     * @throws CacheCenterConnectionException 缓存异常
+     */
+    void writeCache(Method method, List<MSetParam> params) throws CacheCenterConnectionException {
+        if(params.isEmpty()) {
+            return;
+        }
+        this.mset(method, params);
+        for(MSetParam param: params) {
+            AutoLoadTO tmpAutoLoadTO=this.autoLoadHandler.getAutoLoadTO(param.getCacheKey());
+            if(null != tmpAutoLoadTO) {
+                CacheWrapper<Object> tmpCacheWrapper=param.getResult();
+                tmpAutoLoadTO.setExpire(tmpCacheWrapper.getExpire())//
+                    .setLastLoadTime(tmpCacheWrapper.getLastLoadTime());//
+            }
+        }
+    }
+
+    /**
+     * 生成需要写入的缓存（包括扩展缓存），一起写入缓存，减少与缓存服务器的交互次数
+     * @param params 需要写入的缓存
+     * @param pjp CacheAopProxyChain
+     * @param arguments 参数
+     * @param cache Cache注解
+     * @param cacheKey 缓存Key
+     * @param cacheWrapper 缓存数据
+     */
+    void addWriteParams(List<MSetParam> params, CacheAopProxyChain pjp, Object[] arguments, Cache cache, CacheKeyTO cacheKey, CacheWrapper<Object> cacheWrapper) {
         if(cacheWrapper.getExpire() >= 0) {
-            this.setCache(cacheKey, cacheWrapper, method, arguments);
+            cacheWrapper.setMaxStale(cache.maxStale());
+            params.add(new MSetParam(cacheKey, cacheWrapper));
         }
         ExCache[] exCaches=cache.exCache();
         if(null == exCaches || exCaches.length == 0) {
@@ -354,26 +508,25 @@ public class CacheHandler {
                 }
 
                 int exCacheExpire=scriptParser.getRealExpire(exCache.expire(), exCache.expireExpression(), arguments, exResult);
-                CacheWrapper<Object> exCacheWrapper=new CacheWrapper<Object>(exResult, exCacheExpire);
-                AutoLoadTO tmpAutoLoadTO=this.autoLoadHandler.getAutoLoadTO(exCacheKey);
                 if(exCacheExpire >= 0) {
-                    this.setCache(exCacheKey, exCacheWrapper, method, arguments);
-                    if(null != tmpAutoLoadTO) {
-                        tmpAutoLoadTO.setExpire(exCacheExpire)//
-                            .setLastLoadTime(exCacheWrapper.getLastLoadTime());//
-                    }
+                    params.add(new MSetParam(exCacheKey, new CacheWrapper<Object>(exResult, exCacheExpire)));
                 }
-
             } catch(Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
         }
-
     }
 
     public void destroy() {
         autoLoadHandler.shutdown();
         refreshHandler.shutdown();
+        bloomFilterHandler.shutdown();
+        if(null != writeBehindHandler) {
+            writeBehindHandler.shutdown();
+        }
+        if(null != metricsRegistry) {
+            metricsRegistry.shutdown();
+        }
         log.trace("cache destroy ... ... ...");
     }
 
@@ -424,6 +577,19 @@ public class CacheHandler {
         return getCacheKey(className, methodName, arguments, keyExpression, hfieldExpression, null, false);
     }
 
+    /**
+     * 生成缓存 Key
+     * @param pjp
+     * @param cache
+     * @param arguments 参数
+     * @return 缓存Key
+     */
+    CacheKeyTO getCacheKey(CacheAopProxyChain pjp, Cache cache, Object[] arguments) {
+        String className=pjp.getTargetClass().getName();
+        String methodName=pjp.getMethod().getName();
+        return getCacheKey(className, methodName, arguments, cache.key(), cache.hfield(), null, false);
+    }
+
     /**
      * 生成缓存 Key
      * @param pjp
@@ -431,7 +597,7 @@ public class CacheHandler {
      * @param result 执行结果值
      * @return 缓存Key
      */
-    private CacheKeyTO getCacheKey(CacheAopProxyChain pjp, Cache cache, Object result) {
+    CacheKeyTO getCacheKey(CacheAopProxyChain pjp, Cache cache, Object result) {
         String className=pjp.getTargetClass().getName();
         String methodName=pjp.getMethod().getName();
         Object[] arguments=pjp.getArgs();
@@ -463,6 +629,24 @@ public class CacheHandler {
         return this.autoLoadHandler;
     }
 
+    RefreshHandler getRefreshHandler() {
+        return refreshHandler;
+    }
+
+    private AsyncCacheHandler getAsyncCacheHandler() {
+        AsyncCacheHandler tmp=asyncCacheHandler;
+        if(null == tmp) {
+            synchronized(this) {
+                tmp=asyncCacheHandler;
+                if(null == tmp) {
+                    tmp=new AsyncCacheHandler(this);
+                    asyncCacheHandler=tmp;
+                }
+            }
+        }
+        return tmp;
+    }
+
     public AbstractScriptParser getScriptParser() {
         return scriptParser;
     }
@@ -496,24 +680,108 @@ public class CacheHandler {
         this.lock=lock;
     }
 
+    public ILoadNotifier getLoadNotifier() {
+        return loadNotifier;
+    }
+
+    public void setLoadNotifier(ILoadNotifier loadNotifier) {
+        this.loadNotifier=loadNotifier;
+    }
+
     public void setCache(CacheKeyTO cacheKey, CacheWrapper<Object> result, Method method, Object[] args) throws CacheCenterConnectionException {
+        MethodMetrics metrics=getMethodMetrics(method);
+        long startTime=null == metrics ? 0 : System.nanoTime();
         cacheManager.setCache(cacheKey, result, method, args);
+        if(null != metrics) {
+            metrics.recordRemoteSet(System.nanoTime() - startTime);
+        }
         if(null != changeListener) {
             changeListener.update(cacheKey, result);
         }
     }
 
+    public void mset(Method method, Collection<MSetParam> params) throws CacheCenterConnectionException {
+        MethodMetrics metrics=getMethodMetrics(method);
+        long startTime=null == metrics ? 0 : System.nanoTime();
+        cacheManager.mset(method, params);
+        if(null != metrics) {
+            metrics.recordRemoteSet(System.nanoTime() - startTime);
+        }
+        if(null != changeListener) {
+            for(MSetParam param: params) {
+                changeListener.update(param.getCacheKey(), param.getResult());
+            }
+        }
+    }
+
     public CacheWrapper<Object> get(CacheKeyTO key, Method method, Object[] args) throws CacheCenterConnectionException {
-        return cacheManager.get(key, method, args);
+        if(null != writeBehindHandler) {// 还没有写入缓存的数据
+            CacheWrapper<Object> pending=writeBehindHandler.get(key);
+            if(null != pending) {
+                return pending;
+            }
+        }
+        MethodMetrics metrics=getMethodMetrics(method);
+        if(null == metrics) {
+            return cacheManager.get(key, method, args);
+        }
+        long startTime=System.nanoTime();
+        CacheWrapper<Object> res=cacheManager.get(key, method, args);
+        metrics.recordRemoteGet(System.nanoTime() - startTime);
+        return res;
+    }
+
+    public Map<CacheKeyTO, CacheWrapper<Object>> mget(Method method, Type returnType, Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        MethodMetrics metrics=getMethodMetrics(method);
+        long startTime=null == metrics ? 0 : System.nanoTime();
+        Map<CacheKeyTO, CacheWrapper<Object>> res=cacheManager.mget(method, returnType, keys);
+        if(null != metrics) {
+            metrics.recordRemoteGet(System.nanoTime() - startTime);
+        }
+        if(null == writeBehindHandler || writeBehindHandler.isEmpty()) {
+            return res;
+        }
+        Map<CacheKeyTO, CacheWrapper<Object>> tmp=null;
+        for(CacheKeyTO key: keys) {// 使用还没有写入缓存的数据
+            CacheWrapper<Object> pending=writeBehindHandler.get(key);
+            if(null != pending) {
+                if(null == tmp) {
+                    tmp=null == res ? new HashMap<CacheKeyTO, CacheWrapper<Object>>(keys.size()) : new HashMap<CacheKeyTO, CacheWrapper<Object>>(res);
+                }
+                tmp.put(key, pending);
+            }
+        }
+        return null == tmp ? res : tmp;
     }
 
     public void delete(CacheKeyTO key) throws CacheCenterConnectionException {
+        if(null != writeBehindHandler) {
+            writeBehindHandler.remove(key);
+        }
         cacheManager.delete(key);
         if(null != changeListener) {
             changeListener.delete(key);
         }
     }
 
+    public void delete(Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null != writeBehindHandler) {
+            for(CacheKeyTO key: keys) {
+                writeBehindHandler.remove(key);
+            }
+        }
+        cacheManager.mdelete(keys);
+        if(null != changeListener) {
+            for(CacheKeyTO key: keys) {
+                changeListener.delete(key);
+            }
+        }
+    }
+
+    public ICacheManager getCacheManager() {
+        return cacheManager;
+    }
+
     public ICloner getCloner() {
         return cloner;
     }
@@ -522,6 +790,37 @@ public class CacheHandler {
         return this.config;
     }
 
+    public BloomFilterHandler getBloomFilterHandler() {
+        return bloomFilterHandler;
+    }
+
+    public void setBloomFilterLoader(IBloomFilterLoader bloomFilterLoader) {
+        bloomFilterHandler.setLoader(bloomFilterLoader);
+    }
+
+    /**
+     * @param method 使用@Cache 注解的方法
+     * @return 方法对应的统计数据，没有设置CacheMetricsRegistry 时返回null
+     */
+    MethodMetrics getMethodMetrics(Method method) {
+        if(null == metricsRegistry || null == method) {
+            return null;
+        }
+        return metricsRegistry.getMethodMetrics(method);
+    }
+
+    public CacheMetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    public void setMetricsRegistry(CacheMetricsRegistry metricsRegistry) {
+        this.metricsRegistry=metricsRegistry;
+    }
+
+    public WriteBehindHandler getWriteBehindHandler() {
+        return writeBehindHandler;
+    }
+
     public ChangeListener getChangeListener() {
         return changeListener;
     }
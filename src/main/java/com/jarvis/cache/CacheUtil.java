@@ -1,9 +1,14 @@
 package com.jarvis.cache;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.Map;
 
+import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.lib.util.BeanHasher;
 import com.jarvis.lib.util.BeanUtil;
 
 /**
@@ -13,6 +18,8 @@ public class CacheUtil {
 
     private static final String SPLIT_STR="_";
 
+    private static final String COMPLETABLE_FUTURE="java.util.concurrent.CompletableFuture";
+
     @SuppressWarnings("rawtypes")
     public static boolean isEmpty(Object obj) {
         if(null == obj) {
@@ -87,7 +94,7 @@ public class CacheUtil {
     }
 
     /**
-     * 生成缓存Key
+     * 生成缓存Key：类名.方法名_参数的128位Hash 值（22个字符），参数只遍历一次，不生成中间字符串
      * @param className 类名称
      * @param method 方法名称
      * @param arguments 参数
@@ -97,7 +104,7 @@ public class CacheUtil {
         StringBuilder sb=new StringBuilder();
         sb.append(getDefaultCacheKeyPrefix(className, method, arguments));
         if(null != arguments && arguments.length > 0) {
-            sb.append(getUniqueHashStr(arguments));
+            sb.append(SPLIT_STR).append(BeanHasher.hash(arguments));
         }
         return sb.toString();
     }
@@ -118,4 +125,64 @@ public class CacheUtil {
         return sb.toString();
     }
 
+    /**
+     * 获取缓存在缓存服务器中的实际保存时长：开启stale-while-revalidate 时，需要比逻辑过期时间多保存maxStale秒
+     * @param wrapper CacheWrapper
+     * @return 时长（单位：秒）
+     */
+    public static int getPhysicalExpire(CacheWrapper<?> wrapper) {
+        int expire=wrapper.getExpire();
+        if(expire > 0 && wrapper.getMaxStale() > 0) {
+            return expire + wrapper.getMaxStale();
+        }
+        return expire;
+    }
+
+    /**
+     * XFetch 概率提前刷新：计算从上次加载到需要刷新的时间间隔，提前量为 loadDataUseTime * beta * -ln(random)，越耗时的数据越早刷新
+     * @param expire 缓存时长（单位：秒）
+     * @param loadDataUseTime 加载数据的耗时（单位：毫秒）
+     * @param beta 加载耗时的权重
+     * @param random (0, 1] 之间的随机数
+     * @return 时间间隔（单位：毫秒）
+     */
+    public static long getXFetchTimeout(int expire, long loadDataUseTime, double beta, double random) {
+        long expireMs=expire * 1000L;
+        double early=loadDataUseTime * beta * -Math.log(random);
+        if(early >= expireMs) {
+            return 0;
+        }
+        return expireMs - (long)early;
+    }
+
+    /**
+     * 判断是否为CompletableFuture（包括子类），通过类名判断，避免在低版本JDK中加载不存在的类
+     * @param cls Class
+     * @return boolean
+     */
+    public static boolean isCompletableFuture(Class<?> cls) {
+        for(Class<?> tmp=cls; null != tmp; tmp=tmp.getSuperclass()) {
+            if(COMPLETABLE_FUTURE.equals(tmp.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取缓存数据的类型：返回值为CompletableFuture&lt;T&gt; 时，缓存的是T
+     * @param method Method
+     * @return Type
+     */
+    public static Type getValueType(Method method) {
+        Type returnType=method.getGenericReturnType();
+        if(!isCompletableFuture(method.getReturnType())) {
+            return returnType;
+        }
+        if(returnType instanceof ParameterizedType) {
+            return ((ParameterizedType)returnType).getActualTypeArguments()[0];
+        }
+        return Object.class;
+    }
+
 }
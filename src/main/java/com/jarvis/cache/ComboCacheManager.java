@@ -1,13 +1,25 @@
 package com.jarvis.cache;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.jarvis.cache.annotation.LocalCache;
 import com.jarvis.cache.exception.CacheCenterConnectionException;
+import com.jarvis.cache.hotkey.HotKeyDetector;
+import com.jarvis.cache.reflect.MethodMeta;
 import com.jarvis.cache.script.AbstractScriptParser;
 import com.jarvis.cache.to.CacheKeyTO;
 import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.HotKeyTO;
 import com.jarvis.cache.to.LocalCacheWrapper;
+import com.jarvis.cache.to.MSetParam;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -34,6 +46,16 @@ public class ComboCacheManager implements ICacheManager {
      */
     private ICacheManager remoteCache;
 
+    /**
+     * 热点Key 探测，没有使用@LocalCache 的方法，其热点Key 也会缓存到本地
+     */
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 热点Key 在本地缓存的时间（单位：秒）
+     */
+    private int hotKeyExpire=5;
+
     public ComboCacheManager(ICacheManager localCache, ICacheManager remoteCache, AbstractScriptParser scriptParser) {
         this.localCache=localCache;
         this.remoteCache=remoteCache;
@@ -42,59 +64,169 @@ public class ComboCacheManager implements ICacheManager {
 
     @Override
     public void setCache(CacheKeyTO cacheKey, CacheWrapper<Object> result, Method method, Object[] args) throws CacheCenterConnectionException {
-        LocalCache lCache=null;
-        if(method.isAnnotationPresent(LocalCache.class)) {
-            lCache=method.getAnnotation(LocalCache.class);
+        LocalCache lCache=MethodMeta.get(method).getLocalCache();
+        if(null != lCache) {
             setLocalCache(lCache, cacheKey, result, method, args);
             if(lCache.localOnly()) {// 只本地缓存
                 return;
             }
+        } else if(isHot(cacheKey)) {// 更新热点Key 的本地缓存
+            setHotKeyLocalCache(cacheKey, result, method, args);
         }
         remoteCache.setCache(cacheKey, result, method, args);
     }
 
+    @Override
+    public void mset(Method method, Collection<MSetParam> params) throws CacheCenterConnectionException {
+        LocalCache lCache=MethodMeta.get(method).getLocalCache();
+        if(null != lCache) {
+            for(MSetParam param: params) {
+                setLocalCache(lCache, param.getCacheKey(), param.getResult(), method, null);
+            }
+            if(lCache.localOnly()) {// 只本地缓存
+                return;
+            }
+        } else if(null != hotKeyDetector) {
+            for(MSetParam param: params) {
+                if(isHot(param.getCacheKey())) {
+                    setHotKeyLocalCache(param.getCacheKey(), param.getResult(), method, null);
+                }
+            }
+        }
+        remoteCache.mset(method, params);
+    }
+
     private void setLocalCache(LocalCache lCache, CacheKeyTO cacheKey, CacheWrapper<Object> result, Method method, Object[] args) {
         try {
-            LocalCacheWrapper<Object> localResult=new LocalCacheWrapper<Object>();
-            localResult.setLastLoadTime(System.currentTimeMillis());
             int expire=scriptParser.getRealExpire(lCache.expire(), lCache.expireExpression(), args, result.getCacheObject());
-            localResult.setExpire(expire);
-            localResult.setCacheObject(result.getCacheObject());
+            setLocalCache(cacheKey, result, expire, method, args);
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
 
-            localResult.setRemoteExpire(result.getExpire());
-            localResult.setRemoteLastLoadTime(result.getLastLoadTime());
-            localCache.setCache(cacheKey, result, method, args);
+    private void setHotKeyLocalCache(CacheKeyTO cacheKey, CacheWrapper<Object> result, Method method, Object[] args) {
+        try {
+            int expire=hotKeyExpire;
+            if(result.getExpire() > 0 && result.getExpire() < expire) {
+                expire=result.getExpire();
+            }
+            setLocalCache(cacheKey, result, expire, method, args);
         } catch(Exception e) {
             log.error(e.getMessage(), e);
         }
     }
 
+    private void setLocalCache(CacheKeyTO cacheKey, CacheWrapper<Object> result, int expire, Method method, Object[] args) throws CacheCenterConnectionException {
+        LocalCacheWrapper<Object> localResult=new LocalCacheWrapper<Object>();
+        localResult.setLastLoadTime(System.currentTimeMillis());
+        localResult.setExpire(expire);
+        localResult.setCacheObject(result.getCacheObject());
+
+        localResult.setRemoteExpire(result.getExpire());
+        localResult.setRemoteLastLoadTime(result.getLastLoadTime());
+        localResult.setRemoteMaxStale(result.getMaxStale());
+        localResult.setRemoteLoadDataUseTime(result.getLoadDataUseTime());
+        localCache.setCache(cacheKey, localResult, method, args);
+    }
+
+    private boolean isHot(CacheKeyTO cacheKey) {
+        return null != hotKeyDetector && hotKeyDetector.isHot(cacheKey);
+    }
+
     @Override
     public CacheWrapper<Object> get(CacheKeyTO key, Method method, Object[] args) throws CacheCenterConnectionException {
         String threadName=Thread.currentThread().getName();
         if(threadName.startsWith(AutoLoadHandler.THREAD_NAME_PREFIX)) {// 如果是自动加载线程，则只从远程缓存获取。
             return remoteCache.get(key, method, args);
         }
-        LocalCache lCache=null;
-        if(method.isAnnotationPresent(LocalCache.class)) {
+        LocalCache lCache=MethodMeta.get(method).getLocalCache();
+        boolean hot=false;
+        if(null == lCache && null != hotKeyDetector) {
+            hot=hotKeyDetector.record(key);
+        }
+        if(null != lCache || hot) {
             CacheWrapper<Object> result=localCache.get(key, method, args);
-            lCache=method.getAnnotation(LocalCache.class);
             if(null != result) {
-                if(result instanceof LocalCacheWrapper) {
-                    LocalCacheWrapper<Object> localResult=(LocalCacheWrapper<Object>)result;
-                    CacheWrapper<Object> result2=new CacheWrapper<Object>();
-                    result2.setCacheObject(localResult.getCacheObject());
-                    result2.setExpire(localResult.getRemoteExpire());
-                    result2.setLastLoadTime(localResult.getRemoteLastLoadTime());
-                    return result2;
-                } else {
-                    return result;
-                }
+                return toRemoteWrapper(result);
             }
         }
         CacheWrapper<Object> result=remoteCache.get(key, method, args);
-        if(null != lCache && result != null) { // 如果取到了则先放到本地缓存里
-            setLocalCache(lCache, key, result, method, args);
+        if(result != null) { // 如果取到了则先放到本地缓存里
+            if(null != lCache) {
+                setLocalCache(lCache, key, result, method, args);
+            } else if(hot) {
+                setHotKeyLocalCache(key, result, method, args);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<CacheKeyTO, CacheWrapper<Object>> mget(Method method, Type returnType, Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        String threadName=Thread.currentThread().getName();
+        LocalCache lCache=MethodMeta.get(method).getLocalCache();
+        if(threadName.startsWith(AutoLoadHandler.THREAD_NAME_PREFIX) || (null == lCache && null == hotKeyDetector)) {
+            return remoteCache.mget(method, returnType, keys);
+        }
+        Set<CacheKeyTO> localKeys=keys;
+        if(null == lCache) {// 只有热点Key 才从本地缓存获取
+            localKeys=new HashSet<CacheKeyTO>();
+            for(CacheKeyTO key: keys) {
+                if(hotKeyDetector.record(key)) {
+                    localKeys.add(key);
+                }
+            }
+            if(localKeys.isEmpty()) {
+                return remoteCache.mget(method, returnType, keys);
+            }
+        }
+        Map<CacheKeyTO, CacheWrapper<Object>> res=new HashMap<CacheKeyTO, CacheWrapper<Object>>(keys.size());
+        Map<CacheKeyTO, CacheWrapper<Object>> localRes=localCache.mget(method, returnType, localKeys);
+        Set<CacheKeyTO> remoteKeys=new HashSet<CacheKeyTO>(keys.size());
+        for(CacheKeyTO key: keys) {
+            CacheWrapper<Object> result=null == localRes ? null : localRes.get(key);
+            if(null != result) {
+                res.put(key, toRemoteWrapper(result));
+            } else {
+                remoteKeys.add(key);
+            }
+        }
+        if(remoteKeys.isEmpty()) {
+            return res;
+        }
+        Map<CacheKeyTO, CacheWrapper<Object>> remoteRes=remoteCache.mget(method, returnType, remoteKeys);
+        if(null == remoteRes) {
+            return res;
+        }
+        Iterator<Map.Entry<CacheKeyTO, CacheWrapper<Object>>> it=remoteRes.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<CacheKeyTO, CacheWrapper<Object>> entry=it.next();
+            if(null != lCache) {
+                setLocalCache(lCache, entry.getKey(), entry.getValue(), method, null);// 如果取到了则先放到本地缓存里
+            } else if(localKeys.contains(entry.getKey())) {
+                setHotKeyLocalCache(entry.getKey(), entry.getValue(), method, null);
+            }
+            res.put(entry.getKey(), entry.getValue());
+        }
+        return res;
+    }
+
+    /**
+     * 把本地缓存的数据转换为远程缓存的过期信息
+     * @param result 本地缓存数据
+     * @return CacheWrapper
+     */
+    private CacheWrapper<Object> toRemoteWrapper(CacheWrapper<Object> result) {
+        if(result instanceof LocalCacheWrapper) {
+            LocalCacheWrapper<Object> localResult=(LocalCacheWrapper<Object>)result;
+            CacheWrapper<Object> result2=new CacheWrapper<Object>();
+            result2.setCacheObject(localResult.getCacheObject());
+            result2.setExpire(localResult.getRemoteExpire());
+            result2.setLastLoadTime(localResult.getRemoteLastLoadTime());
+            result2.setMaxStale(localResult.getRemoteMaxStale());
+            result2.setLoadDataUseTime(localResult.getRemoteLoadDataUseTime());
+            return result2;
         }
         return result;
     }
@@ -104,4 +236,35 @@ public class ComboCacheManager implements ICacheManager {
         localCache.delete(key);
         remoteCache.delete(key);
     }
+
+    @Override
+    public void mdelete(Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        localCache.mdelete(keys);
+        remoteCache.mdelete(keys);
+    }
+
+    /**
+     * @return 当前的热点Key，按每秒访问次数倒序排列，没有设置hotKeyDetector 时返回null
+     */
+    public List<HotKeyTO> getHotKeys() {
+        return null == hotKeyDetector ? null : hotKeyDetector.getHotKeys();
+    }
+
+    public HotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    public void setHotKeyDetector(HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector=hotKeyDetector;
+    }
+
+    public int getHotKeyExpire() {
+        return hotKeyExpire;
+    }
+
+    public void setHotKeyExpire(int hotKeyExpire) {
+        if(hotKeyExpire > 0) {
+            this.hotKeyExpire=hotKeyExpire;
+        }
+    }
 }
@@ -1,10 +1,13 @@
 package com.jarvis.cache;
 
+import java.util.concurrent.CountDownLatch;
 
 import com.jarvis.cache.annotation.Cache;
 import com.jarvis.cache.aop.CacheAopProxyChain;
 import com.jarvis.cache.exception.LoadDataTimeOutException;
 import com.jarvis.cache.lock.ILock;
+import com.jarvis.cache.metrics.MethodMetrics;
+import com.jarvis.cache.notify.ILoadNotifier;
 import com.jarvis.cache.to.AutoLoadConfig;
 import com.jarvis.cache.to.AutoLoadTO;
 import com.jarvis.cache.to.CacheKeyTO;
@@ -108,25 +111,23 @@ public class DataLoader {
                 isFirst=false;
                 processing=firstProcessing;// 获取到第一个线程的ProcessingTO 的引用，保证所有请求都指向同一个引用
             }
+        } else {
+            isFirst=false;
         }
-        Object lock=processing;
         String threadName=Thread.currentThread().getName();
         if(isFirst) {
             log.trace("{} first thread!", threadName);
             try {
                 doFirstRequest(processing);
+                processing.complete(cacheWrapper);// 发布到本地，等待中的请求直接使用
             } catch(Throwable e) {
-                processing.setError(e);
+                processing.completeExceptionally(e);
                 throw e;
             } finally {
-                processing.setFirstFinished(true);
-                cacheHandler.processing.remove(cacheKey);
-                synchronized(lock) {
-                    lock.notifyAll();
-                }
+                cacheHandler.processing.remove(cacheKey, processing);
             }
         } else {
-            doWaitRequest(processing, lock);
+            doWaitRequest(processing);
         }
         return this;
     }
@@ -136,22 +137,40 @@ public class DataLoader {
         if(null != distributedLock && cache.lockExpire() > 0) {// 开启分布式锁
             String lockKey=cacheKey.getLockKey();
             long startWait=processingTO.getStartTime();
+            ILoadNotifier loadNotifier=cacheHandler.getLoadNotifier();
             do {
                 if(distributedLock.tryLock(lockKey, cache.lockExpire())) {// 获得分布式锁
                     try {
                         getData();
+                    } catch(Throwable e) {
+                        if(null != loadNotifier) {// 加载失败，唤醒其它节点重新竞争锁
+                            loadNotifier.publish(lockKey);
+                        }
+                        throw e;
                     } finally {
                         distributedLock.unlock(lockKey);
                     }
                     break;
                 }
-                int tryCnt = 10;
-                for(int i=0; i < tryCnt; i++) {// 没有获得锁时，定时缓存尝试获取数据
+                if(null != loadNotifier) {// 没有获得锁时，等待持有锁的节点加载完成的通知
+                    CountDownLatch latch=loadNotifier.listen(lockKey);// 先监听再检查缓存，避免错过通知
                     cacheWrapper=cacheHandler.get(cacheKey, pjp.getMethod(), this.arguments);
                     if(null != cacheWrapper) {
                         break;
                     }
-                    Thread.sleep(20);
+                    long timeout=cache.waitTimeOut() - (System.currentTimeMillis() - startWait);
+                    if(loadNotifier.await(lockKey, latch, timeout)) {
+                        cacheWrapper=cacheHandler.get(cacheKey, pjp.getMethod(), this.arguments);
+                    }
+                } else {
+                    int tryCnt = 10;
+                    for(int i=0; i < tryCnt; i++) {// 没有获得锁时，定时缓存尝试获取数据
+                        cacheWrapper=cacheHandler.get(cacheKey, pjp.getMethod(), this.arguments);
+                        if(null != cacheWrapper) {
+                            break;
+                        }
+                        Thread.sleep(20);
+                    }
                 }
                 if(null != cacheWrapper) {
                     break;
@@ -163,40 +182,32 @@ public class DataLoader {
         } else {
             getData();
         }
-        processingTO.setCache(cacheWrapper);// 本地缓存
     }
 
-    private void doWaitRequest(ProcessingTO processing, Object lock) throws Throwable {
-        long startWait=processing.getStartTime();
+    private void doWaitRequest(ProcessingTO processing) throws Throwable {
         String tname=Thread.currentThread().getName();
-        do {// 等待
-            if(null == processing) {
-                break;
+        long timeout=cache.waitTimeOut() - (System.currentTimeMillis() - processing.getStartTime());
+        boolean finished=false;
+        log.trace("{} do wait", tname);
+        try {
+            finished=processing.await(timeout);// 阻塞到第一个请求完成或超时，不需要定时唤醒
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error(ex.getMessage(), ex);
+        }
+        if(finished) {
+            CacheWrapper<Object> tmpcacheWrapper=processing.getCache();// 从本地内存获取数据， 防止频繁去缓存服务器取数据，造成缓存服务器压力过大
+            log.trace("{} do FirstFinished" + " is null :{}" ,tname,  (null == tmpcacheWrapper));
+            if(null != tmpcacheWrapper) {
+                cacheWrapper=tmpcacheWrapper;
+                return;
             }
-            if(processing.isFirstFinished()) {
-                CacheWrapper<Object> tmpcacheWrapper=processing.getCache();// 从本地内存获取数据， 防止频繁去缓存服务器取数据，造成缓存服务器压力过大
-                log.trace("{} do FirstFinished" + " is null :{}" ,tname,  (null == tmpcacheWrapper));
-                if(null != tmpcacheWrapper) {
-                    cacheWrapper=tmpcacheWrapper;
-                    return;
-                }
-                Throwable error=processing.getError();
-                if(null != error) {// 当DAO出错时，直接抛异常
-                    log.trace("{} do error", tname);
-                    throw error;
-                }
-                break;
-            } else {
-                synchronized(lock) {
-                    log.trace("{} do wait", tname);
-                    try {
-                        lock.wait(10);// 如果要测试lock对象是否有效，wait时间去掉就可以
-                    } catch(InterruptedException ex) {
-                        log.error(ex.getMessage(), ex);
-                    }
-                }
+            Throwable error=processing.getError();
+            if(null != error) {// 当DAO出错时，直接抛异常
+                log.trace("{} do error", tname);
+                throw error;
             }
-        } while(System.currentTimeMillis() - startWait < cache.waitTimeOut());
+        }
         if(null == cacheWrapper) {
             cacheWrapper=cacheHandler.get(cacheKey, pjp.getMethod(), this.arguments);
         }
@@ -216,13 +227,21 @@ public class DataLoader {
     }
 
     public DataLoader getData() throws Throwable {
+        MethodMetrics metrics=cacheHandler.getMethodMetrics(pjp.getMethod());
         try {
             if(null != autoLoadTO) {
                 autoLoadTO.setLoading(true);
             }
             long loadDataStartTime=System.currentTimeMillis();
+            long startNanos=null == metrics ? 0 : System.nanoTime();
             Object result=pjp.doProxyChain(arguments);
+            if(null != result && CacheUtil.isCompletableFuture(result.getClass())) {// 自动加载及异步刷新时，等待异步方法完成
+                result=AsyncCacheHandler.join(result);
+            }
             loadDataUseTime=System.currentTimeMillis() - loadDataStartTime;
+            if(null != metrics) {
+                metrics.recordLoad(System.nanoTime() - startNanos);
+            }
             AutoLoadConfig config=cacheHandler.getAutoLoadConfig();
             String className=pjp.getTargetClass().getName();
             if(config.isPrintSlowLog() && loadDataUseTime >= config.getSlowLoadTime()) {
@@ -231,6 +250,9 @@ public class DataLoader {
             log.debug("{}.{}, use time:{}ms, result is null :", className, pjp.getMethod().getName(), loadDataUseTime, null == result);
             buildCacheWrapper(result);
         } catch(Throwable e) {
+            if(null != metrics) {
+                metrics.recordLoadError();
+            }
             throw e;
         } finally {
             if(null != autoLoadTO) {
@@ -248,6 +270,7 @@ public class DataLoader {
             log.error(e.getMessage(), e);
         }
         cacheWrapper=new CacheWrapper<Object>(result, expire);
+        cacheWrapper.setLoadDataUseTime(loadDataUseTime);
     }
 
     public CacheWrapper<Object> getCacheWrapper() {
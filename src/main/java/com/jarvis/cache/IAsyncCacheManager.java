@@ -0,0 +1,41 @@
+package com.jarvis.cache;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+/**
+ * 非阻塞的缓存管理：操作结果通过CompletableFuture 返回，调用线程不需要等待与缓存服务器的交互；
+ * 同步的ICacheManager 可以通过AsyncCacheManagerAdapter 转换为此接口。
+ * @author jiayu.qiu
+ */
+public interface IAsyncCacheManager {
+
+    /**
+     * 往缓存写数据
+     * @param cacheKey 缓存Key
+     * @param result 缓存数据
+     * @param method Method
+     * @param args args
+     * @return 写入完成时完成
+     */
+    CompletableFuture<Void> setAsync(final CacheKeyTO cacheKey, final CacheWrapper<Object> result, final Method method, final Object args[]);
+
+    /**
+     * 根据缓存Key获得缓存中的数据
+     * @param key 缓存key
+     * @param method Method
+     * @param args args
+     * @return 缓存数据，不存在时为null
+     */
+    CompletableFuture<CacheWrapper<Object>> getAsync(final CacheKeyTO key, final Method method, final Object args[]);
+
+    /**
+     * 删除缓存
+     * @param key 缓存key
+     * @return 删除完成时完成
+     */
+    CompletableFuture<Void> deleteAsync(final CacheKeyTO key);
+}
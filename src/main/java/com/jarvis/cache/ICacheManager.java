@@ -1,10 +1,15 @@
 package com.jarvis.cache;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
 
 import com.jarvis.cache.exception.CacheCenterConnectionException;
 import com.jarvis.cache.to.CacheKeyTO;
 import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
 
 /**
  * 缓存管理
@@ -22,6 +27,14 @@ public interface ICacheManager {
      */
     void setCache(final CacheKeyTO cacheKey, final CacheWrapper<Object> result, final Method method, final Object args[]) throws CacheCenterConnectionException;
 
+    /**
+     * 批量往缓存写数据
+     * @param method Method
+     * @param params 缓存Key 和 缓存数据
+     * @throws CacheCenterConnectionException 缓存异常
+     */
+    void mset(final Method method, final Collection<MSetParam> params) throws CacheCenterConnectionException;
+
     /**
      * 根据缓存Key获得缓存中的数据
      * @param key 缓存key
@@ -32,6 +45,16 @@ public interface ICacheManager {
      */
     CacheWrapper<Object> get(final CacheKeyTO key, final Method method, final Object args[]) throws CacheCenterConnectionException;
 
+    /**
+     * 根据多个缓存Key批量获得缓存中的数据
+     * @param method Method
+     * @param returnType 缓存数据的类型，用于反序列化
+     * @param keys 缓存keys
+     * @return 缓存数据，缓存中不存在的key不会出现在返回结果中
+     * @throws CacheCenterConnectionException 缓存异常
+     */
+    Map<CacheKeyTO, CacheWrapper<Object>> mget(final Method method, final Type returnType, final Set<CacheKeyTO> keys) throws CacheCenterConnectionException;
+
     /**
      * 删除缓存
      * @param key 缓存key
@@ -39,4 +62,11 @@ public interface ICacheManager {
      */
     void delete(final CacheKeyTO key) throws CacheCenterConnectionException;
 
+    /**
+     * 批量删除缓存
+     * @param keys 缓存keys
+     * @throws CacheCenterConnectionException 缓存异常
+     */
+    void mdelete(final Set<CacheKeyTO> keys) throws CacheCenterConnectionException;
+
 }
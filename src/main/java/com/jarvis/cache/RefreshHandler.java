@@ -1,5 +1,6 @@
 package com.jarvis.cache;
 
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -13,6 +14,7 @@ import com.jarvis.cache.aop.CacheAopProxyChain;
 import com.jarvis.cache.to.AutoLoadConfig;
 import com.jarvis.cache.to.CacheKeyTO;
 import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.type.RefreshPolicy;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -26,6 +28,19 @@ public class RefreshHandler {
     private static final int REFRESH_MIN_EXPIRE=120;
     
     private static final int ONE_THOUSAND_MS = 1000;
+
+    /**
+     * 随机数种子
+     */
+    private static final ThreadLocal<Random> RANDOM=new ThreadLocal<Random>() {
+
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+
+    };
+
     /**
      * 刷新缓存线程池
      */
@@ -72,7 +87,23 @@ public class RefreshHandler {
         if(expire < REFRESH_MIN_EXPIRE) {// 如果过期时间太小了，就不允许自动加载，避免加载过于频繁，影响系统稳定性
             return;
         }
-        // 计算超时时间
+        if((System.currentTimeMillis() - cacheWrapper.getLastLoadTime()) < getRefreshTimeout(cache, cacheWrapper)) {
+            return;
+        }
+        submit(pjp, cache, cacheKey, cacheWrapper);
+    }
+
+    /**
+     * 计算从上次加载到需要刷新的时间间隔
+     * @param cache Cache注解
+     * @param cacheWrapper 缓存数据
+     * @return 时间间隔（单位：毫秒）
+     */
+    private static long getRefreshTimeout(Cache cache, CacheWrapper<Object> cacheWrapper) {
+        int expire=cacheWrapper.getExpire();
+        if(RefreshPolicy.XFETCH == cache.refreshPolicy() && cacheWrapper.getLoadDataUseTime() > 0) {
+            return CacheUtil.getXFetchTimeout(expire, cacheWrapper.getLoadDataUseTime(), cache.refreshBeta(), 1D - RANDOM.get().nextDouble());
+        }
         int alarmTime=cache.alarmTime();
         long timeout;
         if(alarmTime > 0 && alarmTime < expire) {
@@ -84,10 +115,21 @@ public class RefreshHandler {
                 timeout=expire - 60;
             }
         }
-        
-        if((System.currentTimeMillis() - cacheWrapper.getLastLoadTime()) < (timeout * ONE_THOUSAND_MS)) {
-            return;
-        }
+        return timeout * ONE_THOUSAND_MS;
+    }
+
+    /**
+     * stale-while-revalidate：缓存已过期但仍在maxStale 时间内，在后台刷新缓存，同一个缓存只会有一个刷新任务
+     * @param pjp CacheAopProxyChain
+     * @param cache Cache注解
+     * @param cacheKey 缓存Key
+     * @param cacheWrapper 过期的缓存数据
+     */
+    public void doRefreshStale(CacheAopProxyChain pjp, Cache cache, CacheKeyTO cacheKey, CacheWrapper<Object> cacheWrapper) {
+        submit(pjp, cache, cacheKey, cacheWrapper);
+    }
+
+    private void submit(CacheAopProxyChain pjp, Cache cache, CacheKeyTO cacheKey, CacheWrapper<Object> cacheWrapper) {
         Byte tmpByte=refreshing.get(cacheKey);
         // 如果有正在刷新的请求，则不处理
         if(null != tmpByte) {
@@ -98,6 +140,7 @@ public class RefreshHandler {
             try {
                 refreshThreadPool.execute(new RefreshTask(pjp, cache, cacheKey, cacheWrapper));
             } catch(Exception e) {
+                refreshing.remove(cacheKey);
                 log.error(e.getMessage(), e);
             }
         }
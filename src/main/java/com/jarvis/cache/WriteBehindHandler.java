@@ -0,0 +1,310 @@
+package com.jarvis.cache;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jarvis.cache.notify.ILoadNotifier;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 异步写缓存处理器：加载数据后直接返回，由后台线程批量写入缓存。<br>
+ * 同一个Key 在写入之前的多次写入会合并为最后一次；写入完成之前，本节点的请求从待写入的数据中获取，避免重复加载数据。<br>
+ * 正在写入的数据被删除时，写入完成后会再删除一次，避免旧数据在删除之后才写入缓存。
+ * @author jiayu.qiu
+ */
+@Slf4j
+public class WriteBehindHandler {
+
+    private final CacheHandler cacheHandler;
+
+    private final int batchSize;
+
+    private final boolean callerRunsOnFull;
+
+    /**
+     * 待写入的数据
+     */
+    private final ConcurrentHashMap<CacheKeyTO, WriteTO> pending;
+
+    /**
+     * 待写入的Key，同一个Key 在队列中最多只有一个
+     */
+    private final LinkedBlockingQueue<CacheKeyTO> queue;
+
+    /**
+     * 正在写入缓存的数据
+     */
+    private final ConcurrentHashMap<CacheKeyTO, WriteTO> writing=new ConcurrentHashMap<CacheKeyTO, WriteTO>();
+
+    private final Thread thread;
+
+    private volatile boolean running=true;
+
+    private final AtomicLong writeCnt=new AtomicLong(0);
+
+    private final AtomicLong coalescedCnt=new AtomicLong(0);
+
+    private final AtomicLong callerRunsCnt=new AtomicLong(0);
+
+    private final AtomicLong droppedCnt=new AtomicLong(0);
+
+    private final AtomicLong errorCnt=new AtomicLong(0);
+
+    public WriteBehindHandler(CacheHandler cacheHandler, AutoLoadConfig config) {
+        this.cacheHandler=cacheHandler;
+        this.batchSize=config.getWriteBehindBatchSize();
+        this.callerRunsOnFull=config.isWriteBehindCallerRunsOnFull();
+        int capacity=config.getWriteBehindQueueCapacity();
+        this.pending=new ConcurrentHashMap<CacheKeyTO, WriteTO>(Math.min(capacity, 1024));
+        this.queue=new LinkedBlockingQueue<CacheKeyTO>(capacity);
+        this.thread=new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                doWrite();
+            }
+        }, "autoload-cache-WriteBehindHandler");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 把需要写入的缓存放入队列
+     * @param method Method
+     * @param params 需要写入的缓存
+     * @param notifyKey 写入后需要唤醒其它节点中等待分布式锁的请求时，传入对应的缓存Key，否则为null
+     */
+    public void write(Method method, List<MSetParam> params, CacheKeyTO notifyKey) {
+        for(MSetParam param: params) {
+            CacheKeyTO key=param.getCacheKey();
+            WriteTO task=new WriteTO(method, param, key.equals(notifyKey));
+            if(null != pending.put(key, task)) {// 已经在队列中，合并写入
+                coalescedCnt.incrementAndGet();
+                continue;
+            }
+            if(!running || !queue.offer(key)) {// 队列已满
+                if(callerRunsOnFull) {
+                    callerRunsCnt.incrementAndGet();
+                    List<CacheKeyTO> keys=new ArrayList<CacheKeyTO>(1);
+                    keys.add(key);
+                    flush(keys);
+                } else {
+                    WriteTO current;
+                    while(null != (current=pending.get(key))) {// 其它线程可能已经合并到当前Key 中，它们不会再放入队列，需要一起丢弃
+                        if(pending.remove(key, current)) {
+                            droppedCnt.incrementAndGet();
+                            log.warn("write behind queue is full, drop cache key:{}", key.getCacheKey());
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取还没有写入缓存的数据
+     * @param key 缓存Key
+     * @return 没有待写入的数据时返回null
+     */
+    public CacheWrapper<Object> get(CacheKeyTO key) {
+        WriteTO task=pending.get(key);
+        return null == task ? null : task.param.getResult();
+    }
+
+    /**
+     * 删除缓存时，同时删除还没有写入的数据；正在写入的数据会被标记为已删除，写入完成后再删除一次
+     * @param key 缓存Key
+     */
+    public void remove(CacheKeyTO key) {
+        pending.remove(key);
+        WriteTO task=writing.get(key);
+        if(null != task) {
+            task.deleted=true;
+        }
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    private void doWrite() {
+        List<CacheKeyTO> keys=new ArrayList<CacheKeyTO>(batchSize);
+        while(running) {
+            try {
+                CacheKeyTO key=queue.poll(100, TimeUnit.MILLISECONDS);
+                if(null == key) {
+                    continue;
+                }
+                keys.add(key);
+                queue.drainTo(keys, batchSize - 1);
+                flush(keys);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch(Throwable e) {
+                log.error(e.getMessage(), e);
+            } finally {
+                keys.clear();
+            }
+        }
+        while(!queue.isEmpty()) {// 写入剩余的数据
+            queue.drainTo(keys, batchSize);
+            flush(keys);
+            keys.clear();
+        }
+    }
+
+    /**
+     * 按方法分组批量写入缓存，写入完成后才从待写入的数据中移除
+     * @param keys 缓存Key
+     */
+    private void flush(List<CacheKeyTO> keys) {
+        while(!keys.isEmpty()) {
+            Map<Method, List<WriteTO>> groups=new LinkedHashMap<Method, List<WriteTO>>();
+            for(CacheKeyTO key: keys) {
+                WriteTO task;
+                while(null != (task=pending.get(key))) {// 先标记为正在写入再检查，保证删除时能看到正在写入的数据
+                    writing.put(key, task);
+                    if(pending.get(key) == task) {
+                        break;
+                    }
+                    writing.remove(key, task);
+                }
+                if(null == task) {
+                    continue;
+                }
+                List<WriteTO> group=groups.get(task.method);
+                if(null == group) {
+                    group=new ArrayList<WriteTO>();
+                    groups.put(task.method, group);
+                }
+                group.add(task);
+            }
+            List<CacheKeyTO> retry=new ArrayList<CacheKeyTO>(0);
+            for(Map.Entry<Method, List<WriteTO>> entry: groups.entrySet()) {
+                List<WriteTO> group=entry.getValue();
+                List<MSetParam> params=new ArrayList<MSetParam>(group.size());
+                for(WriteTO task: group) {
+                    params.add(task.param);
+                }
+                try {
+                    cacheHandler.writeCache(entry.getKey(), params);
+                    writeCnt.addAndGet(params.size());
+                } catch(Throwable e) {
+                    errorCnt.addAndGet(params.size());
+                    log.error(e.getMessage(), e);
+                }
+                ILoadNotifier loadNotifier=cacheHandler.getLoadNotifier();
+                for(WriteTO task: group) {
+                    CacheKeyTO key=task.param.getCacheKey();
+                    writing.remove(key, task);
+                    if(task.deleted) {// 写入期间被删除，删除可能先于写入完成
+                        try {
+                            cacheHandler.getCacheManager().delete(key);
+                        } catch(Throwable e) {
+                            log.error(e.getMessage(), e);
+                        }
+                    }
+                    if(!pending.remove(key, task) && !task.deleted && !queue.offer(key)) {// 写入期间又有新数据，需要再次写入；被删除后的新数据已经放入队列
+                        retry.add(key);
+                    }
+                    if(task.notify && null != loadNotifier) {// 唤醒其它节点中等待分布式锁的请求
+                        loadNotifier.publish(key.getLockKey());
+                    }
+                }
+            }
+            keys=retry;
+        }
+    }
+
+    public void shutdown() {
+        running=false;
+        try {
+            thread.join(5000);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return 待写入的数量
+     */
+    public int getPendingCnt() {
+        return pending.size();
+    }
+
+    /**
+     * @return 队列中等待写入的Key 数量
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return 已写入的数量
+     */
+    public long getWriteCnt() {
+        return writeCnt.get();
+    }
+
+    /**
+     * @return 被合并的写入数量
+     */
+    public long getCoalescedCnt() {
+        return coalescedCnt.get();
+    }
+
+    /**
+     * @return 队列已满时，由当前线程同步写入的数量
+     */
+    public long getCallerRunsCnt() {
+        return callerRunsCnt.get();
+    }
+
+    /**
+     * @return 队列已满时，丢弃的写入数量
+     */
+    public long getDroppedCnt() {
+        return droppedCnt.get();
+    }
+
+    /**
+     * @return 写入失败的数量
+     */
+    public long getErrorCnt() {
+        return errorCnt.get();
+    }
+
+    private static class WriteTO {
+
+        private final Method method;
+
+        private final MSetParam param;
+
+        private final boolean notify;
+
+        /**
+         * 正在写入时被删除
+         */
+        private volatile boolean deleted;
+
+        WriteTO(Method method, MSetParam param, boolean notify) {
+            this.method=method;
+            this.param=param;
+            this.notify=notify;
+        }
+    }
+}
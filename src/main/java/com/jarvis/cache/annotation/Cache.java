@@ -8,6 +8,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import com.jarvis.cache.type.CacheOpType;
+import com.jarvis.cache.type.RefreshPolicy;
 
 /**
  * 缓存注解
@@ -37,6 +38,25 @@ public @interface Cache {
      */
     int alarmTime() default 0;
 
+    /**
+     * 允许使用过期数据的最长时间（单位：秒），大于0时开启stale-while-revalidate：缓存过期后maxStale秒内，直接返回过期的数据，同时在后台异步刷新（同一个缓存只会有一个刷新任务）；
+     * 缓存服务器中的数据会多保存maxStale秒。expire为0时无效。
+     * @return 时间
+     */
+    int maxStale() default 0;
+
+    /**
+     * 异步刷新及自动加载的刷新策略：默认是FIXED，在固定的时间点刷新；XFETCH 则根据距离过期的时间和加载数据的耗时，按概率提前刷新
+     * @return RefreshPolicy
+     */
+    RefreshPolicy refreshPolicy() default RefreshPolicy.FIXED;
+
+    /**
+     * XFETCH 策略下加载耗时的权重，值越大越早刷新，大于1时倾向提前刷新，小于1时倾向推迟刷新
+     * @return double
+     */
+    double refreshBeta() default 1.0D;
+
     /**
      * 自定义缓存Key，支持表达式
      * @return String 自定义缓存Key
@@ -49,6 +69,27 @@ public @interface Cache {
      */
     String hfield() default "";
 
+    /**
+     * 批量缓存的参数位置（从0开始），大于等于0时开启批量缓存模式：该位置的参数必须是Collection或数组，会被拆分成单个元素，并用单个元素替换该参数来计算key和hfield，每个元素单独缓存；
+     * 一次性从缓存中获取所有元素，只使用缓存中没有的元素去调用实际方法，再把加载到的元素逐个写入缓存。批量模式下不支持自动加载和异步刷新。
+     * @return int 参数位置
+     */
+    int batchArgIndex() default -1;
+
+    /**
+     * 批量缓存模式下，从返回值的单个元素中获取其对应参数元素的表达式，#retVal 为返回值中的单个元素，例如：#retVal.id。<br>
+     * 方法返回值为Collection或数组时必须设置；返回值为Map时，Map的key即为参数元素，不需要设置。
+     * @return String 表达式
+     */
+    String batchResultId() default "";
+
+    /**
+     * 防止缓存穿透的布隆过滤器名称，一般使用key 的前缀，为空时不使用。需要往CacheHandler 中注入IBloomFilterLoader，过滤器初始化完成后，判断为一定不存在的key 直接返回null，不访问缓存及数据源；
+     * 加载到的非null 数据会放入过滤器，新增数据时需要使用opType=WRITE 或调用BloomFilterHandler.put()，否则要等到下次重建后才能查询到。批量模式下无效。
+     * @return String 过滤器名称
+     */
+    String bloomFilter() default "";
+
     /**
      * 是否启用自动加载缓存， 缓存时间必须大于120秒时才有效
      * @return boolean
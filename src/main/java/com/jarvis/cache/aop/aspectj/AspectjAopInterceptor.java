@@ -11,6 +11,7 @@ import com.jarvis.cache.CacheHandler;
 import com.jarvis.cache.annotation.Cache;
 import com.jarvis.cache.annotation.CacheDelete;
 import com.jarvis.cache.annotation.CacheDeleteTransactional;
+import com.jarvis.cache.reflect.MethodMeta;
 
 /**
  * 使用Aspectj 实现AOP拦截 注意：拦截器不能有相同名字的Method
@@ -28,8 +29,8 @@ public class AspectjAopInterceptor {
         Signature signature=pjp.getSignature();
         MethodSignature methodSignature=(MethodSignature)signature;
         Method method=methodSignature.getMethod();
-        if(method.isAnnotationPresent(Cache.class)) {
-            Cache cache=method.getAnnotation(Cache.class);// method.getAnnotationsByType(Cache.class)[0];
+        Cache cache=MethodMeta.get(method).getCache();
+        if(null != cache) {
             return this.proceed(pjp, cache);
         }
 
@@ -44,8 +45,8 @@ public class AspectjAopInterceptor {
         Signature signature=jp.getSignature();
         MethodSignature methodSignature=(MethodSignature)signature;
         Method method=methodSignature.getMethod();
-        if(method.isAnnotationPresent(CacheDelete.class)) {
-            CacheDelete cacheDelete=method.getAnnotation(CacheDelete.class);
+        CacheDelete cacheDelete=MethodMeta.get(method).getCacheDelete();
+        if(null != cacheDelete) {
             this.deleteCache(jp, cacheDelete, retVal);
         }
     }
@@ -54,8 +55,8 @@ public class AspectjAopInterceptor {
         Signature signature=pjp.getSignature();
         MethodSignature methodSignature=(MethodSignature)signature;
         Method method=methodSignature.getMethod();
-        if(method.isAnnotationPresent(CacheDeleteTransactional.class)) {
-            CacheDeleteTransactional cache=method.getAnnotation(CacheDeleteTransactional.class);// method.getAnnotationsByType(Cache.class)[0];
+        CacheDeleteTransactional cache=MethodMeta.get(method).getCacheDeleteTransactional();
+        if(null != cache) {
             return this.deleteCacheTransactional(pjp, cache);
         }
         try {
@@ -0,0 +1,195 @@
+package com.jarvis.cache.bloom;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 布隆过滤器，用于判断缓存Key 是否一定不存在，线程安全，不需要加锁。<br>
+ * 元素为@Cache 中key、hfield 表达式的计算结果（不包括namespace）。
+ * @author jiayu.qiu
+ */
+public class BloomFilter {
+
+    private static final double LN2=Math.log(2);
+
+    private final AtomicLongArray bits;
+
+    private final long bitSize;
+
+    private final int hashCnt;
+
+    private final double fpp;
+
+    /**
+     * 值为1的位数，用于估算元素数量及误判率
+     */
+    private final AtomicLong bitCount=new AtomicLong(0);
+
+    /**
+     * 过滤器判断为不存在，被拦截的请求数
+     */
+    private final AtomicLong rejectCnt=new AtomicLong(0);
+
+    /**
+     * 过滤器判断为可能存在，但实际加载到的数据为null 的请求数
+     */
+    private final AtomicLong falsePositiveCnt=new AtomicLong(0);
+
+    /**
+     * @param expectedInsertions 预计元素数量
+     * @param fpp 期望的误判率
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        if(expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be greater than 0");
+        }
+        if(fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be between 0 and 1");
+        }
+        long size=(long)(-expectedInsertions * Math.log(fpp) / (LN2 * LN2));
+        int words=(int)Math.min(Integer.MAX_VALUE, Math.max(1, (size + 63) >>> 6));
+        this.bits=new AtomicLongArray(words);
+        this.bitSize=words * 64L;
+        this.hashCnt=Math.max(1, (int)Math.round((double)bitSize / expectedInsertions * LN2));
+        this.fpp=fpp;
+    }
+
+    public void put(String key, String hfield) {
+        long hash1=hash(key, hfield);
+        long hash2=mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1L;
+        for(int i=0; i < hashCnt; i++) {
+            long index=((hash1 + i * hash2) & Long.MAX_VALUE) % bitSize;
+            int word=(int)(index >>> 6);
+            long mask=1L << index;
+            while(true) {
+                long old=bits.get(word);
+                if((old & mask) != 0) {
+                    break;
+                }
+                if(bits.compareAndSet(word, old, old | mask)) {
+                    bitCount.incrementAndGet();
+                    break;
+                }
+            }
+        }
+    }
+
+    public void put(String key) {
+        put(key, null);
+    }
+
+    /**
+     * @param key 缓存Key
+     * @param hfield 哈希表中的字段
+     * @return 返回false 时表示一定不存在
+     */
+    public boolean mightContain(String key, String hfield) {
+        long hash1=hash(key, hfield);
+        long hash2=mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1L;
+        for(int i=0; i < hashCnt; i++) {
+            long index=((hash1 + i * hash2) & Long.MAX_VALUE) % bitSize;
+            if((bits.get((int)(index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean mightContain(String key) {
+        return mightContain(key, null);
+    }
+
+    private static long hash(String key, String hfield) {
+        long h=0xCBF29CE484222325L;
+        for(int i=0; i < key.length(); i++) {
+            h=(h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        if(null != hfield && hfield.length() > 0) {
+            h=(h ^ ':') * 0x100000001B3L;
+            for(int i=0; i < hfield.length(); i++) {
+                h=(h ^ hfield.charAt(i)) * 0x100000001B3L;
+            }
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h^=h >>> 33;
+        h*=0xFF51AFD7ED558CCDL;
+        h^=h >>> 33;
+        h*=0xC4CEB9FE1A85EC53L;
+        h^=h >>> 33;
+        return h;
+    }
+
+    /**
+     * 根据值为1的位数估算元素数量
+     * @return 元素数量
+     */
+    public long getApproximateElementCount() {
+        double x=bitCount.get();
+        if(x >= bitSize) {
+            return Long.MAX_VALUE;
+        }
+        return Math.round(-(double)bitSize / hashCnt * Math.log(1 - x / bitSize));
+    }
+
+    /**
+     * 根据当前值为1的位数估算的误判率
+     * @return 误判率
+     */
+    public double getExpectedFpp() {
+        return Math.pow((double)bitCount.get() / bitSize, hashCnt);
+    }
+
+    /**
+     * 实际观察到的误判率：误判数 / (误判数 + 拦截数)
+     * @return 误判率
+     */
+    public double getObservedFpp() {
+        long falsePositive=falsePositiveCnt.get();
+        long total=falsePositive + rejectCnt.get();
+        return total == 0 ? 0 : (double)falsePositive / total;
+    }
+
+    /**
+     * @return 占用的内存（单位：字节）
+     */
+    public long getMemorySize() {
+        return bitSize >>> 3;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashCnt() {
+        return hashCnt;
+    }
+
+    public double getFpp() {
+        return fpp;
+    }
+
+    void recordReject() {
+        rejectCnt.incrementAndGet();
+    }
+
+    void recordFalsePositive() {
+        falsePositiveCnt.incrementAndGet();
+    }
+
+    public long getRejectCnt() {
+        return rejectCnt.get();
+    }
+
+    public long getFalsePositiveCnt() {
+        return falsePositiveCnt.get();
+    }
+
+    @Override
+    public String toString() {
+        return "elements≈" + getApproximateElementCount() + ", memory=" + getMemorySize() + "B, hashCnt=" + hashCnt + ", expectedFpp=" + getExpectedFpp() + ", observedFpp=" + getObservedFpp()
+            + ", reject=" + getRejectCnt() + ", falsePositive=" + getFalsePositiveCnt();
+    }
+}
@@ -0,0 +1,203 @@
+package com.jarvis.cache.bloom;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 防止缓存穿透：每个@Cache(bloomFilter) 名称对应一个布隆过滤器，过滤器判断为一定不存在的请求直接返回null，不再访问缓存及数据源。<br>
+ * 过滤器通过IBloomFilterLoader 在后台初始化并定期重建，初始化完成之前所有请求都会放行；加载到的非null 数据会放入过滤器。
+ * @author jiayu.qiu
+ */
+@Slf4j
+public class BloomFilterHandler {
+
+    private final AutoLoadConfig config;
+
+    private final ConcurrentHashMap<String, FilterHolder> filters=new ConcurrentHashMap<String, FilterHolder>();
+
+    private volatile IBloomFilterLoader loader;
+
+    private volatile ScheduledThreadPoolExecutor executor;
+
+    public BloomFilterHandler(AutoLoadConfig config) {
+        this.config=config;
+    }
+
+    /**
+     * 判断缓存Key 是否可能存在
+     * @param name 过滤器名称
+     * @param cacheKey 缓存Key
+     * @return 返回false 时表示一定不存在
+     */
+    public boolean mightContain(String name, CacheKeyTO cacheKey) {
+        BloomFilter filter=getHolder(name).current;
+        if(null == filter || filter.mightContain(cacheKey.getKey(), cacheKey.getHfield())) {
+            return true;
+        }
+        filter.recordReject();
+        return false;
+    }
+
+    /**
+     * 把已经存在的数据放入过滤器，例如：新增数据后调用
+     * @param name 过滤器名称
+     * @param cacheKey 缓存Key
+     */
+    public void put(String name, CacheKeyTO cacheKey) {
+        FilterHolder holder=getHolder(name);
+        BloomFilter building=holder.building;// 先读取building，重建时是先替换current，再清除building
+        BloomFilter current=holder.current;
+        if(null != building) {
+            building.put(cacheKey.getKey(), cacheKey.getHfield());
+        }
+        if(null != current) {
+            current.put(cacheKey.getKey(), cacheKey.getHfield());
+        }
+    }
+
+    /**
+     * 过滤器判断为可能存在，但实际加载到的数据为null
+     * @param name 过滤器名称
+     */
+    public void falsePositive(String name) {
+        BloomFilter filter=getHolder(name).current;
+        if(null != filter) {
+            filter.recordFalsePositive();
+        }
+    }
+
+    /**
+     * @param name 过滤器名称
+     * @return 已经初始化完成的过滤器，还没有初始化完成时返回null
+     */
+    public BloomFilter getBloomFilter(String name) {
+        FilterHolder holder=filters.get(name);
+        return null == holder ? null : holder.current;
+    }
+
+    /**
+     * @return 所有已经初始化完成的过滤器
+     */
+    public Map<String, BloomFilter> getBloomFilters() {
+        Map<String, BloomFilter> res=new HashMap<String, BloomFilter>();
+        for(Map.Entry<String, FilterHolder> entry: filters.entrySet()) {
+            BloomFilter filter=entry.getValue().current;
+            if(null != filter) {
+                res.put(entry.getKey(), filter);
+            }
+        }
+        return res;
+    }
+
+    private FilterHolder getHolder(String name) {
+        FilterHolder holder=filters.get(name);
+        if(null == holder) {
+            FilterHolder tmp=new FilterHolder(name);
+            holder=filters.putIfAbsent(name, tmp);
+            if(null == holder) {
+                holder=tmp;
+                schedule(holder);
+            }
+        }
+        return holder;
+    }
+
+    private void schedule(FilterHolder holder) {
+        ScheduledThreadPoolExecutor tmpExecutor=executor;
+        if(null == tmpExecutor || null == loader || !holder.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long period=config.getBloomFilterRebuildPeriod();
+        if(period > 0) {
+            tmpExecutor.scheduleWithFixedDelay(holder, 0, period, TimeUnit.MINUTES);
+        } else {
+            tmpExecutor.execute(holder);
+        }
+    }
+
+    public IBloomFilterLoader getLoader() {
+        return loader;
+    }
+
+    public synchronized void setLoader(IBloomFilterLoader loader) {
+        boolean first=null == this.loader;
+        this.loader=loader;
+        if(null == loader || !first) {
+            return;
+        }
+        executor=new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t=new Thread(r, "autoload-cache-BloomFilterHandler");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for(FilterHolder holder: filters.values()) {
+            schedule(holder);
+        }
+    }
+
+    public void shutdown() {
+        ScheduledThreadPoolExecutor tmpExecutor=executor;
+        if(null != tmpExecutor) {
+            tmpExecutor.shutdownNow();
+        }
+    }
+
+    class FilterHolder implements Runnable {
+
+        private final String name;
+
+        private final AtomicBoolean scheduled=new AtomicBoolean(false);
+
+        /**
+         * 正在使用的过滤器，为null 时表示还没有初始化完成
+         */
+        private volatile BloomFilter current;
+
+        /**
+         * 正在重建的过滤器，重建期间新加载的数据需要同时放入
+         */
+        private volatile BloomFilter building;
+
+        FilterHolder(String name) {
+            this.name=name;
+        }
+
+        @Override
+        public void run() {
+            BloomFilter old=current;
+            long expectedInsertions=config.getBloomFilterExpectedInsertions();
+            if(null != old) {
+                expectedInsertions=Math.max(expectedInsertions, old.getApproximateElementCount() * 2);
+            }
+            long startTime=System.currentTimeMillis();
+            try {
+                BloomFilter filter=new BloomFilter(expectedInsertions, config.getBloomFilterFpp());
+                building=filter;
+                loader.load(name, filter);
+                current=filter;
+                log.info("bloom filter {} rebuilt, use time:{}ms, {}", name, System.currentTimeMillis() - startTime, filter);
+                if(null != old) {
+                    log.info("bloom filter {} before rebuild: {}", name, old);
+                }
+            } catch(Throwable e) {
+                log.error("rebuild bloom filter " + name + " error", e);
+            } finally {
+                building=null;
+            }
+        }
+    }
+}
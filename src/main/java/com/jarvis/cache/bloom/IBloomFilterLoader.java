@@ -0,0 +1,16 @@
+package com.jarvis.cache.bloom;
+
+/**
+ * 布隆过滤器的数据加载接口，用于初始化及定期重建过滤器
+ * @author jiayu.qiu
+ */
+public interface IBloomFilterLoader {
+
+    /**
+     * 把所有存在的数据对应的缓存Key（@Cache 中key、hfield 表达式的计算结果，不包括namespace）放入过滤器
+     * @param name 过滤器名称，即@Cache 中的bloomFilter
+     * @param filter 过滤器
+     * @throws Exception 异常
+     */
+    void load(String name, BloomFilter filter) throws Exception;
+}
@@ -0,0 +1,68 @@
+package com.jarvis.cache.hotkey;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-Min Sketch：用固定的内存估算每个Key 的访问次数，估算值只会偏大，不会偏小；线程安全，不需要加锁。
+ * @author jiayu.qiu
+ */
+public class CountMinSketch {
+
+    private static final int DEPTH=4;
+
+    private final AtomicIntegerArray counters;
+
+    private final int width;
+
+    private final int mask;
+
+    /**
+     * @param width 每行计数器的数量，会调整为2的幂
+     */
+    public CountMinSketch(int width) {
+        int tmp=1;
+        while(tmp < width && tmp < (1 << 24)) {
+            tmp<<=1;
+        }
+        this.width=tmp;
+        this.mask=tmp - 1;
+        this.counters=new AtomicIntegerArray(DEPTH * tmp);
+    }
+
+    /**
+     * 增加计数
+     * @param hash Key 的哈希值
+     */
+    public void increment(long hash) {
+        int hash1=(int)hash;
+        int hash2=(int)(hash >>> 32) | 1;
+        for(int i=0; i < DEPTH; i++) {
+            counters.incrementAndGet(i * width + ((hash1 + i * hash2) & mask));
+        }
+    }
+
+    /**
+     * 估算访问次数
+     * @param hash Key 的哈希值
+     * @return 访问次数
+     */
+    public int estimate(long hash) {
+        int hash1=(int)hash;
+        int hash2=(int)(hash >>> 32) | 1;
+        int min=Integer.MAX_VALUE;
+        for(int i=0; i < DEPTH; i++) {
+            min=Math.min(min, counters.get(i * width + ((hash1 + i * hash2) & mask)));
+        }
+        return min;
+    }
+
+    public void clear() {
+        for(int i=0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+}
@@ -0,0 +1,212 @@
+package com.jarvis.cache.hotkey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.HotKeyTO;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 热点Key 探测：把滑动窗口分成多个时间片，每个时间片使用一个Count-Min Sketch 统计访问次数，窗口内的访问次数达到threshold 时成为热点Key；
+ * 热点Key 最多保留topK 个，访问次数低于threshold 的一半时不再是热点Key。
+ * @author jiayu.qiu
+ */
+@Slf4j
+public class HotKeyDetector {
+
+    private static final Comparator<HotKeyTO> RATE_DESC=new Comparator<HotKeyTO>() {
+
+        @Override
+        public int compare(HotKeyTO o1, HotKeyTO o2) {
+            return Double.compare(o2.getRate(), o1.getRate());
+        }
+    };
+
+    /**
+     * 窗口内访问次数达到此值时，成为热点Key
+     */
+    private final int threshold;
+
+    /**
+     * 访问次数低于此值时，不再是热点Key
+     */
+    private final int coolThreshold;
+
+    private final long windowMillis;
+
+    private final long slotMillis;
+
+    private final CountMinSketch[] slots;
+
+    /**
+     * 当前时间片的序号（当前时间 / slotMillis）
+     */
+    private final AtomicLong currentSlot;
+
+    private final int topK;
+
+    private final ConcurrentHashMap<CacheKeyTO, HotKeyTO> hotKeys;
+
+    /**
+     * @param threshold 窗口内访问次数达到此值时，成为热点Key
+     * @param windowMillis 滑动窗口大小（单位：毫秒）
+     * @param slotCnt 窗口分成的时间片数量
+     * @param topK 最多保留的热点Key 数量
+     * @param width Count-Min Sketch 每行计数器的数量
+     */
+    public HotKeyDetector(int threshold, long windowMillis, int slotCnt, int topK, int width) {
+        if(threshold <= 1 || windowMillis <= 0 || slotCnt <= 0 || topK <= 0) {
+            throw new IllegalArgumentException("threshold must be greater than 1, windowMillis, slotCnt and topK must be greater than 0");
+        }
+        this.threshold=threshold;
+        this.coolThreshold=threshold / 2;
+        this.slotMillis=Math.max(1, windowMillis / slotCnt);
+        this.windowMillis=slotMillis * slotCnt;
+        this.slots=new CountMinSketch[slotCnt];
+        for(int i=0; i < slotCnt; i++) {
+            slots[i]=new CountMinSketch(width);
+        }
+        this.currentSlot=new AtomicLong(System.currentTimeMillis() / slotMillis);
+        this.topK=topK;
+        this.hotKeys=new ConcurrentHashMap<CacheKeyTO, HotKeyTO>(topK * 2);
+    }
+
+    /**
+     * 默认10秒的窗口，分成10个时间片，最多保留100个热点Key
+     * @param threshold 10秒内访问次数达到此值时，成为热点Key
+     */
+    public HotKeyDetector(int threshold) {
+        this(threshold, 10000L, 10, 100, 4096);
+    }
+
+    /**
+     * 记录一次访问
+     * @param cacheKey 缓存Key
+     * @return 是否为热点Key
+     */
+    public boolean record(CacheKeyTO cacheKey) {
+        long now=System.currentTimeMillis();
+        long slot=now / slotMillis;
+        advance(slot);
+        long hash=hash(cacheKey);
+        slots[(int)(slot % slots.length)].increment(hash);
+        int count=estimate(hash);
+        HotKeyTO hotKey=hotKeys.get(cacheKey);
+        if(null != hotKey) {
+            update(hotKey, count);
+            return true;
+        }
+        if(count < threshold) {
+            return false;
+        }
+        return promote(cacheKey, count, now);
+    }
+
+    /**
+     * @param cacheKey 缓存Key
+     * @return 是否为热点Key
+     */
+    public boolean isHot(CacheKeyTO cacheKey) {
+        return hotKeys.containsKey(cacheKey);
+    }
+
+    /**
+     * @return 当前的热点Key，按每秒访问次数倒序排列
+     */
+    public List<HotKeyTO> getHotKeys() {
+        List<HotKeyTO> res=new ArrayList<HotKeyTO>(hotKeys.values());
+        Collections.sort(res, RATE_DESC);
+        return res;
+    }
+
+    private synchronized boolean promote(CacheKeyTO cacheKey, int count, long now) {
+        if(hotKeys.containsKey(cacheKey)) {
+            return true;
+        }
+        if(hotKeys.size() >= topK) {// 已满时，替换访问次数最少的热点Key
+            HotKeyTO min=null;
+            for(HotKeyTO tmp: hotKeys.values()) {
+                if(null == min || tmp.getCount() < min.getCount()) {
+                    min=tmp;
+                }
+            }
+            if(null == min || min.getCount() >= count) {
+                return false;
+            }
+            hotKeys.remove(min.getCacheKey());
+            log.debug("hot key demoted:{}", min.getCacheKey().getCacheKey());
+        }
+        HotKeyTO hotKey=new HotKeyTO(cacheKey, now);
+        update(hotKey, count);
+        hotKeys.put(cacheKey, hotKey);
+        log.debug("hot key promoted:{}, count:{}", cacheKey.getCacheKey(), count);
+        return true;
+    }
+
+    private void update(HotKeyTO hotKey, int count) {
+        hotKey.setCount(count);
+        hotKey.setRate(count * 1000D / windowMillis);
+    }
+
+    /**
+     * 进入新的时间片时，清空过期时间片中的数据，并把已经不热的Key 移除
+     * @param slot 当前时间片的序号
+     */
+    private void advance(long slot) {
+        long current=currentSlot.get();
+        if(slot <= current || !currentSlot.compareAndSet(current, slot)) {
+            return;
+        }
+        long from=Math.max(current + 1, slot - slots.length + 1);
+        for(long i=from; i <= slot; i++) {
+            slots[(int)(i % slots.length)].clear();
+        }
+        Iterator<HotKeyTO> it=hotKeys.values().iterator();
+        while(it.hasNext()) {
+            HotKeyTO hotKey=it.next();
+            int count=estimate(hash(hotKey.getCacheKey()));
+            update(hotKey, count);
+            if(count < coolThreshold) {
+                it.remove();
+                log.debug("hot key demoted:{}", hotKey.getCacheKey().getCacheKey());
+            }
+        }
+    }
+
+    private int estimate(long hash) {
+        int count=0;
+        for(CountMinSketch sketch: slots) {
+            count+=sketch.estimate(hash);
+        }
+        return count;
+    }
+
+    private static long hash(CacheKeyTO cacheKey) {
+        long h=cacheKey.hashCode() * 0x9E3779B97F4A7C15L;
+        h^=h >>> 33;
+        h*=0xFF51AFD7ED558CCDL;
+        h^=h >>> 33;
+        h*=0xC4CEB9FE1A85EC53L;
+        h^=h >>> 33;
+        return h;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+}
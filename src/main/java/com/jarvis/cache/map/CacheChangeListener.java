@@ -1,5 +1,7 @@
 package com.jarvis.cache.map;
 
+import com.jarvis.cache.to.CacheWrapper;
+
 /**
  * 缓存变更监听器
  * @author jiayu.qiu
@@ -16,4 +18,12 @@ public interface CacheChangeListener {
      * @param cnt 变更数量
      */
     void cacheChange(int cnt);
+
+    /**
+     * 变更一条记录，并告知变更的内容，用于增量持久化
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     * @param value 新的缓存值，为null时表示删除；hfield 也为null时表示删除整个Key
+     */
+    void cacheChange(String cacheKey, String hfield, CacheWrapper<Object> value);
 }
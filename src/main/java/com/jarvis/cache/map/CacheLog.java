@@ -0,0 +1,526 @@
+package com.jarvis.cache.map;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jarvis.cache.serializer.ISerializer;
+import com.jarvis.cache.to.CacheWrapper;
+
+/**
+ * 追加写的缓存变更日志：只把变更及删除的缓存项追加到分段文件中，持久化的开销与变更量成正比，与缓存总量无关。<br>
+ * 每条记录格式为：长度(int) + CRC32(int) + 内容，恢复时遇到不完整或校验失败的记录，说明写入过程中进程崩溃，会截断该记录及之后的数据。<br>
+ * 日志总大小超过上次压缩结果的2倍时，把内存中的有效数据写入新的分段（先写临时文件，fsync后再重命名），然后删除旧的分段。
+ * @author jiayu.qiu
+ */
+public class CacheLog {
+
+    private static final Logger logger=LoggerFactory.getLogger(CacheLog.class);
+
+    private static final String PREFIX="map-";
+
+    private static final String SUFFIX=".log";
+
+    private static final String TMP_SUFFIX=".tmp";
+
+    private static final Charset UTF8=Charset.forName("UTF-8");
+
+    /**
+     * 旧格式的记录，Key 使用writeUTF 写入（不能超过64K），只用于恢复
+     */
+    private static final byte PUT_UTF=1;
+
+    private static final byte DELETE_UTF=2;
+
+    /**
+     * Key 使用 长度(int) + UTF-8 写入
+     */
+    private static final byte PUT=3;
+
+    private static final byte DELETE=4;
+
+    /**
+     * pending 中代表整个Key 的变更（MapCacheManager 中空字符串的hfield 会被当作null）
+     */
+    private static final String WHOLE_KEY="";
+
+    /**
+     * 单条记录的最大长度，超过此值认为数据已损坏
+     */
+    private static final int MAX_RECORD_SIZE=256 * 1024 * 1024;
+
+    private final File dir;
+
+    private final ISerializer<Object> serializer;
+
+    private final long segmentSize;
+
+    /**
+     * 还没写入文件的变更，按cacheKey 分组，同一个缓存项只保留最后一次变更；只有fsync 成功后才移除
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Change>> pending=new ConcurrentHashMap<String, ConcurrentHashMap<String, Change>>();
+
+    private long activeSeq=0;
+
+    private File activeFile;
+
+    private FileOutputStream activeStream;
+
+    private DataOutputStream activeOut;
+
+    /**
+     * 上次压缩后的日志大小
+     */
+    private long compactedSize=0;
+
+    /**
+     * @param dir 分段文件所在目录
+     * @param serializer 序列化工具
+     * @param segmentSize 单个分段文件的最大字节数，超过后写入新的分段
+     */
+    public CacheLog(File dir, ISerializer<Object> serializer, long segmentSize) {
+        this.dir=dir;
+        this.serializer=serializer;
+        this.segmentSize=segmentSize;
+    }
+
+    /**
+     * 记录变更，在flush() 时才写入文件
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     * @param value 缓存值，为null时表示删除；hfield 为null时会删除整个哈希表
+     */
+    public void append(String cacheKey, String hfield, CacheWrapper<Object> value) {
+        Change change=new Change(cacheKey, hfield, value);
+        if(null == hfield) {// 整个Key 被替换或删除，之前的字段变更都不需要再写入
+            ConcurrentHashMap<String, Change> changes=new ConcurrentHashMap<String, Change>();
+            changes.put(WHOLE_KEY, change);
+            pending.put(cacheKey, changes);
+            return;
+        }
+        while(true) {
+            ConcurrentHashMap<String, Change> changes=pending.get(cacheKey);
+            if(null == changes) {
+                changes=new ConcurrentHashMap<String, Change>();
+                ConcurrentHashMap<String, Change> tmp=pending.putIfAbsent(cacheKey, changes);
+                if(null != tmp) {
+                    changes=tmp;
+                }
+            }
+            changes.put(hfield, change);
+            if(pending.get(cacheKey) == changes) {// 否则已被flush() 移除或被整个Key 的变更替换，需要重新放入
+                return;
+            }
+        }
+    }
+
+    /**
+     * 是否存在分段文件
+     * @return boolean
+     */
+    public boolean exists() {
+        return listSegments().length > 0;
+    }
+
+    /**
+     * 从分段文件中恢复缓存数据
+     * @param cacheManager MapCacheManager
+     * @return 恢复的缓存数量
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized int recover(MapCacheManager cacheManager) {
+        File[] segments=listSegments();
+        Map<String, Object> state=new HashMap<String, Object>();// cacheKey -> byte[] 或 Map<hfield, byte[]>
+        long total=0;
+        for(int i=0; i < segments.length; i++) {
+            File segment=segments[i];
+            activeSeq=Math.max(activeSeq, parseSeq(segment));
+            long valid=replay(segment, state);
+            total+=valid;
+            if(valid < segment.length()) {
+                logger.warn("{} is truncated at {}, {} bytes dropped", segment.getName(), valid, segment.length() - valid);
+                truncate(segment, valid);
+            }
+        }
+        compactedSize=total;
+        int cnt=0;
+        for(Map.Entry<String, Object> entry: state.entrySet()) {
+            Object value=entry.getValue();
+            if(value instanceof byte[]) {
+                cnt+=restore(cacheManager, entry.getKey(), null, (byte[])value);
+            } else {
+                for(Map.Entry<String, byte[]> field: ((Map<String, byte[]>)value).entrySet()) {
+                    cnt+=restore(cacheManager, entry.getKey(), field.getKey(), field.getValue());
+                }
+            }
+        }
+        return cnt;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int restore(MapCacheManager cacheManager, String cacheKey, String hfield, byte[] data) {
+        try {
+            CacheWrapper<Object> wrapper=(CacheWrapper<Object>)serializer.deserialize(data, null);
+            if(cacheManager.restore(cacheKey, hfield, wrapper)) {
+                return 1;
+            }
+        } catch(Exception ex) {
+            logger.error(ex.getMessage(), ex);
+        }
+        return 0;
+    }
+
+    /**
+     * 重放一个分段文件
+     * @return 有效数据的长度
+     */
+    @SuppressWarnings("unchecked")
+    private long replay(File segment, Map<String, Object> state) {
+        long valid=0;
+        DataInputStream in=null;
+        try {
+            in=new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+            CRC32 crc=new CRC32();
+            while(true) {
+                int length;
+                try {
+                    length=in.readInt();
+                } catch(EOFException e) {
+                    break;
+                }
+                if(length <= 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                int checksum=in.readInt();
+                byte[] body=new byte[length];
+                in.readFully(body);
+                crc.reset();
+                crc.update(body, 0, length);
+                if((int)crc.getValue() != checksum) {
+                    break;
+                }
+                DataInputStream record=new DataInputStream(new ByteArrayInputStream(body));
+                byte type=record.readByte();
+                boolean utf=type == PUT_UTF || type == DELETE_UTF;
+                String cacheKey=utf ? record.readUTF() : readString(record);
+                String hfield=record.readBoolean() ? (utf ? record.readUTF() : readString(record)) : null;
+                if(type == PUT || type == PUT_UTF) {
+                    byte[] value=new byte[record.readInt()];
+                    record.readFully(value);
+                    if(null == hfield) {
+                        state.put(cacheKey, value);
+                    } else {
+                        Object hash=state.get(cacheKey);
+                        if(!(hash instanceof Map)) {
+                            hash=new HashMap<String, byte[]>();
+                            state.put(cacheKey, hash);
+                        }
+                        ((Map<String, byte[]>)hash).put(hfield, value);
+                    }
+                } else if(null == hfield) {
+                    state.remove(cacheKey);
+                } else {
+                    Object hash=state.get(cacheKey);
+                    if(hash instanceof Map) {
+                        ((Map<String, byte[]>)hash).remove(hfield);
+                    }
+                }
+                valid+=8 + length;
+            }
+        } catch(EOFException e) {// 最后一条记录不完整
+        } catch(IOException e) {
+            logger.error(e.getMessage(), e);
+        } finally {
+            close(in);
+        }
+        return valid;
+    }
+
+    /**
+     * 把变更写入当前分段文件并fsync，如果需要则进行压缩
+     * @param cacheManager MapCacheManager
+     */
+    public synchronized void flush(MapCacheManager cacheManager) {
+        if(!pending.isEmpty()) {
+            List<Change> written=new ArrayList<Change>();
+            try {
+                DataOutputStream out=getActiveOut();
+                for(ConcurrentHashMap<String, Change> changes: pending.values()) {
+                    Change whole=changes.get(WHOLE_KEY);
+                    if(null != whole) {// 先写整个Key 的变更，再写之后的字段变更
+                        writeChange(out, whole);
+                        written.add(whole);
+                    }
+                    for(Map.Entry<String, Change> entry: changes.entrySet()) {
+                        if(entry.getValue() != whole) {
+                            writeChange(out, entry.getValue());
+                            written.add(entry.getValue());
+                        }
+                    }
+                }
+                out.flush();
+                activeStream.getFD().sync();
+            } catch(Exception ex) {// 变更仍在pending 中，下次写入新的分段
+                logger.error(ex.getMessage(), ex);
+                closeActive();
+                written=null;
+            }
+            if(null != written) {
+                for(Change change: written) {
+                    removePending(change);
+                }
+                if(activeFile.length() >= segmentSize) {
+                    closeActive();
+                }
+            }
+        }
+        if(totalSize() > Math.max(segmentSize, compactedSize * 2)) {
+            compact(cacheManager);
+        }
+    }
+
+    /**
+     * 把内存中的有效数据写入新的分段文件，然后删除旧的分段文件
+     * @param cacheManager MapCacheManager
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void compact(MapCacheManager cacheManager) {
+        closeActive();
+        long seq=++activeSeq;// 之后的变更写入更大序号的分段，保证重放顺序
+        File target=segmentFile(seq);
+        File tmp=new File(dir, target.getName() + TMP_SUFFIX);
+        FileOutputStream fos=null;
+        try {
+            fos=new FileOutputStream(tmp);
+            DataOutputStream out=new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+            for(Map.Entry<String, Object> entry: cacheManager.getCache().entrySet()) {
+                Object value=entry.getValue();
+                if(value instanceof ConcurrentHashMap) {
+                    for(Map.Entry<String, Object> field: ((ConcurrentHashMap<String, Object>)value).entrySet()) {
+                        writeSnapshot(out, entry.getKey(), field.getKey(), field.getValue());
+                    }
+                } else {
+                    writeSnapshot(out, entry.getKey(), null, value);
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+            fos.close();
+            fos=null;
+            if(!tmp.renameTo(target)) {
+                throw new IOException("can not rename " + tmp + " to " + target);
+            }
+            for(File segment: listSegments()) {
+                if(parseSeq(segment) < seq && !segment.delete()) {
+                    logger.warn("can not delete {}", segment);
+                }
+            }
+            compactedSize=target.length();
+        } catch(Exception ex) {
+            logger.error(ex.getMessage(), ex);
+            close(fos);
+            tmp.delete();
+        }
+    }
+
+    private void writeChange(DataOutputStream out, Change change) throws Exception {
+        if(null == change.value) {
+            writeRecord(out, DELETE, change.cacheKey, change.hfield, null);
+        } else {
+            writeRecord(out, PUT, change.cacheKey, change.hfield, serializer.serialize(change.value));
+        }
+    }
+
+    /**
+     * 移除已写入文件的变更，已被更新的变更留到下次写入
+     */
+    private void removePending(Change change) {
+        ConcurrentHashMap<String, Change> changes=pending.get(change.cacheKey);
+        if(null == changes) {
+            return;
+        }
+        changes.remove(null == change.hfield ? WHOLE_KEY : change.hfield, change);
+        if(changes.isEmpty()) {
+            pending.remove(change.cacheKey, changes);
+        }
+    }
+
+    private void writeSnapshot(DataOutputStream out, String cacheKey, String hfield, Object obj) throws Exception {
+        CacheWrapper<Object> wrapper=MapCacheManager.unwrap(obj);
+        if(null == wrapper || wrapper.isExpired(wrapper.getMaxStale())) {
+            return;
+        }
+        writeRecord(out, PUT, cacheKey, hfield, serializer.serialize(wrapper));
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, String cacheKey, String hfield, byte[] value) throws IOException {
+        ByteArrayOutputStream bos=new ByteArrayOutputStream(null == value ? 64 : value.length + 64);
+        DataOutputStream record=new DataOutputStream(bos);
+        record.writeByte(type);
+        writeString(record, cacheKey);
+        record.writeBoolean(null != hfield);
+        if(null != hfield) {
+            writeString(record, hfield);
+        }
+        if(null != value) {
+            record.writeInt(value.length);
+            record.write(value);
+        }
+        record.flush();
+        byte[] body=bos.toByteArray();
+        CRC32 crc=new CRC32();
+        crc.update(body, 0, body.length);
+        out.writeInt(body.length);
+        out.writeInt((int)crc.getValue());
+        out.write(body);
+    }
+
+    /**
+     * writeUTF 不能写入超过64K 的字符串，所以使用 长度(int) + UTF-8
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes=str.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes=new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    public synchronized void close() {
+        closeActive();
+    }
+
+    private DataOutputStream getActiveOut() throws IOException {
+        if(null == activeOut) {
+            if(!dir.exists()) {
+                dir.mkdirs();
+            }
+            activeFile=segmentFile(++activeSeq);
+            activeStream=new FileOutputStream(activeFile, true);
+            activeOut=new DataOutputStream(new BufferedOutputStream(activeStream, 64 * 1024));
+        }
+        return activeOut;
+    }
+
+    private void closeActive() {
+        if(null != activeOut) {
+            try {
+                activeOut.flush();
+            } catch(IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        close(activeStream);
+        activeOut=null;
+        activeStream=null;
+        activeFile=null;
+    }
+
+    private long totalSize() {
+        long size=0;
+        for(File segment: listSegments()) {
+            size+=segment.length();
+        }
+        return size;
+    }
+
+    private File segmentFile(long seq) {
+        return new File(dir, PREFIX + String.format("%019d", seq) + SUFFIX);
+    }
+
+    private static long parseSeq(File segment) {
+        String name=segment.getName();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * @return 按序号排序的分段文件
+     */
+    private File[] listSegments() {
+        File[] files=dir.listFiles(new FilenameFilter() {
+
+            @Override
+            public boolean accept(File d, String name) {
+                if(name.startsWith(PREFIX) && name.endsWith(TMP_SUFFIX)) {// 压缩时崩溃留下的临时文件
+                    new File(d, name).delete();
+                    return false;
+                }
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }
+        });
+        if(null == files) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static void truncate(File file, long length) {
+        RandomAccessFile raf=null;
+        try {
+            raf=new RandomAccessFile(file, "rw");
+            raf.setLength(length);
+        } catch(IOException e) {
+            logger.error(e.getMessage(), e);
+        } finally {
+            if(null != raf) {
+                try {
+                    raf.close();
+                } catch(IOException e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if(null != closeable) {
+            try {
+                closeable.close();
+            } catch(IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static class Change {
+
+        private final String cacheKey;
+
+        private final String hfield;
+
+        private final CacheWrapper<Object> value;
+
+        private Change(String cacheKey, String hfield, CacheWrapper<Object> value) {
+            this.cacheKey=cacheKey;
+            this.hfield=hfield;
+            this.value=value;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.jarvis.cache.map;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jarvis.cache.serializer.ISerializer;
+import com.jarvis.cache.to.CacheWrapper;
+
+/**
+ * 全量持久化文件：文件头(int) 后是逐条的缓存记录，每条记录格式为：长度(int) + CRC32(int) + 内容，内容依次为：最后加载时间(long)、缓存时长(int)、允许使用过期数据的时长(int)、加载数据耗时(long)、缓存Key、哈希表字段、序列化后的缓存数据，缓存Key 和哈希表字段按 长度(int) + UTF-8 写入。<br>
+ * 加载时按块读取文件，按记录边界切分成多段，由多个线程并行反序列化；已过期的记录只读取过期时间，不做反序列化。
+ * @author jiayu.qiu
+ */
+public class CacheSnapshot {
+
+    private static final Logger logger=LoggerFactory.getLogger(CacheSnapshot.class);
+
+    private static final int MAGIC=0x41435333;// ACS3
+
+    /**
+     * 旧版本的文件头：ACS1 的记录中没有加载数据耗时；ACS1、ACS2 的缓存Key 使用writeUTF 写入
+     */
+    private static final int MAGIC_V1=0x41435331;// ACS1
+
+    private static final int MAGIC_V2=0x41435332;// ACS2
+
+    private static final int HEADER_SIZE=24;
+
+    private static final int HEADER_SIZE_V1=16;
+
+    private static final Charset UTF8=Charset.forName("UTF-8");
+
+    /**
+     * 单次读入内存的字节数，超过此大小的记录按记录长度读取
+     */
+    private static final int REGION_SIZE=16 * 1024 * 1024;
+
+    /**
+     * 已读入内存、等待反序列化的最大字节数，超过时等待加载任务完成后再继续读取
+     */
+    private static final long MAX_BUFFERED_SIZE=256L * 1024 * 1024;
+
+    /**
+     * 每个加载任务处理的最少字节数
+     */
+    private static final long MIN_CHUNK_SIZE=1024 * 1024;
+
+    private CacheSnapshot() {
+    }
+
+    /**
+     * 判断是否为CacheSnapshot 格式的文件，旧版本的文件为整个Map的序列化结果
+     * @param file 文件
+     * @return boolean
+     */
+    public static boolean isSnapshot(File file) {
+        if(file.length() < 4) {
+            return false;
+        }
+        DataInputStream in=null;
+        try {
+            in=new DataInputStream(new FileInputStream(file));
+            int magic=in.readInt();
+            return magic == MAGIC || magic == MAGIC_V2 || magic == MAGIC_V1;
+        } catch(IOException e) {
+            return false;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * 把缓存中未过期的数据写入文件：先写临时文件，写完后再替换原文件，避免写入过程中进程崩溃导致原文件损坏
+     * @param file 文件
+     * @param cacheManager MapCacheManager
+     * @param serializer 序列化工具
+     * @return 写入的缓存数量
+     * @throws Exception 异常
+     */
+    @SuppressWarnings("unchecked")
+    public static int write(File file, MapCacheManager cacheManager, ISerializer<Object> serializer) throws Exception {
+        File tmp=new File(file.getAbsolutePath() + ".tmp");
+        FileOutputStream fos=new FileOutputStream(tmp);
+        int cnt=0;
+        try {
+            DataOutputStream out=new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+            out.writeInt(MAGIC);
+            for(Map.Entry<String, Object> entry: cacheManager.getCache().entrySet()) {
+                Object value=entry.getValue();
+                if(value instanceof ConcurrentHashMap) {
+                    for(Map.Entry<String, Object> field: ((ConcurrentHashMap<String, Object>)value).entrySet()) {
+                        cnt+=writeRecord(out, entry.getKey(), field.getKey(), field.getValue(), serializer);
+                    }
+                } else {
+                    cnt+=writeRecord(out, entry.getKey(), null, value, serializer);
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            close(fos);
+        }
+        if(file.exists() && !file.delete()) {
+            throw new IOException("can not delete " + file);
+        }
+        if(!tmp.renameTo(file)) {
+            throw new IOException("can not rename " + tmp + " to " + file);
+        }
+        return cnt;
+    }
+
+    private static int writeRecord(DataOutputStream out, String cacheKey, String hfield, Object obj, ISerializer<Object> serializer) throws Exception {
+        CacheWrapper<Object> wrapper=MapCacheManager.unwrap(obj);
+        if(null == wrapper || wrapper.isExpired(wrapper.getMaxStale())) {
+            return 0;
+        }
+        byte[] value=serializer.serialize(wrapper.getCacheObject());// 只序列化缓存数据，避免每条记录都要处理CacheWrapper 的类型信息
+        ByteArrayOutputStream bos=new ByteArrayOutputStream((null == value ? 0 : value.length) + 64);
+        DataOutputStream record=new DataOutputStream(bos);
+        record.writeLong(wrapper.getLastLoadTime());
+        record.writeInt(wrapper.getExpire());
+        record.writeInt(wrapper.getMaxStale());
+        record.writeLong(wrapper.getLoadDataUseTime());// XFetch 需要使用
+        writeString(record, cacheKey);
+        record.writeBoolean(null != hfield);
+        if(null != hfield) {
+            writeString(record, hfield);
+        }
+        if(null != value) {
+            record.write(value);
+        }
+        record.flush();
+        byte[] body=bos.toByteArray();
+        CRC32 crc=new CRC32();
+        crc.update(body, 0, body.length);
+        out.writeInt(body.length);
+        out.writeInt((int)crc.getValue());
+        out.write(body);
+        return 1;
+    }
+
+    /**
+     * 并行加载文件中的缓存数据
+     * @param file 文件
+     * @param cacheManager MapCacheManager
+     * @param serializer 序列化工具
+     * @param threads 加载线程数
+     * @return 加载的缓存数量
+     * @throws Exception 异常
+     */
+    public static int load(File file, final MapCacheManager cacheManager, final ISerializer<Object> serializer, int threads) throws Exception {
+        RandomAccessFile raf=new RandomAccessFile(file, "r");
+        ExecutorService executor=Executors.newFixedThreadPool(threads);
+        try {
+            final int magic=raf.readInt();
+            FileChannel channel=raf.getChannel();
+            long size=channel.size();
+            long chunkSize=Math.max(MIN_CHUNK_SIZE, size / (threads * 4L));
+            int headerSize=magic == MAGIC_V1 ? HEADER_SIZE_V1 : HEADER_SIZE;
+            List<Future<Integer>> futures=new ArrayList<Future<Integer>>();
+            List<Integer> sizes=new ArrayList<Integer>();
+            int cnt=0;
+            int done=0;
+            long buffered=0;
+            long position=4;
+            int regionSize=REGION_SIZE;
+            while(position < size) {
+                // 不使用内存映射：MappedByteBuffer 无法主动释放，在Windows 下会导致下次持久化时无法删除、替换文件
+                final ByteBuffer region=read(channel, position, (int)Math.min(regionSize, size - position));
+                int end=scan(region, headerSize);// 只读取记录长度，找到记录边界
+                if(end == 0) {
+                    long need=region.limit() >= 4 ? 8L + region.getInt(0) : 0;
+                    if(need < 8L + headerSize || need > size - position) {// 文件末尾不完整
+                        break;
+                    }
+                    if(need > Integer.MAX_VALUE) {
+                        throw new IOException("record is too large at " + position);
+                    }
+                    regionSize=(int)need;// 记录比缓冲区大，按记录长度重新读取
+                    continue;
+                }
+                regionSize=REGION_SIZE;
+                int chunkStart=0;
+                int offset=0;
+                while(offset < end) {
+                    offset+=8 + region.getInt(offset);
+                    if(offset - chunkStart >= chunkSize || offset >= end) {
+                        final int from=chunkStart;
+                        final int to=offset;
+                        futures.add(executor.submit(new Callable<Integer>() {
+
+                            @Override
+                            public Integer call() throws Exception {
+                                return loadChunk(region.duplicate(), from, to, magic, cacheManager, serializer);
+                            }
+                        }));
+                        sizes.add(to - from);
+                        buffered+=to - from;
+                        chunkStart=offset;
+                    }
+                }
+                position+=end;
+                while(buffered > MAX_BUFFERED_SIZE) {
+                    cnt+=futures.get(done).get();
+                    buffered-=sizes.get(done);
+                    done++;
+                }
+            }
+            for(; done < futures.size(); done++) {
+                cnt+=futures.get(done).get();
+            }
+            return cnt;
+        } finally {
+            executor.shutdown();
+            raf.close();
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer=ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return 最后一条完整记录的结束位置
+     */
+    private static int scan(ByteBuffer buffer, int headerSize) {
+        int limit=buffer.limit();
+        int offset=0;
+        while(offset + 8 <= limit) {
+            int length=buffer.getInt(offset);
+            if(length < headerSize || offset + 8L + length > limit) {
+                break;
+            }
+            offset+=8 + length;
+        }
+        return offset;
+    }
+
+    private static int loadChunk(ByteBuffer buffer, int from, int to, int magic, MapCacheManager cacheManager, ISerializer<Object> serializer) {
+        int cnt=0;
+        int headerSize=magic == MAGIC_V1 ? HEADER_SIZE_V1 : HEADER_SIZE;
+        boolean utf=magic != MAGIC;
+        long now=System.currentTimeMillis();
+        CRC32 crc=new CRC32();
+        int offset=from;
+        while(offset < to) {
+            int length=buffer.getInt(offset);
+            int checksum=buffer.getInt(offset + 4);
+            int start=offset + 8;
+            offset=start + length;
+            long lastLoadTime=buffer.getLong(start);
+            int expire=buffer.getInt(start + 8);
+            int maxStale=buffer.getInt(start + 12);
+            long loadDataUseTime=headerSize > HEADER_SIZE_V1 ? buffer.getLong(start + 16) : 0;
+            if(expire > 0 && now - lastLoadTime > (expire + (long)maxStale) * 1000L) {// 已过期，不需要反序列化
+                continue;
+            }
+            byte[] body=new byte[length];
+            buffer.position(start);
+            buffer.get(body);
+            crc.reset();
+            crc.update(body, 0, length);
+            if((int)crc.getValue() != checksum) {
+                logger.warn("crc check failed at {}", start);
+                continue;
+            }
+            try {
+                DataInputStream record=new DataInputStream(new ByteArrayInputStream(body, headerSize, length - headerSize));
+                String cacheKey=utf ? record.readUTF() : readString(record);
+                String hfield=record.readBoolean() ? (utf ? record.readUTF() : readString(record)) : null;
+                byte[] value=new byte[record.available()];
+                record.readFully(value);
+                CacheWrapper<Object> wrapper=new CacheWrapper<Object>();
+                wrapper.setCacheObject(serializer.deserialize(value, null));
+                wrapper.setLastLoadTime(lastLoadTime);
+                wrapper.setExpire(expire);
+                wrapper.setMaxStale(maxStale);
+                wrapper.setLoadDataUseTime(loadDataUseTime);
+                if(cacheManager.restore(cacheKey, hfield, wrapper)) {
+                    cnt++;
+                }
+            } catch(Exception ex) {
+                logger.error(ex.getMessage(), ex);
+            }
+        }
+        return cnt;
+    }
+
+    /**
+     * writeUTF 不能写入超过64K 的字符串，所以使用 长度(int) + UTF-8
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes=str.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes=new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static void close(Closeable closeable) {
+        if(null != closeable) {
+            try {
+                closeable.close();
+            } catch(IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+}
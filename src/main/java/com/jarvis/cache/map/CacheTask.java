@@ -1,15 +1,11 @@
 package com.jarvis.cache.map;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.lang.ref.SoftReference;
-import java.util.Iterator;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
@@ -28,6 +24,11 @@ public class CacheTask implements Runnable, CacheChangeListener {
 
     private static final Logger logger=LoggerFactory.getLogger(CacheTask.class);
 
+    /**
+     * 清除过期缓存的时间间隔
+     */
+    private static final long CLEAN_PERIOD=1000L;
+
     /**
      * 缓存被修改的个数
      */
@@ -41,20 +42,42 @@ public class CacheTask implements Runnable, CacheChangeListener {
 
     private ISerializer<Object> persistSerializer;
 
+    /**
+     * 第一次使用时创建，每次写缓存都会读取，所以使用双重检查，避免每次都加锁
+     */
+    private volatile CacheLog cacheLog;
+
+    /**
+     * 是否正在加载持久化的数据
+     */
+    private volatile boolean loading=false;
+
+    private final CountDownLatch loaded=new CountDownLatch(1);
+
     public CacheTask(MapCacheManager cacheManager) {
         this.cacheManager=cacheManager;
     }
 
+    /**
+     * 启动后由run() 在后台加载持久化的数据，不阻塞启动
+     */
     public void start() {
         if(!this.running) {
-            loadCache();
+            if(cacheManager.isNeedPersist()) {// 在启动返回前开始记录变更，避免加载的旧数据覆盖之后写入或删除的数据
+                cacheManager.beginRestore();
+            }
+            this.loading=true;
             this.running=true;
         }
 
     }
 
     public void destroy() {
+        awaitLoadedUninterruptibly();// 加载期间不能持久化，等加载完成后再持久化，否则启动后写入的数据都会丢失
         persistCache(true);
+        if(null != cacheLog) {
+            cacheLog.close();
+        }
         this.running=false;
     }
 
@@ -100,48 +123,99 @@ public class CacheTask implements Runnable, CacheChangeListener {
         return persistSerializer;
     }
 
+    private CacheLog getCacheLog() {
+        CacheLog tmp=cacheLog;
+        if(null == tmp) {
+            synchronized(this) {
+                tmp=cacheLog;
+                if(null == tmp) {
+                    tmp=new CacheLog(new File(getSavePath() + "segments"), getPersistSerializer(), cacheManager.getSegmentSize());
+                    cacheLog=tmp;
+                }
+            }
+        }
+        return tmp;
+    }
+
+    private boolean isIncrementalPersist() {
+        return cacheManager.isNeedPersist() && cacheManager.isIncrementalPersist();
+    }
+
     /**
-     * 从磁盘中加载之前保存的缓存数据，避免刚启动时，因为没有缓存，而且造成压力过大
+     * 从磁盘中加载之前保存的缓存数据，避免刚启动时，因为没有缓存，而且造成压力过大；加载期间缓存可以正常使用，未加载的数据直接从数据源获取
      */
     @SuppressWarnings("unchecked")
     public void loadCache() {
         if(!cacheManager.isNeedPersist()) {
             return;
         }
-        File file=getSaveFile();
-        if(null == file) {
-            return;
-        }
-        if(!file.exists()) {
-            return;
-        }
-        BufferedInputStream bis=null;
+        long startTime=System.currentTimeMillis();
         try {
-            FileInputStream fis=new FileInputStream(file);
-            bis=new BufferedInputStream(fis);
-            ByteArrayOutputStream baos=new ByteArrayOutputStream();
-            byte buf[]=new byte[1024];
-            int len=-1;
-            while((len=bis.read(buf)) != -1) {
-                baos.write(buf, 0, len);
+            if(isIncrementalPersist() && getCacheLog().exists()) {
+                int cnt=getCacheLog().recover(cacheManager);
+                logger.info("recover {} caches from {}, use time:{}ms", cnt, getSavePath() + "segments", System.currentTimeMillis() - startTime);
+                return;
             }
-            byte retArr[]=baos.toByteArray();
-            Object obj=getPersistSerializer().deserialize(retArr, null);
-            if(null != obj && obj instanceof ConcurrentHashMap) {
-                cacheManager.getCache().putAll((ConcurrentHashMap<String, Object>)obj);
+            File file=getSaveFile();
+            if(null == file || !file.exists()) {
+                return;
             }
-        } catch(Exception ex) {
-            logger.error(ex.getMessage(), ex);
-        } finally {
-            if(null != bis) {
+            if(CacheSnapshot.isSnapshot(file)) {
+                int cnt=CacheSnapshot.load(file, cacheManager, getPersistSerializer(), cacheManager.getLoadThreads());
+                logger.info("load {} caches from {}, use time:{}ms", cnt, file, System.currentTimeMillis() - startTime);
+            } else {// 旧版本的持久化文件
+                byte[] data=new byte[(int)file.length()];
+                DataInputStream in=new DataInputStream(new FileInputStream(file));
                 try {
-                    bis.close();
-                } catch(IOException e) {
-                    e.printStackTrace();
+                    in.readFully(data);
+                } finally {
+                    in.close();
                 }
+                Object obj=getPersistSerializer().deserialize(data, null);
+                if(null != obj && obj instanceof ConcurrentHashMap) {
+                    cacheManager.restore((ConcurrentHashMap<String, Object>)obj);
+                }
+            }
+            if(isIncrementalPersist()) {// 从全量持久化切换到增量持久化，把已加载的数据写入分段文件
+                getCacheLog().compact(cacheManager);
             }
+        } catch(Exception ex) {
+            logger.error(ex.getMessage(), ex);
+        } finally {
+            cacheManager.endRestore();
         }
+    }
+
+    /**
+     * 是否正在加载持久化的数据
+     * @return boolean
+     */
+    public boolean isLoading() {
+        return loading;
+    }
 
+    /**
+     * 等待持久化的数据加载完成
+     * @param timeout 最长等待时间，单位：毫秒
+     * @return 是否已加载完成
+     * @throws InterruptedException 等待被中断
+     */
+    public boolean awaitLoaded(long timeout) throws InterruptedException {
+        return !loading || loaded.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitLoadedUninterruptibly() {
+        boolean interrupted=false;
+        while(loading) {
+            try {
+                loaded.await();
+            } catch(InterruptedException e) {
+                interrupted=true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private void persistCache(boolean force) {
@@ -152,39 +226,45 @@ public class CacheTask implements Runnable, CacheChangeListener {
         if(!force && cnt <= cacheManager.getUnpersistMaxSize()) {
             return;
         }
+        if(isLoading()) {// 数据还没加载完，持久化会丢失未加载的数据
+            logger.warn("cache is loading, skip persist");
+            return;
+        }
         cacheChanged.set(0);
-        FileOutputStream fos=null;
+        if(isIncrementalPersist()) {// 只写入变更的数据
+            getCacheLog().flush(cacheManager);
+            return;
+        }
         try {
-            byte[] data=getPersistSerializer().serialize(cacheManager.getCache());
-            File file=getSaveFile();
-            fos=new FileOutputStream(file);
-            fos.write(data);
+            CacheSnapshot.write(getSaveFile(), cacheManager, getPersistSerializer());
         } catch(Exception ex) {
             cacheChanged.addAndGet(cnt);
             logger.error(ex.getMessage(), ex);
-        } finally {
-            if(null != fos) {
-                try {
-                    fos.close();
-                } catch(IOException e) {
-                    e.printStackTrace();
-                }
-            }
         }
-
     }
 
     @Override
     public void run() {
+        try {
+            loadCache();
+        } finally {
+            loading=false;
+            loaded.countDown();
+        }
+        long lastPersistTime=System.currentTimeMillis();
         while(running) {
             try {
                 cleanCache();
-                persistCache(false);
+                long now=System.currentTimeMillis();
+                if(now - lastPersistTime >= cacheManager.getClearAndPersistPeriod()) {
+                    lastPersistTime=now;
+                    persistCache(false);
+                }
             } catch(Exception e) {
                 logger.error(e.getMessage(), e);
             }
             try {
-                Thread.sleep(cacheManager.getClearAndPersistPeriod());
+                Thread.sleep(CLEAN_PERIOD);
             } catch(InterruptedException e) {
                 logger.error(e.getMessage(), e);
             }
@@ -192,83 +272,15 @@ public class CacheTask implements Runnable, CacheChangeListener {
     }
 
     /**
-     * 清除过期缓存
+     * 清除过期缓存，只处理时间轮中已经到期的数据
      */
     private void cleanCache() {
-        Iterator<Entry<String, Object>> iterator=cacheManager.getCache().entrySet().iterator();
-        int cacheChanged=0;
-        int i=0;
-        while(iterator.hasNext()) {
-            cacheChanged+=removeExpiredItem(iterator);
-            i++;
-            if(i == 2000) {
-                i=0;
-                try {
-                    Thread.sleep(0);// 触发操作系统立刻重新进行一次CPU竞争, 让其它线程获得CPU控制权的权力。
-                } catch(InterruptedException e) {
-                    logger.error(e.getMessage(), e);
-                }
-            }
-        }
+        int cacheChanged=cacheManager.cleanExpired(System.currentTimeMillis());
         if(cacheChanged > 0) {
             cacheChange(cacheChanged);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private int removeExpiredItem(Iterator<Entry<String, Object>> iterator) {
-        int cacheChanged=0;
-        Object value=iterator.next().getValue();
-        if(value instanceof SoftReference) {
-            SoftReference<CacheWrapper<Object>> reference=(SoftReference<CacheWrapper<Object>>)value;
-            if(null != reference && null != reference.get()) {
-                CacheWrapper<Object> tmp=reference.get();
-                if(tmp.isExpired()) {
-                    iterator.remove();
-                    cacheChanged++;
-                }
-            } else {
-                iterator.remove();
-                cacheChanged++;
-            }
-        } else if(value instanceof ConcurrentHashMap) {
-            ConcurrentHashMap<String, Object> hash=(ConcurrentHashMap<String, Object>)value;
-            Iterator<Entry<String, Object>> iterator2=hash.entrySet().iterator();
-            while(iterator2.hasNext()) {
-                Object tmpObj=iterator2.next().getValue();
-                if(tmpObj instanceof SoftReference) {
-                    SoftReference<CacheWrapper<Object>> reference=(SoftReference<CacheWrapper<Object>>)tmpObj;
-                    if(null != reference && null != reference.get()) {
-                        CacheWrapper<Object> tmp=reference.get();
-                        if(tmp.isExpired()) {
-                            iterator2.remove();
-                            cacheChanged++;
-                        }
-                    } else {
-                        iterator2.remove();
-                        cacheChanged++;
-                    }
-                } else if(tmpObj instanceof CacheWrapper) {// 兼容老版本
-                    CacheWrapper<Object> tmp=(CacheWrapper<Object>)tmpObj;
-                    if(tmp.isExpired()) {
-                        iterator2.remove();
-                        cacheChanged++;
-                    }
-                }
-            }
-            if(hash.isEmpty()) {
-                iterator.remove();
-            }
-        } else {
-            CacheWrapper<Object> tmp=(CacheWrapper<Object>)value;
-            if(tmp.isExpired()) {
-                iterator.remove();
-                cacheChanged++;
-            }
-        }
-        return cacheChanged;
-    }
-
     @Override
     public void cacheChange() {
         cacheChanged.incrementAndGet();
@@ -279,4 +291,12 @@ public class CacheTask implements Runnable, CacheChangeListener {
         cacheChanged.addAndGet(cnt);
     }
 
+    @Override
+    public void cacheChange(String cacheKey, String hfield, CacheWrapper<Object> value) {
+        cacheChanged.incrementAndGet();
+        if(isIncrementalPersist()) {
+            getCacheLog().append(cacheKey, hfield, value);
+        }
+    }
+
 }
@@ -0,0 +1,103 @@
+package com.jarvis.cache.map;
+
+/**
+ * 4位计数器的Count-Min Sketch，用于估算Key的访问频率。计数总数达到采样数量后，所有计数器减半，使频率随时间衰减。<br>
+ * 非线程安全，调用方需要加锁。
+ * @author jiayu.qiu
+ */
+public class FrequencySketch {
+
+    private static final long[] SEED={0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final long RESET_MASK=0x7777777777777777L;
+
+    private static final long ONE_MASK=0x1111111111111111L;
+
+    private static final int MAX_FREQUENCY=15;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int size;
+
+    /**
+     * @param expectedSize 预计的缓存数量
+     */
+    public FrequencySketch(long expectedSize) {
+        int maximum=(int)Math.min(Math.max(expectedSize, 8), 1 << 24);
+        int capacity=Integer.highestOneBit(maximum - 1) << 1;
+        this.table=new long[capacity];
+        this.tableMask=capacity - 1;
+        this.sampleSize=10 * maximum;
+    }
+
+    /**
+     * 获取估算的访问频率
+     * @param hashCode Key的hashCode
+     * @return 0 到 15
+     */
+    public int frequency(int hashCode) {
+        int hash=spread(hashCode);
+        int start=(hash & 3) << 2;
+        int frequency=MAX_FREQUENCY;
+        for(int i=0; i < 4; i++) {
+            int index=indexOf(hash, i);
+            int count=(int)((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency=Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 访问频率加1
+     * @param hashCode Key的hashCode
+     */
+    public void increment(int hashCode) {
+        int hash=spread(hashCode);
+        int start=(hash & 3) << 2;
+        boolean added=false;
+        for(int i=0; i < 4; i++) {
+            added|=incrementAt(indexOf(hash, i), start + i);
+        }
+        if(added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset=j << 2;
+        long mask=0xfL << offset;
+        if((table[i] & mask) != mask) {
+            table[i]+=1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 所有计数器减半
+     */
+    private void reset() {
+        int count=0;
+        for(int i=0; i < table.length; i++) {
+            count+=Long.bitCount(table[i] & ONE_MASK);
+            table[i]=(table[i] >>> 1) & RESET_MASK;
+        }
+        size=(size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash=(item + SEED[i]) * SEED[i];
+        hash+=hash >>> 32;
+        return ((int)hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x=((x >>> 16) ^ x) * 0x45d9f3b;
+        x=((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
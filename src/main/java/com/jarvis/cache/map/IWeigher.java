@@ -0,0 +1,19 @@
+package com.jarvis.cache.map;
+
+import com.jarvis.cache.to.CacheWrapper;
+
+/**
+ * 计算缓存项的权重，用于限制MapCacheManager 的总权重（例如占用的内存大小）
+ * @author jiayu.qiu
+ */
+public interface IWeigher {
+
+    /**
+     * 计算权重
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     * @param value 缓存值
+     * @return 权重，必须大于等于0
+     */
+    int weigh(String cacheKey, String hfield, CacheWrapper<Object> value);
+}
@@ -1,8 +1,17 @@
 package com.jarvis.cache.map;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,12 +19,15 @@ import org.slf4j.LoggerFactory;
 import com.jarvis.cache.ICacheManager;
 import com.jarvis.cache.clone.ICloner;
 import com.jarvis.cache.exception.CacheCenterConnectionException;
+import com.jarvis.cache.reflect.MethodMeta;
 import com.jarvis.cache.to.AutoLoadConfig;
 import com.jarvis.cache.to.CacheKeyTO;
 import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
 
 /**
- * 使用ConcurrentHashMap管理缓存
+ * 使用ConcurrentHashMap管理缓存。默认使用SoftReference 保存缓存值，只有在内存不足时才会被GC回收；
+ * 设置maxSize 或 maxWeight 后开启有界模式：使用强引用保存缓存值，超出容量时按W-TinyLFU 策略淘汰数据。
  * @author jiayu.qiu
  */
 public class MapCacheManager implements ICacheManager {
@@ -60,10 +72,78 @@ public class MapCacheManager implements ICacheManager {
     private boolean copyValueOnSet=false;
 
     /**
-     * 清除和持久化的时间间隔
+     * 持久化的时间间隔（过期数据由时间轮每秒清除一次）
      */
     private int clearAndPersistPeriod=60 * 1000; // 1Minutes
 
+    /**
+     * 是否使用增量持久化：为true时，只把变更及删除的数据追加到分段文件中，并定期压缩；false时，每次持久化都把全部缓存写入一个文件
+     */
+    private boolean incrementalPersist=false;
+
+    /**
+     * 增量持久化时，单个分段文件的最大字节数
+     */
+    private long segmentSize=64 * 1024 * 1024;
+
+    /**
+     * 启动时加载持久化数据的线程数
+     */
+    private int loadThreads=Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 最大缓存数量（哈希表中的每个字段单独计数），大于0时开启有界模式，需要在写入数据之前设置
+     */
+    private long maxSize=0;
+
+    /**
+     * 最大总权重，大于0时开启有界模式，需要在写入数据之前设置；权重由weigher 计算
+     */
+    private long maxWeight=0;
+
+    /**
+     * 权重计算器，为null时每个缓存项的权重为1
+     */
+    private IWeigher weigher;
+
+    private volatile TinyLfuPolicy policy;
+
+    /**
+     * 有界模式下，所有写操作及淘汰策略的维护都需要持有此锁
+     */
+    private final ReentrantLock evictionLock=new ReentrantLock();
+
+    private final AtomicLong hitCount=new AtomicLong(0);
+
+    private final AtomicLong missCount=new AtomicLong(0);
+
+    private final AtomicLong evictionCount=new AtomicLong(0);
+
+    /**
+     * 按过期时间管理缓存项，只处理到期的数据，避免全量扫描
+     */
+    private final TimerWheel timerWheel=new TimerWheel(new TimerWheel.ExpireTimeSource() {
+
+        @Override
+        public long getExpireTime(String cacheKey, String hfield) {
+            CacheWrapper<Object> wrapper=unwrap(getValue(cacheKey, hfield));
+            if(null == wrapper || wrapper.getExpire() <= 0) {
+                return 0;
+            }
+            return expireTime(wrapper);
+        }
+    });
+
+    /**
+     * 加载持久化数据期间被修改或删除的缓存项，加载时忽略这些缓存项，避免旧数据覆盖新数据；不在加载时为null
+     */
+    private volatile ConcurrentHashMap<String, Boolean> restoringChanges;
+
+    /**
+     * 被GC回收的SoftReference
+     */
+    private final ReferenceQueue<CacheWrapper<Object>> referenceQueue=new ReferenceQueue<CacheWrapper<Object>>();
+
     public MapCacheManager(AutoLoadConfig config, ICloner cloner) {
       this(config, cloner, 1024);
     }
@@ -115,36 +195,125 @@ public class MapCacheManager implements ICacheManager {
         } else {
             value=result;
         }
-        SoftReference<CacheWrapper<Object>> reference=new SoftReference<CacheWrapper<Object>>(value);
         String hfield=cacheKeyTO.getHfield();
         if(null == hfield || hfield.length() == 0) {
+            hfield=null;
+        }
+        if(write(cacheKey, hfield, value, method, false)) {
+            onChange(cacheKey, hfield, value);
+        }
+    }
+
+    /**
+     * 写入缓存并登记过期时间，有界模式下同时更新淘汰策略
+     * @param onlyIfAbsent 是否只在缓存中不存在时写入
+     * @return 是否写入成功
+     */
+    private boolean write(String cacheKey, String hfield, CacheWrapper<Object> value, Method method, boolean onlyIfAbsent) {
+        TinyLfuPolicy tmpPolicy=policy;
+        if(null == tmpPolicy) {
+            if(!put(cacheKey, hfield, new CacheReference(cacheKey, hfield, value, referenceQueue), method, onlyIfAbsent)) {
+                return false;
+            }
+            scheduleExpire(cacheKey, hfield, value);
+            return true;
+        }
+        int weight=null == weigher ? 1 : weigher.weigh(cacheKey, hfield, value);// 在锁外计算权重
+        evictionLock.lock();
+        try {
+            if(!put(cacheKey, hfield, value, method, onlyIfAbsent)) {// 有界模式下使用强引用，由淘汰策略控制内存
+                return false;
+            }
+            tmpPolicy.onWrite(cacheKey, hfield, weight);
+            scheduleExpire(cacheKey, hfield, value);
+        } finally {
+            evictionLock.unlock();
+        }
+        return true;
+    }
+
+    private void scheduleExpire(String cacheKey, String hfield, CacheWrapper<Object> value) {
+        if(value.getExpire() > 0) {
+            timerWheel.schedule(cacheKey, hfield, expireTime(value));
+        } else {
+            timerWheel.cancel(cacheKey, hfield);
+        }
+    }
+
+    private static long expireTime(CacheWrapper<Object> value) {
+        return value.getLastLoadTime() + (value.getExpire() + (long)value.getMaxStale()) * 1000L;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean put(String cacheKey, String hfield, Object reference, Method method, boolean onlyIfAbsent) {
+        if(null == hfield) {
+            if(onlyIfAbsent) {
+                return null == cache.putIfAbsent(cacheKey, reference);
+            }
             cache.put(cacheKey, reference);
         } else {
             Object tmpObj=cache.get(cacheKey);
-            ConcurrentHashMap<String, SoftReference<CacheWrapper<Object>>> hash;
+            ConcurrentHashMap<String, Object> hash;
             if(null == tmpObj) {
-                hash=new ConcurrentHashMap<String, SoftReference<CacheWrapper<Object>>>(16);
-                ConcurrentHashMap<String, SoftReference<CacheWrapper<Object>>> tempHash=null;
-                tempHash=(ConcurrentHashMap<String, SoftReference<CacheWrapper<Object>>>)cache.putIfAbsent(cacheKey, hash);
+                hash=new ConcurrentHashMap<String, Object>(16);
+                ConcurrentHashMap<String, Object> tempHash=null;
+                tempHash=(ConcurrentHashMap<String, Object>)cache.putIfAbsent(cacheKey, hash);
                 if(null != tempHash) {
                     hash=tempHash;
                 }
             } else {
                 if(tmpObj instanceof ConcurrentHashMap) {
-                    hash=(ConcurrentHashMap<String, SoftReference<CacheWrapper<Object>>>)tmpObj;
+                    hash=(ConcurrentHashMap<String, Object>)tmpObj;
                 } else {
-                    logger.error(method.getClass().getName() + "." + method.getName() + "中key为" + cacheKey + "的缓存，已经被占用，请删除缓存再试。");
-                    return;
+                    String methodName=null == method ? "" : method.getDeclaringClass().getName() + "." + method.getName();
+                    logger.error(methodName + "中key为" + cacheKey + "的缓存，已经被占用，请删除缓存再试。");
+                    return false;
                 }
             }
+            if(onlyIfAbsent) {
+                return null == hash.putIfAbsent(hfield, reference);
+            }
             hash.put(hfield, reference);
         }
-        this.changeListener.cacheChange();
+        return true;
+    }
+
+    @Override
+    public void mset(final Method method, final Collection<MSetParam> params) throws CacheCenterConnectionException {
+        if(null == params || params.isEmpty()) {
+            return;
+        }
+        for(MSetParam param: params) {
+            setCache(param.getCacheKey(), param.getResult(), method, null);
+        }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public CacheWrapper<Object> get(final CacheKeyTO cacheKeyTO, final Method method, final Object args[]) throws CacheCenterConnectionException {
+        if(null == method) {
+            return get(cacheKeyTO, null);
+        }
+        MethodMeta meta=MethodMeta.get(method);
+        return get(cacheKeyTO, meta.isAsync() ? meta.getValueType() : meta.getReturnType());
+    }
+
+    @Override
+    public Map<CacheKeyTO, CacheWrapper<Object>> mget(final Method method, final Type returnType, final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == keys || keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<CacheKeyTO, CacheWrapper<Object>> res=new HashMap<CacheKeyTO, CacheWrapper<Object>>(keys.size());
+        for(CacheKeyTO cacheKeyTO: keys) {
+            CacheWrapper<Object> value=get(cacheKeyTO, returnType);
+            if(null != value) {
+                res.put(cacheKeyTO, value);
+            }
+        }
+        return res;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheWrapper<Object> get(final CacheKeyTO cacheKeyTO, final Type returnType) {
         if(null == cacheKeyTO) {
             return null;
         }
@@ -157,8 +326,11 @@ public class MapCacheManager implements ICacheManager {
             return null;
         }
         String hfield=cacheKeyTO.getHfield();
-        CacheWrapper<Object> value=null;
         if(null == hfield || hfield.length() == 0) {
+            hfield=null;
+        }
+        CacheWrapper<Object> value=null;
+        if(null == hfield) {
             if(obj instanceof SoftReference) {
                 SoftReference<CacheWrapper<Object>> reference=(SoftReference<CacheWrapper<Object>>)obj;
                 if(null != reference) {
@@ -179,24 +351,31 @@ public class MapCacheManager implements ICacheManager {
                 value=(CacheWrapper<Object>)tmp;
             }
         }
-        if(null != value) {
-            if(value.isExpired()) {
-                return null;
+        if(null == value || value.isExpired(value.getMaxStale())) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        TinyLfuPolicy tmpPolicy=policy;
+        if(null != tmpPolicy && tmpPolicy.recordAccess(cacheKey, hfield) && evictionLock.tryLock()) {
+            try {
+                tmpPolicy.drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
             }
-            if(copyValueOnGet) {
-                try {
-                    CacheWrapper<Object> res=(CacheWrapper<Object>)value.clone();
-                    res.setCacheObject(this.cloner.deepClone(value.getCacheObject(), method.getReturnType()));
-                    return res;
-                } catch(Exception e) {
-                    e.printStackTrace();
-                }
+        }
+        if(copyValueOnGet) {
+            try {
+                CacheWrapper<Object> res=(CacheWrapper<Object>)value.clone();
+                res.setCacheObject(this.cloner.deepClone(value.getCacheObject(), returnType));
+                return res;
+            } catch(Exception e) {
+                e.printStackTrace();
             }
         }
         return value;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void delete(CacheKeyTO cacheKeyTO) throws CacheCenterConnectionException {
         if(null == cacheKeyTO) {
@@ -208,28 +387,245 @@ public class MapCacheManager implements ICacheManager {
         }
         String hfield=cacheKeyTO.getHfield();
         if(null == hfield || hfield.length() == 0) {
+            hfield=null;
+        }
+        TinyLfuPolicy tmpPolicy=policy;
+        if(null == tmpPolicy) {
+            delete(cacheKey, hfield, null);
+            return;
+        }
+        evictionLock.lock();
+        try {
+            delete(cacheKey, hfield, tmpPolicy);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void delete(String cacheKey, String hfield, TinyLfuPolicy tmpPolicy) {
+        markRestoring(cacheKey, hfield);// 要删除的数据可能还没加载
+        if(null == hfield) {
             Object tmp=cache.remove(cacheKey);
             if(null == tmp) {// 如果删除失败
                 return;
             }
-            if(tmp instanceof CacheWrapper) {
-                this.changeListener.cacheChange();
-            } else if(tmp instanceof ConcurrentHashMap) {
-                ConcurrentHashMap<String, CacheWrapper<Object>> hash=(ConcurrentHashMap<String, CacheWrapper<Object>>)tmp;
-                if(hash.size() > 0) {
-                    this.changeListener.cacheChange(hash.size());
+            if(tmp instanceof ConcurrentHashMap) {
+                ConcurrentHashMap<String, Object> hash=(ConcurrentHashMap<String, Object>)tmp;
+                for(String field: hash.keySet()) {
+                    timerWheel.cancel(cacheKey, field);
+                    if(null != tmpPolicy) {
+                        tmpPolicy.onRemove(cacheKey, field);
+                    }
+                }
+            } else {
+                timerWheel.cancel(cacheKey, null);
+                if(null != tmpPolicy) {
+                    tmpPolicy.onRemove(cacheKey, null);
                 }
             }
+            onChange(cacheKey, null, null);
         } else {
-            ConcurrentHashMap<String, CacheWrapper<Object>> hash=(ConcurrentHashMap<String, CacheWrapper<Object>>)cache.get(cacheKey);
-            if(null != hash) {
+            Object tmpObj=cache.get(cacheKey);
+            if(tmpObj instanceof ConcurrentHashMap) {
+                ConcurrentHashMap<String, Object> hash=(ConcurrentHashMap<String, Object>)tmpObj;
                 Object tmp=hash.remove(hfield);
                 if(null != tmp) {// 如果删除成功
-                    this.changeListener.cacheChange();
+                    timerWheel.cancel(cacheKey, hfield);
+                    if(null != tmpPolicy) {
+                        tmpPolicy.onRemove(cacheKey, hfield);
+                    }
+                    onChange(cacheKey, hfield, null);
                 }
             }
         }
+    }
 
+    /**
+     * 只有当前缓存值仍为expected 时才删除，用于清除过期数据，避免误删新写入的数据；哈希表中的字段全部删除后，同时删除哈希表
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     * @param expected 期望的缓存值
+     * @return 是否删除成功
+     */
+    @SuppressWarnings("unchecked")
+    boolean remove(String cacheKey, String hfield, Object expected) {
+        TinyLfuPolicy tmpPolicy=policy;
+        if(null != tmpPolicy) {
+            evictionLock.lock();
+        }
+        try {
+            boolean removed=false;
+            if(null == hfield) {
+                removed=cache.remove(cacheKey, expected);
+            } else {
+                Object tmpObj=cache.get(cacheKey);
+                if(tmpObj instanceof ConcurrentHashMap) {
+                    ConcurrentHashMap<String, Object> hash=(ConcurrentHashMap<String, Object>)tmpObj;
+                    removed=hash.remove(hfield, expected);
+                    if(removed && hash.isEmpty()) {
+                        cache.remove(cacheKey, hash);
+                    }
+                }
+            }
+            if(removed) {
+                timerWheel.cancel(cacheKey, hfield);
+                if(null != tmpPolicy) {
+                    tmpPolicy.onRemove(cacheKey, hfield);
+                }
+            }
+            return removed;
+        } finally {
+            if(null != tmpPolicy) {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 清除已到期及已被GC回收的缓存，开销只与到期的数量有关，与缓存总数无关
+     * @param now 当前时间
+     * @return 清除的数量
+     */
+    int cleanExpired(long now) {
+        int cnt=0;
+        for(String[] item: timerWheel.advance(now)) {
+            String cacheKey=item[0];
+            String hfield=item[1];
+            Object current=getValue(cacheKey, hfield);
+            if(null == current) {
+                continue;
+            }
+            CacheWrapper<Object> wrapper=unwrap(current);
+            if(null == wrapper || wrapper.isExpired(wrapper.getMaxStale())) {
+                if(remove(cacheKey, hfield, current)) {
+                    cnt++;
+                }
+            } else if(wrapper.getExpire() > 0) {// 到期前被重新写入了
+                scheduleExpire(cacheKey, hfield, wrapper);
+            }
+        }
+        CacheReference reference;
+        while(null != (reference=(CacheReference)referenceQueue.poll())) {
+            if(remove(reference.cacheKey, reference.hfield, reference)) {
+                cnt++;
+            }
+        }
+        return cnt;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object getValue(String cacheKey, String hfield) {
+        Object obj=cache.get(cacheKey);
+        if(null == hfield || null == obj) {
+            return obj;
+        }
+        if(obj instanceof ConcurrentHashMap) {
+            return ((ConcurrentHashMap<String, Object>)obj).get(hfield);
+        }
+        return null;
+    }
+
+    /**
+     * 待清除过期数据的缓存数量
+     * @return int
+     */
+    public int getExpirableSize() {
+        return timerWheel.size();
+    }
+
+    /**
+     * 加载持久化的缓存数据，逐条写入，以便登记过期时间及淘汰策略生效
+     * @param data 持久化的缓存数据
+     */
+    @SuppressWarnings("unchecked")
+    void restore(Map<String, Object> data) {
+        for(Map.Entry<String, Object> entry: data.entrySet()) {
+            Object value=entry.getValue();
+            if(value instanceof ConcurrentHashMap) {
+                for(Map.Entry<String, Object> field: ((ConcurrentHashMap<String, Object>)value).entrySet()) {
+                    restore(entry.getKey(), field.getKey(), unwrap(field.getValue()));
+                }
+            } else {
+                restore(entry.getKey(), null, unwrap(value));
+            }
+        }
+    }
+
+    /**
+     * 加载一条持久化的缓存数据，已过期的、缓存中已存在的以及加载期间被修改或删除过的数据会被忽略；不会通知CacheChangeListener
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     * @param wrapper 缓存数据
+     * @return 是否加载成功
+     */
+    boolean restore(String cacheKey, String hfield, CacheWrapper<Object> wrapper) {
+        if(null == wrapper || wrapper.isExpired(wrapper.getMaxStale()) || isRestoringChanged(cacheKey, hfield)) {
+            return false;
+        }
+        if(!write(cacheKey, hfield, wrapper, null, true)) {// 只在不存在时写入，不会覆盖新写入的数据
+            return false;
+        }
+        if(isRestoringChanged(cacheKey, hfield)) {// 写入期间被修改或删除过，只撤销自己写入的数据
+            Object current=getValue(cacheKey, hfield);
+            if(null != current && unwrap(current) == wrapper) {
+                remove(cacheKey, hfield, current);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isRestoringChanged(String cacheKey, String hfield) {
+        ConcurrentHashMap<String, Boolean> changes=restoringChanges;
+        return null != changes && (changes.containsKey(cacheKey) || (null != hfield && changes.containsKey(cacheKey + '\u0000' + hfield)));
+    }
+
+    /**
+     * 开始加载持久化数据，此后的修改及删除会被记录下来
+     */
+    void beginRestore() {
+        restoringChanges=new ConcurrentHashMap<String, Boolean>();
+    }
+
+    /**
+     * 加载持久化数据结束
+     */
+    void endRestore() {
+        restoringChanges=null;
+    }
+
+    private void markRestoring(String cacheKey, String hfield) {
+        ConcurrentHashMap<String, Boolean> changes=restoringChanges;
+        if(null != changes) {
+            changes.put(null == hfield ? cacheKey : cacheKey + '\u0000' + hfield, Boolean.TRUE);
+        }
+    }
+
+    private void onChange(String cacheKey, String hfield, CacheWrapper<Object> value) {
+        markRestoring(cacheKey, hfield);
+        this.changeListener.cacheChange(cacheKey, hfield, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    static CacheWrapper<Object> unwrap(Object value) {
+        if(value instanceof SoftReference) {
+            return ((SoftReference<CacheWrapper<Object>>)value).get();
+        }
+        if(value instanceof CacheWrapper) {
+            return (CacheWrapper<Object>)value;
+        }
+        return null;
+    }
+
+    @Override
+    public void mdelete(final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == keys || keys.isEmpty()) {
+            return;
+        }
+        for(CacheKeyTO cacheKeyTO: keys) {
+            delete(cacheKeyTO);
+        }
     }
 
     public ConcurrentHashMap<String, Object> getCache() {
@@ -286,8 +682,182 @@ public class MapCacheManager implements ICacheManager {
         this.clearAndPersistPeriod=clearAndPersistPeriod;
     }
     
+    public boolean isIncrementalPersist() {
+        return incrementalPersist;
+    }
+
+    public void setIncrementalPersist(boolean incrementalPersist) {
+        this.incrementalPersist=incrementalPersist;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(long segmentSize) {
+        if(segmentSize > 0) {
+            this.segmentSize=segmentSize;
+        }
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public void setLoadThreads(int loadThreads) {
+        if(loadThreads > 0) {
+            this.loadThreads=loadThreads;
+        }
+    }
+
+    /**
+     * 是否正在加载持久化的数据，加载期间未加载的数据会直接从数据源获取
+     * @return boolean
+     */
+    public boolean isLoading() {
+        return cacheTask.isLoading();
+    }
+
+    /**
+     * 等待持久化的数据加载完成
+     * @param timeout 最长等待时间，单位：毫秒
+     * @return 是否已加载完成
+     * @throws InterruptedException 等待被中断
+     */
+    public boolean awaitLoaded(long timeout) throws InterruptedException {
+        return cacheTask.awaitLoaded(timeout);
+    }
+
     public AutoLoadConfig getAutoLoadConfig() {
         return this.config;
     }
 
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize=maxSize;
+        this.policy=buildPolicy();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight=maxWeight;
+        this.policy=buildPolicy();
+    }
+
+    public IWeigher getWeigher() {
+        return weigher;
+    }
+
+    public void setWeigher(IWeigher weigher) {
+        this.weigher=weigher;
+    }
+
+    private TinyLfuPolicy buildPolicy() {
+        if(maxSize <= 0 && maxWeight <= 0) {
+            return null;
+        }
+        return new TinyLfuPolicy(maxSize, maxWeight, new TinyLfuPolicy.EvictionListener() {
+
+            @Override
+            public void onEviction(String cacheKey, String hfield) {// 已持有evictionLock
+                evict(cacheKey, hfield);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evict(String cacheKey, String hfield) {
+        timerWheel.cancel(cacheKey, hfield);
+        if(null == hfield) {
+            cache.remove(cacheKey);
+        } else {
+            Object tmpObj=cache.get(cacheKey);
+            if(tmpObj instanceof ConcurrentHashMap) {
+                ConcurrentHashMap<String, Object> hash=(ConcurrentHashMap<String, Object>)tmpObj;
+                hash.remove(hfield);
+                if(hash.isEmpty()) {
+                    cache.remove(cacheKey, hash);
+                }
+            }
+        }
+        evictionCount.incrementAndGet();
+        this.changeListener.cacheChange(cacheKey, hfield, null);// 增量持久化时记录为删除，否则重启后会恢复被淘汰的数据
+    }
+
+    /**
+     * 是否为有界模式
+     * @return boolean
+     */
+    public boolean isBounded() {
+        return null != policy;
+    }
+
+    /**
+     * 有界模式下的缓存数量，非有界模式返回-1
+     * @return long
+     */
+    public long getSize() {
+        TinyLfuPolicy tmpPolicy=policy;
+        if(null == tmpPolicy) {
+            return -1;
+        }
+        evictionLock.lock();
+        try {
+            return tmpPolicy.size();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 有界模式下的总权重，非有界模式返回-1
+     * @return long
+     */
+    public long getWeightedSize() {
+        TinyLfuPolicy tmpPolicy=policy;
+        if(null == tmpPolicy) {
+            return -1;
+        }
+        evictionLock.lock();
+        try {
+            return tmpPolicy.weightedSize();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 记录了缓存Key的SoftReference，被GC回收后可以直接找到对应的缓存项
+     */
+    private static class CacheReference extends SoftReference<CacheWrapper<Object>> {
+
+        private final String cacheKey;
+
+        private final String hfield;
+
+        private CacheReference(String cacheKey, String hfield, CacheWrapper<Object> value, ReferenceQueue<CacheWrapper<Object>> queue) {
+            super(value, queue);
+            this.cacheKey=cacheKey;
+            this.hfield=hfield;
+        }
+    }
+
 }
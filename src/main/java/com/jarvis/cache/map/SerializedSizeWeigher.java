@@ -0,0 +1,39 @@
+package com.jarvis.cache.map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jarvis.cache.serializer.ISerializer;
+import com.jarvis.cache.to.CacheWrapper;
+
+/**
+ * 使用序列化后的字节数作为权重，近似缓存项占用的内存大小
+ * @author jiayu.qiu
+ */
+public class SerializedSizeWeigher implements IWeigher {
+
+    private static final Logger logger=LoggerFactory.getLogger(SerializedSizeWeigher.class);
+
+    private final ISerializer<Object> serializer;
+
+    public SerializedSizeWeigher(ISerializer<Object> serializer) {
+        this.serializer=serializer;
+    }
+
+    @Override
+    public int weigh(String cacheKey, String hfield, CacheWrapper<Object> value) {
+        int weight=cacheKey.length() * 2;
+        if(null != hfield) {
+            weight+=hfield.length() * 2;
+        }
+        try {
+            byte[] data=serializer.serialize(value);
+            if(null != data) {
+                weight+=data.length;
+            }
+        } catch(Exception e) {
+            logger.error(e.getMessage(), e);
+        }
+        return weight;
+    }
+}
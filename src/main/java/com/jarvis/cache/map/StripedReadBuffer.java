@@ -0,0 +1,108 @@
+package com.jarvis.cache.map;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有损的读缓冲区：按线程分成多个环形缓冲区，写入时只对所在的缓冲区做一次CAS，不加锁；缓冲区已满或CAS 失败时直接丢弃。<br>
+ * offer() 线程安全；poll() 与clear() 只能由持有锁的线程调用。
+ * @author jiayu.qiu
+ */
+public class StripedReadBuffer {
+
+    /**
+     * 每个缓冲区的大小（2的幂）
+     */
+    private static final int BUFFER_SIZE=64;
+
+    private static final int BUFFER_MASK=BUFFER_SIZE - 1;
+
+    private static final int MAX_STRIPES=16;
+
+    private final int stripeMask;
+
+    private final int drainThreshold;
+
+    private final AtomicReferenceArray<String> buffer;
+
+    /**
+     * 每个缓冲区的写入位置
+     */
+    private final AtomicLongArray writeCounts;
+
+    /**
+     * 每个缓冲区的读取位置，只由poll() 修改
+     */
+    private final AtomicLongArray readCounts;
+
+    private int pollStripe=0;
+
+    /**
+     * @param drainThreshold 单个缓冲区中的数量达到此值时，offer() 返回true，提示需要处理
+     */
+    public StripedReadBuffer(int drainThreshold) {
+        int stripes=Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES) * 2 - 1);
+        this.stripeMask=stripes - 1;
+        this.drainThreshold=Math.min(drainThreshold, BUFFER_SIZE);
+        this.buffer=new AtomicReferenceArray<String>(stripes * BUFFER_SIZE);
+        this.writeCounts=new AtomicLongArray(stripes);
+        this.readCounts=new AtomicLongArray(stripes);
+    }
+
+    private int stripe() {
+        long id=Thread.currentThread().getId();
+        int h=(int)(id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & stripeMask;
+    }
+
+    /**
+     * 放入一条访问记录，缓冲区已满或与其它线程竞争失败时丢弃
+     * @param id 缓存项
+     * @return 是否需要调用poll() 处理缓冲区
+     */
+    public boolean offer(String id) {
+        int stripe=stripe();
+        long tail=writeCounts.get(stripe);
+        long size=tail - readCounts.get(stripe);
+        if(size >= BUFFER_SIZE) {// 已满
+            return true;
+        }
+        if(writeCounts.compareAndSet(stripe, tail, tail + 1)) {
+            buffer.lazySet(stripe * BUFFER_SIZE + (int)(tail & BUFFER_MASK), id);
+            return size + 1 >= drainThreshold;
+        }
+        return false;
+    }
+
+    /**
+     * 取出一条访问记录，需要持有锁
+     * @return 没有数据时返回null
+     */
+    public String poll() {
+        for(int i=0; i <= stripeMask; i++) {
+            int stripe=(pollStripe + i) & stripeMask;
+            long head=readCounts.get(stripe);
+            if(head >= writeCounts.get(stripe)) {
+                continue;
+            }
+            int index=stripe * BUFFER_SIZE + (int)(head & BUFFER_MASK);
+            String id=buffer.get(index);
+            if(null == id) {// 写入位置已经占用，但数据还没写入，下次再处理
+                continue;
+            }
+            buffer.lazySet(index, null);
+            readCounts.lazySet(stripe, head + 1);
+            pollStripe=stripe;
+            return id;
+        }
+        return null;
+    }
+
+    /**
+     * 丢弃所有访问记录，需要持有锁
+     */
+    public void clear() {
+        while(null != poll()) {
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.jarvis.cache.map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分层时间轮，按过期时间管理缓存项：共4层，每层64个槽，每层槽的跨度分别约为1秒、65秒、70分钟、3天；超出最高层范围的数据放在最高层，到期时重新计算位置。<br>
+ * 新增、更新、删除的时间复杂度为O(1)；advance() 只处理已经到期的槽，开销与过期数量成正比，与缓存总数无关。同一个缓存项只会保留最后一次设置的过期时间。<br>
+ * schedule() 与cancel() 在每次写缓存时调用，只把操作放入写缓冲区（无锁、按顺序），缓冲区中的操作达到一定数量时，由获得锁的线程批量处理，advance() 与size() 之前也会先处理缓冲区，避免写操作之间竞争锁。<br>
+ * 并发修改同一个缓存项时，操作放入写缓冲区的顺序可能与修改缓存的顺序不一致，所以处理cancel() 时会通过ExpireTimeSource 重新检查缓存项，缓存项仍然存在时重新登记过期时间。
+ * @author jiayu.qiu
+ */
+public class TimerWheel {
+
+    private static final int BUCKET_BITS=6;
+
+    private static final int BUCKETS=1 << BUCKET_BITS;
+
+    private static final int BUCKET_MASK=BUCKETS - 1;
+
+    /**
+     * 每层槽的跨度（2的幂，单位：毫秒）
+     */
+    private static final int[] SHIFTS={10, 10 + BUCKET_BITS, 10 + 2 * BUCKET_BITS, 10 + 3 * BUCKET_BITS};
+
+    private static final int WRITE_DRAIN_THRESHOLD=64;
+
+    private final Node[][] wheel;
+
+    /**
+     * 写缓冲区：不能丢弃，否则过期时间会出错
+     */
+    private final ConcurrentLinkedQueue<Task> writeBuffer=new ConcurrentLinkedQueue<Task>();
+
+    private final AtomicInteger writeBufferSize=new AtomicInteger(0);
+
+    /**
+     * 时间轮的数据只能在持有此锁时修改
+     */
+    private final ReentrantLock lock=new ReentrantLock();
+
+    private final HashMap<String, Node> nodes=new HashMap<String, Node>();
+
+    private final ExpireTimeSource expireTimeSource;
+
+    private long currentTime;
+
+    public TimerWheel() {
+        this(null);
+    }
+
+    public TimerWheel(ExpireTimeSource expireTimeSource) {
+        this(System.currentTimeMillis(), expireTimeSource);
+    }
+
+    public TimerWheel(long currentTime) {
+        this(currentTime, null);
+    }
+
+    public TimerWheel(long currentTime, ExpireTimeSource expireTimeSource) {
+        this.currentTime=currentTime;
+        this.expireTimeSource=expireTimeSource;
+        wheel=new Node[SHIFTS.length][BUCKETS];
+        for(int i=0; i < SHIFTS.length; i++) {
+            for(int j=0; j < BUCKETS; j++) {
+                Node sentinel=new Node(null, null, null, 0);
+                sentinel.prev=sentinel;
+                sentinel.next=sentinel;
+                wheel[i][j]=sentinel;
+            }
+        }
+    }
+
+    private static String id(String cacheKey, String hfield) {
+        if(null == hfield) {
+            return cacheKey;
+        }
+        return cacheKey + '\u0000' + hfield;
+    }
+
+    /**
+     * 设置缓存项的过期时间，会替换之前设置的过期时间
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     * @param expireTime 过期时间（毫秒时间戳）
+     */
+    public void schedule(String cacheKey, String hfield, long expireTime) {
+        offer(new Task(cacheKey, hfield, expireTime, false));
+    }
+
+    /**
+     * 取消缓存项的过期时间
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     */
+    public void cancel(String cacheKey, String hfield) {
+        offer(new Task(cacheKey, hfield, 0, true));
+    }
+
+    private void offer(Task task) {
+        writeBuffer.offer(task);
+        if(writeBufferSize.incrementAndGet() >= WRITE_DRAIN_THRESHOLD && lock.tryLock()) {// 获取不到锁时，由持有锁的线程或下次写操作处理
+            try {
+                drainWriteBuffer();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 处理写缓冲区中的操作，需要持有锁
+     */
+    private void drainWriteBuffer() {
+        Task task;
+        while(null != (task=writeBuffer.poll())) {
+            writeBufferSize.decrementAndGet();
+            if(task.cancel) {
+                doCancel(task.cacheKey, task.hfield);
+                if(null != expireTimeSource) {// 取消之后缓存项又被写入，但写入时的schedule() 先放入了写缓冲区
+                    long expireTime=expireTimeSource.getExpireTime(task.cacheKey, task.hfield);
+                    if(expireTime > 0) {
+                        doSchedule(task.cacheKey, task.hfield, expireTime);
+                    }
+                }
+            } else {
+                doSchedule(task.cacheKey, task.hfield, task.expireTime);
+            }
+        }
+    }
+
+    private void doSchedule(String cacheKey, String hfield, long expireTime) {
+        String id=id(cacheKey, hfield);
+        Node node=nodes.get(id);
+        if(null == node) {
+            node=new Node(id, cacheKey, hfield, expireTime);
+            nodes.put(id, node);
+        } else {
+            unlink(node);
+            node.expireTime=expireTime;
+        }
+        link(node);
+    }
+
+    private void doCancel(String cacheKey, String hfield) {
+        Node node=nodes.remove(id(cacheKey, hfield));
+        if(null != node) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * 推进时间轮，取出所有已经到期的缓存项
+     * @param now 当前时间（毫秒时间戳）
+     * @return 已经到期的缓存项，每项为 {cacheKey, hfield}
+     */
+    public List<String[]> advance(long now) {
+        lock.lock();
+        try {
+            drainWriteBuffer();
+            return expire(now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<String[]> expire(long now) {
+        List<String[]> expired=new ArrayList<String[]>();
+        long previousTime=currentTime;
+        if(now <= previousTime) {
+            return expired;
+        }
+        currentTime=now;
+        List<Node> pending=new ArrayList<Node>();
+        for(int i=0; i < SHIFTS.length; i++) {
+            long previousTicks=previousTime >>> SHIFTS[i];
+            long currentTicks=now >>> SHIFTS[i];
+            if(currentTicks <= previousTicks && i > 0) {// 高层的槽没有变化
+                break;
+            }
+            long delta=Math.min(currentTicks - previousTicks, BUCKETS - 1);
+            for(long tick=previousTicks; tick <= previousTicks + delta; tick++) {
+                Node sentinel=wheel[i][(int)(tick & BUCKET_MASK)];
+                for(Node node=sentinel.next; node != sentinel; node=node.next) {
+                    pending.add(node);
+                }
+                sentinel.prev=sentinel;
+                sentinel.next=sentinel;
+            }
+        }
+        for(Node node: pending) {
+            node.prev=null;
+            node.next=null;
+            if(node.expireTime <= now) {
+                nodes.remove(node.id);
+                expired.add(new String[]{node.cacheKey, node.hfield});
+            } else {// 还没到期，放到更低层的槽中
+                link(node);
+            }
+        }
+        return expired;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            drainWriteBuffer();
+            return nodes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void link(Node node) {
+        long time=Math.max(node.expireTime, currentTime);
+        long delay=time - currentTime;
+        int level=0;
+        while(level < SHIFTS.length - 1 && delay >= (1L << SHIFTS[level + 1])) {
+            level++;
+        }
+        Node sentinel=wheel[level][(int)((time >>> SHIFTS[level]) & BUCKET_MASK)];
+        node.prev=sentinel.prev;
+        node.next=sentinel;
+        sentinel.prev.next=node;
+        sentinel.prev=node;
+    }
+
+    private void unlink(Node node) {
+        if(null != node.next) {
+            node.prev.next=node.next;
+            node.next.prev=node.prev;
+            node.prev=null;
+            node.next=null;
+        }
+    }
+
+    /**
+     * 查询缓存项当前的过期时间
+     */
+    public interface ExpireTimeSource {
+
+        /**
+         * @param cacheKey 缓存Key
+         * @param hfield 哈希表中的字段，可能为null
+         * @return 过期时间（毫秒时间戳），缓存项不存在或永不过期时返回0
+         */
+        long getExpireTime(String cacheKey, String hfield);
+    }
+
+    /**
+     * 写缓冲区中的操作
+     */
+    private static final class Task {
+
+        private final String cacheKey;
+
+        private final String hfield;
+
+        private final long expireTime;
+
+        private final boolean cancel;
+
+        private Task(String cacheKey, String hfield, long expireTime, boolean cancel) {
+            this.cacheKey=cacheKey;
+            this.hfield=hfield;
+            this.expireTime=expireTime;
+            this.cancel=cancel;
+        }
+    }
+
+    private static final class Node {
+
+        private final String id;
+
+        private final String cacheKey;
+
+        private final String hfield;
+
+        private long expireTime;
+
+        private Node prev;
+
+        private Node next;
+
+        private Node(String id, String cacheKey, String hfield, long expireTime) {
+            this.id=id;
+            this.cacheKey=cacheKey;
+            this.hfield=hfield;
+            this.expireTime=expireTime;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.jarvis.cache.map;
+
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * W-TinyLFU 淘汰策略：新数据先进入窗口区（LRU，占总容量的1%），从窗口区淘汰的数据进入主空间的试用区，成为候选者；
+ * 超出容量时，使用FrequencySketch 比较候选者与试用区中最久未访问的数据，访问频率高的留下。试用区的数据再次被访问后晋升到保护区（占主空间的80%）。<br>
+ * 读操作只把访问记录放入有损的读缓冲区（按线程分段、无锁，缓冲区满时直接丢弃），由持有锁的线程批量处理，避免读操作之间竞争锁。<br>
+ * 非线程安全：除recordAccess() 外，其它方法都需要调用方持有锁。
+ * @author jiayu.qiu
+ */
+public class TinyLfuPolicy {
+
+    /**
+     * 淘汰监听器
+     */
+    public interface EvictionListener {
+
+        /**
+         * 缓存项被淘汰
+         * @param cacheKey 缓存Key
+         * @param hfield 哈希表中的字段，可能为null
+         */
+        void onEviction(String cacheKey, String hfield);
+    }
+
+    private static final int WINDOW=0;
+
+    private static final int PROBATION=1;
+
+    private static final int PROTECTED=2;
+
+    private static final double WINDOW_PERCENT=0.01d;
+
+    private static final double PROTECTED_PERCENT=0.8d;
+
+    private static final int READ_DRAIN_THRESHOLD=32;
+
+    /**
+     * 候选者访问频率高于此值时，即使不高于被淘汰者，也有小概率被接受，防止利用Hash冲突攻击
+     */
+    private static final int ADMIT_HASHDOS_THRESHOLD=5;
+
+    private final long maxSize;
+
+    private final long maxWeight;
+
+    private final long windowMax;
+
+    private final long protectedMax;
+
+    private final FrequencySketch sketch;
+
+    private final HashMap<String, Node> data=new HashMap<String, Node>();
+
+    private final AccessOrderDeque window=new AccessOrderDeque();
+
+    private final AccessOrderDeque probation=new AccessOrderDeque();
+
+    private final AccessOrderDeque protectedDeque=new AccessOrderDeque();
+
+    private final StripedReadBuffer readBuffer=new StripedReadBuffer(READ_DRAIN_THRESHOLD);
+
+    private final EvictionListener listener;
+
+    private final Random random=new Random();
+
+    private long weightedSize=0;
+
+    /**
+     * @param maxSize 最大缓存数量，小于等于0时不限制
+     * @param maxWeight 最大总权重，小于等于0时不限制；大于0时，按权重划分窗口区与保护区，否则按数量划分
+     * @param listener 淘汰监听器
+     */
+    public TinyLfuPolicy(long maxSize, long maxWeight, EvictionListener listener) {
+        this.maxSize=maxSize;
+        this.maxWeight=maxWeight;
+        this.listener=listener;
+        long capacity=maxWeight > 0 ? maxWeight : maxSize;
+        this.windowMax=Math.max(1L, (long)(capacity * WINDOW_PERCENT));
+        this.protectedMax=(long)((capacity - windowMax) * PROTECTED_PERCENT);
+        long expectedSize=maxSize > 0 ? maxSize : maxWeight;
+        this.sketch=new FrequencySketch(expectedSize);
+    }
+
+    private static String id(String cacheKey, String hfield) {
+        if(null == hfield) {
+            return cacheKey;
+        }
+        return cacheKey + '\u0000' + hfield;
+    }
+
+    /**
+     * 记录一次读操作，线程安全，不需要持有锁
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     * @return 是否需要调用drainReadBuffer()
+     */
+    public boolean recordAccess(String cacheKey, String hfield) {
+        return readBuffer.offer(id(cacheKey, hfield));
+    }
+
+    /**
+     * 处理读缓冲区中的访问记录
+     */
+    public void drainReadBuffer() {
+        String id;
+        while(null != (id=readBuffer.poll())) {
+            Node node=data.get(id);
+            if(null != node) {
+                sketch.increment(id.hashCode());
+                onAccess(node);
+            }
+        }
+    }
+
+    /**
+     * 新增或更新缓存项，如果超出容量，会淘汰数据
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     * @param weight 权重
+     */
+    public void onWrite(String cacheKey, String hfield, int weight) {
+        drainReadBuffer();
+        String id=id(cacheKey, hfield);
+        sketch.increment(id.hashCode());
+        Node node=data.get(id);
+        if(null == node) {
+            node=new Node(cacheKey, hfield, id);
+            node.weight=weight;
+            node.queue=WINDOW;
+            data.put(id, node);
+            window.addLast(node, cost(node));
+            weightedSize+=weight;
+        } else {
+            long oldCost=cost(node);
+            weightedSize+=weight - node.weight;
+            node.weight=weight;
+            deque(node).cost+=cost(node) - oldCost;
+            onAccess(node);
+        }
+        evict();
+    }
+
+    /**
+     * 缓存项已被删除
+     * @param cacheKey 缓存Key
+     * @param hfield 哈希表中的字段，可能为null
+     */
+    public void onRemove(String cacheKey, String hfield) {
+        Node node=data.remove(id(cacheKey, hfield));
+        if(null != node) {
+            deque(node).remove(node, cost(node));
+            weightedSize-=node.weight;
+        }
+    }
+
+    public void clear() {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedDeque.clear();
+        readBuffer.clear();
+        weightedSize=0;
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    private void onAccess(Node node) {
+        if(node.queue == WINDOW) {
+            window.moveToLast(node);
+        } else if(node.queue == PROBATION) {// 晋升到保护区
+            probation.remove(node, cost(node));
+            node.queue=PROTECTED;
+            protectedDeque.addLast(node, cost(node));
+            while(protectedDeque.cost > protectedMax && protectedDeque.size > 1) {// 保护区满了，把最久未访问的降级到试用区
+                Node demoted=protectedDeque.first;
+                protectedDeque.remove(demoted, cost(demoted));
+                demoted.queue=PROBATION;
+                probation.addLast(demoted, cost(demoted));
+            }
+        } else {
+            protectedDeque.moveToLast(node);
+        }
+    }
+
+    private void evict() {
+        int candidates=0;
+        while(window.cost > windowMax && window.size > 0) {// 窗口区满了，把最久未访问的移到试用区末尾，成为候选者
+            Node node=window.first;
+            window.remove(node, cost(node));
+            node.queue=PROBATION;
+            probation.addLast(node, cost(node));
+            candidates++;
+        }
+        while(isOverflow()) {
+            Node victim=probation.first;
+            Node candidate=candidates > 0 ? probation.last : null;
+            Node evicted;
+            if(null == victim) {
+                evicted=null != protectedDeque.first ? protectedDeque.first : window.first;
+            } else if(null == candidate || candidate == victim) {
+                evicted=victim;
+            } else {
+                evicted=admit(candidate, victim) ? victim : candidate;
+            }
+            if(null == evicted) {
+                break;
+            }
+            if(evicted == candidate) {
+                candidates--;
+            }
+            onRemove(evicted.cacheKey, evicted.hfield);
+            listener.onEviction(evicted.cacheKey, evicted.hfield);
+        }
+    }
+
+    private boolean isOverflow() {
+        return (maxSize > 0 && data.size() > maxSize) || (maxWeight > 0 && weightedSize > maxWeight);
+    }
+
+    /**
+     * @return 是否用候选者替换被淘汰者
+     */
+    private boolean admit(Node candidate, Node victim) {
+        int candidateFreq=sketch.frequency(candidate.id.hashCode());
+        int victimFreq=sketch.frequency(victim.id.hashCode());
+        if(candidateFreq > victimFreq) {
+            return true;
+        }
+        if(candidateFreq <= ADMIT_HASHDOS_THRESHOLD) {
+            return false;
+        }
+        return (random.nextInt() & 127) == 0;
+    }
+
+    private long cost(Node node) {
+        return maxWeight > 0 ? node.weight : 1L;
+    }
+
+    private AccessOrderDeque deque(Node node) {
+        if(node.queue == WINDOW) {
+            return window;
+        }
+        return node.queue == PROBATION ? probation : protectedDeque;
+    }
+
+    private static final class Node {
+
+        private final String cacheKey;
+
+        private final String hfield;
+
+        private final String id;
+
+        private int weight;
+
+        private int queue;
+
+        private Node prev;
+
+        private Node next;
+
+        private Node(String cacheKey, String hfield, String id) {
+            this.cacheKey=cacheKey;
+            this.hfield=hfield;
+            this.id=id;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的双向链表，first 为最久未访问的数据
+     */
+    private static final class AccessOrderDeque {
+
+        private Node first;
+
+        private Node last;
+
+        private int size;
+
+        private long cost;
+
+        private void addLast(Node node, long nodeCost) {
+            node.prev=last;
+            node.next=null;
+            if(null == last) {
+                first=node;
+            } else {
+                last.next=node;
+            }
+            last=node;
+            size++;
+            cost+=nodeCost;
+        }
+
+        private void remove(Node node, long nodeCost) {
+            if(null == node.prev) {
+                first=node.next;
+            } else {
+                node.prev.next=node.next;
+            }
+            if(null == node.next) {
+                last=node.prev;
+            } else {
+                node.next.prev=node.prev;
+            }
+            node.prev=null;
+            node.next=null;
+            size--;
+            cost-=nodeCost;
+        }
+
+        private void moveToLast(Node node) {
+            if(node == last) {
+                return;
+            }
+            remove(node, 0);
+            addLast(node, 0);
+        }
+
+        private void clear() {
+            first=null;
+            last=null;
+            size=0;
+            cost=0;
+        }
+    }
+}
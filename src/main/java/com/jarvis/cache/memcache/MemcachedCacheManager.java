@@ -1,11 +1,19 @@
 package com.jarvis.cache.memcache;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
+import com.jarvis.cache.CacheUtil;
 import com.jarvis.cache.ICacheManager;
 import com.jarvis.cache.exception.CacheCenterConnectionException;
 import com.jarvis.cache.to.CacheKeyTO;
 import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
 
 import net.spy.memcached.MemcachedClient;
 
@@ -35,7 +43,7 @@ public class MemcachedCacheManager implements ICacheManager {
             throw new RuntimeException("memcached does not support hash cache.");
         }
         if(result.getExpire() >= 0) {
-            memcachedClient.set(cacheKey, result.getExpire(), result);
+            memcachedClient.set(cacheKey, CacheUtil.getPhysicalExpire(result), result);
         }
     }
 
@@ -56,6 +64,48 @@ public class MemcachedCacheManager implements ICacheManager {
         return (CacheWrapper<Object>)memcachedClient.get(cacheKey);
     }
 
+    @Override
+    public void mset(final Method method, final Collection<MSetParam> params) throws CacheCenterConnectionException {
+        if(null == params || params.isEmpty()) {
+            return;
+        }
+        for(MSetParam param: params) {// spymemcached 中的 set 是异步的，不需要等待每个请求的返回
+            setCache(param.getCacheKey(), param.getResult(), method, null);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<CacheKeyTO, CacheWrapper<Object>> mget(final Method method, final Type returnType, final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == keys || keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, CacheKeyTO> keyMap=new HashMap<String, CacheKeyTO>(keys.size());
+        for(CacheKeyTO cacheKeyTO: keys) {
+            String cacheKey=cacheKeyTO.getCacheKey();
+            if(null == cacheKey || cacheKey.length() == 0) {
+                continue;
+            }
+            String hfield=cacheKeyTO.getHfield();
+            if(null != hfield && hfield.length() > 0) {
+                throw new RuntimeException("memcached does not support hash cache.");
+            }
+            keyMap.put(cacheKey, cacheKeyTO);
+        }
+        Map<CacheKeyTO, CacheWrapper<Object>> res=new HashMap<CacheKeyTO, CacheWrapper<Object>>(keyMap.size());
+        Map<String, Object> values=memcachedClient.getBulk(keyMap.keySet());
+        if(null == values) {
+            return res;
+        }
+        for(Map.Entry<String, Object> entry: values.entrySet()) {
+            CacheKeyTO cacheKeyTO=keyMap.get(entry.getKey());
+            if(null != cacheKeyTO && null != entry.getValue()) {
+                res.put(cacheKeyTO, (CacheWrapper<Object>)entry.getValue());
+            }
+        }
+        return res;
+    }
+
     /**
      * 通过组成Key直接删除
      * @param cacheKeyTO 缓存Key
@@ -84,6 +134,16 @@ public class MemcachedCacheManager implements ICacheManager {
         }
     }
 
+    @Override
+    public void mdelete(final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == memcachedClient || null == keys || keys.isEmpty()) {
+            return;
+        }
+        for(CacheKeyTO cacheKeyTO: keys) {
+            delete(cacheKeyTO);
+        }
+    }
+
     public MemcachedClient getMemcachedClient() {
         return memcachedClient;
     }
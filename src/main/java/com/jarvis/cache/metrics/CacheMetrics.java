@@ -0,0 +1,239 @@
+package com.jarvis.cache.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存统计数据：按@Cache 方法或key 前缀统计命中、未命中、加载次数，以及加载、远程读写、序列化的耗时和数据大小；
+ * 耗时的单位为纳秒，通过JMX 查看时转换为毫秒。
+ * @author jiayu.qiu
+ */
+public class CacheMetrics implements CacheMetricsMXBean {
+
+    private static final double NANOS_PER_MILLI=1000000D;
+
+    private final String name;
+
+    private final AtomicLong hits=new AtomicLong(0);
+
+    private final AtomicLong misses=new AtomicLong(0);
+
+    private final AtomicLong staleServes=new AtomicLong(0);
+
+    private final AtomicLong loadErrors=new AtomicLong(0);
+
+    private final Histogram loadTime=new Histogram();
+
+    private final Histogram remoteGetTime=new Histogram();
+
+    private final Histogram remoteSetTime=new Histogram();
+
+    private final Histogram serializeTime=new Histogram();
+
+    private final Histogram deserializeTime=new Histogram();
+
+    private final Histogram payloadSize=new Histogram();
+
+    public CacheMetrics(String name) {
+        this.name=name;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public void recordHits(int hitCnt, int missCnt) {
+        hits.addAndGet(hitCnt);
+        misses.addAndGet(missCnt);
+    }
+
+    /**
+     * 返回了已过期的数据（stale-while-revalidate）
+     */
+    public void recordStaleServe() {
+        staleServes.incrementAndGet();
+    }
+
+    public void recordLoad(long nanos) {
+        loadTime.record(nanos);
+    }
+
+    public void recordLoadError() {
+        loadErrors.incrementAndGet();
+    }
+
+    public void recordRemoteGet(long nanos) {
+        remoteGetTime.record(nanos);
+    }
+
+    public void recordRemoteSet(long nanos) {
+        remoteSetTime.record(nanos);
+    }
+
+    public void recordSerialize(long nanos, int size) {
+        serializeTime.record(nanos);
+        payloadSize.record(size);
+    }
+
+    public void recordDeserialize(long nanos, int size) {
+        deserializeTime.record(nanos);
+        payloadSize.record(size);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hitCnt=hits.get();
+        long total=hitCnt + misses.get();
+        return total == 0 ? 0 : (double)hitCnt / total;
+    }
+
+    @Override
+    public long getStaleServes() {
+        return staleServes.get();
+    }
+
+    @Override
+    public long getLoads() {
+        return loadTime.getCount();
+    }
+
+    @Override
+    public long getLoadErrors() {
+        return loadErrors.get();
+    }
+
+    @Override
+    public double getLoadTimeMean() {
+        return loadTime.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLoadTimeP50() {
+        return loadTime.getValueAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLoadTimeP99() {
+        return loadTime.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLoadTimeMax() {
+        return loadTime.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getRemoteGets() {
+        return remoteGetTime.getCount();
+    }
+
+    @Override
+    public double getRemoteGetTimeMean() {
+        return remoteGetTime.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRemoteGetTimeP99() {
+        return remoteGetTime.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRemoteGetTimeMax() {
+        return remoteGetTime.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getRemoteSets() {
+        return remoteSetTime.getCount();
+    }
+
+    @Override
+    public double getRemoteSetTimeMean() {
+        return remoteSetTime.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRemoteSetTimeP99() {
+        return remoteSetTime.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRemoteSetTimeMax() {
+        return remoteSetTime.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSerializeTimeP99() {
+        return serializeTime.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getDeserializeTimeP99() {
+        return deserializeTime.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getPayloadSizeMean() {
+        return payloadSize.getMean();
+    }
+
+    @Override
+    public long getPayloadSizeP99() {
+        return payloadSize.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getPayloadSizeMax() {
+        return payloadSize.getMax();
+    }
+
+    public Histogram getLoadTime() {
+        return loadTime;
+    }
+
+    public Histogram getRemoteGetTime() {
+        return remoteGetTime;
+    }
+
+    public Histogram getRemoteSetTime() {
+        return remoteSetTime;
+    }
+
+    public Histogram getSerializeTime() {
+        return serializeTime;
+    }
+
+    public Histogram getDeserializeTime() {
+        return deserializeTime;
+    }
+
+    public Histogram getPayloadSize() {
+        return payloadSize;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": hits=" + getHits() + ", misses=" + getMisses() + ", hitRatio=" + getHitRatio() + ", staleServes=" + getStaleServes() + ", loads=" + getLoads() + ", loadErrors="
+            + getLoadErrors() + ", loadTime(mean/p50/p99/max ms)=" + getLoadTimeMean() + "/" + getLoadTimeP50() + "/" + getLoadTimeP99() + "/" + getLoadTimeMax() + ", remoteGet(mean/p99 ms)="
+            + getRemoteGetTimeMean() + "/" + getRemoteGetTimeP99() + ", remoteSet(mean/p99 ms)=" + getRemoteSetTimeMean() + "/" + getRemoteSetTimeP99() + ", payloadSize(mean/p99/max B)="
+            + getPayloadSizeMean() + "/" + getPayloadSizeP99() + "/" + getPayloadSizeMax();
+    }
+}
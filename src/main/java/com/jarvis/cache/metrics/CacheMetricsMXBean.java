@@ -0,0 +1,56 @@
+package com.jarvis.cache.metrics;
+
+/**
+ * 通过JMX 查看缓存统计数据，时间的单位为：毫秒，数据大小的单位为：字节
+ * @author jiayu.qiu
+ */
+public interface CacheMetricsMXBean {
+
+    String getName();
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRatio();
+
+    long getStaleServes();
+
+    long getLoads();
+
+    long getLoadErrors();
+
+    double getLoadTimeMean();
+
+    double getLoadTimeP50();
+
+    double getLoadTimeP99();
+
+    double getLoadTimeMax();
+
+    long getRemoteGets();
+
+    double getRemoteGetTimeMean();
+
+    double getRemoteGetTimeP99();
+
+    double getRemoteGetTimeMax();
+
+    long getRemoteSets();
+
+    double getRemoteSetTimeMean();
+
+    double getRemoteSetTimeP99();
+
+    double getRemoteSetTimeMax();
+
+    double getSerializeTimeP99();
+
+    double getDeserializeTimeP99();
+
+    double getPayloadSizeMean();
+
+    long getPayloadSizeP99();
+
+    long getPayloadSizeMax();
+}
@@ -0,0 +1,163 @@
+package com.jarvis.cache.metrics;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.jarvis.cache.reflect.MethodMeta;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 缓存统计数据的注册中心：按@Cache 方法（名称为“method:类名.方法名”）及key 前缀（名称为“prefix:前缀”）分别统计；
+ * 前缀为key 表达式开头的字符串常量，没有设置key 表达式时为默认key 的前缀（类名.方法名）。<br>
+ * 设置了IMetricsExporter 后，会定期把统计数据导出。
+ * @author jiayu.qiu
+ */
+@Slf4j
+public class CacheMetricsRegistry {
+
+    public static final String METHOD_PREFIX="method:";
+
+    public static final String KEY_PREFIX="prefix:";
+
+    private final ConcurrentHashMap<Method, MethodMetrics> methodMetrics=new ConcurrentHashMap<Method, MethodMetrics>();
+
+    private final ConcurrentHashMap<String, CacheMetrics> metrics=new ConcurrentHashMap<String, CacheMetrics>();
+
+    private final List<IMetricsExporter> exporters=new CopyOnWriteArrayList<IMetricsExporter>();
+
+    /**
+     * 导出周期（单位：秒）
+     */
+    private int exportPeriod=60;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    /**
+     * 获取方法对应的统计数据，每个方法只会创建一次
+     * @param method 使用@Cache 注解的方法
+     * @return MethodMetrics
+     */
+    public MethodMetrics getMethodMetrics(Method method) {
+        MethodMetrics res=methodMetrics.get(method);
+        if(null != res) {
+            return res;
+        }
+        MethodMeta meta=MethodMeta.get(method);
+        String prefix=meta.getKeyPrefix();
+        CacheMetrics prefixMetrics=null == prefix ? null : getMetrics(KEY_PREFIX + prefix);
+        res=new MethodMetrics(getMetrics(METHOD_PREFIX + meta.getName()), prefixMetrics);
+        MethodMetrics old=methodMetrics.putIfAbsent(method, res);
+        return null == old ? res : old;
+    }
+
+    /**
+     * 根据名称获取统计数据，不存在时创建
+     * @param name 名称
+     * @return CacheMetrics
+     */
+    public CacheMetrics getMetrics(String name) {
+        CacheMetrics res=metrics.get(name);
+        if(null == res) {
+            CacheMetrics tmp=new CacheMetrics(name);
+            res=metrics.putIfAbsent(name, tmp);
+            if(null == res) {
+                res=tmp;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return 所有的统计数据
+     */
+    public Collection<CacheMetrics> getMetrics() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    /**
+     * 立即导出统计数据
+     */
+    public void export() {
+        Collection<CacheMetrics> values=new ArrayList<CacheMetrics>(metrics.values());
+        for(IMetricsExporter exporter: exporters) {
+            try {
+                exporter.export(values);
+            } catch(Throwable e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    public void addExporter(IMetricsExporter exporter) {
+        exporters.add(exporter);
+        start();
+    }
+
+    public void setExporters(List<IMetricsExporter> exporters) {
+        this.exporters.clear();
+        if(null != exporters) {
+            this.exporters.addAll(exporters);
+        }
+        start();
+    }
+
+    public List<IMetricsExporter> getExporters() {
+        return exporters;
+    }
+
+    /**
+     * 启动定期导出线程，没有IMetricsExporter 时不启动
+     */
+    public synchronized void start() {
+        if(null != executor || exporters.isEmpty()) {
+            return;
+        }
+        executor=new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t=new Thread(r, "autoload-cache-CacheMetricsRegistry");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                export();
+            }
+        }, exportPeriod, exportPeriod, TimeUnit.SECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if(null != executor) {
+            executor.shutdownNow();
+            executor=null;
+        }
+    }
+
+    public int getExportPeriod() {
+        return exportPeriod;
+    }
+
+    /**
+     * 需要在设置IMetricsExporter 之前设置
+     * @param exportPeriod 导出周期（单位：秒）
+     */
+    public void setExportPeriod(int exportPeriod) {
+        if(exportPeriod <= 0) {
+            throw new IllegalArgumentException("exportPeriod must be greater than 0");
+        }
+        this.exportPeriod=exportPeriod;
+    }
+}
@@ -0,0 +1,114 @@
+package com.jarvis.cache.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁直方图（HDR 风格）：0~15 线性分桶，之后每个2的幂区间再平均分成16个桶，相对误差不超过1/16。<br>
+ * record() 只有几次原子操作，不会创建对象。
+ * @author jiayu.qiu
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS=4;
+
+    private static final int SUB_BUCKET_CNT=1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKET_CNT=(64 - SUB_BUCKET_BITS) * SUB_BUCKET_CNT;
+
+    private final AtomicLongArray buckets=new AtomicLongArray(BUCKET_CNT);
+
+    private final AtomicLong count=new AtomicLong(0);
+
+    private final AtomicLong sum=new AtomicLong(0);
+
+    private final AtomicLong max=new AtomicLong(0);
+
+    /**
+     * 记录一个值，小于0的值按0处理
+     * @param value 值
+     */
+    public void record(long value) {
+        if(value < 0) {
+            value=0;
+        }
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long tmp=max.get();
+        while(value > tmp && !max.compareAndSet(tmp, value)) {
+            tmp=max.get();
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if(value < SUB_BUCKET_CNT) {
+            return (int)value;
+        }
+        int magnitude=63 - Long.numberOfLeadingZeros(value);
+        int subBucket=(int)(value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKET_CNT - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKET_CNT + subBucket;
+    }
+
+    /**
+     * @param index 桶的位置
+     * @return 桶中的最大值
+     */
+    static long bucketUpperBound(int index) {
+        if(index < SUB_BUCKET_CNT) {
+            return index;
+        }
+        int shift=index / SUB_BUCKET_CNT - 1;
+        long subBucket=SUB_BUCKET_CNT + index % SUB_BUCKET_CNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * @param percentile 百分位，例如：99.9
+     * @return 该百分位的值（桶的上限，不超过最大值）
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total=count.get();
+        if(total == 0) {
+            return 0;
+        }
+        long target=(long)Math.ceil(Math.min(100D, Math.max(0D, percentile)) / 100D * total);
+        if(target < 1) {
+            target=1;
+        }
+        long cumulative=0;
+        for(int i=0; i < BUCKET_CNT; i++) {
+            cumulative+=buckets.get(i);
+            if(cumulative >= target) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long total=count.get();
+        return total == 0 ? 0 : (double)sum.get() / total;
+    }
+
+    public void reset() {
+        for(int i=0; i < BUCKET_CNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+}
@@ -0,0 +1,17 @@
+package com.jarvis.cache.metrics;
+
+import java.util.Collection;
+
+/**
+ * 缓存统计数据导出接口，由CacheMetricsRegistry 定期调用
+ * @author jiayu.qiu
+ */
+public interface IMetricsExporter {
+
+    /**
+     * 导出统计数据
+     * @param metrics 所有的统计数据（累计值）
+     * @throws Exception 异常
+     */
+    void export(Collection<CacheMetrics> metrics) throws Exception;
+}
@@ -0,0 +1,76 @@
+package com.jarvis.cache.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 把统计数据注册为MXBean，ObjectName 为：domain:type=CacheMetrics,name="统计名称"；每次导出时注册新增的统计数据，MXBean 中的数据是实时的。
+ * @author jiayu.qiu
+ */
+@Slf4j
+public class JmxMetricsExporter implements IMetricsExporter {
+
+    private final MBeanServer mBeanServer;
+
+    private final String domain;
+
+    private final Set<ObjectName> registered=Collections.newSetFromMap(new ConcurrentHashMap<ObjectName, Boolean>());
+
+    public JmxMetricsExporter() {
+        this("com.jarvis.cache");
+    }
+
+    public JmxMetricsExporter(String domain) {
+        this(ManagementFactory.getPlatformMBeanServer(), domain);
+    }
+
+    public JmxMetricsExporter(MBeanServer mBeanServer, String domain) {
+        this.mBeanServer=mBeanServer;
+        this.domain=domain;
+    }
+
+    @Override
+    public void export(Collection<CacheMetrics> metrics) throws Exception {
+        for(CacheMetrics tmp: metrics) {
+            ObjectName objectName=getObjectName(tmp);
+            if(registered.contains(objectName)) {
+                continue;
+            }
+            if(!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(tmp, objectName);
+            }
+            registered.add(objectName);
+        }
+    }
+
+    public ObjectName getObjectName(CacheMetrics metrics) throws Exception {
+        return new ObjectName(domain + ":type=CacheMetrics,name=" + ObjectName.quote(metrics.getName()));
+    }
+
+    /**
+     * 注销所有已注册的MXBean
+     */
+    public void unregister() {
+        Iterator<ObjectName> it=registered.iterator();
+        while(it.hasNext()) {
+            ObjectName objectName=it.next();
+            try {
+                if(mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.unregisterMBean(objectName);
+                }
+            } catch(Exception e) {
+                log.error(e.getMessage(), e);
+            }
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.jarvis.cache.metrics;
+
+import java.util.Collection;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 把统计数据输出到日志中
+ * @author jiayu.qiu
+ */
+@Slf4j
+public class LogMetricsExporter implements IMetricsExporter {
+
+    @Override
+    public void export(Collection<CacheMetrics> metrics) throws Exception {
+        for(CacheMetrics tmp: metrics) {
+            log.info("cache metrics {}", tmp);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.jarvis.cache.metrics;
+
+/**
+ * 一个@Cache 方法对应的统计数据，同时记录到方法及其key 前缀的统计数据中
+ * @author jiayu.qiu
+ */
+public class MethodMetrics {
+
+    private final CacheMetrics methodMetrics;
+
+    private final CacheMetrics prefixMetrics;
+
+    public MethodMetrics(CacheMetrics methodMetrics, CacheMetrics prefixMetrics) {
+        this.methodMetrics=methodMetrics;
+        this.prefixMetrics=prefixMetrics;
+    }
+
+    public void recordHit() {
+        methodMetrics.recordHit();
+        if(null != prefixMetrics) {
+            prefixMetrics.recordHit();
+        }
+    }
+
+    public void recordMiss() {
+        methodMetrics.recordMiss();
+        if(null != prefixMetrics) {
+            prefixMetrics.recordMiss();
+        }
+    }
+
+    public void recordHits(int hitCnt, int missCnt) {
+        methodMetrics.recordHits(hitCnt, missCnt);
+        if(null != prefixMetrics) {
+            prefixMetrics.recordHits(hitCnt, missCnt);
+        }
+    }
+
+    public void recordStaleServe() {
+        methodMetrics.recordStaleServe();
+        if(null != prefixMetrics) {
+            prefixMetrics.recordStaleServe();
+        }
+    }
+
+    public void recordLoad(long nanos) {
+        methodMetrics.recordLoad(nanos);
+        if(null != prefixMetrics) {
+            prefixMetrics.recordLoad(nanos);
+        }
+    }
+
+    public void recordLoadError() {
+        methodMetrics.recordLoadError();
+        if(null != prefixMetrics) {
+            prefixMetrics.recordLoadError();
+        }
+    }
+
+    public void recordRemoteGet(long nanos) {
+        methodMetrics.recordRemoteGet(nanos);
+        if(null != prefixMetrics) {
+            prefixMetrics.recordRemoteGet(nanos);
+        }
+    }
+
+    public void recordRemoteSet(long nanos) {
+        methodMetrics.recordRemoteSet(nanos);
+        if(null != prefixMetrics) {
+            prefixMetrics.recordRemoteSet(nanos);
+        }
+    }
+
+    public CacheMetrics getMethodMetrics() {
+        return methodMetrics;
+    }
+
+    public CacheMetrics getPrefixMetrics() {
+        return prefixMetrics;
+    }
+}
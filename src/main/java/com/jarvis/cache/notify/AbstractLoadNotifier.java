@@ -0,0 +1,65 @@
+package com.jarvis.cache.notify;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 管理本节点中等待通知的请求，子类只需要负责通知的传输
+ * @author jiayu.qiu
+ */
+public abstract class AbstractLoadNotifier implements ILoadNotifier {
+
+    /**
+     * 等待中的请求，同一个Key的请求共用一个CountDownLatch
+     */
+    private final ConcurrentHashMap<String, CountDownLatch> waiters=new ConcurrentHashMap<String, CountDownLatch>();
+
+    @Override
+    public CountDownLatch listen(String key) {
+        CountDownLatch latch=waiters.get(key);
+        if(null == latch) {
+            CountDownLatch newLatch=new CountDownLatch(1);
+            latch=waiters.putIfAbsent(key, newLatch);
+            if(null == latch) {
+                latch=newLatch;
+            }
+        }
+        return latch;
+    }
+
+    @Override
+    public boolean await(String key, CountDownLatch latch, long timeout) throws InterruptedException {
+        boolean notified=false;
+        try {
+            notified=timeout > 0 && latch.await(timeout, TimeUnit.MILLISECONDS);
+        } finally {
+            if(!notified) {// 超时后不再监听，避免锁持有者异常退出时造成内存泄漏
+                waiters.remove(key, latch);
+            }
+        }
+        return notified;
+    }
+
+    /**
+     * 收到通知，唤醒本节点中所有等待该Key的请求
+     * @param key 锁Key
+     */
+    protected void onLoaded(String key) {
+        if(null == key) {
+            return;
+        }
+        CountDownLatch latch=waiters.remove(key);
+        if(null != latch) {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * 本节点中等待通知的Key数量
+     * @return int
+     */
+    public int getWaitingKeySize() {
+        return waiters.size();
+    }
+}
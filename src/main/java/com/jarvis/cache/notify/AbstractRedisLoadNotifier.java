@@ -0,0 +1,115 @@
+package com.jarvis.cache.notify;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * 基于Redis Pub/Sub 的通知：所有节点订阅同一个频道，消息内容为锁Key
+ * @author jiayu.qiu
+ */
+@Slf4j
+public abstract class AbstractRedisLoadNotifier extends AbstractLoadNotifier {
+
+    /**
+     * 默认频道
+     */
+    public static final String DEFAULT_CHANNEL="autoload:loaded";
+
+    private static final long RECONNECT_INTERVAL=1000L;
+
+    private final String channel;
+
+    private final JedisPubSub pubSub=new JedisPubSub() {
+
+        @Override
+        public void onMessage(String channel, String message) {
+            onLoaded(message);
+        }
+    };
+
+    private volatile boolean running=false;
+
+    private Thread subscriber;
+
+    public AbstractRedisLoadNotifier(String channel) {
+        this.channel=channel;
+    }
+
+    /**
+     * 启动订阅线程，订阅连接断开后会自动重连
+     */
+    public synchronized void start() {
+        if(running) {
+            return;
+        }
+        running=true;
+        subscriber=new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while(running) {
+                    try {
+                        subscribe(pubSub, channel);// 阻塞，直到取消订阅或连接断开
+                    } catch(Exception ex) {
+                        if(!running) {
+                            break;
+                        }
+                        log.error(ex.getMessage(), ex);
+                        try {
+                            Thread.sleep(RECONNECT_INTERVAL);
+                        } catch(InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }, "loadNotifier-" + channel);
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    /**
+     * 停止订阅
+     */
+    public synchronized void shutdown() {
+        running=false;
+        try {
+            if(pubSub.isSubscribed()) {
+                pubSub.unsubscribe();
+            }
+        } catch(Exception ex) {
+            log.error(ex.getMessage(), ex);
+        }
+        if(null != subscriber) {
+            subscriber.interrupt();
+            subscriber=null;
+        }
+    }
+
+    @Override
+    public void publish(String key) {
+        try {
+            publish(channel, key);
+        } catch(Exception ex) {// 通知失败时，等待中的请求会在超时后自行从缓存中获取数据
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * 订阅频道，该方法会一直阻塞
+     * @param pubSub JedisPubSub
+     * @param channel 频道
+     */
+    protected abstract void subscribe(JedisPubSub pubSub, String channel);
+
+    /**
+     * 发布消息
+     * @param channel 频道
+     * @param message 消息
+     */
+    protected abstract void publish(String channel, String message);
+
+    public String getChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,33 @@
+package com.jarvis.cache.notify;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 数据加载完成通知：获得分布式锁的节点加载完数据并写入缓存后，发布通知；其它没有获得锁的节点阻塞等待通知，而不是定时轮询缓存服务器
+ * @author jiayu.qiu
+ */
+public interface ILoadNotifier {
+
+    /**
+     * 发布数据已加载完成的通知
+     * @param key 锁Key
+     */
+    void publish(String key);
+
+    /**
+     * 开始监听通知，必须在检查缓存之前调用，避免错过在检查缓存与等待之间发布的通知
+     * @param key 锁Key
+     * @return CountDownLatch
+     */
+    CountDownLatch listen(String key);
+
+    /**
+     * 等待通知
+     * @param key 锁Key
+     * @param latch listen() 的返回值
+     * @param timeout 最长等待时间，单位：毫秒
+     * @return 在超时前收到通知返回true，否则返回false
+     * @throws InterruptedException 等待被中断
+     */
+    boolean await(String key, CountDownLatch latch, long timeout) throws InterruptedException;
+}
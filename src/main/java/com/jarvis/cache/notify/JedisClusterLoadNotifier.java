@@ -0,0 +1,33 @@
+package com.jarvis.cache.notify;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * 基于JedisCluster 的通知
+ * @author jiayu.qiu
+ */
+public class JedisClusterLoadNotifier extends AbstractRedisLoadNotifier {
+
+    private final JedisCluster jedisCluster;
+
+    public JedisClusterLoadNotifier(JedisCluster jedisCluster) {
+        this(jedisCluster, DEFAULT_CHANNEL);
+    }
+
+    public JedisClusterLoadNotifier(JedisCluster jedisCluster, String channel) {
+        super(channel);
+        this.jedisCluster=jedisCluster;
+        start();
+    }
+
+    @Override
+    protected void subscribe(JedisPubSub pubSub, String channel) {
+        jedisCluster.subscribe(pubSub, channel);
+    }
+
+    @Override
+    protected void publish(String channel, String message) {
+        jedisCluster.publish(channel, message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.jarvis.cache.notify;
+
+/**
+ * 进程内的通知，适用于单节点部署，也可以在测试中代替Redis Pub/Sub
+ * @author jiayu.qiu
+ */
+public class LocalLoadNotifier extends AbstractLoadNotifier {
+
+    @Override
+    public void publish(String key) {
+        onLoaded(key);
+    }
+}
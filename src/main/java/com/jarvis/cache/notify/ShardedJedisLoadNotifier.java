@@ -0,0 +1,53 @@
+package com.jarvis.cache.notify;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.ShardedJedisPool;
+
+/**
+ * 基于ShardedJedis 的通知，发布与订阅都使用频道名称所在的分片
+ * @author jiayu.qiu
+ */
+public class ShardedJedisLoadNotifier extends AbstractRedisLoadNotifier {
+
+    private final ShardedJedisPool shardedJedisPool;
+
+    public ShardedJedisLoadNotifier(ShardedJedisPool shardedJedisPool) {
+        this(shardedJedisPool, DEFAULT_CHANNEL);
+    }
+
+    public ShardedJedisLoadNotifier(ShardedJedisPool shardedJedisPool, String channel) {
+        super(channel);
+        this.shardedJedisPool=shardedJedisPool;
+        start();
+    }
+
+    @Override
+    protected void subscribe(JedisPubSub pubSub, String channel) {
+        ShardedJedis shardedJedis=null;
+        try {
+            shardedJedis=shardedJedisPool.getResource();
+            Jedis jedis=shardedJedis.getShard(channel);
+            jedis.subscribe(pubSub, channel);
+        } finally {
+            if(null != shardedJedis) {
+                shardedJedis.close();
+            }
+        }
+    }
+
+    @Override
+    protected void publish(String channel, String message) {
+        ShardedJedis shardedJedis=null;
+        try {
+            shardedJedis=shardedJedisPool.getResource();
+            Jedis jedis=shardedJedis.getShard(channel);
+            jedis.publish(channel, message);
+        } finally {
+            if(null != shardedJedis) {
+                shardedJedis.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package com.jarvis.cache.offheap;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jarvis.cache.ICacheManager;
+import com.jarvis.cache.exception.CacheCenterConnectionException;
+import com.jarvis.cache.reflect.MethodMeta;
+import com.jarvis.cache.serializer.ISerializer;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
+
+/**
+ * 堆外内存缓存管理：缓存数据经过序列化后保存在直接内存（DirectByteBuffer）的分块中，堆内只保存索引，缓存大量数据也不会增加GC的压力，可以作为ComboCacheManager 的本地缓存。<br>
+ * 数据按顺序追加写入当前分块，写满后循环使用最早的分块：回收前，把其中最近被访问过且未过期的数据重新写入该分块的开头（最多占用半个分块），其它数据被淘汰。<br>
+ * 直接内存的大小受 -XX:MaxDirectMemorySize 限制，需要大于maxMemory。
+ * @author jiayu.qiu
+ */
+public class OffHeapCacheManager implements ICacheManager {
+
+    private static final Logger logger=LoggerFactory.getLogger(OffHeapCacheManager.class);
+
+    private static final Charset UTF8=Charset.forName("UTF-8");
+
+    /**
+     * 默认分块大小：64M
+     */
+    public static final int DEFAULT_SLAB_SIZE=64 * 1024 * 1024;
+
+    /**
+     * 每条记录的头信息：Key的长度(int) + 缓存数据的长度(int)
+     */
+    private static final int HEADER_SIZE=8;
+
+    private final ISerializer<Object> serializer;
+
+    private final int slabSize;
+
+    private final Slab[] slabs;
+
+    /**
+     * 索引：cacheKey -&gt; Entry 或 ConcurrentHashMap&lt;hfield, Entry&gt;，只在持有writeLock 时修改
+     */
+    private final ConcurrentHashMap<String, Object> index=new ConcurrentHashMap<String, Object>();
+
+    private final ReentrantLock writeLock=new ReentrantLock();
+
+    /**
+     * 当前写入的分块，只在持有writeLock 时访问
+     */
+    private int current=0;
+
+    private final AtomicLong size=new AtomicLong(0);
+
+    private final AtomicLong hitCount=new AtomicLong(0);
+
+    private final AtomicLong missCount=new AtomicLong(0);
+
+    private final AtomicLong evictionCount=new AtomicLong(0);
+
+    /**
+     * @param serializer 序列化工具
+     * @param maxMemory 最多使用的直接内存（字节）
+     */
+    public OffHeapCacheManager(ISerializer<Object> serializer, long maxMemory) {
+        this(serializer, maxMemory, (int)Math.min(DEFAULT_SLAB_SIZE, maxMemory));
+    }
+
+    /**
+     * @param serializer 序列化工具
+     * @param maxMemory 最多使用的直接内存（字节）
+     * @param slabSize 分块大小（字节），单条缓存数据不能超过分块大小；分块在需要时才分配
+     */
+    public OffHeapCacheManager(ISerializer<Object> serializer, long maxMemory, int slabSize) {
+        if(slabSize <= HEADER_SIZE || maxMemory < slabSize) {
+            throw new IllegalArgumentException("slabSize must be greater than " + HEADER_SIZE + " and not greater than maxMemory");
+        }
+        this.serializer=serializer;
+        this.slabSize=slabSize;
+        int cnt=(int)Math.min(Integer.MAX_VALUE, maxMemory / slabSize);
+        this.slabs=new Slab[cnt];
+        for(int i=0; i < cnt; i++) {
+            slabs[i]=new Slab(i);
+        }
+    }
+
+    private static String id(String cacheKey, String hfield) {
+        if(null == hfield) {
+            return cacheKey;
+        }
+        return cacheKey + '\u0000' + hfield;
+    }
+
+    @Override
+    public void setCache(final CacheKeyTO cacheKeyTO, final CacheWrapper<Object> result, final Method method, final Object args[]) throws CacheCenterConnectionException {
+        if(null == cacheKeyTO || null == result || result.getExpire() < 0) {
+            return;
+        }
+        String cacheKey=cacheKeyTO.getCacheKey();
+        if(null == cacheKey || cacheKey.length() == 0) {
+            return;
+        }
+        String hfield=cacheKeyTO.getHfield();
+        if(null == hfield || hfield.length() == 0) {
+            hfield=null;
+        }
+        byte[] value;
+        try {
+            value=serializer.serialize(result);// 在锁外序列化
+        } catch(Exception ex) {
+            logger.error(ex.getMessage(), ex);
+            return;
+        }
+        byte[] key=id(cacheKey, hfield).getBytes(UTF8);
+        long expireTime=result.getExpire() > 0 ? result.getLastLoadTime() + (result.getExpire() + (long)result.getMaxStale()) * 1000L : 0;
+        writeLock.lock();
+        try {
+            if(HEADER_SIZE + key.length + value.length > slabSize) {
+                logger.warn("the size of cache {} is larger than slab size {}", cacheKey, slabSize);
+                removeIndex(cacheKey, hfield, null);
+                return;
+            }
+            if(null != hfield && index.get(cacheKey) instanceof Entry) {
+                String methodName=null == method ? "" : method.getDeclaringClass().getName() + "." + method.getName();
+                logger.error(methodName + "中key为" + cacheKey + "的缓存，已经被占用，请删除缓存再试。");
+                return;
+            }
+            putIndex(cacheKey, hfield, append(key, value, expireTime, false));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void mset(final Method method, final Collection<MSetParam> params) throws CacheCenterConnectionException {
+        if(null == params || params.isEmpty()) {
+            return;
+        }
+        for(MSetParam param: params) {
+            setCache(param.getCacheKey(), param.getResult(), method, null);
+        }
+    }
+
+    @Override
+    public CacheWrapper<Object> get(final CacheKeyTO cacheKeyTO, final Method method, final Object args[]) throws CacheCenterConnectionException {
+        return get(cacheKeyTO, null == method ? null : MethodMeta.get(method).getValueType());
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheWrapper<Object> get(CacheKeyTO cacheKeyTO, Type returnType) {
+        if(null == cacheKeyTO) {
+            return null;
+        }
+        String cacheKey=cacheKeyTO.getCacheKey();
+        if(null == cacheKey || cacheKey.length() == 0) {
+            return null;
+        }
+        String hfield=cacheKeyTO.getHfield();
+        if(null == hfield || hfield.length() == 0) {
+            hfield=null;
+        }
+        Entry entry=getEntry(cacheKey, hfield);
+        byte[] value=null;
+        if(null != entry && !entry.isExpired(System.currentTimeMillis())) {// 过期的数据在回收分块时清除
+            value=slabs[entry.slab].read(entry);
+        }
+        if(null == value) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        entry.accessed=true;
+        try {
+            CacheWrapper<Object> res=(CacheWrapper<Object>)serializer.deserialize(value, returnType);
+            hitCount.incrementAndGet();
+            return res;
+        } catch(Exception ex) {
+            logger.error(ex.getMessage(), ex);
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    @Override
+    public Map<CacheKeyTO, CacheWrapper<Object>> mget(final Method method, final Type returnType, final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == keys || keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<CacheKeyTO, CacheWrapper<Object>> res=new HashMap<CacheKeyTO, CacheWrapper<Object>>(keys.size());
+        for(CacheKeyTO key: keys) {
+            CacheWrapper<Object> value=get(key, returnType);
+            if(null != value) {
+                res.put(key, value);
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public void delete(final CacheKeyTO cacheKeyTO) throws CacheCenterConnectionException {
+        if(null == cacheKeyTO) {
+            return;
+        }
+        String cacheKey=cacheKeyTO.getCacheKey();
+        if(null == cacheKey || cacheKey.length() == 0) {
+            return;
+        }
+        String hfield=cacheKeyTO.getHfield();
+        if(null == hfield || hfield.length() == 0) {
+            hfield=null;
+        }
+        writeLock.lock();
+        try {
+            removeIndex(cacheKey, hfield, null);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void mdelete(final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == keys || keys.isEmpty()) {
+            return;
+        }
+        for(CacheKeyTO cacheKeyTO: keys) {
+            delete(cacheKeyTO);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry getEntry(String cacheKey, String hfield) {
+        Object obj=index.get(cacheKey);
+        if(null == hfield) {
+            return obj instanceof Entry ? (Entry)obj : null;
+        }
+        if(obj instanceof ConcurrentHashMap) {
+            return ((ConcurrentHashMap<String, Entry>)obj).get(hfield);
+        }
+        return null;
+    }
+
+    /**
+     * 需要持有writeLock
+     */
+    @SuppressWarnings("unchecked")
+    private void putIndex(String cacheKey, String hfield, Entry entry) {
+        Object old;
+        if(null == hfield) {
+            old=index.put(cacheKey, entry);
+        } else {
+            ConcurrentHashMap<String, Entry> hash=(ConcurrentHashMap<String, Entry>)index.get(cacheKey);
+            if(null == hash) {
+                hash=new ConcurrentHashMap<String, Entry>(16);
+                index.put(cacheKey, hash);
+            }
+            old=hash.put(hfield, entry);
+        }
+        if(null == old) {
+            size.incrementAndGet();
+        } else if(old instanceof ConcurrentHashMap) {
+            size.addAndGet(1 - ((ConcurrentHashMap<String, Entry>)old).size());
+        }
+    }
+
+    /**
+     * 删除索引，需要持有writeLock
+     * @param expected 不为null时，只有当前索引仍为expected 时才删除
+     * @return 是否删除成功
+     */
+    @SuppressWarnings("unchecked")
+    private boolean removeIndex(String cacheKey, String hfield, Entry expected) {
+        if(null == hfield) {
+            Object old=null == expected ? index.remove(cacheKey) : (index.remove(cacheKey, expected) ? expected : null);
+            if(null == old) {
+                return false;
+            }
+            size.addAndGet(old instanceof ConcurrentHashMap ? -((ConcurrentHashMap<String, Entry>)old).size() : -1);
+            return true;
+        }
+        Object obj=index.get(cacheKey);
+        if(!(obj instanceof ConcurrentHashMap)) {
+            return false;
+        }
+        ConcurrentHashMap<String, Entry> hash=(ConcurrentHashMap<String, Entry>)obj;
+        boolean removed=null == expected ? null != hash.remove(hfield) : hash.remove(hfield, expected);
+        if(removed) {
+            size.decrementAndGet();
+            if(hash.isEmpty()) {
+                index.remove(cacheKey, hash);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 把数据写入当前分块，当前分块写满后回收下一个分块，需要持有writeLock
+     */
+    private Entry append(byte[] key, byte[] value, long expireTime, boolean accessed) {
+        int length=HEADER_SIZE + key.length + value.length;
+        Slab slab=slabs[current];
+        if(null == slab.buffer || slab.position + length > slabSize) {
+            if(null != slab.buffer) {
+                current=(current + 1) % slabs.length;
+                slab=slabs[current];
+            }
+            recycle(slab, length);
+        }
+        return slab.write(key, value, expireTime, accessed);
+    }
+
+    /**
+     * 回收分块：保留最近被访问过且未过期的数据，其它数据被淘汰，需要持有writeLock
+     * @param required 回收后需要写入的数据长度，保留的数据不会占用这部分空间
+     */
+    private void recycle(Slab slab, int required) {
+        if(null == slab.buffer) {
+            slab.buffer=ByteBuffer.allocateDirect(slabSize);
+            return;
+        }
+        long now=System.currentTimeMillis();
+        List<Object[]> kept=new ArrayList<Object[]>();
+        int keptSize=0;
+        int maxKeptSize=Math.min(slabSize / 2, slabSize - required);// 新数据较大时，多淘汰一些
+        ByteBuffer buffer=slab.buffer.duplicate();
+        int offset=0;
+        while(offset < slab.position) {
+            int keyLength=buffer.getInt(offset);
+            int valueLength=buffer.getInt(offset + 4);
+            byte[] key=new byte[keyLength];
+            buffer.position(offset + HEADER_SIZE);
+            buffer.get(key);
+            String id=new String(key, UTF8);
+            int split=id.indexOf('\u0000');
+            String cacheKey=split < 0 ? id : id.substring(0, split);
+            String hfield=split < 0 ? null : id.substring(split + 1);
+            Entry entry=getEntry(cacheKey, hfield);
+            int length=HEADER_SIZE + keyLength + valueLength;
+            if(null != entry && entry.slab == slab.id && entry.generation == slab.generation && entry.offset == offset + HEADER_SIZE + keyLength) {// 仍然有效的数据
+                if(!entry.isExpired(now) && entry.accessed && keptSize + length <= maxKeptSize) {// 第二次机会
+                    byte[] value=new byte[valueLength];
+                    buffer.get(value);
+                    kept.add(new Object[]{cacheKey, hfield, key, value, entry});
+                    keptSize+=length;
+                } else if(removeIndex(cacheKey, hfield, entry) && !entry.isExpired(now)) {
+                    evictionCount.incrementAndGet();
+                }
+            }
+            offset+=length;
+        }
+        slab.reset();
+        for(Object[] item: kept) {
+            Entry old=(Entry)item[4];
+            Entry entry=slab.write((byte[])item[2], (byte[])item[3], old.expireTime, false);
+            String cacheKey=(String)item[0];
+            String hfield=(String)item[1];
+            if(removeIndex(cacheKey, hfield, old)) {
+                putIndex(cacheKey, hfield, entry);
+            }
+        }
+    }
+
+    /**
+     * 缓存数量
+     * @return long
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * 已分配的直接内存（字节）
+     * @return long
+     */
+    public long getAllocatedMemory() {
+        long res=0;
+        for(Slab slab: slabs) {
+            if(null != slab.buffer) {
+                res+=slabSize;
+            }
+        }
+        return res;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 索引项，记录缓存数据所在的位置
+     */
+    private static final class Entry {
+
+        private final int slab;
+
+        private final long generation;
+
+        private final int offset;
+
+        private final int length;
+
+        private final long expireTime;
+
+        /**
+         * 上次回收分块后是否被访问过
+         */
+        private volatile boolean accessed;
+
+        private Entry(int slab, long generation, int offset, int length, long expireTime, boolean accessed) {
+            this.slab=slab;
+            this.generation=generation;
+            this.offset=offset;
+            this.length=length;
+            this.expireTime=expireTime;
+            this.accessed=accessed;
+        }
+
+        private boolean isExpired(long now) {
+            return expireTime > 0 && expireTime < now;
+        }
+    }
+
+    /**
+     * 直接内存分块，回收时generation 加1，使之前的索引项失效
+     */
+    private static final class Slab {
+
+        private final int id;
+
+        private final ReentrantReadWriteLock lock=new ReentrantReadWriteLock();
+
+        private volatile ByteBuffer buffer;
+
+        private volatile long generation=0;
+
+        /**
+         * 写入位置，只在持有writeLock 时访问
+         */
+        private int position=0;
+
+        private Slab(int id) {
+            this.id=id;
+        }
+
+        private Entry write(byte[] key, byte[] value, long expireTime, boolean accessed) {
+            ByteBuffer tmp=buffer.duplicate();
+            tmp.position(position);
+            tmp.putInt(key.length);
+            tmp.putInt(value.length);
+            tmp.put(key);
+            tmp.put(value);
+            Entry entry=new Entry(id, generation, position + HEADER_SIZE + key.length, value.length, expireTime, accessed);
+            position=tmp.position();
+            return entry;
+        }
+
+        /**
+         * @return 分块已被回收时返回null
+         */
+        private byte[] read(Entry entry) {
+            lock.readLock().lock();
+            try {
+                if(entry.generation != generation) {
+                    return null;
+                }
+                byte[] value=new byte[entry.length];
+                ByteBuffer tmp=buffer.duplicate();
+                tmp.position(entry.offset);
+                tmp.get(value);
+                return value;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void reset() {
+            lock.writeLock().lock();
+            try {
+                generation++;
+                position=0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
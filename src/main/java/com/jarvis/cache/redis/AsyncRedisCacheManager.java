@@ -0,0 +1,349 @@
+package com.jarvis.cache.redis;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jarvis.cache.CacheUtil;
+import com.jarvis.cache.IAsyncCacheManager;
+import com.jarvis.cache.ICacheManager;
+import com.jarvis.cache.exception.CacheCenterConnectionException;
+import com.jarvis.cache.reflect.MethodMeta;
+import com.jarvis.cache.serializer.ISerializer;
+import com.jarvis.cache.serializer.StringSerializer;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
+
+/**
+ * 基于非阻塞RedisConnection 的缓存管理：每个Redis 节点只使用一个连接，所有请求自动pipeline，按缓存Key 的hash 值分片。<br>
+ * 同时实现了ICacheManager，同步方法会等待异步操作完成（最长等待timeout 毫秒）；批量操作先发送所有请求再统一等待结果，所有结果共用一个超时时间。
+ * @author jiayu.qiu
+ */
+public class AsyncRedisCacheManager implements ICacheManager, IAsyncCacheManager {
+
+    private static final Logger logger=LoggerFactory.getLogger(AsyncRedisCacheManager.class);
+
+    private static final StringSerializer KEY_SERIALIZER=new StringSerializer();
+
+    private final ISerializer<Object> serializer;
+
+    private final List<RedisConnection> connections;
+
+    /**
+     * Hash的缓存时长：等于0时永久缓存；大于0时，主要是为了防止一些已经不用的缓存占用内存;hashExpire小于0时，则使用@Cache中设置的expire值（默认值为-1）。
+     */
+    private int hashExpire=-1;
+
+    /**
+     * 同步方法等待结果的最长时间（单位：毫秒）
+     */
+    private int timeout=3000;
+
+    public AsyncRedisCacheManager(ISerializer<Object> serializer, List<RedisConnection> connections) {
+        if(null == connections || connections.isEmpty()) {
+            throw new IllegalArgumentException("connections is empty");
+        }
+        this.serializer=serializer;
+        this.connections=new ArrayList<RedisConnection>(connections);
+    }
+
+    private RedisConnection getConnection(String cacheKey) {
+        if(connections.size() == 1) {
+            return connections.get(0);
+        }
+        int hash=cacheKey.hashCode();
+        hash^=(hash >>> 16);
+        return connections.get((hash & Integer.MAX_VALUE) % connections.size());
+    }
+
+    @Override
+    public CompletableFuture<Void> setAsync(final CacheKeyTO cacheKeyTO, final CacheWrapper<Object> result, final Method method, final Object[] args) {
+        if(null == cacheKeyTO) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String cacheKey=cacheKeyTO.getCacheKey();
+        if(null == cacheKey || cacheKey.length() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            RedisConnection connection=getConnection(cacheKey);
+            byte[] key=cacheKeyTO.getKeyBytes();
+            String hfield=cacheKeyTO.getHfield();
+            CompletableFuture<Object> future=null;
+            if(null == hfield || hfield.length() == 0) {
+                int expire=CacheUtil.getPhysicalExpire(result);
+                if(expire == 0) {
+                    future=connection.send("SET", key, serializer.serialize(result));
+                } else if(expire > 0) {
+                    future=connection.send("SETEX", key, toBytes(expire), serializer.serialize(result));
+                }
+            } else {
+                int hExpire=hashExpire < 0 ? CacheUtil.getPhysicalExpire(result) : hashExpire;
+                if(hExpire == 0) {
+                    future=connection.send("HSET", key, cacheKeyTO.getHfieldBytes(), serializer.serialize(result));
+                } else if(hExpire > 0) {// 在同一个连接中按顺序执行
+                    CompletableFuture<Object> hset=connection.send("HSET", key, cacheKeyTO.getHfieldBytes(), serializer.serialize(result));
+                    return CompletableFuture.allOf(hset, connection.send("EXPIRE", key, toBytes(hExpire)));
+                }
+            }
+            return null == future ? CompletableFuture.<Void> completedFuture(null) : toVoid(future);
+        } catch(Exception ex) {
+            return failed(ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public CompletableFuture<CacheWrapper<Object>> getAsync(final CacheKeyTO cacheKeyTO, final Method method, final Object[] args) {
+        if(null == cacheKeyTO) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String cacheKey=cacheKeyTO.getCacheKey();
+        if(null == cacheKey || cacheKey.length() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final Type returnType=null == method ? null : MethodMeta.get(method).getValueType();
+        try {
+            return get(getConnection(cacheKey), cacheKeyTO).thenApply(new Function<Object, CacheWrapper<Object>>() {
+
+                @Override
+                public CacheWrapper<Object> apply(Object value) {
+                    if(!(value instanceof byte[])) {
+                        return null;
+                    }
+                    try {
+                        return (CacheWrapper<Object>)serializer.deserialize((byte[])value, returnType);
+                    } catch(Exception ex) {
+                        logger.error(ex.getMessage(), ex);
+                        return null;
+                    }
+                }
+            });
+        } catch(Exception ex) {
+            return failed(ex);
+        }
+    }
+
+    private CompletableFuture<Object> get(RedisConnection connection, CacheKeyTO cacheKeyTO) throws Exception {
+        byte[] key=cacheKeyTO.getKeyBytes();
+        String hfield=cacheKeyTO.getHfield();
+        if(null == hfield || hfield.length() == 0) {
+            return connection.send("GET", key);
+        }
+        return connection.send("HGET", key, cacheKeyTO.getHfieldBytes());
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(CacheKeyTO cacheKeyTO) {
+        if(null == cacheKeyTO) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String cacheKey=cacheKeyTO.getCacheKey();
+        if(null == cacheKey || cacheKey.length() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        logger.debug("delete cache:" + cacheKey);
+        try {
+            RedisConnection connection=getConnection(cacheKey);
+            byte[] key=cacheKeyTO.getKeyBytes();
+            String hfield=cacheKeyTO.getHfield();
+            if(null == hfield || hfield.length() == 0) {
+                return toVoid(connection.send("DEL", key));
+            }
+            return toVoid(connection.send("HDEL", key, cacheKeyTO.getHfieldBytes()));
+        } catch(Exception ex) {
+            return failed(ex);
+        }
+    }
+
+    @Override
+    public void setCache(CacheKeyTO cacheKey, CacheWrapper<Object> result, Method method, Object[] args) throws CacheCenterConnectionException {
+        await(setAsync(cacheKey, result, method, args));
+    }
+
+    @Override
+    public void mset(Method method, Collection<MSetParam> params) throws CacheCenterConnectionException {
+        if(null == params || params.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Void>> futures=new ArrayList<CompletableFuture<Void>>(params.size());
+        for(MSetParam param: params) {// 先发送所有请求，自动pipeline
+            futures.add(setAsync(param.getCacheKey(), param.getResult(), method, null));
+        }
+        long deadline=deadline();
+        for(CompletableFuture<Void> future: futures) {
+            await(future, deadline);
+        }
+    }
+
+    @Override
+    public CacheWrapper<Object> get(CacheKeyTO key, Method method, Object[] args) throws CacheCenterConnectionException {
+        return await(getAsync(key, method, args));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<CacheKeyTO, CacheWrapper<Object>> mget(Method method, Type returnType, Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == keys || keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<CacheKeyTO> list=new ArrayList<CacheKeyTO>(keys.size());
+        List<CompletableFuture<Object>> futures=new ArrayList<CompletableFuture<Object>>(keys.size());
+        for(CacheKeyTO cacheKeyTO: keys) {
+            String cacheKey=cacheKeyTO.getCacheKey();
+            if(null == cacheKey || cacheKey.length() == 0) {
+                continue;
+            }
+            try {
+                futures.add(get(getConnection(cacheKey), cacheKeyTO));
+                list.add(cacheKeyTO);
+            } catch(Exception ex) {
+                logger.error(ex.getMessage(), ex);
+            }
+        }
+        Map<CacheKeyTO, CacheWrapper<Object>> res=new HashMap<CacheKeyTO, CacheWrapper<Object>>(list.size());
+        long deadline=deadline();
+        for(int i=0; i < list.size(); i++) {
+            Object value=await(futures.get(i), deadline);
+            if(!(value instanceof byte[])) {
+                continue;
+            }
+            try {
+                CacheWrapper<Object> cacheWrapper=(CacheWrapper<Object>)serializer.deserialize((byte[])value, returnType);
+                if(null != cacheWrapper) {
+                    res.put(list.get(i), cacheWrapper);
+                }
+            } catch(Exception ex) {
+                logger.error(ex.getMessage(), ex);
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public void delete(CacheKeyTO key) throws CacheCenterConnectionException {
+        await(deleteAsync(key));
+    }
+
+    @Override
+    public void mdelete(Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == keys || keys.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Void>> futures=new ArrayList<CompletableFuture<Void>>(keys.size());
+        for(CacheKeyTO key: keys) {
+            futures.add(deleteAsync(key));
+        }
+        long deadline=deadline();
+        for(CompletableFuture<Void> future: futures) {
+            await(future, deadline);
+        }
+    }
+
+    /**
+     * 等待异步操作完成，出现异常时记录日志并返回null，与其它ICacheManager 的处理方式保持一致
+     * @param future CompletableFuture
+     * @return 结果
+     */
+    private <T> T await(CompletableFuture<T> future) {
+        return await(future, deadline());
+    }
+
+    /**
+     * @return 从现在开始等待timeout 毫秒的截止时间（System.nanoTime()）
+     */
+    private long deadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * 等待异步操作完成，批量操作的所有结果共用一个截止时间，最长等待timeout 毫秒
+     * @param future CompletableFuture
+     * @param deadline 截止时间（System.nanoTime()）
+     * @return 结果
+     */
+    private <T> T await(CompletableFuture<T> future, long deadline) {
+        try {
+            return future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch(Exception ex) {
+            logger.error(ex.getMessage(), ex);
+        }
+        return null;
+    }
+
+    private static CompletableFuture<Void> toVoid(CompletableFuture<Object> future) {
+        final CompletableFuture<Void> res=new CompletableFuture<Void>();
+        future.whenComplete(new BiConsumer<Object, Throwable>() {
+
+            @Override
+            public void accept(Object value, Throwable error) {
+                if(null != error) {
+                    res.completeExceptionally(error);
+                } else {
+                    res.complete(null);
+                }
+            }
+        });
+        return res;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> res=new CompletableFuture<T>();
+        res.completeExceptionally(error);
+        return res;
+    }
+
+    private static byte[] toBytes(int value) throws Exception {
+        return KEY_SERIALIZER.serialize(String.valueOf(value));
+    }
+
+    /**
+     * 关闭所有连接
+     */
+    public void destroy() {
+        for(RedisConnection connection: connections) {
+            connection.close();
+        }
+    }
+
+    public List<RedisConnection> getConnections() {
+        return connections;
+    }
+
+    public int getHashExpire() {
+        return hashExpire;
+    }
+
+    public void setHashExpire(int hashExpire) {
+        if(hashExpire < 0) {
+            return;
+        }
+        this.hashExpire=hashExpire;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        if(timeout > 0) {
+            this.timeout=timeout;
+        }
+    }
+}
@@ -4,17 +4,26 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import com.jarvis.cache.CacheUtil;
 import com.jarvis.cache.ICacheManager;
 import com.jarvis.cache.exception.CacheCenterConnectionException;
+import com.jarvis.cache.reflect.MethodMeta;
 import com.jarvis.cache.serializer.ISerializer;
 import com.jarvis.cache.serializer.StringSerializer;
 import com.jarvis.cache.to.CacheKeyTO;
 import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
 
 import lombok.extern.slf4j.Slf4j;
 import redis.clients.jedis.JedisCluster;
+import redis.clients.util.JedisClusterCRC16;
 
 /**
  * Redis缓存管理
@@ -53,16 +62,16 @@ public class JedisClusterCacheManager implements ICacheManager {
             return;
         }
         try {
-            int expire=result.getExpire();
+            int expire=CacheUtil.getPhysicalExpire(result);
             String hfield=cacheKeyTO.getHfield();
             if(null == hfield || hfield.length() == 0) {
                 if(expire == 0) {
-                    jedisCluster.set(KEY_SERIALIZER.serialize(cacheKey), serializer.serialize(result));
+                    jedisCluster.set(cacheKeyTO.getKeyBytes(), serializer.serialize(result));
                 } else if(expire > 0) {
-                    jedisCluster.setex(KEY_SERIALIZER.serialize(cacheKey), expire, serializer.serialize(result));
+                    jedisCluster.setex(cacheKeyTO.getKeyBytes(), expire, serializer.serialize(result));
                 }
             } else {
-                hashSet(cacheKey, hfield, result);
+                hashSet(cacheKeyTO, result);
             }
         } catch(Exception ex) {
             log.error(ex.getMessage(), ex);
@@ -81,13 +90,13 @@ public class JedisClusterCacheManager implements ICacheManager {
         }
     }
 
-    private void hashSet(String cacheKey, String hfield, CacheWrapper<Object> result) throws Exception {
-        byte[] key=KEY_SERIALIZER.serialize(cacheKey);
-        byte[] field=KEY_SERIALIZER.serialize(hfield);
+    private void hashSet(CacheKeyTO cacheKeyTO, CacheWrapper<Object> result) throws Exception {
+        byte[] key=cacheKeyTO.getKeyBytes();
+        byte[] field=cacheKeyTO.getHfieldBytes();
         byte[] val=serializer.serialize(result);
         int hExpire;
         if(hashExpire < 0) {
-            hExpire=result.getExpire();
+            hExpire=CacheUtil.getPhysicalExpire(result);
         } else {
             hExpire=hashExpire;
         }
@@ -125,13 +134,13 @@ public class JedisClusterCacheManager implements ICacheManager {
             byte bytes[]=null;
             String hfield=cacheKeyTO.getHfield();
             if(null == hfield || hfield.length() == 0) {
-                bytes=jedisCluster.get(KEY_SERIALIZER.serialize(cacheKey));
+                bytes=jedisCluster.get(cacheKeyTO.getKeyBytes());
             } else {
-                bytes=jedisCluster.hget(KEY_SERIALIZER.serialize(cacheKey), KEY_SERIALIZER.serialize(hfield));
+                bytes=jedisCluster.hget(cacheKeyTO.getKeyBytes(), cacheKeyTO.getHfieldBytes());
             }
             Type returnType=null;
             if(null != method) {
-                returnType=method.getGenericReturnType();
+                returnType=MethodMeta.get(method).getValueType();
             }
             res=(CacheWrapper<Object>)serializer.deserialize(bytes, returnType);
         } catch(Exception ex) {
@@ -141,6 +150,151 @@ public class JedisClusterCacheManager implements ICacheManager {
         return res;
     }
 
+    private static byte[] msetScript;
+
+    static {
+        try {
+            String tmpScript="for i=1, #KEYS do\n local expire=tonumber(ARGV[i*2]);\n if expire > 0 then\n redis.call('SETEX', KEYS[i], expire, ARGV[i*2-1]);\n else\n redis.call('SET', KEYS[i], ARGV[i*2-1]);\n end\nend";
+            msetScript=tmpScript.getBytes("UTF-8");
+        } catch(UnsupportedEncodingException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void mset(final Method method, final Collection<MSetParam> params) throws CacheCenterConnectionException {
+        if(null == jedisCluster || null == params || params.isEmpty()) {
+            return;
+        }
+        // 同一个slot中的数据，通过一次脚本调用写入
+        Map<Integer, List<MSetParam>> slots=new HashMap<Integer, List<MSetParam>>();
+        for(MSetParam param: params) {
+            CacheKeyTO cacheKeyTO=param.getCacheKey();
+            String cacheKey=cacheKeyTO.getCacheKey();
+            if(null == cacheKey || cacheKey.length() == 0) {
+                continue;
+            }
+            String hfield=cacheKeyTO.getHfield();
+            if(null != hfield && hfield.length() > 0) {
+                try {
+                    hashSet(cacheKeyTO, param.getResult());
+                } catch(Exception ex) {
+                    log.error(ex.getMessage(), ex);
+                }
+                continue;
+            }
+            if(CacheUtil.getPhysicalExpire(param.getResult()) < 0) {// 与setCache 一致：小于0时不缓存
+                continue;
+            }
+            Integer slot=JedisClusterCRC16.getSlot(cacheKey);
+            List<MSetParam> list=slots.get(slot);
+            if(null == list) {
+                list=new ArrayList<MSetParam>();
+                slots.put(slot, list);
+            }
+            list.add(param);
+        }
+        for(List<MSetParam> list: slots.values()) {
+            try {
+                if(list.size() == 1) {
+                    MSetParam param=list.get(0);
+                    setCache(param.getCacheKey(), param.getResult(), method, null);
+                    continue;
+                }
+                List<byte[]> keys=new ArrayList<byte[]>(list.size());
+                List<byte[]> args=new ArrayList<byte[]>(list.size() * 2);
+                for(MSetParam param: list) {
+                    keys.add(param.getCacheKey().getKeyBytes());
+                    args.add(serializer.serialize(param.getResult()));
+                    args.add(KEY_SERIALIZER.serialize(String.valueOf(CacheUtil.getPhysicalExpire(param.getResult()))));
+                }
+                jedisCluster.eval(msetScript, keys, args);
+            } catch(Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<CacheKeyTO, CacheWrapper<Object>> mget(final Method method, final Type returnType, final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == jedisCluster || null == keys || keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<CacheKeyTO, CacheWrapper<Object>> res=new HashMap<CacheKeyTO, CacheWrapper<Object>>(keys.size());
+        Map<Integer, List<CacheKeyTO>> slots=new HashMap<Integer, List<CacheKeyTO>>();
+        Map<String, List<CacheKeyTO>> hashes=new HashMap<String, List<CacheKeyTO>>();
+        groupBySlot(keys, slots, hashes);
+        for(List<CacheKeyTO> list: slots.values()) {// 同一个slot中的数据，使用 MGET 获取
+            try {
+                byte[][] tmpKeys=new byte[list.size()][];
+                for(int i=0; i < list.size(); i++) {
+                    tmpKeys[i]=list.get(i).getKeyBytes();
+                }
+                List<byte[]> values=jedisCluster.mget(tmpKeys);
+                for(int i=0; i < list.size(); i++) {
+                    CacheWrapper<Object> value=(CacheWrapper<Object>)serializer.deserialize(values.get(i), returnType);
+                    if(null != value) {
+                        res.put(list.get(i), value);
+                    }
+                }
+            } catch(Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+        }
+        for(Map.Entry<String, List<CacheKeyTO>> entry: hashes.entrySet()) {// 同一个哈希表中的数据，使用 HMGET 获取
+            List<CacheKeyTO> list=entry.getValue();
+            try {
+                byte[][] fields=new byte[list.size()][];
+                for(int i=0; i < list.size(); i++) {
+                    fields[i]=list.get(i).getHfieldBytes();
+                }
+                List<byte[]> values=jedisCluster.hmget(list.get(0).getKeyBytes(), fields);
+                for(int i=0; i < list.size(); i++) {
+                    CacheWrapper<Object> value=(CacheWrapper<Object>)serializer.deserialize(values.get(i), returnType);
+                    if(null != value) {
+                        res.put(list.get(i), value);
+                    }
+                }
+            } catch(Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 对缓存Key进行分组：普通Key按slot分组；哈希表中的字段按哈希表分组
+     * @param keys 缓存Key
+     * @param slots slot -&gt; 缓存Key
+     * @param hashes 哈希表 -&gt; 缓存Key
+     */
+    private void groupBySlot(Collection<CacheKeyTO> keys, Map<Integer, List<CacheKeyTO>> slots, Map<String, List<CacheKeyTO>> hashes) {
+        for(CacheKeyTO cacheKeyTO: keys) {
+            String cacheKey=cacheKeyTO.getCacheKey();
+            if(null == cacheKey || cacheKey.length() == 0) {
+                continue;
+            }
+            String hfield=cacheKeyTO.getHfield();
+            List<CacheKeyTO> list;
+            if(null == hfield || hfield.length() == 0) {
+                Integer slot=JedisClusterCRC16.getSlot(cacheKey);
+                list=slots.get(slot);
+                if(null == list) {
+                    list=new ArrayList<CacheKeyTO>();
+                    slots.put(slot, list);
+                }
+            } else {
+                list=hashes.get(cacheKey);
+                if(null == list) {
+                    list=new ArrayList<CacheKeyTO>();
+                    hashes.put(cacheKey, list);
+                }
+            }
+            list.add(cacheKeyTO);
+        }
+    }
+
     /**
      * 根据缓存Key删除缓存
      * @param cacheKeyTO 缓存Key
@@ -158,9 +312,9 @@ public class JedisClusterCacheManager implements ICacheManager {
         try {
             String hfield=cacheKeyTO.getHfield();
             if(null == hfield || hfield.length() == 0) {
-                jedisCluster.del(KEY_SERIALIZER.serialize(cacheKey));
+                jedisCluster.del(cacheKeyTO.getKeyBytes());
             } else {
-                jedisCluster.hdel(KEY_SERIALIZER.serialize(cacheKey), KEY_SERIALIZER.serialize(hfield));
+                jedisCluster.hdel(cacheKeyTO.getKeyBytes(), cacheKeyTO.getHfieldBytes());
             }
         } catch(Exception ex) {
             log.error(ex.getMessage(), ex);
@@ -168,6 +322,39 @@ public class JedisClusterCacheManager implements ICacheManager {
         }
     }
 
+    @Override
+    public void mdelete(final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == jedisCluster || null == keys || keys.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<CacheKeyTO>> slots=new HashMap<Integer, List<CacheKeyTO>>();
+        Map<String, List<CacheKeyTO>> hashes=new HashMap<String, List<CacheKeyTO>>();
+        groupBySlot(keys, slots, hashes);
+        for(List<CacheKeyTO> list: slots.values()) {
+            try {
+                byte[][] tmpKeys=new byte[list.size()][];
+                for(int i=0; i < list.size(); i++) {
+                    tmpKeys[i]=list.get(i).getKeyBytes();
+                }
+                jedisCluster.del(tmpKeys);
+            } catch(Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+        }
+        for(Map.Entry<String, List<CacheKeyTO>> entry: hashes.entrySet()) {
+            List<CacheKeyTO> list=entry.getValue();
+            try {
+                byte[][] fields=new byte[list.size()][];
+                for(int i=0; i < list.size(); i++) {
+                    fields[i]=list.get(i).getHfieldBytes();
+                }
+                jedisCluster.hdel(list.get(0).getKeyBytes(), fields);
+            } catch(Exception ex) {
+                log.error(ex.getMessage(), ex);
+            }
+        }
+    }
+
     public JedisCluster getJedisCluster() {
         return jedisCluster;
     }
@@ -0,0 +1,484 @@
+package com.jarvis.cache.redis;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 非阻塞的Redis 连接：一个节点只使用一个连接，由一个IO线程负责读写，所有请求共享此连接（多路复用）。<br>
+ * 请求按发送顺序写入连接（自动pipeline），Redis 按相同的顺序返回结果，所以按顺序完成对应的CompletableFuture；
+ * 结果在IO线程中完成，不要在回调中执行阻塞操作。连接断开时，所有未完成的请求以异常结束，下一次请求时重新连接。
+ * @author jiayu.qiu
+ */
+public class RedisConnection {
+
+    private static final Logger logger=LoggerFactory.getLogger(RedisConnection.class);
+
+    private static final Charset UTF8=Charset.forName("UTF-8");
+
+    private static final Object INCOMPLETE=new Object();
+
+    private final String host;
+
+    private final int port;
+
+    private final int connectTimeout;
+
+    private final Object lock=new Object();
+
+    /**
+     * 等待返回结果的请求，与发送顺序一致
+     */
+    private final ArrayDeque<CompletableFuture<Object>> pending=new ArrayDeque<CompletableFuture<Object>>();
+
+    /**
+     * 等待写入连接的请求
+     */
+    private final ArrayDeque<ByteBuffer> writeQueue=new ArrayDeque<ByteBuffer>();
+
+    /**
+     * 是否已经唤醒IO线程，每次连接使用新的实例，避免断开前遗留的状态导致新连接的IO线程不被唤醒
+     */
+    private volatile AtomicBoolean wakeup;
+
+    private volatile SocketChannel channel;
+
+    private volatile Selector selector;
+
+    private volatile boolean running=true;
+
+    public RedisConnection(String host, int port) {
+        this(host, port, 3000);
+    }
+
+    /**
+     * @param host Redis 地址
+     * @param port Redis 端口
+     * @param connectTimeout 连接超时时间（单位：毫秒）
+     */
+    public RedisConnection(String host, int port, int connectTimeout) {
+        this.host=host;
+        this.port=port;
+        this.connectTimeout=connectTimeout;
+    }
+
+    /**
+     * 建立连接，并启动IO线程；已经连接时直接返回
+     * @throws IOException 连接失败
+     */
+    public synchronized void connect() throws IOException {
+        if(null != channel) {
+            return;
+        }
+        if(!running) {
+            throw new IOException("redis connection " + host + ":" + port + " is closed");
+        }
+        final SocketChannel ch=SocketChannel.open();
+        final Selector sel;
+        final SelectionKey key;
+        try {
+            ch.socket().setTcpNoDelay(true);
+            ch.socket().setKeepAlive(true);
+            ch.socket().connect(new InetSocketAddress(host, port), connectTimeout);
+            ch.configureBlocking(false);
+            sel=Selector.open();
+            key=ch.register(sel, SelectionKey.OP_READ);
+        } catch(IOException e) {
+            ch.close();
+            throw e;
+        }
+        final AtomicBoolean wk=new AtomicBoolean(false);
+        synchronized(lock) {
+            wakeup=wk;
+            selector=sel;
+            channel=ch;
+        }
+        Thread thread=new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                ioLoop(ch, sel, key, wk);
+            }
+        }, "autoload-cache-RedisConnection-" + host + ":" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 发送命令
+     * @param args 命令及参数
+     * @return 返回结果：简单字符串为String，整数为Long，字符串为byte[]，数组为List，不存在时为null
+     */
+    public CompletableFuture<Object> send(byte[]... args) {
+        CompletableFuture<Object> future=new CompletableFuture<Object>();
+        if(null == channel) {
+            try {
+                connect();
+            } catch(IOException e) {
+                future.completeExceptionally(e);
+                return future;
+            }
+        }
+        ByteBuffer frame=encode(args);
+        Selector sel;
+        AtomicBoolean wk;
+        synchronized(lock) {
+            sel=selector;
+            wk=wakeup;
+            if(null == channel) {
+                future.completeExceptionally(new IOException("redis connection " + host + ":" + port + " is broken"));
+                return future;
+            }
+            pending.add(future);
+            writeQueue.add(frame);
+        }
+        if(wk.compareAndSet(false, true)) {// 多个请求只需要唤醒一次IO线程
+            sel.wakeup();
+        }
+        return future;
+    }
+
+    public CompletableFuture<Object> send(String command, byte[]... args) {
+        byte[][] tmp=new byte[args.length + 1][];
+        tmp[0]=command.getBytes(UTF8);
+        System.arraycopy(args, 0, tmp, 1, args.length);
+        return send(tmp);
+    }
+
+    private static ByteBuffer encode(byte[][] args) {
+        int size=1 + stringSize(args.length) + 2;
+        for(byte[] arg: args) {
+            size+=1 + stringSize(arg.length) + 2 + arg.length + 2;
+        }
+        ByteBuffer buf=ByteBuffer.allocate(size);
+        buf.put((byte)'*').put(String.valueOf(args.length).getBytes(UTF8)).put((byte)'\r').put((byte)'\n');
+        for(byte[] arg: args) {
+            buf.put((byte)'$').put(String.valueOf(arg.length).getBytes(UTF8)).put((byte)'\r').put((byte)'\n');
+            buf.put(arg).put((byte)'\r').put((byte)'\n');
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static int stringSize(int x) {
+        return String.valueOf(x).length();
+    }
+
+    private void ioLoop(SocketChannel ch, Selector sel, SelectionKey key, AtomicBoolean wk) {
+        ByteBuffer readBuffer=ByteBuffer.allocate(64 * 1024);
+        ReplyParser parser=new ReplyParser();
+        ArrayDeque<ByteBuffer> out=new ArrayDeque<ByteBuffer>();
+        Throwable error=null;
+        try {
+            while(running && ch == channel) {
+                sel.select();
+                wk.set(false);
+                synchronized(lock) {
+                    out.addAll(writeQueue);
+                    writeQueue.clear();
+                }
+                while(!out.isEmpty()) {// 一次写入所有请求
+                    ch.write(out.toArray(new ByteBuffer[out.size()]));
+                    while(!out.isEmpty() && !out.peek().hasRemaining()) {
+                        out.poll();
+                    }
+                    if(!out.isEmpty()) {// 发送缓冲区已满，等待可写
+                        break;
+                    }
+                }
+                key.interestOps(out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                if(key.isReadable()) {
+                    int n;
+                    while((n=ch.read(readBuffer)) > 0) {
+                        readBuffer.flip();
+                        parser.feed(readBuffer);
+                        readBuffer.clear();
+                        Object reply;
+                        while(INCOMPLETE != (reply=parser.next())) {
+                            complete(reply);
+                        }
+                    }
+                    if(n < 0) {
+                        throw new EOFException("connection closed by redis server " + host + ":" + port);
+                    }
+                }
+                sel.selectedKeys().clear();
+            }
+        } catch(Throwable e) {
+            error=e;
+            if(running) {
+                logger.error(e.getMessage(), e);
+            }
+        } finally {
+            close(ch, sel, null == error ? new IOException("redis connection " + host + ":" + port + " is closed") : error);
+        }
+    }
+
+    private void complete(Object reply) {
+        CompletableFuture<Object> future;
+        synchronized(lock) {
+            future=pending.poll();
+        }
+        if(null == future) {
+            logger.warn("unexpected redis reply:{}", reply);
+            return;
+        }
+        if(reply instanceof ErrorReply) {
+            future.completeExceptionally(new IOException(((ErrorReply)reply).message));
+        } else {
+            future.complete(reply);
+        }
+    }
+
+    private void close(SocketChannel ch, Selector sel, Throwable error) {
+        List<CompletableFuture<Object>> failed;
+        synchronized(lock) {
+            if(channel == ch) {
+                channel=null;
+            }
+            failed=new ArrayList<CompletableFuture<Object>>(pending);
+            pending.clear();
+            writeQueue.clear();
+        }
+        for(CompletableFuture<Object> future: failed) {
+            future.completeExceptionally(error);
+        }
+        try {
+            ch.close();
+            sel.close();
+        } catch(IOException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 关闭连接，未完成的请求以异常结束
+     */
+    public void close() {
+        running=false;
+        Selector sel=selector;
+        if(null != sel) {
+            sel.wakeup();
+        }
+    }
+
+    public boolean isConnected() {
+        return null != channel;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+
+    private static class ErrorReply {
+
+        private final String message;
+
+        ErrorReply(String message) {
+            this.message=message;
+        }
+
+        @Override
+        public String toString() {
+            return message;
+        }
+    }
+
+    /**
+     * RESP 协议解析：数据不完整时返回INCOMPLETE，等待读取更多数据后继续解析。<br>
+     * 先只扫描各项的长度，确认已经收到完整的回复后才创建结果对象；扫描进度在多次feed() 之间保留，大回复分多次到达时不会从头重复解析。
+     */
+    static class ReplyParser {
+
+        private byte[] buf=new byte[8192];
+
+        private int start=0;
+
+        private int end=0;
+
+        private int pos;
+
+        /**
+         * 已扫描到的位置，相对于start
+         */
+        private int scanned=0;
+
+        /**
+         * 当前回复中还没有扫描到的项数
+         */
+        private long pending=1;
+
+        void feed(ByteBuffer data) {
+            int n=data.remaining();
+            if(end + n > buf.length) {
+                int len=end - start;
+                if(len + n > buf.length) {
+                    byte[] tmp=new byte[Math.max(buf.length * 2, len + n)];
+                    System.arraycopy(buf, start, tmp, 0, len);
+                    buf=tmp;
+                } else {
+                    System.arraycopy(buf, start, buf, 0, len);
+                }
+                start=0;
+                end=len;
+            }
+            data.get(buf, end, n);
+            end+=n;
+        }
+
+        Object next() throws IOException {
+            if(!scan()) {
+                return INCOMPLETE;
+            }
+            scanned=0;
+            pending=1;
+            pos=start;
+            Object reply=parse();
+            if(INCOMPLETE != reply) {
+                start=pos;
+                if(start == end) {
+                    start=0;
+                    end=0;
+                }
+            }
+            return reply;
+        }
+
+        private Object parse() throws IOException {
+            if(pos >= end) {
+                return INCOMPLETE;
+            }
+            byte type=buf[pos++];
+            int lineEnd=lineEnd();
+            if(lineEnd < 0) {
+                return INCOMPLETE;
+            }
+            int lineStart=pos;
+            pos=lineEnd + 2;
+            switch(type) {
+                case '+':
+                    return new String(buf, lineStart, lineEnd - lineStart, UTF8);
+                case '-':
+                    return new ErrorReply(new String(buf, lineStart, lineEnd - lineStart, UTF8));
+                case ':':
+                    return parseLong(lineStart, lineEnd);
+                case '$': {
+                    int len=(int)parseLong(lineStart, lineEnd);
+                    if(len < 0) {
+                        return null;
+                    }
+                    if(end - pos < len + 2) {
+                        return INCOMPLETE;
+                    }
+                    byte[] res=new byte[len];
+                    System.arraycopy(buf, pos, res, 0, len);
+                    pos+=len + 2;
+                    return res;
+                }
+                case '*': {
+                    int cnt=(int)parseLong(lineStart, lineEnd);
+                    if(cnt < 0) {
+                        return null;
+                    }
+                    List<Object> res=new ArrayList<Object>(cnt);
+                    for(int i=0; i < cnt; i++) {
+                        Object item=parse();
+                        if(INCOMPLETE == item) {
+                            return INCOMPLETE;
+                        }
+                        res.add(item);
+                    }
+                    return res;
+                }
+                default:
+                    throw new IOException("unknown redis reply type:" + (char)type);
+            }
+        }
+
+        /**
+         * 从上次扫描的位置继续，只读取各项的长度
+         * @return 是否已经收到完整的回复
+         */
+        private boolean scan() throws IOException {
+            while(pending > 0) {
+                pos=start + scanned;
+                if(pos >= end) {
+                    return false;
+                }
+                byte type=buf[pos++];
+                int lineEnd=lineEnd();
+                if(lineEnd < 0) {
+                    return false;
+                }
+                int next=lineEnd + 2;
+                switch(type) {
+                    case '+':
+                    case '-':
+                    case ':':
+                        pending--;
+                        break;
+                    case '$': {
+                        long len=parseLong(pos, lineEnd);
+                        if(len >= 0) {
+                            if(end - next < len + 2) {// 数据不完整，下次从这一项重新扫描
+                                return false;
+                            }
+                            next+=len + 2;
+                        }
+                        pending--;
+                        break;
+                    }
+                    case '*': {
+                        long cnt=parseLong(pos, lineEnd);
+                        pending+=Math.max(cnt, 0) - 1;
+                        break;
+                    }
+                    default:
+                        throw new IOException("unknown redis reply type:" + (char)type);
+                }
+                scanned=next - start;
+            }
+            return true;
+        }
+
+        private int lineEnd() {
+            for(int i=pos; i < end - 1; i++) {
+                if(buf[i] == '\r' && buf[i + 1] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private long parseLong(int from, int to) {
+            boolean negative=buf[from] == '-';
+            long res=0;
+            for(int i=negative ? from + 1 : from; i < to; i++) {
+                res=res * 10 + (buf[i] - '0');
+            }
+            return negative ? -res : res;
+        }
+    }
+}
@@ -5,19 +5,25 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.jarvis.cache.CacheUtil;
 import com.jarvis.cache.ICacheManager;
 import com.jarvis.cache.exception.CacheCenterConnectionException;
+import com.jarvis.cache.reflect.MethodMeta;
 import com.jarvis.cache.serializer.ISerializer;
 import com.jarvis.cache.serializer.StringSerializer;
 import com.jarvis.cache.to.CacheKeyTO;
 import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
@@ -67,18 +73,18 @@ public class ShardedJedisCacheManager implements ICacheManager {
         }
         ShardedJedis shardedJedis=null;
         try {
-            int expire=result.getExpire();
+            int expire=CacheUtil.getPhysicalExpire(result);
             shardedJedis=shardedJedisPool.getResource();
             Jedis jedis=shardedJedis.getShard(cacheKey);
             String hfield=cacheKeyTO.getHfield();
             if(null == hfield || hfield.length() == 0) {
                 if(expire == 0) {
-                    jedis.set(KEY_SERIALIZER.serialize(cacheKey), serializer.serialize(result));
+                    jedis.set(cacheKeyTO.getKeyBytes(), serializer.serialize(result));
                 } else if(expire > 0) {
-                    jedis.setex(KEY_SERIALIZER.serialize(cacheKey), expire, serializer.serialize(result));
+                    jedis.setex(cacheKeyTO.getKeyBytes(), expire, serializer.serialize(result));
                 }
             } else {
-                hashSet(jedis, cacheKey, hfield, result);
+                hashSet(jedis, cacheKeyTO, result);
             }
         } catch(Exception ex) {
             logger.error(ex.getMessage(), ex);
@@ -100,13 +106,13 @@ public class ShardedJedisCacheManager implements ICacheManager {
 
     private static final Map<String, byte[]> HASH_SET_SCRIPT_SHA=new ConcurrentHashMap<String, byte[]>();
 
-    private void hashSet(Jedis jedis, String cacheKey, String hfield, CacheWrapper<Object> result) throws Exception {
-        byte[] key=KEY_SERIALIZER.serialize(cacheKey);
-        byte[] field=KEY_SERIALIZER.serialize(hfield);
+    private void hashSet(Jedis jedis, CacheKeyTO cacheKeyTO, CacheWrapper<Object> result) throws Exception {
+        byte[] key=cacheKeyTO.getKeyBytes();
+        byte[] field=cacheKeyTO.getHfieldBytes();
         byte[] val=serializer.serialize(result);
         int hExpire;
         if(hashExpire < 0) {
-            hExpire=result.getExpire();
+            hExpire=CacheUtil.getPhysicalExpire(result);
         } else {
             hExpire=hashExpire;
         }
@@ -166,13 +172,13 @@ public class ShardedJedisCacheManager implements ICacheManager {
             byte bytes[]=null;
             String hfield=cacheKeyTO.getHfield();
             if(null == hfield || hfield.length() == 0) {
-                bytes=jedis.get(KEY_SERIALIZER.serialize(cacheKey));
+                bytes=jedis.get(cacheKeyTO.getKeyBytes());
             } else {
-                bytes=jedis.hget(KEY_SERIALIZER.serialize(cacheKey), KEY_SERIALIZER.serialize(hfield));
+                bytes=jedis.hget(cacheKeyTO.getKeyBytes(), cacheKeyTO.getHfieldBytes());
             }
             Type returnType=null;
             if(null != method) {
-                returnType=method.getGenericReturnType();
+                returnType=MethodMeta.get(method).getValueType();
             }
             res=(CacheWrapper<Object>)serializer.deserialize(bytes, returnType);
         } catch(Exception ex) {
@@ -183,6 +189,137 @@ public class ShardedJedisCacheManager implements ICacheManager {
         return res;
     }
 
+    @Override
+    public void mset(final Method method, final Collection<MSetParam> params) throws CacheCenterConnectionException {
+        if(null == shardedJedisPool || null == params || params.isEmpty()) {
+            return;
+        }
+        ShardedJedis shardedJedis=null;
+        try {
+            shardedJedis=shardedJedisPool.getResource();
+            Map<Jedis, List<MSetParam>> shards=new HashMap<Jedis, List<MSetParam>>();
+            for(MSetParam param: params) {
+                String cacheKey=param.getCacheKey().getCacheKey();
+                if(null == cacheKey || cacheKey.length() == 0) {
+                    continue;
+                }
+                Jedis jedis=shardedJedis.getShard(cacheKey);
+                List<MSetParam> list=shards.get(jedis);
+                if(null == list) {
+                    list=new ArrayList<MSetParam>();
+                    shards.put(jedis, list);
+                }
+                list.add(param);
+            }
+            for(Map.Entry<Jedis, List<MSetParam>> entry: shards.entrySet()) {// 每个分片使用一个pipeline，一次网络交互
+                Pipeline pipeline=entry.getKey().pipelined();
+                for(MSetParam param: entry.getValue()) {
+                    try {
+                        pipelineSet(pipeline, param.getCacheKey(), param.getResult());
+                    } catch(Exception ex) {
+                        logger.error(ex.getMessage(), ex);
+                    }
+                }
+                pipeline.sync();
+            }
+        } catch(Exception ex) {
+            logger.error(ex.getMessage(), ex);
+        } finally {
+            returnResource(shardedJedis);
+        }
+    }
+
+    private void pipelineSet(Pipeline pipeline, CacheKeyTO cacheKeyTO, CacheWrapper<Object> result) throws Exception {
+        byte[] key=cacheKeyTO.getKeyBytes();
+        String hfield=cacheKeyTO.getHfield();
+        if(null == hfield || hfield.length() == 0) {
+            int expire=CacheUtil.getPhysicalExpire(result);
+            if(expire == 0) {
+                pipeline.set(key, serializer.serialize(result));
+            } else if(expire > 0) {
+                pipeline.setex(key, expire, serializer.serialize(result));
+            }
+            return;
+        }
+        int hExpire;
+        if(hashExpire < 0) {
+            hExpire=CacheUtil.getPhysicalExpire(result);
+        } else {
+            hExpire=hashExpire;
+        }
+        if(hExpire == 0) {
+            pipeline.hset(key, cacheKeyTO.getHfieldBytes(), serializer.serialize(result));
+        } else if(hExpire > 0) {
+            pipeline.hset(key, cacheKeyTO.getHfieldBytes(), serializer.serialize(result));
+            pipeline.expire(key, hExpire);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<CacheKeyTO, CacheWrapper<Object>> mget(final Method method, final Type returnType, final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == shardedJedisPool || null == keys || keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<CacheKeyTO, CacheWrapper<Object>> res=new HashMap<CacheKeyTO, CacheWrapper<Object>>(keys.size());
+        ShardedJedis shardedJedis=null;
+        try {
+            shardedJedis=shardedJedisPool.getResource();
+            Map<Jedis, List<CacheKeyTO>> shards=groupByShard(shardedJedis, keys);
+            for(Map.Entry<Jedis, List<CacheKeyTO>> entry: shards.entrySet()) {// 每个分片使用一个pipeline，一次网络交互
+                List<CacheKeyTO> shardKeys=entry.getValue();
+                Pipeline pipeline=entry.getKey().pipelined();
+                for(CacheKeyTO cacheKeyTO: shardKeys) {
+                    byte[] key=cacheKeyTO.getKeyBytes();
+                    String hfield=cacheKeyTO.getHfield();
+                    if(null == hfield || hfield.length() == 0) {
+                        pipeline.get(key);
+                    } else {
+                        pipeline.hget(key, cacheKeyTO.getHfieldBytes());
+                    }
+                }
+                List<Object> values=pipeline.syncAndReturnAll();
+                for(int i=0; i < shardKeys.size(); i++) {
+                    Object value=values.get(i);
+                    if(!(value instanceof byte[])) {
+                        continue;
+                    }
+                    try {
+                        CacheWrapper<Object> cacheWrapper=(CacheWrapper<Object>)serializer.deserialize((byte[])value, returnType);
+                        if(null != cacheWrapper) {
+                            res.put(shardKeys.get(i), cacheWrapper);
+                        }
+                    } catch(Exception ex) {
+                        logger.error(ex.getMessage(), ex);
+                    }
+                }
+            }
+        } catch(Exception ex) {
+            logger.error(ex.getMessage(), ex);
+        } finally {
+            returnResource(shardedJedis);
+        }
+        return res;
+    }
+
+    private Map<Jedis, List<CacheKeyTO>> groupByShard(ShardedJedis shardedJedis, Collection<CacheKeyTO> keys) {
+        Map<Jedis, List<CacheKeyTO>> res=new HashMap<Jedis, List<CacheKeyTO>>();
+        for(CacheKeyTO cacheKeyTO: keys) {
+            String cacheKey=cacheKeyTO.getCacheKey();
+            if(null == cacheKey || cacheKey.length() == 0) {
+                continue;
+            }
+            Jedis jedis=shardedJedis.getShard(cacheKey);
+            List<CacheKeyTO> list=res.get(jedis);
+            if(null == list) {
+                list=new ArrayList<CacheKeyTO>();
+                res.put(jedis, list);
+            }
+            list.add(cacheKeyTO);
+        }
+        return res;
+    }
+
     /**
      * 根据缓存Key删除缓存
      * @param cacheKeyTO 缓存Key
@@ -214,10 +351,54 @@ public class ShardedJedisCacheManager implements ICacheManager {
                 Jedis jedis=shardedJedis.getShard(cacheKey);
                 String hfield=cacheKeyTO.getHfield();
                 if(null == hfield || hfield.length() == 0) {
-                    jedis.del(KEY_SERIALIZER.serialize(cacheKey));
+                    jedis.del(cacheKeyTO.getKeyBytes());
                 } else {
-                    jedis.hdel(KEY_SERIALIZER.serialize(cacheKey), KEY_SERIALIZER.serialize(hfield));
+                    jedis.hdel(cacheKeyTO.getKeyBytes(), cacheKeyTO.getHfieldBytes());
+                }
+            }
+        } catch(Exception ex) {
+            logger.error(ex.getMessage(), ex);
+        } finally {
+            returnResource(shardedJedis);
+        }
+    }
+
+    @Override
+    public void mdelete(final Set<CacheKeyTO> keys) throws CacheCenterConnectionException {
+        if(null == shardedJedisPool || null == keys || keys.isEmpty()) {
+            return;
+        }
+        List<CacheKeyTO> pipelineKeys=new ArrayList<CacheKeyTO>(keys.size());
+        for(CacheKeyTO cacheKeyTO: keys) {
+            String cacheKey=cacheKeyTO.getCacheKey();
+            if(null == cacheKey || cacheKey.length() == 0) {
+                continue;
+            }
+            if(cacheKey.indexOf("*") != -1) {// 批量删除需要遍历所有Redis服务器，不能使用pipeline
+                delete(cacheKeyTO);
+            } else {
+                pipelineKeys.add(cacheKeyTO);
+            }
+        }
+        if(pipelineKeys.isEmpty()) {
+            return;
+        }
+        ShardedJedis shardedJedis=null;
+        try {
+            shardedJedis=shardedJedisPool.getResource();
+            Map<Jedis, List<CacheKeyTO>> shards=groupByShard(shardedJedis, pipelineKeys);
+            for(Map.Entry<Jedis, List<CacheKeyTO>> entry: shards.entrySet()) {
+                Pipeline pipeline=entry.getKey().pipelined();
+                for(CacheKeyTO cacheKeyTO: entry.getValue()) {
+                    byte[] key=cacheKeyTO.getKeyBytes();
+                    String hfield=cacheKeyTO.getHfield();
+                    if(null == hfield || hfield.length() == 0) {
+                        pipeline.del(key);
+                    } else {
+                        pipeline.hdel(key, cacheKeyTO.getHfieldBytes());
+                    }
                 }
+                pipeline.sync();
             }
         } catch(Exception ex) {
             logger.error(ex.getMessage(), ex);
@@ -0,0 +1,205 @@
+package com.jarvis.cache.reflect;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jarvis.cache.CacheUtil;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.annotation.CacheDelete;
+import com.jarvis.cache.annotation.CacheDeleteTransactional;
+import com.jarvis.cache.annotation.LocalCache;
+import com.jarvis.cache.reflect.generics.ParameterizedTypeImpl;
+import com.jarvis.cache.to.CacheWrapper;
+
+/**
+ * 方法的缓存元数据：注解、返回值类型等，每个方法只通过反射获取一次，避免每次调用时都使用反射
+ * @author jiayu.qiu
+ */
+public final class MethodMeta {
+
+    private static final ConcurrentHashMap<Method, MethodMeta> METAS=new ConcurrentHashMap<Method, MethodMeta>();
+
+    private final Method method;
+
+    /**
+     * 类名.方法名
+     */
+    private final String name;
+
+    private final Cache cache;
+
+    private final CacheDelete cacheDelete;
+
+    private final CacheDeleteTransactional cacheDeleteTransactional;
+
+    private final LocalCache localCache;
+
+    private final Class<?> returnType;
+
+    /**
+     * 是否为返回CompletableFuture 的异步方法
+     */
+    private final boolean async;
+
+    /**
+     * 缓存数据的类型：返回值为CompletableFuture&lt;T&gt; 时为T，否则为返回值的泛型类型
+     */
+    private final Type valueType;
+
+    /**
+     * CacheWrapper&lt;valueType&gt;，用于反序列化
+     */
+    private final Type wrapperType;
+
+    /**
+     * 批量缓存中单个元素的类型
+     */
+    private final Type elementType;
+
+    /**
+     * key 表达式开头的字符串常量，没有key 表达式时为类名.方法名，获取不到时为null
+     */
+    private final String keyPrefix;
+
+    private MethodMeta(Method method) {
+        this.method=method;
+        this.name=method.getDeclaringClass().getName() + "." + method.getName();
+        this.cache=method.getAnnotation(Cache.class);
+        this.cacheDelete=method.getAnnotation(CacheDelete.class);
+        this.cacheDeleteTransactional=method.getAnnotation(CacheDeleteTransactional.class);
+        this.localCache=method.getAnnotation(LocalCache.class);
+        this.returnType=method.getReturnType();
+        this.async=CacheUtil.isCompletableFuture(returnType);
+        this.valueType=CacheUtil.getValueType(method);
+        this.wrapperType=ParameterizedTypeImpl.make(CacheWrapper.class, new Type[]{valueType}, null);
+        this.elementType=getElementType(method.getGenericReturnType());
+        this.keyPrefix=getKeyPrefix(cache, name);
+    }
+
+    /**
+     * 获取方法的缓存元数据，每个方法只会创建一次
+     * @param method Method
+     * @return MethodMeta
+     */
+    public static MethodMeta get(Method method) {
+        MethodMeta res=METAS.get(method);
+        if(null == res) {
+            MethodMeta tmp=new MethodMeta(method);
+            res=METAS.putIfAbsent(method, tmp);
+            if(null == res) {
+                res=tmp;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 获取key 表达式开头的字符串常量，例如：'user_'+#args[0] 的前缀为user_
+     * @param cache Cache
+     * @param methodName 类名.方法名
+     * @return 前缀，获取不到时返回null
+     */
+    private static String getKeyPrefix(Cache cache, String methodName) {
+        String key=null == cache ? "" : cache.key().trim();
+        if(key.length() == 0) {
+            return methodName;
+        }
+        char quote=key.charAt(0);
+        if(quote != '\'' && quote != '"') {
+            return null;
+        }
+        int end=key.indexOf(quote, 1);
+        if(end <= 1) {
+            return null;
+        }
+        return key.substring(1, end);
+    }
+
+    /**
+     * 获取单个元素的数据类型：Map 为value 的类型，Collection 及数组为元素的类型
+     * @param returnType 返回值类型
+     * @return Type
+     */
+    private static Type getElementType(Type returnType) {
+        if(returnType instanceof ParameterizedType) {
+            ParameterizedType parameterizedType=(ParameterizedType)returnType;
+            Type[] typeArgs=parameterizedType.getActualTypeArguments();
+            Class<?> rawType=(Class<?>)parameterizedType.getRawType();
+            if(Map.class.isAssignableFrom(rawType) && typeArgs.length == 2) {
+                return typeArgs[1];
+            }
+            if(Collection.class.isAssignableFrom(rawType) && typeArgs.length == 1) {
+                return typeArgs[0];
+            }
+        } else if(returnType instanceof GenericArrayType) {
+            return ((GenericArrayType)returnType).getGenericComponentType();
+        } else if(returnType instanceof Class && ((Class<?>)returnType).isArray()) {
+            return ((Class<?>)returnType).getComponentType();
+        }
+        return Object.class;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public CacheDelete getCacheDelete() {
+        return cacheDelete;
+    }
+
+    public CacheDeleteTransactional getCacheDeleteTransactional() {
+        return cacheDeleteTransactional;
+    }
+
+    public LocalCache getLocalCache() {
+        return localCache;
+    }
+
+    public boolean hasLocalCache() {
+        return null != localCache;
+    }
+
+    /**
+     * @return 是否开启了自动加载
+     */
+    public boolean isAutoload() {
+        return null != cache && cache.autoload();
+    }
+
+    public Class<?> getReturnType() {
+        return returnType;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public Type getValueType() {
+        return valueType;
+    }
+
+    public Type getWrapperType() {
+        return wrapperType;
+    }
+
+    public Type getElementType() {
+        return elementType;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+}
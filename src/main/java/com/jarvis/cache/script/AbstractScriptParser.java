@@ -1,6 +1,7 @@
 package com.jarvis.cache.script;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.jarvis.cache.annotation.Cache;
 import com.jarvis.cache.annotation.CacheDeleteKey;
@@ -21,6 +22,13 @@ public abstract class AbstractScriptParser {
 
     protected static final String EMPTY="empty";
 
+    /**
+     * 不能编译为KeyTemplate 的表达式
+     */
+    private static final KeyTemplate NO_TEMPLATE=KeyTemplate.compile("''");
+
+    private final ConcurrentHashMap<String, KeyTemplate> keyTemplates=new ConcurrentHashMap<String, KeyTemplate>();
+
     /**
      * 为了简化表达式，方便调用Java static 函数，在这里注入表达式自定义函数
      * @param name 自定义函数名
@@ -41,6 +49,25 @@ public abstract class AbstractScriptParser {
      */
     public abstract <T> T getElValue(String exp, Object[] arguments, Object retVal, boolean hasRetVal, Class<T> valueType) throws Exception;
 
+    /**
+     * 解析表达式并放入缓存，但不执行，用于启动时预编译及检查表达式
+     * @param exp 表达式
+     * @param valueType 表达式最终返回值类型
+     * @throws Exception 表达式有错误时抛出异常
+     */
+    public void compile(String exp, Class<?> valueType) throws Exception {
+    }
+
+    /**
+     * 预编译生成缓存Key的表达式：包括KeyTemplate
+     * @param keyEL 生成缓存Key的表达式
+     * @throws Exception 表达式有错误时抛出异常
+     */
+    public void compileCacheKey(String keyEL) throws Exception {
+        getKeyTemplate(keyEL);
+        compile(keyEL, String.class);
+    }
+
     /**
      * 将表达式转换期望的值
      * @param keyEL 生成缓存Key的表达式
@@ -64,9 +91,44 @@ public abstract class AbstractScriptParser {
      * @throws Exception 异常
      */
     public String getDefinedCacheKey(String keyEL, Object[] arguments, Object retVal, boolean hasRetVal) throws Exception {
+        KeyTemplate template=getKeyTemplate(keyEL);
+        if(null != template) {
+            String key=template.apply(arguments, retVal, hasRetVal);
+            if(null != key) {
+                return key;
+            }
+        }
         return this.getElValue(keyEL, arguments, retVal, hasRetVal, String.class);
     }
 
+    /**
+     * 获取缓存Key 表达式编译后的模板，每个表达式只编译一次
+     * @param keyEL 生成缓存Key的表达式
+     * @return 不支持时返回null
+     */
+    protected KeyTemplate getKeyTemplate(String keyEL) {
+        if(null == keyEL || !isKeyTemplateSupported()) {
+            return null;
+        }
+        KeyTemplate template=keyTemplates.get(keyEL);
+        if(null == template) {
+            template=KeyTemplate.compile(keyEL);
+            if(null == template) {
+                template=NO_TEMPLATE;
+            }
+            keyTemplates.put(keyEL, template);
+        }
+        return template == NO_TEMPLATE ? null : template;
+    }
+
+    /**
+     * 是否支持使用KeyTemplate 直接生成缓存Key（KeyTemplate 使用Spring EL 的语法）
+     * @return 默认不支持
+     */
+    protected boolean isKeyTemplateSupported() {
+        return false;
+    }
+
     /**
      * 是否可以缓存
      * @param cache Cache
@@ -1,13 +1,17 @@
 package com.jarvis.cache.script;
 
 import java.lang.reflect.Method;
+import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.script.Bindings;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
+import javax.script.Invocable;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 
 import com.jarvis.cache.CacheUtil;
@@ -15,7 +19,9 @@ import com.jarvis.cache.CacheUtil;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * 解析JavaScript表达式
+ * 解析JavaScript表达式：每个表达式只编译一次，包装为engine 中的函数：function f(args, retVal){return (表达式);}，通过Invocable 调用，
+ * 不需要每次创建Bindings 及重新定义自定义函数；不能包装为函数的表达式（例如：包含多条语句）仍使用CompiledScript 执行。<br>
+ * engine 的全局对象不是线程安全的，表达式中的赋值会写入全局变量并影响同时执行的其它表达式，所以每个线程使用各自的engine 调用函数，函数在第一次使用时定义。
  * @author jiayu.qiu
  */
 @Slf4j
@@ -27,6 +33,13 @@ public class JavaScriptParser extends AbstractScriptParser {
 
     private final StringBuffer funcs=new StringBuffer();
 
+    /**
+     * 表达式对应的函数名，不能包装为函数的表达式为空字符串
+     */
+    private final ConcurrentHashMap<String, String> funcNames=new ConcurrentHashMap<String, String>();
+
+    private final AtomicInteger funcIndex=new AtomicInteger();
+
     private static int versionCode;
 
     /**
@@ -34,6 +47,18 @@ public class JavaScriptParser extends AbstractScriptParser {
      */
     private final ScriptEngine engine;
 
+    private final String engineName;
+
+    /**
+     * engine 是否支持Invocable
+     */
+    private final boolean invocable;
+
+    /**
+     * 每个线程调用函数时使用的engine
+     */
+    private final ThreadLocal<FunctionEngine> functionEngine=new ThreadLocal<FunctionEngine>();
+
     static {
         String javaVersion=System.getProperty("java.version");
         int ind = 0;
@@ -48,7 +73,9 @@ public class JavaScriptParser extends AbstractScriptParser {
     }
 
     public JavaScriptParser() {
-        engine=manager.getEngineByName(versionCode >= 18 ? "nashorn" : "javascript");
+        engineName=versionCode >= 18 ? "nashorn" : "javascript";
+        engine=manager.getEngineByName(engineName);
+        invocable=engine instanceof Invocable;
         try {
             addFunction(HASH, CacheUtil.class.getDeclaredMethod("getUniqueHashStr", new Class[]{Object.class}));
             addFunction(EMPTY, CacheUtil.class.getDeclaredMethod("isEmpty", new Class[]{Object.class}));
@@ -62,7 +89,8 @@ public class JavaScriptParser extends AbstractScriptParser {
         try {
             String clsName=method.getDeclaringClass().getName();
             String methodName=method.getName();
-            funcs.append("function " + name + "(obj){return " + clsName + "." + methodName + "(obj);}");
+            String func="function " + name + "(obj){return " + clsName + "." + methodName + "(obj);}";
+            funcs.append(func);// 各线程的engine 在下次调用函数前定义
         } catch(Exception e) {
             log.error(e.getMessage(), e);
         }
@@ -71,23 +99,121 @@ public class JavaScriptParser extends AbstractScriptParser {
     @SuppressWarnings("unchecked")
     @Override
     public <T> T getElValue(String exp, Object[] arguments, Object retVal, boolean hasRetVal, Class<T> valueType) throws Exception {
+        String funcName=getFunction(exp);
+        if(null != funcName) {
+            return (T)getFunctionEngine().invoke(funcName, exp, arguments, hasRetVal ? retVal : null);
+        }
         Bindings bindings=new SimpleBindings();
         bindings.put(ARGS, arguments);
         if(hasRetVal) {
             bindings.put(RET_VAL, retVal);
         }
-        CompiledScript script=expCache.get(exp);
+        CompiledScript script=getScript(exp);
         if(null != script) {
             return (T)script.eval(bindings);
         }
-        if(engine instanceof Compilable) {
-            Compilable compEngine=(Compilable)engine;
-            script=compEngine.compile(funcs + exp);
+        return (T)engine.eval(funcs + exp, bindings);
+    }
+
+    @Override
+    public void compile(String exp, Class<?> valueType) throws Exception {
+        if(null == getFunction(exp)) {
+            getScript(exp);
+        }
+    }
+
+    private static String function(String funcName, String exp) {
+        return "function " + funcName + "(" + ARGS + "," + RET_VAL + "){return (" + exp + "\n);}";
+    }
+
+    /**
+     * 为表达式分配函数名，每个表达式只编译检查一次
+     * @param exp 表达式
+     * @return 函数名，不能包装为函数时返回null
+     */
+    private String getFunction(String exp) {
+        if(!invocable || !(engine instanceof Compilable)) {
+            return null;
+        }
+        String funcName=funcNames.get(exp);
+        if(null == funcName) {
+            synchronized(engine) {
+                funcName=funcNames.get(exp);
+                if(null == funcName) {
+                    funcName="$autoload_exp" + funcIndex.getAndIncrement();
+                    try {
+                        ((Compilable)engine).compile(function(funcName, exp));// 只编译不执行，不会在engine 中留下定义
+                    } catch(ScriptException e) {
+                        funcName="";
+                    }
+                    funcNames.put(exp, funcName);
+                }
+            }
+        }
+        return funcName.length() == 0 ? null : funcName;
+    }
+
+    private FunctionEngine getFunctionEngine() {
+        FunctionEngine res=functionEngine.get();
+        if(null == res) {
+            ScriptEngine tmp;
+            synchronized(manager) {
+                tmp=manager.getEngineByName(engineName);
+            }
+            res=new FunctionEngine(tmp);
+            functionEngine.set(res);
+        }
+        return res;
+    }
+
+    /**
+     * @param exp 表达式
+     * @return 编译后的脚本，engine 不支持编译时返回null
+     * @throws Exception 异常
+     */
+    private CompiledScript getScript(String exp) throws Exception {
+        CompiledScript script=expCache.get(exp);
+        if(null == script && engine instanceof Compilable) {
+            script=((Compilable)engine).compile(funcs + exp);
             expCache.put(exp, script);
-            return (T)script.eval(bindings);
-        } else {
-            return (T)engine.eval(funcs + exp, bindings);
         }
+        return script;
     }
 
+    /**
+     * 只在一个线程中使用的engine，记录已经定义的函数
+     */
+    private class FunctionEngine {
+
+        private final ScriptEngine engine;
+
+        private final Invocable invocable;
+
+        /**
+         * 已经定义的表达式函数
+         */
+        private final HashSet<String> defined=new HashSet<String>();
+
+        /**
+         * 已经定义的自定义函数的长度
+         */
+        private int funcsLength=0;
+
+        FunctionEngine(ScriptEngine engine) {
+            this.engine=engine;
+            this.invocable=(Invocable)engine;
+        }
+
+        Object invoke(String funcName, String exp, Object[] arguments, Object retVal) throws Exception {
+            if(funcsLength < funcs.length()) {// 有新增的自定义函数
+                String tmp=funcs.toString();
+                engine.eval(tmp.substring(funcsLength));
+                funcsLength=tmp.length();
+            }
+            if(defined.add(funcName)) {
+                engine.eval(function(funcName, exp));
+            }
+            return invocable.invokeFunction(funcName, arguments, retVal);
+        }
+    }
 }
@@ -0,0 +1,407 @@
+package com.jarvis.cache.script;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jarvis.cache.CacheUtil;
+
+/**
+ * 简单的缓存Key 模板，不经过表达式引擎直接生成缓存Key。支持的Spring EL 语法（以字符串常量或#hash() 开头，用 + 连接）：
+ * <ul>
+ * <li>字符串常量：'user_'</li>
+ * <li>参数及返回值：#args[0]、#retVal，以及属性：#args[0].name、#retVal.user.id</li>
+ * <li>hash函数：#hash(#args)、#hash(#args[0].name)</li>
+ * </ul>
+ * 运行时遇到不能确定与表达式引擎结果一致的情况（例如：值不是字符串、数字等简单类型，属性为Map 中的数据，参数下标越界等）时，返回null，由表达式引擎处理。
+ * @author jiayu.qiu
+ */
+public final class KeyTemplate {
+
+    private static final ConcurrentHashMap<PropertyKey, Object> ACCESSORS=new ConcurrentHashMap<PropertyKey, Object>();
+
+    /**
+     * 没有对应的getter 方法及public 属性
+     */
+    private static final Object NO_ACCESSOR=new Object();
+
+    /**
+     * 无法处理，需要使用表达式引擎
+     */
+    private static final Object FALLBACK=new Object();
+
+    private final String expression;
+
+    private final Segment[] segments;
+
+    private final int estimatedLength;
+
+    private KeyTemplate(String expression, List<Segment> segments) {
+        this.expression=expression;
+        this.segments=segments.toArray(new Segment[segments.size()]);
+        int len=0;
+        for(Segment segment: segments) {
+            len+=segment instanceof Literal ? ((Literal)segment).value.length() : 16;
+        }
+        this.estimatedLength=len;
+    }
+
+    /**
+     * 编译Spring EL 表达式
+     * @param expression 表达式
+     * @return 不是支持的语法时返回null
+     */
+    public static KeyTemplate compile(String expression) {
+        if(null == expression) {
+            return null;
+        }
+        List<Segment> segments=new Tokenizer(expression).parse();
+        if(null == segments || segments.isEmpty()) {
+            return null;
+        }
+        Segment first=segments.get(0);
+        if(!(first instanceof Literal) && !(first instanceof HashCall)) {// 以数字开头时，+ 是加法
+            return null;
+        }
+        return new KeyTemplate(expression, segments);
+    }
+
+    /**
+     * 生成缓存Key
+     * @param arguments 参数
+     * @param retVal 返回值
+     * @param hasRetVal 是否有返回值
+     * @return 缓存Key，返回null 时需要使用表达式引擎
+     */
+    public String apply(Object[] arguments, Object retVal, boolean hasRetVal) {
+        StringBuilder sb=new StringBuilder(estimatedLength);
+        for(Segment segment: segments) {
+            if(!segment.append(sb, arguments, hasRetVal ? retVal : null)) {
+                return null;
+            }
+        }
+        return sb.toString();
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * 把值追加到缓存Key 中，只处理与Spring EL 字符串拼接结果一致的简单类型
+     */
+    private static boolean appendValue(StringBuilder sb, Object value) {
+        if(null == value) {
+            sb.append("null");
+        } else if(value instanceof String) {
+            sb.append((String)value);
+        } else if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof Double || value instanceof Float || value instanceof Boolean
+            || value instanceof Character || value instanceof BigDecimal || value instanceof BigInteger) {
+            sb.append(value.toString());
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private abstract static class Segment {
+
+        abstract boolean append(StringBuilder sb, Object[] arguments, Object retVal);
+    }
+
+    private static final class Literal extends Segment {
+
+        private final String value;
+
+        Literal(String value) {
+            this.value=value;
+        }
+
+        @Override
+        boolean append(StringBuilder sb, Object[] arguments, Object retVal) {
+            sb.append(value);
+            return true;
+        }
+    }
+
+    /**
+     * #args、#args[n]、#retVal 及其属性
+     */
+    private static final class Variable extends Segment {
+
+        /**
+         * 参数下标：-1 表示#args，-2 表示#retVal
+         */
+        private final int index;
+
+        private final String[] properties;
+
+        Variable(int index, String[] properties) {
+            this.index=index;
+            this.properties=properties;
+        }
+
+        Object getValue(Object[] arguments, Object retVal) {
+            Object value;
+            if(index == -2) {
+                value=retVal;
+            } else if(index == -1) {
+                value=arguments;
+            } else {
+                if(null == arguments || index >= arguments.length) {
+                    return FALLBACK;
+                }
+                value=arguments[index];
+            }
+            for(String property: properties) {
+                if(null == value) {
+                    return FALLBACK;
+                }
+                value=getProperty(value, property);
+                if(FALLBACK == value) {
+                    return FALLBACK;
+                }
+            }
+            return value;
+        }
+
+        @Override
+        boolean append(StringBuilder sb, Object[] arguments, Object retVal) {
+            Object value=getValue(arguments, retVal);
+            return FALLBACK != value && appendValue(sb, value);
+        }
+    }
+
+    private static final class HashCall extends Segment {
+
+        private final Variable variable;
+
+        HashCall(Variable variable) {
+            this.variable=variable;
+        }
+
+        @Override
+        boolean append(StringBuilder sb, Object[] arguments, Object retVal) {
+            Object value=variable.getValue(arguments, retVal);
+            if(FALLBACK == value) {
+                return false;
+            }
+            sb.append(CacheUtil.getUniqueHashStr(value));
+            return true;
+        }
+    }
+
+    /**
+     * 通过getter 方法或public 属性获取属性值，与Spring EL 的ReflectivePropertyAccessor 一致
+     */
+    private static Object getProperty(Object target, String property) {
+        Class<?> cls=target.getClass();
+        if(target instanceof java.util.Map || cls.isArray()) {// 由表达式引擎处理
+            return FALLBACK;
+        }
+        PropertyKey key=new PropertyKey(cls, property);
+        Object accessor=ACCESSORS.get(key);
+        if(null == accessor) {
+            accessor=findAccessor(cls, property);
+            ACCESSORS.put(key, accessor);
+        }
+        try {
+            if(accessor instanceof Method) {
+                return ((Method)accessor).invoke(target);
+            }
+            if(accessor instanceof Field) {
+                return ((Field)accessor).get(target);
+            }
+        } catch(Exception e) {
+            return FALLBACK;
+        }
+        return FALLBACK;
+    }
+
+    private static Object findAccessor(Class<?> cls, String property) {
+        if(!Modifier.isPublic(cls.getModifiers())) {// 非public 类中的方法需要特殊处理
+            return NO_ACCESSOR;
+        }
+        String name=Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        try {
+            Method method=cls.getMethod("get" + name);
+            if(method.getReturnType() != void.class) {
+                return method;
+            }
+        } catch(NoSuchMethodException e) {
+        }
+        try {
+            Method method=cls.getMethod("is" + name);
+            if(method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class) {
+                return method;
+            }
+        } catch(NoSuchMethodException e) {
+        }
+        try {
+            Field field=cls.getField(property);
+            if(!Modifier.isStatic(field.getModifiers())) {
+                return field;
+            }
+        } catch(NoSuchFieldException e) {
+        }
+        return NO_ACCESSOR;
+    }
+
+    private static final class PropertyKey {
+
+        private final Class<?> cls;
+
+        private final String property;
+
+        PropertyKey(Class<?> cls, String property) {
+            this.cls=cls;
+            this.property=property;
+        }
+
+        @Override
+        public int hashCode() {
+            return cls.hashCode() * 31 + property.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof PropertyKey)) {
+                return false;
+            }
+            PropertyKey other=(PropertyKey)obj;
+            return cls == other.cls && property.equals(other.property);
+        }
+    }
+
+    /**
+     * 解析表达式，不是支持的语法时返回null
+     */
+    private static final class Tokenizer {
+
+        private final String exp;
+
+        private int pos;
+
+        Tokenizer(String exp) {
+            this.exp=exp;
+        }
+
+        List<Segment> parse() {
+            List<Segment> segments=new ArrayList<Segment>();
+            while(true) {
+                skipSpace();
+                Segment segment=parseTerm();
+                if(null == segment) {
+                    return null;
+                }
+                segments.add(segment);
+                skipSpace();
+                if(pos == exp.length()) {
+                    return segments;
+                }
+                if(exp.charAt(pos) != '+') {
+                    return null;
+                }
+                pos++;
+            }
+        }
+
+        private Segment parseTerm() {
+            if(pos >= exp.length()) {
+                return null;
+            }
+            char c=exp.charAt(pos);
+            if(c == '\'') {
+                return parseLiteral();
+            }
+            if(exp.startsWith("#hash(", pos)) {
+                pos+=6;
+                skipSpace();
+                Variable variable=parseVariable();
+                skipSpace();
+                if(null == variable || pos >= exp.length() || exp.charAt(pos) != ')') {
+                    return null;
+                }
+                pos++;
+                return new HashCall(variable);
+            }
+            return parseVariable();
+        }
+
+        private Literal parseLiteral() {
+            StringBuilder sb=new StringBuilder();
+            pos++;
+            while(pos < exp.length()) {
+                char c=exp.charAt(pos++);
+                if(c == '\'') {
+                    if(pos < exp.length() && exp.charAt(pos) == '\'') {// '' 表示单引号
+                        sb.append('\'');
+                        pos++;
+                        continue;
+                    }
+                    return new Literal(sb.toString());
+                }
+                sb.append(c);
+            }
+            return null;
+        }
+
+        private Variable parseVariable() {
+            int index;
+            if(exp.startsWith("#args", pos) && !isIdentifierPart(pos + 5)) {
+                pos+=5;
+                index=-1;
+                if(pos < exp.length() && exp.charAt(pos) == '[') {
+                    int end=exp.indexOf(']', pos);
+                    if(end == -1) {
+                        return null;
+                    }
+                    try {
+                        index=Integer.parseInt(exp.substring(pos + 1, end).trim());
+                    } catch(NumberFormatException e) {
+                        return null;
+                    }
+                    if(index < 0) {
+                        return null;
+                    }
+                    pos=end + 1;
+                }
+            } else if(exp.startsWith("#retVal", pos) && !isIdentifierPart(pos + 7)) {
+                pos+=7;
+                index=-2;
+            } else {
+                return null;
+            }
+            List<String> properties=new ArrayList<String>();
+            while(pos < exp.length() && exp.charAt(pos) == '.') {
+                int start=++pos;
+                while(isIdentifierPart(pos)) {
+                    pos++;
+                }
+                if(start == pos || !Character.isJavaIdentifierStart(exp.charAt(start))) {
+                    return null;
+                }
+                properties.add(exp.substring(start, pos));
+            }
+            if(pos < exp.length() && (exp.charAt(pos) == '[' || exp.charAt(pos) == '(' || exp.charAt(pos) == '?')) {// 方法调用、安全导航等
+                return null;
+            }
+            return new Variable(index, properties.toArray(new String[properties.size()]));
+        }
+
+        private boolean isIdentifierPart(int i) {
+            return i < exp.length() && Character.isJavaIdentifierPart(exp.charAt(i));
+        }
+
+        private void skipSpace() {
+            while(pos < exp.length() && Character.isWhitespace(exp.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
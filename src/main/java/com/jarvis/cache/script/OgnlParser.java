@@ -32,6 +32,24 @@ public class OgnlParser extends AbstractScriptParser {
     @SuppressWarnings("unchecked")
     @Override
     public <T> T getElValue(String exp, Object[] arguments, Object retVal, boolean hasRetVal, Class<T> valueType) throws Exception {
+        Object object=getExpression(exp);
+        Map<String, Object> values= new HashMap<String, Object>(2);
+        values.put(ARGS, arguments);
+        if(hasRetVal) {
+            values.put(RET_VAL, retVal);
+        }
+        OgnlContext context=new OgnlContext(values);
+        context.setRoot(arguments);
+        Object res=Ognl.getValue(object, context, context.getRoot(), valueType);
+        return (T)res;
+    }
+
+    @Override
+    public void compile(String exp, Class<?> valueType) throws Exception {
+        getExpression(exp);
+    }
+
+    private Object getExpression(String exp) throws Exception {
         Object object=EXPRESSION_CACHE.get(exp);
         if(null == object) {
             String className=CacheUtil.class.getName();
@@ -47,15 +65,6 @@ public class OgnlParser extends AbstractScriptParser {
             object=Ognl.parseExpression(exp2);
             EXPRESSION_CACHE.put(exp, object);
         }
-        
-        Map<String, Object> values= new HashMap<String, Object>(2);
-        values.put(ARGS, arguments);
-        if(hasRetVal) {
-            values.put(RET_VAL, retVal);
-        }
-        OgnlContext context=new OgnlContext(values);
-        context.setRoot(arguments);
-        Object res=Ognl.getValue(object, context, context.getRoot(), valueType);
-        return (T)res;
+        return object;
     }
 }
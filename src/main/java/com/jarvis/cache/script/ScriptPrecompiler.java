@@ -0,0 +1,203 @@
+package com.jarvis.cache.script;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.annotation.CacheDelete;
+import com.jarvis.cache.annotation.CacheDeleteKey;
+import com.jarvis.cache.annotation.ExCache;
+import com.jarvis.cache.annotation.LocalCache;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 启动时预编译缓存注解中的表达式：扫描类（包括父类及接口）中的@Cache、@ExCache、@CacheDelete、@CacheDeleteKey 及@LocalCache，
+ * 并行解析所有表达式并放入表达式处理器的缓存中，避免第一次请求时解析表达式，同时在接收请求之前发现错误的表达式。
+ * @author jiayu.qiu
+ */
+@Slf4j
+public class ScriptPrecompiler {
+
+    private final AbstractScriptParser scriptParser;
+
+    /**
+     * 并行解析的线程数
+     */
+    private int threadCnt=Runtime.getRuntime().availableProcessors();
+
+    public ScriptPrecompiler(AbstractScriptParser scriptParser) {
+        this.scriptParser=scriptParser;
+    }
+
+    /**
+     * 预编译表达式
+     * @param classes 使用了缓存注解的类（或其接口）
+     * @return 错误信息，没有错误时为空
+     */
+    public List<String> precompile(Class<?>... classes) {
+        Map<Script, String> scripts=new LinkedHashMap<Script, String>();
+        for(Class<?> cls: classes) {
+            Set<Class<?>> types=new LinkedHashSet<Class<?>>();
+            collectTypes(cls, types);
+            for(Class<?> type: types) {
+                for(Method method: type.getDeclaredMethods()) {
+                    collect(method, scripts);
+                }
+            }
+        }
+        List<String> errors=new ArrayList<String>();
+        if(scripts.isEmpty()) {
+            return errors;
+        }
+        ExecutorService executor=Executors.newFixedThreadPool(Math.max(1, Math.min(threadCnt, scripts.size())));
+        try {
+            Map<Script, Future<Throwable>> futures=new LinkedHashMap<Script, Future<Throwable>>(scripts.size());
+            for(final Script script: scripts.keySet()) {
+                futures.put(script, executor.submit(new Callable<Throwable>() {
+
+                    @Override
+                    public Throwable call() throws Exception {
+                        try {
+                            if(script.cacheKey) {
+                                scriptParser.compileCacheKey(script.exp);
+                            } else {
+                                scriptParser.compile(script.exp, script.valueType);
+                            }
+                            return null;
+                        } catch(Throwable e) {
+                            return e;
+                        }
+                    }
+                }));
+            }
+            for(Map.Entry<Script, Future<Throwable>> entry: futures.entrySet()) {
+                Throwable e;
+                try {
+                    e=entry.getValue().get();
+                } catch(Exception ex) {
+                    e=ex;
+                }
+                if(null != e) {
+                    String error=scripts.get(entry.getKey()) + ": " + entry.getKey().exp + " -> " + e.getMessage();
+                    log.error("precompile script error, " + error, e);
+                    errors.add(error);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        log.info("precompiled {} scripts, {} errors", scripts.size(), errors.size());
+        return errors;
+    }
+
+    /**
+     * 预编译表达式，有错误时抛出异常，可以用于在接收请求之前终止启动
+     * @param classes 使用了缓存注解的类（或其接口）
+     */
+    public void check(Class<?>... classes) {
+        List<String> errors=precompile(classes);
+        if(!errors.isEmpty()) {
+            throw new IllegalStateException("cache script errors: " + errors);
+        }
+    }
+
+    private static void collectTypes(Class<?> cls, Set<Class<?>> types) {
+        if(null == cls || cls == Object.class || !types.add(cls)) {
+            return;
+        }
+        collectTypes(cls.getSuperclass(), types);
+        for(Class<?> tmp: cls.getInterfaces()) {
+            collectTypes(tmp, types);
+        }
+    }
+
+    private static void collect(Method method, Map<Script, String> scripts) {
+        String name=method.getDeclaringClass().getName() + "." + method.getName();
+        Cache cache=method.getAnnotation(Cache.class);
+        if(null != cache) {
+            add(scripts, name + " @Cache.key", cache.key(), String.class, true);
+            add(scripts, name + " @Cache.hfield", cache.hfield(), String.class, true);
+            add(scripts, name + " @Cache.expireExpression", cache.expireExpression(), Integer.class, false);
+            add(scripts, name + " @Cache.condition", cache.condition(), Boolean.class, false);
+            add(scripts, name + " @Cache.autoloadCondition", cache.autoloadCondition(), Boolean.class, false);
+            add(scripts, name + " @Cache.batchResultId", cache.batchResultId(), Object.class, false);
+            for(ExCache exCache: cache.exCache()) {
+                if(null == exCache || exCache.key().length() == 0) {
+                    continue;
+                }
+                add(scripts, name + " @ExCache.key", exCache.key(), String.class, true);
+                add(scripts, name + " @ExCache.hfield", exCache.hfield(), String.class, true);
+                add(scripts, name + " @ExCache.expireExpression", exCache.expireExpression(), Integer.class, false);
+                add(scripts, name + " @ExCache.condition", exCache.condition(), Boolean.class, false);
+                add(scripts, name + " @ExCache.cacheObject", exCache.cacheObject(), Object.class, false);
+            }
+        }
+        CacheDelete cacheDelete=method.getAnnotation(CacheDelete.class);
+        if(null != cacheDelete) {
+            for(CacheDeleteKey deleteKey: cacheDelete.value()) {
+                for(String key: deleteKey.value()) {
+                    add(scripts, name + " @CacheDeleteKey.value", key, String.class, true);
+                }
+                add(scripts, name + " @CacheDeleteKey.hfield", deleteKey.hfield(), String.class, true);
+                add(scripts, name + " @CacheDeleteKey.condition", deleteKey.condition(), Boolean.class, false);
+            }
+        }
+        LocalCache localCache=method.getAnnotation(LocalCache.class);
+        if(null != localCache) {
+            add(scripts, name + " @LocalCache.expireExpression", localCache.expireExpression(), Integer.class, false);
+        }
+    }
+
+    private static void add(Map<Script, String> scripts, String source, String exp, Class<?> valueType, boolean cacheKey) {
+        if(null == exp || exp.length() == 0) {
+            return;
+        }
+        Script script=new Script(exp, valueType, cacheKey);
+        if(!scripts.containsKey(script)) {// 同一个表达式只解析一次
+            scripts.put(script, source);
+        }
+    }
+
+    public void setThreadCnt(int threadCnt) {
+        this.threadCnt=threadCnt;
+    }
+
+    private static final class Script {
+
+        private final String exp;
+
+        private final Class<?> valueType;
+
+        private final boolean cacheKey;
+
+        Script(String exp, Class<?> valueType, boolean cacheKey) {
+            this.exp=exp;
+            this.valueType=valueType;
+            this.cacheKey=cacheKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return exp.hashCode() * 31 + valueType.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Script)) {
+                return false;
+            }
+            Script other=(Script)obj;
+            return exp.equals(other.exp) && valueType == other.valueType && cacheKey == other.cacheKey;
+        }
+    }
+}
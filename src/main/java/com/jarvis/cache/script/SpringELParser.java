@@ -1,24 +1,36 @@
 package com.jarvis.cache.script;
 
 import java.lang.reflect.Method;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.expression.BeanResolver;
+import org.springframework.expression.ConstructorResolver;
+import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.OperatorOverloader;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypeComparator;
+import org.springframework.expression.TypeConverter;
+import org.springframework.expression.TypeLocator;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 
 import com.jarvis.cache.CacheUtil;
 
 /**
- * Spring EL表达式解析处理
+ * Spring EL表达式解析处理：表达式默认使用MIXED 模式编译执行，无法编译的表达式自动使用解释模式；
+ * 函数及解析器等在所有调用之间共享，每次调用只绑定args 和retVal；简单的缓存Key 表达式使用KeyTemplate 生成。
  * @author jiayu.qiu
  */
 public class SpringELParser extends AbstractScriptParser {
 
-    private final ExpressionParser parser=new SpelExpressionParser();
+    private final ExpressionParser parser;
 
     private final ConcurrentHashMap<String, Expression> expCache=new ConcurrentHashMap<String, Expression>();
 
@@ -39,8 +51,40 @@ public class SpringELParser extends AbstractScriptParser {
         }
     }
 
+    /**
+     * 函数，包括hash、empty 及自定义函数
+     */
     private final ConcurrentHashMap<String, Method> funcs=new ConcurrentHashMap<String, Method>(64);
 
+    /**
+     * 所有调用共享的上下文，只用于提供解析器、类型转换等，不保存变量
+     */
+    private final StandardEvaluationContext sharedContext;
+
+    public SpringELParser() {
+        this(new SpelParserConfiguration(SpelCompilerMode.MIXED, SpringELParser.class.getClassLoader()));
+    }
+
+    /**
+     * @param configuration 解析器配置，例如：SpelCompilerMode.OFF 时只使用解释模式
+     */
+    public SpringELParser(SpelParserConfiguration configuration) {
+        this.parser=new SpelExpressionParser(configuration);
+        if(null != hash) {
+            funcs.put(HASH, hash);
+        }
+        if(null != empty) {
+            funcs.put(EMPTY, empty);
+        }
+        sharedContext=new StandardEvaluationContext();
+        // 提前初始化，避免并发调用时延迟初始化
+        sharedContext.getPropertyAccessors();
+        sharedContext.getMethodResolvers();
+        sharedContext.getConstructorResolvers();
+        sharedContext.getTypeLocator();
+        sharedContext.getTypeConverter();
+    }
+
     /**
      * @param name 方法名
      * @param method 方法
@@ -58,25 +102,116 @@ public class SpringELParser extends AbstractScriptParser {
                 return (T)keySpEL;
             }
         }
-        StandardEvaluationContext context=new StandardEvaluationContext();
+        return getExpression(keySpEL).getValue(new ParamContext(arguments, retVal, hasRetVal), valueType);
+    }
 
-        context.registerFunction(HASH, hash);
-        context.registerFunction(EMPTY, empty);
-        Iterator<Map.Entry<String, Method>> it=funcs.entrySet().iterator();
-        while(it.hasNext()) {
-            Map.Entry<String, Method> entry=it.next();
-            context.registerFunction(entry.getKey(), entry.getValue());
-        }
-        context.setVariable(ARGS, arguments);
-        if(hasRetVal) {
-            context.setVariable(RET_VAL, retVal);
+    @Override
+    public void compile(String exp, Class<?> valueType) throws Exception {
+        if(String.class.equals(valueType) && exp.indexOf("#") == -1 && exp.indexOf("'") == -1) {// 不是表达式
+            return;
         }
+        getExpression(exp);
+    }
+
+    private Expression getExpression(String keySpEL) {
         Expression expression=expCache.get(keySpEL);
         if(null == expression) {
             expression=parser.parseExpression(keySpEL);
             expCache.put(keySpEL, expression);
         }
-        return expression.getValue(context, valueType);
+        return expression;
+    }
+
+    /**
+     * 简单的缓存Key 表达式（例如：'user_'+#args[0]）不经过Spring EL 直接生成，hash 函数被替换时不使用
+     */
+    @Override
+    protected boolean isKeyTemplateSupported() {
+        return null != hash && funcs.get(HASH) == hash;
+    }
+
+    /**
+     * 每次调用使用的上下文：只保存args 和retVal，其它的从共享上下文中获取
+     */
+    private class ParamContext implements EvaluationContext {
+
+        private Object[] arguments;
+
+        private Object retVal;
+
+        private boolean hasRetVal;
+
+        ParamContext(Object[] arguments, Object retVal, boolean hasRetVal) {
+            this.arguments=arguments;
+            this.retVal=retVal;
+            this.hasRetVal=hasRetVal;
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            if(ARGS.equals(name)) {
+                return arguments;
+            }
+            if(RET_VAL.equals(name)) {
+                return hasRetVal ? retVal : null;
+            }
+            return funcs.get(name);
+        }
+
+        @Override
+        public void setVariable(String name, Object value) {
+            if(ARGS.equals(name)) {
+                arguments=(Object[])value;
+            } else if(RET_VAL.equals(name)) {
+                retVal=value;
+                hasRetVal=true;
+            }
+        }
+
+        @Override
+        public TypedValue getRootObject() {
+            return sharedContext.getRootObject();
+        }
+
+        @Override
+        public List<ConstructorResolver> getConstructorResolvers() {
+            return sharedContext.getConstructorResolvers();
+        }
+
+        @Override
+        public List<MethodResolver> getMethodResolvers() {
+            return sharedContext.getMethodResolvers();
+        }
+
+        @Override
+        public List<PropertyAccessor> getPropertyAccessors() {
+            return sharedContext.getPropertyAccessors();
+        }
+
+        @Override
+        public TypeLocator getTypeLocator() {
+            return sharedContext.getTypeLocator();
+        }
+
+        @Override
+        public TypeConverter getTypeConverter() {
+            return sharedContext.getTypeConverter();
+        }
+
+        @Override
+        public TypeComparator getTypeComparator() {
+            return sharedContext.getTypeComparator();
+        }
+
+        @Override
+        public OperatorOverloader getOperatorOverloader() {
+            return sharedContext.getOperatorOverloader();
+        }
+
+        @Override
+        public BeanResolver getBeanResolver() {
+            return sharedContext.getBeanResolver();
+        }
     }
 
 }
@@ -11,6 +11,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
@@ -23,6 +24,8 @@ import com.jarvis.lib.util.BeanUtil;
  */
 public class FastjsonSerializer implements ISerializer<Object> {
 
+    private static final ConcurrentHashMap<Type, Type> WRAPPER_TYPES=new ConcurrentHashMap<Type, Type>();
+
     private final Charset charset;
 
     private static final SerializerFeature[] FEATURES={SerializerFeature.DisableCircularReferenceDetect};
@@ -50,9 +53,24 @@ public class FastjsonSerializer implements ISerializer<Object> {
             return null;
         }
         String json=new String(bytes, charset);
-        Type[] agsType=new Type[]{returnType};
+        return JSON.parseObject(json, getWrapperType(returnType));
+    }
 
-        return JSON.parseObject(json, ParameterizedTypeImpl.make(CacheWrapper.class, agsType, null));
+    /**
+     * 获取CacheWrapper&lt;returnType&gt; 类型，每个类型只构造一次
+     * @param returnType 缓存数据的类型
+     * @return Type
+     */
+    private static Type getWrapperType(Type returnType) {
+        Type wrapperType=null == returnType ? null : WRAPPER_TYPES.get(returnType);
+        if(null == wrapperType) {
+            Type[] agsType=new Type[]{returnType};
+            wrapperType=ParameterizedTypeImpl.make(CacheWrapper.class, agsType, null);
+            if(null != returnType) {
+                WRAPPER_TYPES.put(returnType, wrapperType);
+            }
+        }
+        return wrapperType;
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
@@ -111,6 +129,8 @@ public class FastjsonSerializer implements ISerializer<Object> {
             CacheWrapper<Object> res=new CacheWrapper<Object>();
             res.setExpire(wrapper.getExpire());
             res.setLastLoadTime(wrapper.getLastLoadTime());
+            res.setMaxStale(wrapper.getMaxStale());
+            res.setLoadDataUseTime(wrapper.getLoadDataUseTime());
             res.setCacheObject(deepClone(wrapper.getCacheObject(), null));
             return res;
         } else {
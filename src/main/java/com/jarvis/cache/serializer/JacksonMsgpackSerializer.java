@@ -10,6 +10,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.msgpack.jackson.dataformat.MessagePackFactory;
 
@@ -27,6 +28,8 @@ public class JacksonMsgpackSerializer implements ISerializer<Object> {
 
     private static final ObjectMapper MAPPER=new ObjectMapper(new MessagePackFactory());
 
+    private static final ConcurrentHashMap<Type, JavaType> WRAPPER_TYPES=new ConcurrentHashMap<Type, JavaType>();
+
     @Override
     public byte[] serialize(Object obj) throws Exception {
         if(obj == null) {
@@ -40,9 +43,24 @@ public class JacksonMsgpackSerializer implements ISerializer<Object> {
         if(null == bytes || bytes.length == 0) {
             return null;
         }
-        Type[] agsType=new Type[]{returnType};
-        JavaType javaType=MAPPER.getTypeFactory().constructType(ParameterizedTypeImpl.make(CacheWrapper.class, agsType, null));
-        return MAPPER.readValue(bytes, javaType);
+        return MAPPER.readValue(bytes, getWrapperType(returnType));
+    }
+
+    /**
+     * 获取CacheWrapper&lt;returnType&gt; 对应的JavaType，每个类型只构造一次
+     * @param returnType 缓存数据的类型
+     * @return JavaType
+     */
+    private static JavaType getWrapperType(Type returnType) {
+        JavaType javaType=null == returnType ? null : WRAPPER_TYPES.get(returnType);
+        if(null == javaType) {
+            Type[] agsType=new Type[]{returnType};
+            javaType=MAPPER.getTypeFactory().constructType(ParameterizedTypeImpl.make(CacheWrapper.class, agsType, null));
+            if(null != returnType) {
+                WRAPPER_TYPES.put(returnType, javaType);
+            }
+        }
+        return javaType;
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
@@ -102,6 +120,8 @@ public class JacksonMsgpackSerializer implements ISerializer<Object> {
             CacheWrapper<Object> res=new CacheWrapper<Object>();
             res.setExpire(wrapper.getExpire());
             res.setLastLoadTime(wrapper.getLastLoadTime());
+            res.setMaxStale(wrapper.getMaxStale());
+            res.setLoadDataUseTime(wrapper.getLoadDataUseTime());
             res.setCacheObject(deepClone(wrapper.getCacheObject(), null));
             return res;
         } else {
@@ -0,0 +1,57 @@
+package com.jarvis.cache.serializer;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+import com.jarvis.cache.metrics.CacheMetrics;
+import com.jarvis.cache.metrics.CacheMetricsRegistry;
+
+/**
+ * 统计序列化、反序列化的耗时及数据大小；ISerializer 中没有方法信息，所以只能按序列化工具统计，默认名称为“serializer”
+ * @author jiayu.qiu
+ */
+public class MetricsSerializer implements ISerializer<Object> {
+
+    private final ISerializer<Object> serializer;
+
+    private final CacheMetrics metrics;
+
+    public MetricsSerializer(ISerializer<Object> serializer, CacheMetricsRegistry registry) {
+        this(serializer, registry, "serializer");
+    }
+
+    public MetricsSerializer(ISerializer<Object> serializer, CacheMetricsRegistry registry, String name) {
+        this.serializer=serializer;
+        this.metrics=registry.getMetrics(name);
+    }
+
+    @Override
+    public byte[] serialize(final Object obj) throws Exception {
+        long startTime=System.nanoTime();
+        byte[] data=serializer.serialize(obj);
+        if(null != data) {
+            metrics.recordSerialize(System.nanoTime() - startTime, data.length);
+        }
+        return data;
+    }
+
+    @Override
+    public Object deserialize(final byte[] bytes, final Type returnType) throws Exception {
+        long startTime=System.nanoTime();
+        Object obj=serializer.deserialize(bytes, returnType);
+        if(null != bytes) {
+            metrics.recordDeserialize(System.nanoTime() - startTime, bytes.length);
+        }
+        return obj;
+    }
+
+    @Override
+    public Object deepClone(Object obj, final Type type) throws Exception {
+        return serializer.deepClone(obj, type);
+    }
+
+    @Override
+    public Object[] deepCloneMethodArgs(Method method, Object[] args) throws Exception {
+        return serializer.deepCloneMethodArgs(method, args);
+    }
+}
@@ -83,6 +83,41 @@ public class AutoLoadConfig {
      */
     private int processingMapSize=512;
 
+    /**
+     * 布隆过滤器预计的元素数量，重建时会根据实际数量扩容
+     */
+    private long bloomFilterExpectedInsertions=1000000L;
+
+    /**
+     * 布隆过滤器期望的误判率
+     */
+    private double bloomFilterFpp=0.01D;
+
+    /**
+     * 布隆过滤器重建的时间间隔（单位：分钟），小于等于0时只在初始化时加载一次
+     */
+    private long bloomFilterRebuildPeriod=60L;
+
+    /**
+     * 是否异步写缓存：加载数据后直接返回，由后台线程批量写入缓存
+     */
+    private boolean writeBehind=false;
+
+    /**
+     * 异步写缓存队列容量
+     */
+    private int writeBehindQueueCapacity=10000;
+
+    /**
+     * 异步写缓存时，每批最多写入的缓存数量
+     */
+    private int writeBehindBatchSize=100;
+
+    /**
+     * 异步写缓存队列已满时，是否由当前线程同步写入；为false 时丢弃本次写入
+     */
+    private boolean writeBehindCallerRunsOnFull=true;
+
     public String getNamespace() {
         return namespace;
     }
@@ -240,4 +275,68 @@ public class AutoLoadConfig {
         }
     }
 
+    public long getBloomFilterExpectedInsertions() {
+        return bloomFilterExpectedInsertions;
+    }
+
+    public void setBloomFilterExpectedInsertions(long bloomFilterExpectedInsertions) {
+        if(bloomFilterExpectedInsertions > 0) {
+            this.bloomFilterExpectedInsertions=bloomFilterExpectedInsertions;
+        }
+    }
+
+    public double getBloomFilterFpp() {
+        return bloomFilterFpp;
+    }
+
+    public void setBloomFilterFpp(double bloomFilterFpp) {
+        if(bloomFilterFpp > 0 && bloomFilterFpp < 1) {
+            this.bloomFilterFpp=bloomFilterFpp;
+        }
+    }
+
+    public long getBloomFilterRebuildPeriod() {
+        return bloomFilterRebuildPeriod;
+    }
+
+    public void setBloomFilterRebuildPeriod(long bloomFilterRebuildPeriod) {
+        this.bloomFilterRebuildPeriod=bloomFilterRebuildPeriod;
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind=writeBehind;
+    }
+
+    public int getWriteBehindQueueCapacity() {
+        return writeBehindQueueCapacity;
+    }
+
+    public void setWriteBehindQueueCapacity(int writeBehindQueueCapacity) {
+        if(writeBehindQueueCapacity > 0) {
+            this.writeBehindQueueCapacity=writeBehindQueueCapacity;
+        }
+    }
+
+    public int getWriteBehindBatchSize() {
+        return writeBehindBatchSize;
+    }
+
+    public void setWriteBehindBatchSize(int writeBehindBatchSize) {
+        if(writeBehindBatchSize > 0) {
+            this.writeBehindBatchSize=writeBehindBatchSize;
+        }
+    }
+
+    public boolean isWriteBehindCallerRunsOnFull() {
+        return writeBehindCallerRunsOnFull;
+    }
+
+    public void setWriteBehindCallerRunsOnFull(boolean writeBehindCallerRunsOnFull) {
+        this.writeBehindCallerRunsOnFull=writeBehindCallerRunsOnFull;
+    }
+
 }
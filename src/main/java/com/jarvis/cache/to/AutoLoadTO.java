@@ -54,6 +54,16 @@ public class AutoLoadTO implements Serializable {
 
     private volatile boolean loading=false;
 
+    /**
+     * 下次检查是否需要自动加载的时间，用于识别调度队列中已经失效的任务
+     */
+    private volatile long nextLoadTime=0L;
+
+    /**
+     * 从上次加载到需要刷新的时间间隔（单位：毫秒），放入延迟队列时随机生成，到期检查时使用同一个值
+     */
+    private volatile long loadTimeout=0L;
+
     /**
      * 加载次数
      */
@@ -135,6 +145,32 @@ public class AutoLoadTO implements Serializable {
         return this;
     }
 
+    public long getNextLoadTime() {
+        return nextLoadTime;
+    }
+
+    /**
+     * @param nextLoadTime 下次检查是否需要自动加载的时间
+     * @return this
+     */
+    public AutoLoadTO setNextLoadTime(long nextLoadTime) {
+        this.nextLoadTime=nextLoadTime;
+        return this;
+    }
+
+    public long getLoadTimeout() {
+        return loadTimeout;
+    }
+
+    /**
+     * @param loadTimeout 从上次加载到需要刷新的时间间隔（单位：毫秒）
+     * @return this
+     */
+    public AutoLoadTO setLoadTimeout(long loadTimeout) {
+        this.loadTimeout=loadTimeout;
+        return this;
+    }
+
     public Object[] getArgs() {
         return args;
     }
@@ -1,44 +1,137 @@
 package com.jarvis.cache.to;
 
 import java.io.Serializable;
+import java.nio.charset.Charset;
 
-import lombok.Data;
+import lombok.Getter;
+import lombok.ToString;
 
 /**
- * 缓存Key
+ * 缓存Key：完整的Key、锁的Key、UTF-8 编码后的Key 及字段和哈希值只计算一次，避免每次访问缓存时重复生成
  * @author jiayu.qiu
  */
-@Data
+@ToString(of={"namespace", "key", "hfield"})
 public final class CacheKeyTO implements Serializable {
 
     private static final long serialVersionUID=7229320497442357252L;
 
+    private static final Charset UTF8=Charset.forName("UTF-8");
+
+    @Getter
     private final String namespace;
 
+    @Getter
     private final String key;// 缓存Key
 
+    @Getter
     private final String hfield;// 设置哈希表中的字段，如果设置此项，则用哈希表进行存储
 
+    private transient String cacheKey;
+
+    private transient String lockKey;
+
+    private transient volatile byte[] keyBytes;
+
+    private transient volatile byte[] hfieldBytes;
+
+    private transient int hash;
+
     public CacheKeyTO(String namespace, String key, String hfield) {
         this.namespace=namespace;
         this.key=key;
         this.hfield=hfield;
     }
 
+    /**
+     * @return namespace:key，没有namespace 时为key
+     */
     public String getCacheKey() {
-        if(null != this.namespace && this.namespace.length() > 0) {
-            return new StringBuilder(this.namespace).append(":").append(this.key).toString();
+        String res=cacheKey;
+        if(null == res) {
+            if(null != this.namespace && this.namespace.length() > 0) {
+                res=new StringBuilder(this.namespace).append(":").append(this.key).toString();
+            } else {
+                res=this.key;
+            }
+            cacheKey=res;
         }
-        return this.key;
+        return res;
     }
 
     public String getLockKey() {
-        StringBuilder key=new StringBuilder(getCacheKey());
-        if(null != hfield && hfield.length() > 0) {
-            key.append(":").append(hfield);
+        String res=lockKey;
+        if(null == res) {
+            StringBuilder tmp=new StringBuilder(getCacheKey());
+            if(null != hfield && hfield.length() > 0) {
+                tmp.append(":").append(hfield);
+            }
+            tmp.append(":lock");
+            res=tmp.toString();
+            lockKey=res;
+        }
+        return res;
+    }
+
+    /**
+     * @return UTF-8 编码后的getCacheKey()，调用者不能修改返回的数组
+     */
+    public byte[] getKeyBytes() {
+        byte[] res=keyBytes;
+        if(null == res) {
+            String tmp=getCacheKey();
+            if(null == tmp) {
+                return null;
+            }
+            res=tmp.getBytes(UTF8);
+            keyBytes=res;
+        }
+        return res;
+    }
+
+    /**
+     * @return UTF-8 编码后的hfield，调用者不能修改返回的数组
+     */
+    public byte[] getHfieldBytes() {
+        byte[] res=hfieldBytes;
+        if(null == res) {
+            if(null == hfield) {
+                return null;
+            }
+            res=hfield.getBytes(UTF8);
+            hfieldBytes=res;
+        }
+        return res;
+    }
+
+    @Override
+    public int hashCode() {
+        int h=hash;
+        if(h == 0) {
+            h=59 + (null == namespace ? 43 : namespace.hashCode());
+            h=h * 59 + (null == key ? 43 : key.hashCode());
+            h=h * 59 + (null == hfield ? 43 : hfield.hashCode());
+            hash=h;
         }
-        key.append(":lock");
-        return key.toString();
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(o == this) {
+            return true;
+        }
+        if(!(o instanceof CacheKeyTO)) {
+            return false;
+        }
+        CacheKeyTO other=(CacheKeyTO)o;
+        if(hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        return equals(namespace, other.namespace) && equals(key, other.key) && equals(hfield, other.hfield);
+    }
+
+    private static boolean equals(String a, String b) {
+        return null == a ? null == b : a.equals(b);
     }
 
 }
@@ -28,6 +28,16 @@ public class CacheWrapper<T> implements Serializable, Cloneable {
      */
     private int expire;
 
+    /**
+     * 过期后仍可使用的最长时间（单位：秒），缓存服务器中的数据会多保存这么长时间
+     */
+    private int maxStale;
+
+    /**
+     * 加载数据的耗时（单位：毫秒），用于XFETCH 刷新策略
+     */
+    private long loadDataUseTime;
+
     public CacheWrapper() {
     }
 
@@ -48,6 +58,18 @@ public class CacheWrapper<T> implements Serializable, Cloneable {
         return false;
     }
 
+    /**
+     * 判断缓存是否已经过期，并超出了允许使用过期数据的时间
+     * @param maxStale 过期后仍可使用的最长时间（单位：秒）
+     * @return boolean
+     */
+    public boolean isExpired(int maxStale) {
+        if(expire > 0) {
+            return (System.currentTimeMillis() - lastLoadTime) > (expire + (long)maxStale) * 1000;
+        }
+        return false;
+    }
+
     @Override
     public Object clone() throws CloneNotSupportedException {
         @SuppressWarnings("unchecked")
@@ -0,0 +1,37 @@
+package com.jarvis.cache.to;
+
+import java.io.Serializable;
+
+import lombok.Data;
+
+/**
+ * 热点Key
+ * @author jiayu.qiu
+ */
+@Data
+public class HotKeyTO implements Serializable {
+
+    private static final long serialVersionUID=1L;
+
+    private final CacheKeyTO cacheKey;
+
+    /**
+     * 成为热点Key 的时间
+     */
+    private final long promoteTime;
+
+    /**
+     * 统计窗口内的访问次数（估算值）
+     */
+    private volatile int count;
+
+    /**
+     * 每秒访问次数
+     */
+    private volatile double rate;
+
+    public HotKeyTO(CacheKeyTO cacheKey, long promoteTime) {
+        this.cacheKey=cacheKey;
+        this.promoteTime=promoteTime;
+    }
+}
@@ -21,6 +21,16 @@ public class LocalCacheWrapper<T> extends CacheWrapper<T> {
      */
     private int remoteExpire;
 
+    /**
+     * 远程缓存过期后仍可使用的最长时间（单位：秒）
+     */
+    private int remoteMaxStale;
+
+    /**
+     * 远程缓存加载数据的耗时（单位：毫秒）
+     */
+    private long remoteLoadDataUseTime;
+
     public long getRemoteLastLoadTime() {
         return remoteLastLoadTime;
     }
@@ -37,4 +47,20 @@ public class LocalCacheWrapper<T> extends CacheWrapper<T> {
         this.remoteExpire=remoteExpire;
     }
 
+    public int getRemoteMaxStale() {
+        return remoteMaxStale;
+    }
+
+    public void setRemoteMaxStale(int remoteMaxStale) {
+        this.remoteMaxStale=remoteMaxStale;
+    }
+
+    public long getRemoteLoadDataUseTime() {
+        return remoteLoadDataUseTime;
+    }
+
+    public void setRemoteLoadDataUseTime(long remoteLoadDataUseTime) {
+        this.remoteLoadDataUseTime=remoteLoadDataUseTime;
+    }
+
 }
@@ -0,0 +1,20 @@
+package com.jarvis.cache.to;
+
+import lombok.Data;
+
+/**
+ * 批量写缓存的参数
+ * @author jiayu.qiu
+ */
+@Data
+public class MSetParam {
+
+    private final CacheKeyTO cacheKey;
+
+    private final CacheWrapper<Object> result;
+
+    public MSetParam(CacheKeyTO cacheKey, CacheWrapper<Object> result) {
+        this.cacheKey=cacheKey;
+        this.result=result;
+    }
+}
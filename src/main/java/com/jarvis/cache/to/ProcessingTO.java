@@ -1,22 +1,70 @@
 package com.jarvis.cache.to;
 
-import lombok.Data;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
 
 /**
+ * 正在加载中的数据：第一个请求负责加载数据并通过complete() 或 completeExceptionally() 发布结果，其它并发请求通过await() 阻塞等待结果，不需要定时轮询
  * @author: jiayu.qiu
  */
-@Data
 public class ProcessingTO {
 
-    private volatile long startTime;
+    @Getter
+    private final long startTime;
 
+    @Getter
     private volatile CacheWrapper<Object> cache;
 
+    @Getter
+    private volatile Throwable error;
+
+    @Getter
     private volatile boolean firstFinished=false;
 
-    private volatile Throwable error;
+    private final CountDownLatch latch=new CountDownLatch(1);
 
     public ProcessingTO() {
         startTime=System.currentTimeMillis();
     }
+
+    /**
+     * 发布加载到的数据，并唤醒所有等待的请求
+     * @param cache 加载到的数据，可以为null
+     */
+    public void complete(CacheWrapper<Object> cache) {
+        this.cache=cache;
+        finish();
+    }
+
+    /**
+     * 发布加载数据时出现的异常，并唤醒所有等待的请求
+     * @param error 异常
+     */
+    public void completeExceptionally(Throwable error) {
+        this.error=error;
+        finish();
+    }
+
+    private void finish() {
+        firstFinished=true;
+        latch.countDown();
+    }
+
+    /**
+     * 等待第一个请求加载完成
+     * @param timeout 最长等待时间，单位：毫秒
+     * @return 在超时前已完成返回true，否则返回false
+     * @throws InterruptedException 等待被中断
+     */
+    public boolean await(long timeout) throws InterruptedException {
+        if(firstFinished) {
+            return true;
+        }
+        if(timeout <= 0) {
+            return false;
+        }
+        return latch.await(timeout, TimeUnit.MILLISECONDS);
+    }
 }
@@ -0,0 +1,18 @@
+package com.jarvis.cache.type;
+
+/**
+ * 缓存即将过期时，何时进行刷新（异步刷新及自动加载）
+ * @author jiayu.qiu
+ */
+public enum RefreshPolicy {
+    /**
+     * 在固定的时间点刷新：expire - alarmTime，没有设置alarmTime时，在过期前120秒（expire &gt;= 600）或60秒刷新。
+     */
+    FIXED, //
+    /**
+     * XFetch 概率提前刷新：越接近过期时间、加载数据越耗时，提前刷新的概率越大，各个节点不需要协调就能把刷新请求分散开。<br>
+     * 提前量为：loadDataUseTime * refreshBeta * -ln(random)，还没有加载耗时数据时，使用FIXED。
+     */
+    XFETCH, //
+    ;
+}
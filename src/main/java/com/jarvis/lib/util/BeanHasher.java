@@ -0,0 +1,371 @@
+package com.jarvis.lib.util;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 把Bean 转换为固定长度的128位Hash 字符串：与BeanUtil.toString 遍历对象的方式相同，但不生成中间字符串，遍历时直接计算MurmurHash3(x64_128)
+ * @author jiayu.qiu
+ */
+public final class BeanHasher {
+
+    /**
+     * 每个类（包括父类）中需要参与计算的字段
+     */
+    @SuppressWarnings("rawtypes")
+    private static final ConcurrentHashMap<Class, Field[]> FIELDS_CACHE=new ConcurrentHashMap<Class, Field[]>();
+
+    private static final char[] DIGITS="ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final long C1=0x87C37B91114253D5L;
+
+    private static final long C2=0x4CF5AD432745937FL;
+
+    private static final byte NULL=0;
+
+    private static final byte STRING=1;
+
+    private static final byte LONG=2;
+
+    private static final byte DOUBLE=3;
+
+    private static final byte BOOLEAN=4;
+
+    private static final byte CHAR=5;
+
+    private static final byte ARRAY=6;
+
+    private static final byte COLLECTION=7;
+
+    private static final byte MAP=8;
+
+    private static final byte BEAN=9;
+
+    private static final byte END=10;
+
+    private static final byte TEXT=11;
+
+    private long h1;
+
+    private long h2;
+
+    /**
+     * 还没有处理的数据（最多16个字节）
+     */
+    private long k1;
+
+    private long k2;
+
+    private int pos;
+
+    private long length;
+
+    private BeanHasher() {
+    }
+
+    /**
+     * 计算对象的Hash 值
+     * @param obj Object
+     * @return 22个字符的Hash 字符串（128位，URL 安全的Base64 编码）
+     */
+    public static String hash(Object obj) {
+        BeanHasher hasher=new BeanHasher();
+        hasher.putObject(obj);
+        return hasher.finish();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void putObject(Object obj) {
+        if(null == obj) {
+            putByte(NULL);
+            return;
+        }
+        if(obj instanceof String) {
+            putByte(STRING);
+            putString((String)obj);
+        } else if(obj instanceof Integer || obj instanceof Long || obj instanceof Short || obj instanceof Byte) {
+            putByte(LONG);
+            putLong(((Number)obj).longValue());
+        } else if(obj instanceof Double || obj instanceof Float) {
+            putByte(DOUBLE);
+            putLong(Double.doubleToLongBits(((Number)obj).doubleValue()));
+        } else if(obj instanceof Boolean) {
+            putByte(BOOLEAN);
+            putByte(((Boolean)obj).booleanValue() ? (byte)1 : (byte)0);
+        } else if(obj instanceof Character) {
+            putByte(CHAR);
+            putChar(((Character)obj).charValue());
+        } else if(obj instanceof BigDecimal || obj instanceof BigInteger) {
+            putByte(TEXT);
+            putString(obj.toString());
+        } else if(obj instanceof Enum) {
+            putByte(TEXT);
+            putString(((Enum)obj).name());
+        } else if(obj instanceof Date) {
+            putByte(LONG);
+            putLong(((Date)obj).getTime());
+        } else if(obj instanceof Calendar) {
+            putByte(LONG);
+            putLong(((Calendar)obj).getTimeInMillis());
+        } else if(obj instanceof Class) {
+            putByte(TEXT);
+            putString(((Class)obj).getName());
+        } else if(obj.getClass().isArray()) {
+            putArray(obj);
+        } else if(obj instanceof Collection) {
+            putByte(COLLECTION);
+            for(Object val: (Collection)obj) {
+                putObject(val);
+            }
+            putByte(END);
+        } else if(obj instanceof Map) {
+            putByte(MAP);
+            for(Object tmp: ((Map)obj).entrySet()) {
+                Map.Entry entry=(Map.Entry)tmp;
+                putObject(entry.getKey());
+                putObject(entry.getValue());
+            }
+            putByte(END);
+        } else {
+            putBean(obj);
+        }
+    }
+
+    private void putArray(Object obj) {
+        putByte(ARRAY);
+        if(obj instanceof Object[]) {
+            for(Object val: (Object[])obj) {
+                putObject(val);
+            }
+        } else if(obj instanceof int[]) {
+            for(int val: (int[])obj) {
+                putByte(LONG);
+                putLong(val);
+            }
+        } else if(obj instanceof long[]) {
+            for(long val: (long[])obj) {
+                putByte(LONG);
+                putLong(val);
+            }
+        } else if(obj instanceof byte[]) {
+            for(byte val: (byte[])obj) {
+                putByte(LONG);
+                putLong(val);
+            }
+        } else if(obj instanceof short[]) {
+            for(short val: (short[])obj) {
+                putByte(LONG);
+                putLong(val);
+            }
+        } else if(obj instanceof char[]) {
+            for(char val: (char[])obj) {
+                putByte(CHAR);
+                putChar(val);
+            }
+        } else if(obj instanceof boolean[]) {
+            for(boolean val: (boolean[])obj) {
+                putByte(BOOLEAN);
+                putByte(val ? (byte)1 : (byte)0);
+            }
+        } else if(obj instanceof double[]) {
+            for(double val: (double[])obj) {
+                putByte(DOUBLE);
+                putLong(Double.doubleToLongBits(val));
+            }
+        } else if(obj instanceof float[]) {
+            for(float val: (float[])obj) {
+                putByte(DOUBLE);
+                putLong(Double.doubleToLongBits(val));
+            }
+        }
+        putByte(END);
+    }
+
+    private void putBean(Object obj) {
+        Class<?> cl=obj.getClass();
+        putByte(BEAN);
+        putString(cl.getName());
+        Field[] fields=getFields(cl);
+        for(Field field: fields) {
+            try {
+                putObject(field.get(obj));
+            } catch(IllegalAccessException e) {
+                putByte(NULL);
+            }
+        }
+        putByte(END);
+    }
+
+    /**
+     * 获取类（包括父类）中的非静态字段，每个类只通过反射获取一次
+     * @param cl Class
+     * @return Field[]
+     */
+    private static Field[] getFields(Class<?> cl) {
+        Field[] res=FIELDS_CACHE.get(cl);
+        if(null != res) {
+            return res;
+        }
+        List<Field> list=new ArrayList<Field>();
+        for(Class<?> tmp=cl; null != tmp; tmp=tmp.getSuperclass()) {
+            for(Field field: tmp.getDeclaredFields()) {
+                if(Modifier.isStatic(field.getModifiers()) || field.isSynthetic() || field.getName().indexOf("this$") != -1) {
+                    continue;
+                }
+                list.add(field);
+            }
+        }
+        res=list.toArray(new Field[list.size()]);
+        AccessibleObject.setAccessible(res, true);
+        FIELDS_CACHE.put(cl, res);
+        return res;
+    }
+
+    private void putString(String str) {
+        int len=str.length();
+        putLong(len);
+        int i=0;
+        for(; i + 4 <= len; i+=4) {// 每次处理4个字符
+            putLong(str.charAt(i) | ((long)str.charAt(i + 1) << 16) | ((long)str.charAt(i + 2) << 32) | ((long)str.charAt(i + 3) << 48));
+        }
+        for(; i < len; i++) {
+            putChar(str.charAt(i));
+        }
+    }
+
+    private void putChar(char c) {
+        putByte((byte)c);
+        putByte((byte)(c >>> 8));
+    }
+
+    /**
+     * 按小端字节序写入8个字节
+     * @param val long
+     */
+    private void putLong(long val) {
+        int offset=pos & 7;
+        length+=8;
+        if(offset == 0) {
+            if(pos == 0) {
+                k1=val;
+            } else {
+                k2=val;
+            }
+            pos+=8;
+            if(pos == 16) {
+                flush();
+            }
+            return;
+        }
+        int shift=offset << 3;
+        if(pos < 8) {
+            k1|=val << shift;
+        } else {
+            k2|=val << shift;
+        }
+        pos+=8 - offset;
+        if(pos == 16) {
+            flush();
+        }
+        long rest=val >>> (64 - shift);
+        if(pos < 8) {
+            k1|=rest;
+        } else {
+            k2|=rest;
+        }
+        pos+=offset;
+    }
+
+    private void putByte(byte b) {
+        long val=(b & 0xFFL) << ((pos & 7) << 3);
+        if(pos < 8) {
+            k1|=val;
+        } else {
+            k2|=val;
+        }
+        length++;
+        if(++pos == 16) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        mixBlock();
+        k1=0;
+        k2=0;
+        pos=0;
+    }
+
+    private void mixBlock() {
+        h1^=mixK1(k1);
+        h1=Long.rotateLeft(h1, 27);
+        h1+=h2;
+        h1=h1 * 5 + 0x52DCE729;
+        h2^=mixK2(k2);
+        h2=Long.rotateLeft(h2, 31);
+        h2+=h1;
+        h2=h2 * 5 + 0x38495AB5;
+    }
+
+    private static long mixK1(long k) {
+        k*=C1;
+        k=Long.rotateLeft(k, 31);
+        k*=C2;
+        return k;
+    }
+
+    private static long mixK2(long k) {
+        k*=C2;
+        k=Long.rotateLeft(k, 33);
+        k*=C1;
+        return k;
+    }
+
+    private static long fmix(long k) {
+        k^=k >>> 33;
+        k*=0xFF51AFD7ED558CCDL;
+        k^=k >>> 33;
+        k*=0xC4CEB9FE1A85EC53L;
+        k^=k >>> 33;
+        return k;
+    }
+
+    private String finish() {
+        if(pos > 0) {
+            h1^=mixK1(k1);
+            h2^=mixK2(k2);
+        }
+        h1^=length;
+        h2^=length;
+        h1+=h2;
+        h2+=h1;
+        h1=fmix(h1);
+        h2=fmix(h2);
+        h1+=h2;
+        h2+=h1;
+        char[] buf=new char[22];
+        long hi=h1;
+        long lo=h2;
+        for(int i=0; i < 10; i++) {// 每个字符6位，共128位
+            buf[i]=DIGITS[(int)(hi & 63)];
+            hi>>>=6;
+        }
+        buf[10]=DIGITS[(int)((hi & 15) | ((lo & 3) << 4))];
+        lo>>>=2;
+        for(int i=11; i < 22; i++) {
+            buf[i]=DIGITS[(int)(lo & 63)];
+            lo>>>=6;
+        }
+        return new String(buf);
+    }
+}
@@ -38,64 +38,86 @@ public class BeanUtil {
      * @param obj Object
      * @return String String
      */
-    @SuppressWarnings("rawtypes")
     public static String toString(Object obj) {
         if(obj == null) {
             return "null";
         }
-        Class cl=obj.getClass();
         if(isPrimitive(obj)) {
             return String.valueOf(obj);
+        }
+        StringBuilder sb=new StringBuilder();
+        append(sb, obj);
+        return sb.toString();
+    }
+
+    /**
+     * 把Bean转换为字符串，所有内容追加到同一个StringBuilder 中
+     * @param sb StringBuilder
+     * @param obj Object
+     */
+    @SuppressWarnings("rawtypes")
+    private static void append(StringBuilder sb, Object obj) {
+        if(obj == null) {
+            sb.append("null");
+            return;
+        }
+        Class cl=obj.getClass();
+        if(isPrimitive(obj)) {
+            sb.append(obj);
         } else if(obj instanceof Enum) {
-            return ((Enum)obj).name();
+            sb.append(((Enum)obj).name());
         } else if(obj instanceof Date) {
-            return String.valueOf(((Date)obj).getTime());
+            sb.append(((Date)obj).getTime());
         } else if(obj instanceof Calendar) {
-            return String.valueOf(((Calendar)obj).getTime().getTime());
+            sb.append(((Calendar)obj).getTime().getTime());
         } else if(cl.isArray()) {
-            String r="[";
+            sb.append("[");
             int len=Array.getLength(obj);
             for(int i=0; i < len; i++) {
                 if(i > 0) {
-                    r+=",";
+                    sb.append(",");
                 }
                 Object val=Array.get(obj, i);
-                r+=toString(val);
+                append(sb, val);
             }
-            return r + "]";
+            sb.append("]");
         } else if(obj instanceof Collection) {
             Collection tempCol=(Collection)obj;
             Iterator it=tempCol.iterator();
-            String r="[";
+            sb.append("[");
             for(int i=0; it.hasNext(); i++) {
                 if(i > 0) {
-                    r+=",";
+                    sb.append(",");
                 }
                 Object val=it.next();
-                r+=toString(val);
+                append(sb, val);
             }
-            return r + "]";
+            sb.append("]");
         } else if(obj instanceof Map) {
             Map tempMap=(Map)obj;
-            String r="{";
+            sb.append("{");
             Iterator it=tempMap.entrySet().iterator();
             while(it.hasNext()) {
                 Map.Entry entry=(Entry)it.next();
-                Object key=entry.getKey();
-                r+=toString(key);
-                r+="=";
-                Object val=entry.getValue();
-                r+=toString(val);
+                append(sb, entry.getKey());
+                sb.append("=");
+                append(sb, entry.getValue());
                 if(it.hasNext()) {
-                    r+=",";
+                    sb.append(",");
                 }
             }
-            return r + "}";
+            sb.append("}");
         } else if(obj instanceof Class) {
             Class tmpCls=(Class)obj;
-            return tmpCls.getName();
+            sb.append(tmpCls.getName());
+        } else {
+            appendBean(sb, obj, cl);
         }
-        String r=cl.getName();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void appendBean(StringBuilder sb, Object obj, Class cl) {
+        sb.append(cl.getName());
         do {
             Field[] fields=FIELDS_CAHCE.get(cl);
             if(null == fields) {
@@ -109,7 +131,7 @@ public class BeanUtil {
                 cl=cl.getSuperclass();
                 continue;
             }
-            r+="[";
+            sb.append("[");
             // get the names and values of all fields
             for(Field f: fields) {
                 if(Modifier.isStatic(f.getModifiers())) {
@@ -118,24 +140,23 @@ public class BeanUtil {
                 if(f.isSynthetic() || f.getName().indexOf("this$") != -1) {
                     continue;
                 }
-                r+=f.getName() + "=";
+                sb.append(f.getName()).append("=");
                 try {
                     Object val=f.get(obj);
-                    r+=toString(val);
+                    append(sb, val);
                 } catch(Exception e) {
                     e.printStackTrace();
                 }
-                r+=",";
+                sb.append(",");
 
             }
-            String comma = ",";
-            if(r.endsWith(comma)) {
-                r=r.substring(0, r.length() - 1);
+            int last=sb.length() - 1;
+            if(sb.charAt(last) == ',') {
+                sb.setLength(last);
             }
-            r+="]";
+            sb.append("]");
             cl=cl.getSuperclass();
         } while(cl != null);
-        return r;
     }
 
 }
@@ -0,0 +1,363 @@
+package com.test.cache;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.jarvis.cache.AsyncCacheManagerAdapter;
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.IAsyncCacheManager;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.redis.AsyncRedisCacheManager;
+import com.jarvis.cache.redis.RedisConnection;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+import junit.framework.TestCase;
+
+/**
+ * 非阻塞缓存接口及AsyncRedisCacheManager 测试，使用进程内的简易Redis 服务端
+ * @author jiayu.qiu
+ */
+public class AsyncRedisCacheManagerTest extends TestCase {
+
+    private MockRedisServer server;
+
+    private RedisConnection connection;
+
+    private AsyncRedisCacheManager cacheManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        server=new MockRedisServer();
+        connection=new RedisConnection("127.0.0.1", server.getPort());
+        List<RedisConnection> connections=new ArrayList<RedisConnection>();
+        connections.add(connection);
+        cacheManager=new AsyncRedisCacheManager(new HessianSerializer(), connections);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cacheManager.destroy();
+        server.close();
+    }
+
+    public void testAsync() throws Exception {
+        CacheKeyTO key=new CacheKeyTO("test", "k1", null);
+        assertNull(cacheManager.getAsync(key, null, null).get(2, TimeUnit.SECONDS));
+        cacheManager.setAsync(key, new CacheWrapper<Object>("v1", 60), null, null).get(2, TimeUnit.SECONDS);
+        assertEquals(60, server.ttl.get("test:k1").intValue());
+        assertEquals("v1", cacheManager.getAsync(key, null, null).get(2, TimeUnit.SECONDS).getCacheObject());
+        cacheManager.deleteAsync(key).get(2, TimeUnit.SECONDS);
+        assertNull(cacheManager.getAsync(key, null, null).get(2, TimeUnit.SECONDS));
+
+        CacheKeyTO hkey=new CacheKeyTO("test", "h1", "f1");
+        cacheManager.setAsync(hkey, new CacheWrapper<Object>("hv", 60), null, null).get(2, TimeUnit.SECONDS);
+        assertEquals("hv", cacheManager.getAsync(hkey, null, null).get(2, TimeUnit.SECONDS).getCacheObject());
+        assertNull(cacheManager.getAsync(new CacheKeyTO("test", "h1", "f2"), null, null).get(2, TimeUnit.SECONDS));
+        cacheManager.deleteAsync(hkey).get(2, TimeUnit.SECONDS);
+        assertNull(cacheManager.getAsync(hkey, null, null).get(2, TimeUnit.SECONDS));
+    }
+
+    public void testPipeline() throws Exception {
+        int cnt=2000;
+        List<CompletableFuture<Void>> sets=new ArrayList<CompletableFuture<Void>>(cnt);
+        for(int i=0; i < cnt; i++) {// 不等待返回结果，连续发送
+            sets.add(cacheManager.setAsync(new CacheKeyTO("test", "p" + i, null), new CacheWrapper<Object>(i, 60), null, null));
+        }
+        CompletableFuture.allOf(sets.toArray(new CompletableFuture[sets.size()])).get(5, TimeUnit.SECONDS);
+        List<CompletableFuture<CacheWrapper<Object>>> gets=new ArrayList<CompletableFuture<CacheWrapper<Object>>>(cnt);
+        for(int i=0; i < cnt; i++) {
+            gets.add(cacheManager.getAsync(new CacheKeyTO("test", "p" + i, null), null, null));
+        }
+        for(int i=0; i < cnt; i++) {// 返回结果与请求一一对应
+            assertEquals(i, gets.get(i).get(5, TimeUnit.SECONDS).getCacheObject());
+        }
+        assertEquals(1, server.connectionCnt);
+    }
+
+    public void testSync() throws Exception {
+        CacheKeyTO key=new CacheKeyTO("test", "s1", null);
+        cacheManager.setCache(key, new CacheWrapper<Object>("v1", 0), null, null);
+        assertNull(server.ttl.get("test:s1"));
+        assertEquals("v1", cacheManager.get(key, null, null).getCacheObject());
+        cacheManager.delete(key);
+        assertNull(cacheManager.get(key, null, null));
+    }
+
+    public void testReconnect() throws Exception {
+        CacheKeyTO key=new CacheKeyTO("test", "r1", null);
+        cacheManager.setCache(key, new CacheWrapper<Object>("v1", 60), null, null);
+        assertEquals(1, server.connectionCnt);
+        for(int i=1; i <= 5; i++) {// 多次断开，每次都能重新连接并唤醒新的IO线程
+            server.dropConnections();
+            long start=System.currentTimeMillis();
+            while(connection.isConnected() && System.currentTimeMillis() - start < 2000) {
+                Thread.sleep(10);
+            }
+            assertFalse(connection.isConnected());
+            assertEquals("v1", cacheManager.getAsync(key, null, null).get(2, TimeUnit.SECONDS).getCacheObject());
+            assertEquals(i + 1, server.connectionCnt);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testLargeReply() throws Exception {
+        int cnt=20000;
+        byte[] value=new byte[256];
+        Arrays.fill(value, (byte)'v');
+        byte[][] keys=new byte[cnt + 1][];
+        for(int i=0; i < cnt; i++) {
+            server.data.put("m" + i, value);
+            keys[i]=("m" + i).getBytes("UTF-8");
+        }
+        keys[cnt]="missing".getBytes("UTF-8");
+        long start=System.currentTimeMillis();
+        List<Object> res=(List<Object>)connection.send("MGET", keys).get(10, TimeUnit.SECONDS);// 回复约5MB，分多次读取
+        System.out.println("mget " + cnt + " values use time: " + (System.currentTimeMillis() - start));
+        assertEquals(cnt + 1, res.size());
+        for(int i=0; i < cnt; i++) {
+            assertTrue(Arrays.equals(value, (byte[])res.get(i)));
+        }
+        assertNull(res.get(cnt));
+        CacheKeyTO key=new CacheKeyTO("test", "after", null);// 之后的回复不受影响
+        cacheManager.setAsync(key, new CacheWrapper<Object>("v1", 60), null, null).get(2, TimeUnit.SECONDS);
+        assertEquals("v1", cacheManager.getAsync(key, null, null).get(2, TimeUnit.SECONDS).getCacheObject());
+    }
+
+    public void testAdapter() throws Exception {
+        AutoLoadConfig config=new AutoLoadConfig();
+        MapCacheManager mapCacheManager=new MapCacheManager(config, new HessianSerializer());
+        mapCacheManager.setNeedPersist(false);
+        assertSame(cacheManager, AsyncCacheManagerAdapter.of(cacheManager, null));
+        IAsyncCacheManager adapter=AsyncCacheManagerAdapter.of(mapCacheManager, Executors.newSingleThreadExecutor());
+        CacheKeyTO key=new CacheKeyTO(null, "a1", null);
+        adapter.setAsync(key, new CacheWrapper<Object>("v1", 60), null, null).get(2, TimeUnit.SECONDS);
+        assertEquals("v1", adapter.getAsync(key, null, null).get(2, TimeUnit.SECONDS).getCacheObject());
+        adapter.deleteAsync(key).get(2, TimeUnit.SECONDS);
+        assertNull(adapter.getAsync(key, null, null).get(2, TimeUnit.SECONDS));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCompletableFutureMethod() throws Throwable {
+        AutoLoadConfig config=new AutoLoadConfig();
+        CacheHandler cacheHandler=new CacheHandler(cacheManager, new SpringELParser(), config, new HessianSerializer());
+        Cache cache=UserDAO.class.getMethod("getAsyncUserName", Long.class).getAnnotation(Cache.class);
+        UserDAO dao=new UserDAO();
+        try {
+            CompletableFuture<String> future=(CompletableFuture<String>)cacheHandler.proceed(new MethodProxyChain(dao, "getAsyncUserName", 1L), cache);
+            assertEquals("user1", future.get(2, TimeUnit.SECONDS));
+            long start=System.currentTimeMillis();
+            while(!server.data.containsKey("asyncName_1") && System.currentTimeMillis() - start < 2000) {
+                Thread.sleep(10);
+            }
+            future=(CompletableFuture<String>)cacheHandler.proceed(new MethodProxyChain(dao, "getAsyncUserName", 1L), cache);
+            assertEquals("user1", future.get(2, TimeUnit.SECONDS));
+            assertEquals(1, dao.calls.size());
+        } finally {
+            cacheHandler.destroy();
+        }
+    }
+
+    /**
+     * 只支持测试用到的命令的简易Redis 服务端
+     */
+    static class MockRedisServer implements Runnable {
+
+        private final ServerSocket serverSocket;
+
+        private final List<Socket> sockets=new ArrayList<Socket>();
+
+        private final Map<String, byte[]> data=new ConcurrentHashMap<String, byte[]>();
+
+        private final Map<String, Map<String, byte[]>> hashes=new ConcurrentHashMap<String, Map<String, byte[]>>();
+
+        private final Map<String, Integer> ttl=new ConcurrentHashMap<String, Integer>();
+
+        private volatile int connectionCnt=0;
+
+        MockRedisServer() throws IOException {
+            serverSocket=new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            Thread thread=new Thread(this, "MockRedisServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            while(!serverSocket.isClosed()) {
+                try {
+                    final Socket socket=serverSocket.accept();
+                    synchronized(sockets) {
+                        sockets.add(socket);
+                    }
+                    connectionCnt++;
+                    Thread thread=new Thread(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    });
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch(IOException e) {
+                    return;
+                }
+            }
+        }
+
+        void dropConnections() throws IOException {
+            synchronized(sockets) {
+                for(Socket socket: sockets) {
+                    socket.close();
+                }
+                sockets.clear();
+            }
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+            dropConnections();
+        }
+
+        private void serve(Socket socket) {
+            try {
+                InputStream in=new BufferedInputStream(socket.getInputStream());
+                OutputStream out=socket.getOutputStream();
+                List<byte[]> args;
+                while(null != (args=readCommand(in))) {
+                    out.write(execute(args));
+                    if(in.available() == 0) {
+                        out.flush();
+                    }
+                }
+            } catch(IOException e) {
+            }
+        }
+
+        private byte[] execute(List<byte[]> args) throws IOException {
+            String cmd=new String(args.get(0), "UTF-8").toUpperCase();
+            String key=args.size() > 1 ? new String(args.get(1), "UTF-8") : null;
+            if("PING".equals(cmd)) {
+                return "+PONG\r\n".getBytes("UTF-8");
+            } else if("SET".equals(cmd)) {
+                data.put(key, args.get(2));
+                ttl.remove(key);
+                return "+OK\r\n".getBytes("UTF-8");
+            } else if("SETEX".equals(cmd)) {
+                data.put(key, args.get(3));
+                ttl.put(key, Integer.valueOf(new String(args.get(2), "UTF-8")));
+                return "+OK\r\n".getBytes("UTF-8");
+            } else if("GET".equals(cmd)) {
+                return bulk(data.get(key));
+            } else if("MGET".equals(cmd)) {
+                ByteArrayOutputStream res=new ByteArrayOutputStream();
+                res.write(("*" + (args.size() - 1) + "\r\n").getBytes("UTF-8"));
+                for(int i=1; i < args.size(); i++) {
+                    res.write(bulk(data.get(new String(args.get(i), "UTF-8"))));
+                }
+                return res.toByteArray();
+            } else if("DEL".equals(cmd)) {
+                boolean removed=null != data.remove(key) | null != hashes.remove(key);
+                return (":" + (removed ? 1 : 0) + "\r\n").getBytes("UTF-8");
+            } else if("HSET".equals(cmd)) {
+                Map<String, byte[]> hash=hashes.get(key);
+                if(null == hash) {
+                    hash=new HashMap<String, byte[]>();
+                    hashes.put(key, hash);
+                }
+                hash.put(new String(args.get(2), "UTF-8"), args.get(3));
+                return ":1\r\n".getBytes("UTF-8");
+            } else if("HGET".equals(cmd)) {
+                Map<String, byte[]> hash=hashes.get(key);
+                return bulk(null == hash ? null : hash.get(new String(args.get(2), "UTF-8")));
+            } else if("HDEL".equals(cmd)) {
+                Map<String, byte[]> hash=hashes.get(key);
+                boolean removed=null != hash && null != hash.remove(new String(args.get(2), "UTF-8"));
+                return (":" + (removed ? 1 : 0) + "\r\n").getBytes("UTF-8");
+            } else if("EXPIRE".equals(cmd)) {
+                ttl.put(key, Integer.valueOf(new String(args.get(2), "UTF-8")));
+                return ":1\r\n".getBytes("UTF-8");
+            }
+            return ("-ERR unknown command '" + cmd + "'\r\n").getBytes("UTF-8");
+        }
+
+        private static byte[] bulk(byte[] value) throws IOException {
+            if(null == value) {
+                return "$-1\r\n".getBytes("UTF-8");
+            }
+            byte[] head=("$" + value.length + "\r\n").getBytes("UTF-8");
+            byte[] res=new byte[head.length + value.length + 2];
+            System.arraycopy(head, 0, res, 0, head.length);
+            System.arraycopy(value, 0, res, head.length, value.length);
+            res[res.length - 2]='\r';
+            res[res.length - 1]='\n';
+            return res;
+        }
+
+        private static List<byte[]> readCommand(InputStream in) throws IOException {
+            int b=in.read();
+            if(b < 0) {
+                return null;
+            }
+            if(b != '*') {
+                throw new IOException("unexpected:" + (char)b);
+            }
+            int cnt=Integer.parseInt(readLine(in));
+            List<byte[]> args=new ArrayList<byte[]>(cnt);
+            for(int i=0; i < cnt; i++) {
+                in.read();// $
+                int len=Integer.parseInt(readLine(in));
+                byte[] arg=new byte[len];
+                int off=0;
+                while(off < len) {
+                    int n=in.read(arg, off, len - off);
+                    if(n < 0) {
+                        return null;
+                    }
+                    off+=n;
+                }
+                in.read();
+                in.read();
+                args.add(arg);
+            }
+            return args;
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder sb=new StringBuilder();
+            int b;
+            while((b=in.read()) != '\r') {
+                if(b < 0) {
+                    throw new IOException("closed");
+                }
+                sb.append((char)b);
+            }
+            in.read();
+            return sb.toString();
+        }
+    }
+}
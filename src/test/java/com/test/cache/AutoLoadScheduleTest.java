@@ -0,0 +1,144 @@
+package com.test.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jarvis.cache.AutoLoadHandler;
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.AutoLoadTO;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+import junit.framework.TestCase;
+
+/**
+ * 自动加载延迟队列测试：第一次检查的时间按缓存数据的加载时间计算
+ * @author jiayu.qiu
+ */
+public class AutoLoadScheduleTest extends TestCase {
+
+    private AutoLoadConfig config;
+
+    private MapCacheManager cacheManager;
+
+    private CacheHandler cacheHandler;
+
+    private UserDAO dao;
+
+    private Cache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        config=new AutoLoadConfig();
+        config.setThreadCnt(1);
+        HessianSerializer serializer=new HessianSerializer();
+        cacheManager=new MapCacheManager(config, serializer);
+        cacheManager.setNeedPersist(false);
+        cacheHandler=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+        dao=new UserDAO();
+        cache=UserDAO.class.getMethod("getAutoUserName", Long.class).getAnnotation(Cache.class);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cacheHandler.destroy();
+    }
+
+    private AutoLoadTO put(long id, long age) {
+        CacheWrapper<Object> wrapper=new CacheWrapper<Object>("user" + id, 600);
+        wrapper.setLastLoadTime(System.currentTimeMillis() - age);
+        CacheKeyTO key=new CacheKeyTO(config.getNamespace(), "autoName_" + id, null);
+        return cacheHandler.getAutoLoadHandler().putIfAbsent(key, new MethodProxyChain(dao, "getAutoUserName", id), cache, wrapper);
+    }
+
+    public void testFirstSchedule() throws Exception {
+        long now=System.currentTimeMillis();
+        // expire=600 时，加载后 480±9 秒需要刷新
+        AutoLoadTO fresh=put(1L, 0L);
+        assertTrue(fresh.getNextLoadTime() >= now + 470000L);
+        assertTrue(fresh.getNextLoadTime() <= now + 490000L + 1000L);
+
+        AutoLoadTO half=put(2L, 300000L);
+        assertTrue(half.getNextLoadTime() >= now + 170000L);
+        assertTrue(half.getNextLoadTime() <= now + 190000L + 1000L);
+
+        // 重启或其它服务器加载的旧数据，已经需要刷新，立即检查（自动加载线程可能已取出，还没有请求记录时1 秒后再检查）
+        long before=System.currentTimeMillis();
+        AutoLoadTO old=put(3L, 590000L);
+        assertTrue(old.getNextLoadTime() >= before);
+        assertTrue(old.getNextLoadTime() <= System.currentTimeMillis() + 1000L);
+    }
+
+    public void testOldEntryLoadedImmediately() throws Throwable {
+        CacheKeyTO key=new CacheKeyTO(config.getNamespace(), "autoName_5", null);
+        CacheWrapper<Object> wrapper=new CacheWrapper<Object>("old", 600);
+        wrapper.setLastLoadTime(System.currentTimeMillis() - 590000L);
+        cacheManager.setCache(key, wrapper, null, null);
+
+        assertEquals("old", cacheHandler.proceed(new MethodProxyChain(dao, "getAutoUserName", 5L), cache));
+        assertTrue(dao.calls.isEmpty());
+        long start=System.currentTimeMillis();
+        while(dao.calls.isEmpty() && System.currentTimeMillis() - start < 3000) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, dao.calls.size());
+        AutoLoadHandler autoLoadHandler=cacheHandler.getAutoLoadHandler();
+        start=System.currentTimeMillis();
+        while("old".equals(cacheManager.get(key, null, null).getCacheObject()) && System.currentTimeMillis() - start < 3000) {
+            Thread.sleep(10);
+        }
+        assertEquals("user5", cacheManager.get(key, null, null).getCacheObject());
+        // 加载后按新的加载时间重新放入延迟队列
+        AutoLoadTO autoLoadTO=autoLoadHandler.getAutoLoadTO(key);
+        start=System.currentTimeMillis();
+        while(autoLoadTO.getNextLoadTime() < start + 400000L && System.currentTimeMillis() - start < 3000) {
+            Thread.sleep(10);
+        }
+        assertTrue(autoLoadTO.getNextLoadTime() > start + 400000L);
+        assertEquals(1, dao.calls.size());
+    }
+
+    public void testDueEntriesLoadedOnFirstCheck() throws Throwable {
+        AutoLoadHandler autoLoadHandler=cacheHandler.getAutoLoadHandler();
+        // 先让自动加载线程加载一条数据并休眠，保证下面的数据都有请求记录后才开始检查
+        config.setAutoLoadPeriod(1500);
+        put(10L, 500000L).setLastRequestTime(System.currentTimeMillis());
+        long start=System.currentTimeMillis();
+        while(!dao.calls.contains(10L) && System.currentTimeMillis() - start < 3000) {
+            Thread.sleep(10);
+        }
+        assertTrue(dao.calls.contains(10L));
+        config.setAutoLoadPeriod(5);
+        List<AutoLoadTO> due=new ArrayList<AutoLoadTO>();
+        for(long id=11; id <= 30; id++) {
+            AutoLoadTO autoLoadTO=put(id, 480000L);// 480±9 秒需要刷新，大约一半已经到期
+            autoLoadTO.setLastRequestTime(System.currentTimeMillis());
+            if(autoLoadTO.getLoadTimeout() <= 480000L) {
+                due.add(autoLoadTO);
+            }
+        }
+        assertFalse(due.isEmpty());
+        long deadline=System.currentTimeMillis();
+        // 到期检查时使用放入延迟队列时的刷新间隔，已到期的数据不会因为重新生成随机数被推迟
+        start=System.currentTimeMillis();
+        boolean loaded=false;
+        while(!loaded && System.currentTimeMillis() - start < 5000) {
+            loaded=true;
+            for(AutoLoadTO autoLoadTO: due) {
+                long nextLoadTime=autoLoadTO.getNextLoadTime();
+                Object id=autoLoadTO.getArgs()[0];
+                if(!dao.calls.contains(id)) {
+                    assertTrue(nextLoadTime <= deadline);
+                    loaded=false;
+                }
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(loaded);
+    }
+}
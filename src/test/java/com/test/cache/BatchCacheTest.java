@@ -0,0 +1,73 @@
+package com.test.cache;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.test.cache.UserDAO.User;
+
+import junit.framework.TestCase;
+
+/**
+ * 批量缓存测试
+ * @author jiayu.qiu
+ */
+public class BatchCacheTest extends TestCase {
+
+    private CacheHandler cacheHandler;
+
+    private UserDAO dao;
+
+    @Override
+    protected void setUp() throws Exception {
+        AutoLoadConfig config=new AutoLoadConfig();
+        HessianSerializer serializer=new HessianSerializer();
+        MapCacheManager cacheManager=new MapCacheManager(config, serializer);
+        cacheManager.setNeedPersist(false);
+        cacheHandler=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+        dao=new UserDAO();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cacheHandler.destroy();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testLoadOnlyMisses() throws Throwable {
+        Cache cache=UserDAO.class.getMethod("getUsers", List.class).getAnnotation(Cache.class);
+        List<User> users=(List<User>)cacheHandler.proceed(new MethodProxyChain(dao, "getUsers", Arrays.asList(1L, 2L, 3L)), cache);
+        assertEquals(3, users.size());
+        assertEquals(1, dao.calls.size());
+
+        users=(List<User>)cacheHandler.proceed(new MethodProxyChain(dao, "getUsers", Arrays.asList(2L, 3L, 4L)), cache);
+        assertEquals(2, dao.calls.size());
+        assertEquals(Arrays.asList(4L), dao.calls.get(1));
+        assertEquals(3, users.size());
+        assertEquals(Long.valueOf(2L), users.get(0).getId());
+        assertEquals(Long.valueOf(4L), users.get(2).getId());
+
+        // 不存在的数据也会被缓存，避免重复访问数据源
+        users=(List<User>)cacheHandler.proceed(new MethodProxyChain(dao, "getUsers", Arrays.asList(-1L, 1L)), cache);
+        assertEquals(1, users.size());
+        cacheHandler.proceed(new MethodProxyChain(dao, "getUsers", Arrays.asList(-1L, 1L)), cache);
+        assertEquals(3, dao.calls.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testMapResultWithArrayArgument() throws Throwable {
+        Cache cache=UserDAO.class.getMethod("getUserNames", Long[].class).getAnnotation(Cache.class);
+        cacheHandler.proceed(new MethodProxyChain(dao, "getUserNames", (Object)new Long[]{1L, 2L}), cache);
+        Map<Long, String> names=(Map<Long, String>)cacheHandler.proceed(new MethodProxyChain(dao, "getUserNames", (Object)new Long[]{3L, 2L, 1L}), cache);
+        assertEquals(2, dao.calls.size());
+        assertTrue(Arrays.equals(new Long[]{3L}, (Long[])dao.calls.get(1)));
+        assertEquals(Arrays.asList(3L, 2L, 1L), Arrays.asList(names.keySet().toArray()));
+        assertEquals("user2", names.get(2L));
+    }
+}
@@ -0,0 +1,91 @@
+package com.test.cache;
+
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.bloom.BloomFilter;
+import com.jarvis.cache.bloom.IBloomFilterLoader;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.test.cache.UserDAO.User;
+
+import junit.framework.TestCase;
+
+/**
+ * 布隆过滤器防止缓存穿透测试
+ * @author jiayu.qiu
+ */
+public class BloomFilterTest extends TestCase {
+
+    public void testFpp() {
+        int size=100000;
+        BloomFilter filter=new BloomFilter(size, 0.01D);
+        for(int i=0; i < size; i++) {
+            filter.put("user_" + i);
+        }
+        for(int i=0; i < size; i++) {
+            assertTrue(filter.mightContain("user_" + i));
+        }
+        int falsePositive=0;
+        for(int i=size; i < size * 2; i++) {
+            if(filter.mightContain("user_" + i)) {
+                falsePositive++;
+            }
+        }
+        double fpp=(double)falsePositive / size;
+        System.out.println("bloom filter: " + filter + ", measured fpp=" + fpp);
+        assertTrue(fpp < 0.02D);
+        assertEquals(0.01D, filter.getExpectedFpp(), 0.005D);
+        assertEquals(size, filter.getApproximateElementCount(), size / 50);
+    }
+
+    public void testShortCircuit() throws Throwable {
+        AutoLoadConfig config=new AutoLoadConfig();
+        config.setBloomFilterExpectedInsertions(1000);
+        HessianSerializer serializer=new HessianSerializer();
+        MapCacheManager cacheManager=new MapCacheManager(config, serializer);
+        cacheManager.setNeedPersist(false);
+        CacheHandler cacheHandler=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+        cacheHandler.setBloomFilterLoader(new IBloomFilterLoader() {
+
+            @Override
+            public void load(String name, BloomFilter filter) throws Exception {
+                for(long i=1; i <= 100; i++) {
+                    filter.put("bloomUser_" + i);
+                }
+            }
+        });
+        UserDAO dao=new UserDAO();
+        Cache cache=UserDAO.class.getMethod("getUserById", Long.class).getAnnotation(Cache.class);
+        try {
+            // 过滤器初始化完成之前，所有请求都放行
+            User user=(User)cacheHandler.proceed(new MethodProxyChain(dao, "getUserById", 1L), cache);
+            assertEquals("user1", user.getName());
+            for(int i=0; i < 100 && null == cacheHandler.getBloomFilterHandler().getBloomFilter("bloomUser"); i++) {
+                Thread.sleep(10);
+            }
+            assertNotNull(cacheHandler.getBloomFilterHandler().getBloomFilter("bloomUser"));
+            int calls=dao.calls.size();
+
+            for(long i=1000; i < 1100; i++) {
+                assertNull(cacheHandler.proceed(new MethodProxyChain(dao, "getUserById", i), cache));
+            }
+            assertTrue(dao.calls.size() - calls < 10);// 只有误判的请求才会加载数据
+            BloomFilter filter=cacheHandler.getBloomFilterHandler().getBloomFilter("bloomUser");
+            assertEquals(100 - (dao.calls.size() - calls), filter.getRejectCnt());
+            assertEquals(dao.calls.size() - calls, filter.getFalsePositiveCnt());
+
+            user=(User)cacheHandler.proceed(new MethodProxyChain(dao, "getUserById", 50L), cache);
+            assertEquals("user50", user.getName());
+
+            // 新增的数据放入过滤器后才能查询到
+            assertTrue(filter.mightContain("bloomUser_50"));
+            cacheHandler.getBloomFilterHandler().put("bloomUser", new CacheKeyTO(config.getNamespace(), "bloomUser_2000", null));
+            assertTrue(filter.mightContain("bloomUser_2000"));
+        } finally {
+            cacheHandler.destroy();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.test.cache;
+
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.map.SerializedSizeWeigher;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+import junit.framework.TestCase;
+
+/**
+ * MapCacheManager 有界模式测试
+ * @author jiayu.qiu
+ */
+public class BoundedMapCacheTest extends TestCase {
+
+    private HessianSerializer serializer;
+
+    private MapCacheManager cacheManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        serializer=new HessianSerializer();
+        cacheManager=new MapCacheManager(new AutoLoadConfig(), serializer);
+        cacheManager.setNeedPersist(false);
+    }
+
+    private static CacheKeyTO key(String key) {
+        return new CacheKeyTO("test", key, null);
+    }
+
+    private void put(String key, Object value) throws Exception {
+        cacheManager.setCache(key(key), new CacheWrapper<Object>(value, 600), null, null);
+    }
+
+    private boolean contains(String key) throws Exception {
+        return null != cacheManager.get(key(key), null, null);
+    }
+
+    public void testMaxSize() throws Exception {
+        cacheManager.setMaxSize(100);
+        for(int i=0; i < 1000; i++) {
+            put("k" + i, i);
+        }
+        assertEquals(100, cacheManager.getSize());
+        assertEquals(100, cacheManager.getCache().size());
+        assertEquals(900, cacheManager.getEvictionCount());
+
+        cacheManager.delete(key("k999"));
+        cacheManager.delete(key("k0"));
+        assertEquals(cacheManager.getCache().size(), cacheManager.getSize());
+    }
+
+    public void testFrequentKeysSurviveScan() throws Exception {
+        cacheManager.setMaxSize(100);
+        for(int i=0; i < 50; i++) {
+            put("hot" + i, i);
+        }
+        for(int n=0; n < 10; n++) {
+            for(int i=0; i < 50; i++) {
+                assertTrue(contains("hot" + i));
+            }
+        }
+        for(int i=0; i < 2000; i++) {// 一次性扫描大量数据
+            put("scan" + i, i);
+        }
+        int hot=0;
+        for(int i=0; i < 50; i++) {
+            if(contains("hot" + i)) {
+                hot++;
+            }
+        }
+        System.out.println("hot keys kept after scan: " + hot + "/50, hit=" + cacheManager.getHitCount() + ", miss=" + cacheManager.getMissCount());
+        assertTrue(hot >= 45);
+        assertTrue(cacheManager.getHitCount() >= 500);
+    }
+
+    public void testConcurrentReads() throws Exception {
+        cacheManager.setMaxSize(100);
+        for(int i=0; i < 50; i++) {
+            put("hot" + i, i);
+        }
+        Thread[] threads=new Thread[8];
+        for(int t=0; t < threads.length; t++) {// 多个线程同时读，访问记录不加锁写入读缓冲区
+            threads[t]=new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for(int n=0; n < 2000; n++) {
+                            for(int i=0; i < 50; i++) {
+                                contains("hot" + i);
+                            }
+                        }
+                    } catch(Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        for(int i=0; i < 2000; i++) {
+            put("scan" + i, i);
+        }
+        int hot=0;
+        for(int i=0; i < 50; i++) {
+            if(contains("hot" + i)) {
+                hot++;
+            }
+        }
+        assertTrue(hot >= 45);
+        assertEquals(100, cacheManager.getSize());
+        assertEquals(8 * 2000 * 50, cacheManager.getHitCount() - hot);
+    }
+
+    public void testMaxWeight() throws Exception {
+        cacheManager.setMaxWeight(20 * 1024);
+        cacheManager.setWeigher(new SerializedSizeWeigher(serializer));
+        char[] chars=new char[1000];
+        java.util.Arrays.fill(chars, 'a');
+        String value=new String(chars);
+        for(int i=0; i < 100; i++) {
+            put("w" + i, value);
+        }
+        assertTrue(cacheManager.getWeightedSize() <= 20 * 1024);
+        assertTrue(cacheManager.getEvictionCount() > 0);
+        assertEquals(cacheManager.getCache().size(), cacheManager.getSize());
+    }
+
+    public void testHashField() throws Exception {
+        cacheManager.setMaxSize(10);
+        for(int i=0; i < 30; i++) {
+            cacheManager.setCache(new CacheKeyTO("test", "hash", "f" + i), new CacheWrapper<Object>(i, 600), null, null);
+        }
+        assertEquals(10, cacheManager.getSize());
+        cacheManager.delete(new CacheKeyTO("test", "hash", null));
+        assertEquals(0, cacheManager.getSize());
+    }
+}
@@ -0,0 +1,82 @@
+package com.test.cache;
+
+import java.util.Arrays;
+
+import com.jarvis.cache.serializer.StringSerializer;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.test.Stopwatch;
+
+import junit.framework.TestCase;
+
+/**
+ * CacheKeyTO 测试，并对比每次重新生成Key 与使用缓存的Key 的耗时
+ * @author jiayu.qiu
+ */
+public class CacheKeyTest extends TestCase {
+
+    private static final StringSerializer KEY_SERIALIZER=new StringSerializer();
+
+    private static int hot=100000;
+
+    private static int run=1000000;
+
+    public void testKey() throws Exception {
+        CacheKeyTO key=new CacheKeyTO("ns", "user_中文", "f1");
+        assertEquals("ns:user_中文", key.getCacheKey());
+        assertSame(key.getCacheKey(), key.getCacheKey());
+        assertEquals("ns:user_中文:f1:lock", key.getLockKey());
+        assertTrue(Arrays.equals(KEY_SERIALIZER.serialize("ns:user_中文"), key.getKeyBytes()));
+        assertSame(key.getKeyBytes(), key.getKeyBytes());
+        assertTrue(Arrays.equals(KEY_SERIALIZER.serialize("f1"), key.getHfieldBytes()));
+
+        CacheKeyTO same=new CacheKeyTO("ns", "user_中文", "f1");
+        assertEquals(key, same);
+        assertEquals(key.hashCode(), same.hashCode());
+        assertFalse(key.equals(new CacheKeyTO("ns", "user_中文", null)));
+        assertFalse(key.equals(new CacheKeyTO(null, "user_中文", "f1")));
+
+        CacheKeyTO noNamespace=new CacheKeyTO(null, "k", null);
+        assertEquals("k", noNamespace.getCacheKey());
+        assertEquals("k:lock", noNamespace.getLockKey());
+        assertNull(noNamespace.getHfieldBytes());
+        assertEquals(noNamespace, new CacheKeyTO(null, "k", null));
+        assertEquals("CacheKeyTO(namespace=null, key=k, hfield=null)", noNamespace.toString());
+    }
+
+    public void testBenchmark() throws Exception {
+        CacheKeyTO key=new CacheKeyTO("test", "user_123456", "name");
+        long sum=0;
+        for(int i=0; i < hot; i++) {
+            sum+=rebuild(key) + cached(key);
+        }
+        Stopwatch sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            sum+=rebuild(key);
+        }
+        sw.stop();
+        System.out.println("rebuild key--->" + sw);
+        sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            sum+=cached(key);
+        }
+        sw.stop();
+        System.out.println("cached key--->" + sw);
+        assertTrue(sum != 0);
+    }
+
+    /**
+     * 每次都重新生成Key 及编码
+     */
+    private static long rebuild(CacheKeyTO key) throws Exception {
+        String cacheKey=new StringBuilder(key.getNamespace()).append(":").append(key.getKey()).toString();
+        byte[] keyBytes=KEY_SERIALIZER.serialize(cacheKey);
+        byte[] fieldBytes=KEY_SERIALIZER.serialize(key.getHfield());
+        int hash=(key.getNamespace().hashCode() * 59 + key.getKey().hashCode()) * 59 + key.getHfield().hashCode();
+        return keyBytes.length + fieldBytes.length + hash;
+    }
+
+    private static long cached(CacheKeyTO key) {
+        key.getCacheKey();
+        return key.getKeyBytes().length + key.getHfieldBytes().length + key.hashCode();
+    }
+}
@@ -0,0 +1,231 @@
+package com.test.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import com.jarvis.cache.map.CacheLog;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+import junit.framework.TestCase;
+
+/**
+ * MapCacheManager 增量持久化测试
+ * @author jiayu.qiu
+ */
+public class CacheLogTest extends TestCase {
+
+    private HessianSerializer serializer;
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        serializer=new HessianSerializer();
+        dir=new File(System.getProperty("java.io.tmpdir"), "autoload-cache-log-" + System.nanoTime());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(dir);
+    }
+
+    private static void delete(File file) {
+        File[] files=file.listFiles();
+        if(null != files) {
+            for(File f: files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private MapCacheManager newCacheManager() {
+        MapCacheManager cacheManager=new MapCacheManager(new AutoLoadConfig(), serializer);
+        cacheManager.setNeedPersist(false);
+        return cacheManager;
+    }
+
+    private static CacheKeyTO key(String key, String hfield) {
+        return new CacheKeyTO("test", key, hfield);
+    }
+
+    private static void put(MapCacheManager cacheManager, String key, String hfield, Object value) throws Exception {
+        cacheManager.setCache(key(key, hfield), new CacheWrapper<Object>(value, 600), null, null);
+    }
+
+    private static Object get(MapCacheManager cacheManager, String key, String hfield) throws Exception {
+        CacheWrapper<Object> wrapper=cacheManager.get(key(key, hfield), null, null);
+        return null == wrapper ? null : wrapper.getCacheObject();
+    }
+
+    private File[] segments() {
+        File[] files=new File(dir, "segments").listFiles();
+        return null == files ? new File[0] : files;
+    }
+
+    public void testRestart() throws Exception {
+        MapCacheManager cacheManager=newCacheManager();
+        cacheManager.setNeedPersist(true);
+        cacheManager.setIncrementalPersist(true);
+        cacheManager.setPersistFile(dir.getAbsolutePath() + "/");
+        cacheManager.start();
+        for(int i=0; i < 100; i++) {
+            put(cacheManager, "k" + i, null, i);
+        }
+        put(cacheManager, "hash", "f1", "v1");
+        put(cacheManager, "hash", "f2", "v2");
+        put(cacheManager, "k1", null, "updated");
+        cacheManager.delete(key("k2", null));
+        cacheManager.delete(key("hash", "f1"));
+        cacheManager.setCache(key("expired", null), new CacheWrapper<Object>("v", 1), null, null);
+        Thread.sleep(1100);
+        cacheManager.destroy();
+        assertFalse(new File(dir, "map.cache").exists());
+        assertTrue(segments().length > 0);
+
+        MapCacheManager restarted=newCacheManager();
+        restarted.setNeedPersist(true);
+        restarted.setIncrementalPersist(true);
+        restarted.setPersistFile(dir.getAbsolutePath() + "/");
+        restarted.start();
+        try {
+            assertTrue(restarted.awaitLoaded(10000));
+            assertEquals(0, get(restarted, "k0", null));
+            assertEquals("updated", get(restarted, "k1", null));
+            assertNull(get(restarted, "k2", null));
+            assertEquals(99, get(restarted, "k99", null));
+            assertNull(get(restarted, "hash", "f1"));
+            assertEquals("v2", get(restarted, "hash", "f2"));
+            assertNull(get(restarted, "expired", null));
+        } finally {
+            restarted.destroy();
+        }
+    }
+
+    public void testTornTail() throws Exception {
+        MapCacheManager cacheManager=newCacheManager();
+        CacheLog log=new CacheLog(new File(dir, "segments"), serializer, 1024 * 1024);
+        for(int i=0; i < 10; i++) {
+            log.append(key("k" + i, null).getCacheKey(), null, new CacheWrapper<Object>(i, 600));
+        }
+        log.flush(cacheManager);
+        log.close();
+        File segment=segments()[0];
+        long length=segment.length();
+        FileOutputStream fos=new FileOutputStream(segment, true);// 模拟写入过程中进程崩溃
+        fos.write(new byte[]{0, 0, 1, 0, 1, 2, 3});
+        fos.close();
+
+        MapCacheManager restarted=newCacheManager();
+        CacheLog recovered=new CacheLog(new File(dir, "segments"), serializer, 1024 * 1024);
+        assertEquals(10, recovered.recover(restarted));
+        assertEquals(length, segment.length());
+        for(int i=0; i < 10; i++) {
+            assertEquals(i, get(restarted, "k" + i, null));
+        }
+        recovered.append(key("k10", null).getCacheKey(), null, new CacheWrapper<Object>(10, 600));
+        recovered.flush(restarted);
+        recovered.close();
+        MapCacheManager again=newCacheManager();
+        assertEquals(11, new CacheLog(new File(dir, "segments"), serializer, 1024 * 1024).recover(again));
+    }
+
+    public void testCompaction() throws Exception {
+        MapCacheManager cacheManager=newCacheManager();
+        CacheLog log=new CacheLog(new File(dir, "segments"), serializer, 4 * 1024);
+        for(int round=0; round < 50; round++) {
+            for(int i=0; i < 20; i++) {
+                CacheWrapper<Object> value=new CacheWrapper<Object>("value-" + round, 600);
+                put(cacheManager, "k" + i, null, value.getCacheObject());
+                log.append(key("k" + i, null).getCacheKey(), null, value);
+            }
+            log.flush(cacheManager);
+        }
+        log.close();
+        long total=0;
+        for(File segment: segments()) {
+            total+=segment.length();
+        }
+        System.out.println("segments: " + segments().length + ", size: " + total);
+        assertTrue(total < 3 * 4 * 1024);
+
+        MapCacheManager restarted=newCacheManager();
+        assertEquals(20, new CacheLog(new File(dir, "segments"), serializer, 4 * 1024).recover(restarted));
+        for(int i=0; i < 20; i++) {
+            assertEquals("value-49", get(restarted, "k" + i, null));
+        }
+    }
+
+    public void testLongKeyAndDelete() throws Exception {
+        StringBuilder sb=new StringBuilder();
+        while(sb.length() < 70000) {// writeUTF 不能写入超过64K 的字符串
+            sb.append("长Key-");
+        }
+        String longKey=sb.toString();
+        MapCacheManager cacheManager=newCacheManager();
+        CacheLog log=new CacheLog(new File(dir, "segments"), serializer, 1024 * 1024);
+        log.append(key(longKey, null).getCacheKey(), null, new CacheWrapper<Object>("long", 600));
+        log.append(key("hash", null).getCacheKey(), "f1", new CacheWrapper<Object>("v1", 600));
+        log.append(key("hash", null).getCacheKey(), "f2", new CacheWrapper<Object>("v2", 600));
+        log.flush(cacheManager);
+        log.append(key("hash", null).getCacheKey(), "f3", new CacheWrapper<Object>("v3", 600));
+        log.append(key("hash", null).getCacheKey(), null, null);// 删除整个Key
+        log.append(key("hash", null).getCacheKey(), "f4", new CacheWrapper<Object>("v4", 600));
+        log.flush(cacheManager);
+        log.close();
+
+        MapCacheManager restarted=newCacheManager();
+        assertEquals(2, new CacheLog(new File(dir, "segments"), serializer, 1024 * 1024).recover(restarted));
+        assertEquals("long", get(restarted, longKey, null));
+        assertNull(get(restarted, "hash", "f1"));
+        assertNull(get(restarted, "hash", "f3"));
+        assertEquals("v4", get(restarted, "hash", "f4"));
+    }
+
+    public void testFlushFailure() throws Exception {
+        MapCacheManager cacheManager=newCacheManager();
+        dir.mkdirs();
+        File segmentsDir=new File(dir, "segments");
+        assertTrue(segmentsDir.createNewFile());// 目录不可用，写入失败
+        CacheLog log=new CacheLog(segmentsDir, serializer, 1024 * 1024);
+        log.append(key("k1", null).getCacheKey(), null, new CacheWrapper<Object>("v1", 600));
+        log.flush(cacheManager);
+        assertTrue(segmentsDir.delete());
+        log.flush(cacheManager);// fsync 失败的变更没有丢失
+        log.close();
+
+        MapCacheManager restarted=newCacheManager();
+        assertEquals(1, new CacheLog(segmentsDir, serializer, 1024 * 1024).recover(restarted));
+        assertEquals("v1", get(restarted, "k1", null));
+    }
+
+    public void testEviction() throws Exception {
+        MapCacheManager cacheManager=newCacheManager();
+        cacheManager.setMaxSize(10);
+        cacheManager.setNeedPersist(true);
+        cacheManager.setIncrementalPersist(true);
+        cacheManager.setPersistFile(dir.getAbsolutePath() + "/");
+        cacheManager.start();
+        for(int i=0; i < 100; i++) {
+            put(cacheManager, "k" + i, null, i);
+        }
+        assertEquals(10, cacheManager.getCache().size());
+        cacheManager.destroy();
+
+        MapCacheManager restarted=newCacheManager();
+        restarted.setNeedPersist(true);
+        restarted.setIncrementalPersist(true);
+        restarted.setPersistFile(dir.getAbsolutePath() + "/");
+        restarted.start();
+        try {
+            assertTrue(restarted.awaitLoaded(10000));
+            assertEquals(cacheManager.getCache().keySet(), restarted.getCache().keySet());// 被淘汰的数据不会恢复
+        } finally {
+            restarted.destroy();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.test.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.DataLoader;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+import junit.framework.TestCase;
+
+/**
+ * 返回值为CompletableFuture 的方法的缓存测试
+ * @author jiayu.qiu
+ */
+public class CompletableFutureTest extends TestCase {
+
+    private MapCacheManager cacheManager;
+
+    private CacheHandler cacheHandler;
+
+    private Cache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        AutoLoadConfig config=new AutoLoadConfig();
+        HessianSerializer serializer=new HessianSerializer();
+        cacheManager=new MapCacheManager(config, serializer);
+        cacheManager.setNeedPersist(false);
+        cacheHandler=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+        cache=UserDAO.class.getMethod("getAsyncUserName", Long.class).getAnnotation(Cache.class);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cacheHandler.destroy();
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<String> call(UserDAO dao, long id) throws Throwable {
+        return (CompletableFuture<String>)cacheHandler.proceed(new MethodProxyChain(dao, "getAsyncUserName", id), cache);
+    }
+
+    public void testHitAndMiss() throws Throwable {
+        UserDAO dao=new UserDAO();
+        dao.loadTime=200;
+        long start=System.currentTimeMillis();
+        List<CompletableFuture<String>> futures=new ArrayList<CompletableFuture<String>>();
+        for(int i=0; i < 10; i++) {// 并发的未命中请求共享同一次加载
+            futures.add(call(dao, 1L));
+        }
+        assertTrue(System.currentTimeMillis() - start < 150);// 不阻塞调用线程
+        for(CompletableFuture<String> future: futures) {
+            assertEquals("user1", future.get(2, TimeUnit.SECONDS));
+        }
+        assertEquals(1, dao.calls.size());
+
+        // 缓存的是完成后的值，而不是CompletableFuture；返回数据后才写缓存
+        CacheKeyTO cacheKey=new CacheKeyTO(null, "asyncName_1", null);
+        start=System.currentTimeMillis();
+        while(null == cacheManager.get(cacheKey, null, null) && System.currentTimeMillis() - start < 2000) {
+            Thread.sleep(10);
+        }
+        CacheWrapper<Object> cacheWrapper=cacheManager.get(cacheKey, null, null);
+        assertEquals("user1", cacheWrapper.getCacheObject());
+
+        CompletableFuture<String> hit=call(dao, 1L);
+        assertTrue(hit.isDone());
+        assertEquals("user1", hit.get());
+        assertEquals(1, dao.calls.size());
+    }
+
+    public void testError() throws Throwable {
+        UserDAO dao=new UserDAO();
+        dao.loadTime=50;
+        CompletableFuture<String> future=call(dao, -1L);
+        try {
+            future.get(2, TimeUnit.SECONDS);
+            fail();
+        } catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertNull(cacheManager.get(new CacheKeyTO(null, "asyncName_-1", null), null, null));
+        try {
+            call(dao, -1L).get(2, TimeUnit.SECONDS);// 出错后不缓存，再次加载
+            fail();
+        } catch(ExecutionException e) {
+            assertEquals(2, dao.calls.size());
+        }
+    }
+
+    public void testResultBeforeWrite() throws Throwable {
+        cacheHandler.destroy();
+        AutoLoadConfig config=new AutoLoadConfig();
+        HessianSerializer serializer=new HessianSerializer();
+        WriteBehindTest.SlowMapCacheManager slowCacheManager=new WriteBehindTest.SlowMapCacheManager(config, serializer);
+        slowCacheManager.setNeedPersist(false);
+        slowCacheManager.gate=new CountDownLatch(1);// 阻塞写缓存
+        cacheHandler=new CacheHandler(slowCacheManager, new SpringELParser(), config, serializer);
+        UserDAO dao=new UserDAO();
+        try {
+            // 写缓存阻塞时，加载完成后直接返回数据
+            assertEquals("user1", call(dao, 1L).get(2, TimeUnit.SECONDS));
+            assertEquals(0, slowCacheManager.writeCnt.get());
+            // 写入期间的请求使用已加载的数据，不重复加载
+            assertEquals("user1", call(dao, 1L).get(2, TimeUnit.SECONDS));
+            assertEquals(1, dao.calls.size());
+        } finally {
+            slowCacheManager.gate.countDown();
+        }
+        CacheKeyTO cacheKey=new CacheKeyTO(null, "asyncName_1", null);
+        long start=System.currentTimeMillis();
+        while(null == slowCacheManager.get(cacheKey, null, null) && System.currentTimeMillis() - start < 2000) {
+            Thread.sleep(10);
+        }
+        assertEquals("user1", slowCacheManager.get(cacheKey, null, null).getCacheObject());
+        assertEquals(1, slowCacheManager.writeCnt.get());
+    }
+
+    public void testWriteBehind() throws Throwable {
+        cacheHandler.destroy();
+        AutoLoadConfig config=new AutoLoadConfig();
+        config.setWriteBehind(true);
+        HessianSerializer serializer=new HessianSerializer();
+        WriteBehindTest.SlowMapCacheManager slowCacheManager=new WriteBehindTest.SlowMapCacheManager(config, serializer);
+        slowCacheManager.setNeedPersist(false);
+        slowCacheManager.gate=new CountDownLatch(1);
+        cacheHandler=new CacheHandler(slowCacheManager, new SpringELParser(), config, serializer);
+        UserDAO dao=new UserDAO();
+        try {
+            assertEquals("user1", call(dao, 1L).get(2, TimeUnit.SECONDS));
+            long start=System.currentTimeMillis();
+            while(cacheHandler.getWriteBehindHandler().getPendingCnt() == 0 && System.currentTimeMillis() - start < 2000) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, cacheHandler.getWriteBehindHandler().getPendingCnt());// 通过异步写缓存队列写入
+            assertEquals("user1", call(dao, 1L).get(2, TimeUnit.SECONDS));
+            assertEquals(1, dao.calls.size());
+        } finally {
+            slowCacheManager.gate.countDown();
+        }
+    }
+
+    public void testDataLoader() throws Throwable {
+        // 自动加载及异步刷新通过DataLoader 加载数据，需要得到完成后的值
+        UserDAO dao=new UserDAO();
+        CacheKeyTO cacheKey=new CacheKeyTO(null, "asyncName_2", null);
+        DataLoader dataLoader=new DataLoader();
+        CacheWrapper<Object> cacheWrapper=dataLoader.init(new MethodProxyChain(dao, "getAsyncUserName", 2L), cacheKey, cache, cacheHandler).loadData().getCacheWrapper();
+        assertEquals("user2", cacheWrapper.getCacheObject());
+    }
+}
@@ -0,0 +1,102 @@
+package com.test.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jarvis.cache.CacheUtil;
+import com.jarvis.lib.util.BeanHasher;
+import com.jarvis.lib.util.BeanUtil;
+import com.test.Stopwatch;
+
+import junit.framework.TestCase;
+
+/**
+ * 默认缓存Key 测试，并对比BeanUtil.toString + 混合Hash 与BeanHasher 的耗时
+ * @author jiayu.qiu
+ */
+public class DefaultCacheKeyTest extends TestCase {
+
+    private static int hot=2000;
+
+    private static int run=20000;
+
+    public void testHash() {
+        String hash=BeanHasher.hash(new Object[]{1L, "a"});
+        assertEquals(22, hash.length());
+        assertEquals(hash, BeanHasher.hash(new Object[]{1L, "a"}));
+        assertFalse(hash.equals(BeanHasher.hash(new Object[]{2L, "a"})));
+        assertFalse(hash.equals(BeanHasher.hash(new Object[]{1L, "b"})));
+        // 结构不同时，Hash 值也不同
+        assertFalse(BeanHasher.hash(new Object[]{"a,b"}).equals(BeanHasher.hash(new Object[]{"a", "b"})));
+        assertFalse(BeanHasher.hash(new Object[]{null, "a"}).equals(BeanHasher.hash(new Object[]{"a", null})));
+        assertFalse(BeanHasher.hash(new Object[]{new int[]{1, 2}}).equals(BeanHasher.hash(new Object[]{new int[]{1}, new int[]{2}})));
+
+        assertEquals(BeanHasher.hash(getArgs(100)), BeanHasher.hash(getArgs(100)));
+        Object[] args=getArgs(100);
+        ((Query)args[0]).ids.set(50, -1L);
+        assertFalse(BeanHasher.hash(getArgs(100)).equals(BeanHasher.hash(args)));
+
+        String key=CacheUtil.getDefaultCacheKey("com.test.UserDAO", "getUser", new Object[]{1L});
+        assertTrue(key.startsWith("com.test.UserDAO.getUser_"));
+        assertEquals("com.test.UserDAO.getUser_".length() + 22, key.length());
+        assertEquals("com.test.UserDAO.getUser", CacheUtil.getDefaultCacheKey("com.test.UserDAO", "getUser", new Object[0]));
+    }
+
+    public void testBeanUtilToString() {
+        Query query=new Query();
+        query.name="q";
+        query.ids.add(1L);
+        query.ids.add(2L);
+        query.params.put("k", "v");
+        query.time=new Date(1000L);
+        assertEquals(Query.class.getName() + "[name=q,ids=[1,2],params={k=v},time=1000]", BeanUtil.toString(query));
+        assertEquals("[1,null,[a]]", BeanUtil.toString(new Object[]{1, null, new String[]{"a"}}));
+    }
+
+    public void testBenchmark() {
+        Object[] args=getArgs(1000);
+        for(int i=0; i < hot; i++) {
+            CacheUtil.getUniqueHashStr(args);
+            BeanHasher.hash(args);
+        }
+        Stopwatch sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            CacheUtil.getUniqueHashStr(args);
+        }
+        sw.stop();
+        System.out.println("BeanUtil.toString + getMiscHashCode--->" + sw);
+        sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            BeanHasher.hash(args);
+        }
+        sw.stop();
+        System.out.println("BeanHasher--->" + sw);
+    }
+
+    private static Object[] getArgs(int size) {
+        Query query=new Query();
+        query.name="query";
+        for(int i=0; i < size; i++) {
+            query.ids.add((long)i);
+        }
+        for(int i=0; i < 10; i++) {
+            query.params.put("param" + i, "value" + i);
+        }
+        query.time=new Date(1500000000000L);
+        return new Object[]{query, 1, 20};
+    }
+
+    static class Query {
+
+        private String name;
+
+        private List<Long> ids=new ArrayList<Long>();
+
+        private Map<String, String> params=new HashMap<String, String>();
+
+        private Date time;
+    }
+}
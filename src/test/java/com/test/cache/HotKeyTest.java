@@ -0,0 +1,106 @@
+package com.test.cache;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jarvis.cache.ComboCacheManager;
+import com.jarvis.cache.exception.CacheCenterConnectionException;
+import com.jarvis.cache.hotkey.HotKeyDetector;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.HotKeyTO;
+
+import junit.framework.TestCase;
+
+/**
+ * 热点Key 探测测试
+ * @author jiayu.qiu
+ */
+public class HotKeyTest extends TestCase {
+
+    public void testDetect() throws Exception {
+        HotKeyDetector detector=new HotKeyDetector(100, 500L, 5, 2, 1024);
+        CacheKeyTO hot1=new CacheKeyTO("test", "hot1", null);
+        CacheKeyTO hot2=new CacheKeyTO("test", "hot2", null);
+        CacheKeyTO hot3=new CacheKeyTO("test", "hot3", null);
+        for(int i=0; i < 99; i++) {
+            assertFalse(detector.record(hot1));
+        }
+        assertTrue(detector.record(hot1));
+        for(int i=0; i < 1000; i++) {
+            assertFalse(detector.isHot(new CacheKeyTO("test", "cold" + i, null)));
+            detector.record(new CacheKeyTO("test", "cold" + i, null));
+        }
+        for(int i=0; i < 200; i++) {
+            detector.record(hot2);
+        }
+        for(int i=0; i < 300; i++) {
+            detector.record(hot3);
+        }
+        // 最多保留2个热点Key，访问次数最少的被替换
+        List<HotKeyTO> hotKeys=detector.getHotKeys();
+        assertEquals(2, hotKeys.size());
+        assertEquals(hot3, hotKeys.get(0).getCacheKey());
+        assertEquals(hot2, hotKeys.get(1).getCacheKey());
+        assertFalse(detector.isHot(hot1));
+        assertTrue(hotKeys.get(0).getRate() > hotKeys.get(1).getRate());
+
+        // 超过窗口时间后不再是热点Key
+        Thread.sleep(600);
+        detector.record(hot1);
+        assertEquals(0, detector.getHotKeys().size());
+    }
+
+    public void testPromoteToLocal() throws Throwable {
+        AutoLoadConfig config=new AutoLoadConfig();
+        HessianSerializer serializer=new HessianSerializer();
+        MapCacheManager localCache=new MapCacheManager(config, serializer);
+        localCache.setNeedPersist(false);
+        final AtomicInteger remoteGets=new AtomicInteger(0);
+        MapCacheManager remoteCache=new MapCacheManager(config, serializer) {
+
+            @Override
+            public CacheWrapper<Object> get(CacheKeyTO key, Method method, Object[] args) throws CacheCenterConnectionException {
+                remoteGets.incrementAndGet();
+                return super.get(key, method, args);
+            }
+        };
+        remoteCache.setNeedPersist(false);
+        ComboCacheManager cacheManager=new ComboCacheManager(localCache, remoteCache, new SpringELParser());
+        cacheManager.setHotKeyDetector(new HotKeyDetector(10));
+        Method method=UserDAO.class.getMethod("getUserName", Long.class);
+        CacheKeyTO key=new CacheKeyTO(config.getNamespace(), "name_1", null);
+        cacheManager.setCache(key, new CacheWrapper<Object>("user1", 600), method, null);
+        for(int i=0; i < 100; i++) {
+            assertEquals("user1", cacheManager.get(key, method, null).getCacheObject());
+        }
+        // 成为热点Key 之后，从本地缓存获取
+        assertEquals(10, remoteGets.get());
+        assertEquals(1, cacheManager.getHotKeys().size());
+        assertEquals(key, cacheManager.getHotKeys().get(0).getCacheKey());
+
+        // 热点Key 更新时，同时更新本地缓存
+        cacheManager.setCache(key, new CacheWrapper<Object>("user1_1", 600), method, null);
+        assertEquals("user1_1", cacheManager.get(key, method, null).getCacheObject());
+        assertEquals(10, remoteGets.get());
+        assertEquals(cacheManager.getHotKeyExpire(), localCache.get(key, method, null).getExpire());
+
+        // 从本地缓存获取时，使用远程缓存的过期信息
+        CacheWrapper<Object> wrapper=new CacheWrapper<Object>("user1_2", 600);
+        wrapper.setMaxStale(60);
+        wrapper.setLoadDataUseTime(25);
+        cacheManager.setCache(key, wrapper, method, null);
+        CacheWrapper<Object> result=cacheManager.get(key, method, null);
+        assertEquals(10, remoteGets.get());
+        assertEquals("user1_2", result.getCacheObject());
+        assertEquals(600, result.getExpire());
+        assertEquals(wrapper.getLastLoadTime(), result.getLastLoadTime());
+        assertEquals(60, result.getMaxStale());
+        assertEquals(25, result.getLoadDataUseTime());
+    }
+}
@@ -0,0 +1,114 @@
+package com.test.cache;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.exception.CacheCenterConnectionException;
+import com.jarvis.cache.lock.ILock;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.notify.LocalLoadNotifier;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+import junit.framework.TestCase;
+
+/**
+ * 用两个CacheHandler 模拟两个节点，共用同一个缓存、分布式锁及通知：没有获得锁的节点等待通知，而不是定时轮询缓存
+ * @author jiayu.qiu
+ */
+public class LoadNotifierTest extends TestCase {
+
+    public void testWaitForNotification() throws Throwable {
+        AutoLoadConfig config=new AutoLoadConfig();
+        HessianSerializer serializer=new HessianSerializer();
+        final AtomicInteger gets=new AtomicInteger(0);
+        MapCacheManager cacheManager=new MapCacheManager(config, serializer) {
+
+            @Override
+            public CacheWrapper<Object> get(CacheKeyTO cacheKeyTO, Method method, Object[] args) throws CacheCenterConnectionException {
+                gets.incrementAndGet();
+                return super.get(cacheKeyTO, method, args);
+            }
+        };
+        cacheManager.setNeedPersist(false);
+        MemoryLock lock=new MemoryLock();
+        LocalLoadNotifier loadNotifier=new LocalLoadNotifier();
+        final CacheHandler node1=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+        CacheHandler node2=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+        for(CacheHandler node: new CacheHandler[]{node1, node2}) {
+            node.setLock(lock);
+            node.setLoadNotifier(loadNotifier);
+        }
+        final UserDAO dao=new UserDAO();
+        dao.loadTime=300;
+        final Cache cache=UserDAO.class.getMethod("getUserName", Long.class).getAnnotation(Cache.class);
+
+        final CountDownLatch done=new CountDownLatch(1);
+        Thread thread=new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    node1.proceed(new MethodProxyChain(dao, "getUserName", 1L), cache);
+                } catch(Throwable e) {
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+        thread.start();
+        while(dao.calls.isEmpty()) {// 等待node1 获得锁并开始加载数据
+            Thread.sleep(5);
+        }
+        int getsBefore=gets.get();
+        long start=System.currentTimeMillis();
+        Object res=node2.proceed(new MethodProxyChain(dao, "getUserName", 1L), cache);
+        long useTime=System.currentTimeMillis() - start;
+        done.await();
+        node1.destroy();
+        node2.destroy();
+
+        System.out.println("wait for notification: use time=" + useTime + "ms, cache gets=" + (gets.get() - getsBefore));
+        assertEquals("user1", res);
+        assertEquals(1, dao.calls.size());
+        assertTrue(gets.get() - getsBefore <= 3);
+        assertEquals(0, loadNotifier.getWaitingKeySize());
+    }
+
+    public void testTimeout() throws InterruptedException {
+        LocalLoadNotifier loadNotifier=new LocalLoadNotifier();
+        CountDownLatch latch=loadNotifier.listen("key");
+        assertFalse(loadNotifier.await("key", latch, 20));
+        assertEquals(0, loadNotifier.getWaitingKeySize());
+
+        latch=loadNotifier.listen("key");
+        loadNotifier.publish("key");
+        assertTrue(loadNotifier.await("key", latch, 20));
+    }
+
+    /**
+     * 进程内的分布式锁替身
+     */
+    private static class MemoryLock implements ILock {
+
+        private final ConcurrentHashMap<String, Boolean> locks=new ConcurrentHashMap<String, Boolean>();
+
+        @Override
+        public boolean tryLock(String key, int lockExpire) {
+            return null == locks.putIfAbsent(key, Boolean.TRUE);
+        }
+
+        @Override
+        public void unlock(String key) {
+            locks.remove(key);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.test.cache;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+
+import com.jarvis.cache.reflect.MethodMeta;
+import com.jarvis.cache.to.CacheWrapper;
+
+import junit.framework.TestCase;
+
+/**
+ * 方法缓存元数据测试
+ * @author jiayu.qiu
+ */
+public class MethodMetaTest extends TestCase {
+
+    public void testMeta() throws Exception {
+        Method method=UserDAO.class.getMethod("getUserName", Long.class);
+        MethodMeta meta=MethodMeta.get(method);
+        assertSame(meta, MethodMeta.get(method));
+        assertSame(method.getAnnotation(com.jarvis.cache.annotation.Cache.class), meta.getCache());
+        assertNull(meta.getCacheDelete());
+        assertFalse(meta.hasLocalCache());
+        assertFalse(meta.isAsync());
+        assertEquals(String.class, meta.getValueType());
+        assertEquals("name_", meta.getKeyPrefix());
+        assertEquals(UserDAO.class.getName() + ".getUserName", meta.getName());
+        ParameterizedType wrapperType=(ParameterizedType)meta.getWrapperType();
+        assertEquals(CacheWrapper.class, wrapperType.getRawType());
+        assertEquals(String.class, wrapperType.getActualTypeArguments()[0]);
+    }
+
+    public void testAsync() throws Exception {
+        MethodMeta meta=MethodMeta.get(UserDAO.class.getMethod("getAsyncUserName", Long.class));
+        assertTrue(meta.isAsync());
+        assertEquals(String.class, meta.getValueType());
+    }
+
+    public void testElementType() throws Exception {
+        assertEquals(UserDAO.User.class, MethodMeta.get(UserDAO.class.getMethod("getUsers", java.util.List.class)).getElementType());
+        assertEquals(String.class, MethodMeta.get(UserDAO.class.getMethod("getUserNames", Long[].class)).getElementType());
+        assertEquals(Object.class, MethodMeta.get(UserDAO.class.getMethod("getUserName", Long.class)).getElementType());
+    }
+}
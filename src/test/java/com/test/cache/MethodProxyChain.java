@@ -0,0 +1,58 @@
+package com.test.cache;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import com.jarvis.cache.aop.CacheAopProxyChain;
+
+/**
+ * 通过反射直接调用目标方法，用于在测试中模拟AOP拦截
+ * @author jiayu.qiu
+ */
+public class MethodProxyChain implements CacheAopProxyChain {
+
+    private final Object target;
+
+    private final Method method;
+
+    private final Object[] args;
+
+    public MethodProxyChain(Object target, String methodName, Object... args) {
+        this.target=target;
+        this.args=args;
+        Method tmp=null;
+        for(Method m: target.getClass().getMethods()) {
+            if(m.getName().equals(methodName)) {
+                tmp=m;
+                break;
+            }
+        }
+        this.method=tmp;
+    }
+
+    @Override
+    public Object[] getArgs() {
+        return args;
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Class getTargetClass() {
+        return target.getClass();
+    }
+
+    @Override
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public Object doProxyChain(Object[] arguments) throws Throwable {
+        try {
+            return method.invoke(target, arguments);
+        } catch(InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+}
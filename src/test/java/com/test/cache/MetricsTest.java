@@ -0,0 +1,103 @@
+package com.test.cache;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.metrics.CacheMetrics;
+import com.jarvis.cache.metrics.CacheMetricsRegistry;
+import com.jarvis.cache.metrics.Histogram;
+import com.jarvis.cache.metrics.JmxMetricsExporter;
+import com.jarvis.cache.metrics.MethodMetrics;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+
+import junit.framework.TestCase;
+
+/**
+ * 缓存统计测试
+ * @author jiayu.qiu
+ */
+public class MetricsTest extends TestCase {
+
+    public void testHistogram() {
+        Histogram histogram=new Histogram();
+        for(long i=1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000000, histogram.getMax());
+        assertEquals(5000500D, histogram.getMean(), 1D);
+        // 每个桶的相对误差不超过1/16
+        assertEquals(5000000D, histogram.getValueAtPercentile(50), 5000000D / 16);
+        assertEquals(9900000D, histogram.getValueAtPercentile(99), 9900000D / 16);
+        assertEquals(10000000, histogram.getValueAtPercentile(100));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    public void testHitAndMiss() throws Throwable {
+        AutoLoadConfig config=new AutoLoadConfig();
+        HessianSerializer serializer=new HessianSerializer();
+        MapCacheManager cacheManager=new MapCacheManager(config, serializer);
+        cacheManager.setNeedPersist(false);
+        CacheHandler cacheHandler=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+        CacheMetricsRegistry registry=new CacheMetricsRegistry();
+        cacheHandler.setMetricsRegistry(registry);
+        UserDAO dao=new UserDAO();
+        Cache cache=UserDAO.class.getMethod("getUserById", Long.class).getAnnotation(Cache.class);
+        try {
+            for(int i=0; i < 3; i++) {
+                for(long id=1; id <= 10; id++) {
+                    cacheHandler.proceed(new MethodProxyChain(dao, "getUserById", id), cache);
+                }
+            }
+            MethodMetrics methodMetrics=registry.getMethodMetrics(UserDAO.class.getMethod("getUserById", Long.class));
+            CacheMetrics metrics=methodMetrics.getMethodMetrics();
+            System.out.println(metrics);
+            assertEquals(CacheMetricsRegistry.METHOD_PREFIX + UserDAO.class.getName() + ".getUserById", metrics.getName());
+            assertEquals(20, metrics.getHits());
+            assertEquals(10, metrics.getMisses());
+            assertEquals(2D / 3, metrics.getHitRatio(), 0.0001D);
+            assertEquals(10, metrics.getLoads());
+            assertEquals(0, metrics.getLoadErrors());
+            assertEquals(30, metrics.getRemoteGets());
+            assertEquals(10, metrics.getRemoteSets());
+
+            CacheMetrics prefixMetrics=methodMetrics.getPrefixMetrics();
+            assertEquals(CacheMetricsRegistry.KEY_PREFIX + "bloomUser_", prefixMetrics.getName());
+            assertSame(prefixMetrics, registry.getMetrics(CacheMetricsRegistry.KEY_PREFIX + "bloomUser_"));
+            assertEquals(20, prefixMetrics.getHits());
+        } finally {
+            cacheHandler.destroy();
+        }
+    }
+
+    public void testJmxExporter() throws Exception {
+        CacheMetricsRegistry registry=new CacheMetricsRegistry();
+        CacheMetrics metrics=registry.getMetrics("jmxTest");
+        metrics.recordHit();
+        metrics.recordMiss();
+        JmxMetricsExporter exporter=new JmxMetricsExporter();
+        registry.addExporter(exporter);
+        try {
+            registry.export();
+            registry.export();// 重复导出不会重复注册
+            MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName=exporter.getObjectName(metrics);
+            assertTrue(server.isRegistered(objectName));
+            assertEquals(1L, server.getAttribute(objectName, "Hits"));
+            assertEquals(0.5D, server.getAttribute(objectName, "HitRatio"));
+        } finally {
+            registry.shutdown();
+            exporter.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(exporter.getObjectName(metrics)));
+    }
+}
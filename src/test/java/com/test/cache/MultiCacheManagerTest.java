@@ -0,0 +1,102 @@
+package com.test.cache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.jarvis.cache.ICacheManager;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.redis.AsyncRedisCacheManager;
+import com.jarvis.cache.redis.RedisConnection;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
+
+import junit.framework.TestCase;
+
+/**
+ * 批量接口mset/mget/mdelete 测试：普通Key、哈希表字段、expire=0（永久缓存）及expire&lt;0（不缓存）
+ * @author jiayu.qiu
+ */
+public class MultiCacheManagerTest extends TestCase {
+
+    public void testMapCacheManager() throws Exception {
+        MapCacheManager cacheManager=new MapCacheManager(new AutoLoadConfig(), new HessianSerializer());
+        cacheManager.setNeedPersist(false);
+        checkContract(cacheManager);
+    }
+
+    public void testAsyncRedisCacheManager() throws Exception {
+        AsyncRedisCacheManagerTest.MockRedisServer server=new AsyncRedisCacheManagerTest.MockRedisServer();
+        List<RedisConnection> connections=new ArrayList<RedisConnection>();
+        connections.add(new RedisConnection("127.0.0.1", server.getPort()));
+        AsyncRedisCacheManager cacheManager=new AsyncRedisCacheManager(new HessianSerializer(), connections);
+        try {
+            checkContract(cacheManager);
+        } finally {
+            cacheManager.destroy();
+            server.close();
+        }
+    }
+
+    private static void checkContract(ICacheManager cacheManager) throws Exception {
+        CacheKeyTO k1=new CacheKeyTO("test", "m1", null);
+        CacheKeyTO k2=new CacheKeyTO("test", "m2", null);
+        CacheKeyTO forever=new CacheKeyTO("test", "m3", null);
+        CacheKeyTO negative=new CacheKeyTO("test", "m4", null);
+        CacheKeyTO h1=new CacheKeyTO("test", "mh", "f1");
+        CacheKeyTO h2=new CacheKeyTO("test", "mh", "f2");
+        CacheKeyTO hNegative=new CacheKeyTO("test", "mh", "f3");
+        CacheKeyTO missing=new CacheKeyTO("test", "m5", null);
+
+        List<MSetParam> params=new ArrayList<MSetParam>();
+        params.add(new MSetParam(k1, new CacheWrapper<Object>("v1", 60)));
+        params.add(new MSetParam(k2, new CacheWrapper<Object>("v2", 60)));
+        params.add(new MSetParam(forever, new CacheWrapper<Object>("v3", 0)));
+        params.add(new MSetParam(negative, new CacheWrapper<Object>("v4", -1)));
+        params.add(new MSetParam(h1, new CacheWrapper<Object>("hv1", 60)));
+        params.add(new MSetParam(h2, new CacheWrapper<Object>("hv2", 0)));
+        params.add(new MSetParam(hNegative, new CacheWrapper<Object>("hv3", -1)));
+        cacheManager.mset(null, params);
+
+        Set<CacheKeyTO> keys=new HashSet<CacheKeyTO>();
+        keys.add(k1);
+        keys.add(k2);
+        keys.add(forever);
+        keys.add(negative);
+        keys.add(h1);
+        keys.add(h2);
+        keys.add(hNegative);
+        keys.add(missing);
+        Map<CacheKeyTO, CacheWrapper<Object>> res=cacheManager.mget(null, null, keys);
+        assertEquals(5, res.size());
+        assertEquals("v1", res.get(k1).getCacheObject());
+        assertEquals("v2", res.get(k2).getCacheObject());
+        assertEquals("v3", res.get(forever).getCacheObject());
+        assertEquals("hv1", res.get(h1).getCacheObject());
+        assertEquals("hv2", res.get(h2).getCacheObject());
+        assertFalse(res.containsKey(negative));
+        assertFalse(res.containsKey(hNegative));
+        assertFalse(res.containsKey(missing));
+        // 与单个操作的结果一致
+        assertEquals("v3", cacheManager.get(forever, null, null).getCacheObject());
+        assertEquals("hv2", cacheManager.get(h2, null, null).getCacheObject());
+        assertNull(cacheManager.get(negative, null, null));
+
+        Set<CacheKeyTO> deletes=new HashSet<CacheKeyTO>();
+        deletes.add(k1);
+        deletes.add(h1);
+        deletes.add(missing);
+        cacheManager.mdelete(deletes);
+        res=cacheManager.mget(null, null, keys);
+        assertEquals(3, res.size());
+        assertFalse(res.containsKey(k1));
+        assertFalse(res.containsKey(h1));
+        assertEquals("hv2", res.get(h2).getCacheObject());// 只删除哈希表中的字段
+        assertEquals("v2", res.get(k2).getCacheObject());
+    }
+}
@@ -0,0 +1,111 @@
+package com.test.cache;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.jarvis.cache.offheap.OffHeapCacheManager;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+import junit.framework.TestCase;
+
+/**
+ * 堆外内存缓存测试
+ * @author jiayu.qiu
+ */
+public class OffHeapCacheTest extends TestCase {
+
+    private static CacheKeyTO key(String key, String hfield) {
+        return new CacheKeyTO("test", key, hfield);
+    }
+
+    private static void put(OffHeapCacheManager cacheManager, String key, String hfield, Object value, int expire) throws Exception {
+        cacheManager.setCache(key(key, hfield), new CacheWrapper<Object>(value, expire), null, null);
+    }
+
+    private static Object get(OffHeapCacheManager cacheManager, String key, String hfield) throws Exception {
+        CacheWrapper<Object> wrapper=cacheManager.get(key(key, hfield), null, null);
+        return null == wrapper ? null : wrapper.getCacheObject();
+    }
+
+    public void testSetGetDelete() throws Exception {
+        OffHeapCacheManager cacheManager=new OffHeapCacheManager(new HessianSerializer(), 1024 * 1024, 64 * 1024);
+        put(cacheManager, "k1", null, "v1", 600);
+        put(cacheManager, "k1", null, "v2", 600);
+        put(cacheManager, "hash", "f1", "h1", 600);
+        put(cacheManager, "hash", "f2", "h2", 600);
+        put(cacheManager, "short", null, "v", 1);
+        assertEquals(4, cacheManager.getSize());
+        assertEquals("v2", get(cacheManager, "k1", null));
+        assertEquals("h2", get(cacheManager, "hash", "f2"));
+        assertEquals(64 * 1024, cacheManager.getAllocatedMemory());
+
+        Set<CacheKeyTO> keys=new HashSet<CacheKeyTO>();
+        keys.add(key("k1", null));
+        keys.add(key("hash", "f1"));
+        keys.add(key("none", null));
+        Map<CacheKeyTO, CacheWrapper<Object>> res=cacheManager.mget(null, null, keys);
+        assertEquals(2, res.size());
+
+        cacheManager.delete(key("hash", "f1"));
+        assertNull(get(cacheManager, "hash", "f1"));
+        assertEquals("h2", get(cacheManager, "hash", "f2"));
+        cacheManager.delete(key("hash", null));
+        assertNull(get(cacheManager, "hash", "f2"));
+        assertEquals(2, cacheManager.getSize());
+
+        Thread.sleep(1100);
+        assertNull(get(cacheManager, "short", null));
+    }
+
+    public void testEviction() throws Exception {
+        OffHeapCacheManager cacheManager=new OffHeapCacheManager(new HessianSerializer(), 256 * 1024, 32 * 1024);
+        StringBuilder value=new StringBuilder();
+        for(int i=0; i < 100; i++) {
+            value.append('x');
+        }
+        for(int i=0; i < 20; i++) {
+            put(cacheManager, "hot" + i, null, value.toString(), 600);
+        }
+        for(int i=0; i < 20000; i++) {
+            put(cacheManager, "k" + i, null, value.toString(), 600);
+            if(i % 100 == 0) {
+                for(int j=0; j < 20; j++) {
+                    assertNotNull("hot" + j + " is evicted at " + i, get(cacheManager, "hot" + j, null));
+                }
+            }
+        }
+        System.out.println("size=" + cacheManager.getSize() + ", eviction=" + cacheManager.getEvictionCount() + ", memory=" + cacheManager.getAllocatedMemory());
+        assertEquals(256 * 1024, cacheManager.getAllocatedMemory());
+        assertTrue(cacheManager.getEvictionCount() > 15000);
+        assertTrue(cacheManager.getSize() < 3000);
+        assertEquals(value.toString(), get(cacheManager, "k19999", null));
+        assertNull(get(cacheManager, "k0", null));
+    }
+
+    public void testWrapAround() throws Exception {
+        int slabSize=4 * 1024;
+        OffHeapCacheManager cacheManager=new OffHeapCacheManager(new HessianSerializer(), 3 * slabSize, slabSize);
+        StringBuilder small=new StringBuilder();
+        while(small.length() < 50) {
+            small.append('s');
+        }
+        StringBuilder large=new StringBuilder();
+        while(large.length() < slabSize * 3 / 4) {// 大于回收后保留数据之外的剩余空间
+            large.append('l');
+        }
+        for(int round=0; round < 20; round++) {
+            for(int i=0; i < 100; i++) {// 写满所有分块，并且都被访问过
+                put(cacheManager, "s" + i, null, small.toString(), 600);
+                get(cacheManager, "s" + i, null);
+            }
+            put(cacheManager, "large" + round, null, large.toString(), 600);
+            assertEquals(large.toString(), get(cacheManager, "large" + round, null));
+        }
+        assertEquals(3 * slabSize, cacheManager.getAllocatedMemory());
+        assertTrue(cacheManager.getEvictionCount() > 0);
+        assertEquals(small.toString(), get(cacheManager, "s99", null));
+    }
+}
@@ -0,0 +1,85 @@
+package com.test.cache;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+
+import junit.framework.TestCase;
+
+/**
+ * 并发请求同一个缓存Key时，只有一个请求去数据源加载数据，其它请求等待其结果。同时输出等待线程的CPU耗时及p99延迟
+ * @author jiayu.qiu
+ */
+public class SingleFlightTest extends TestCase {
+
+    private static final int CALLERS=1000;
+
+    private static final long LOAD_TIME=300;
+
+    public void testSingleFlight() throws Exception {
+        AutoLoadConfig config=new AutoLoadConfig();
+        HessianSerializer serializer=new HessianSerializer();
+        MapCacheManager cacheManager=new MapCacheManager(config, serializer);
+        cacheManager.setNeedPersist(false);
+        final CacheHandler cacheHandler=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+        final UserDAO dao=new UserDAO();
+        dao.loadTime=LOAD_TIME;
+        final Cache cache=UserDAO.class.getMethod("getUserName", Long.class).getAnnotation(Cache.class);
+        final ThreadMXBean threadMXBean=ManagementFactory.getThreadMXBean();
+
+        final CountDownLatch start=new CountDownLatch(1);
+        final CountDownLatch done=new CountDownLatch(CALLERS);
+        final long[] latencies=new long[CALLERS];
+        final long[] cpuTimes=new long[CALLERS];
+        final AtomicInteger errors=new AtomicInteger(0);
+        for(int i=0; i < CALLERS; i++) {
+            final int index=i;
+            Thread thread=new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        long cpu=threadMXBean.getCurrentThreadCpuTime();
+                        long begin=System.nanoTime();
+                        Object res=cacheHandler.proceed(new MethodProxyChain(dao, "getUserName", 1L), cache);
+                        latencies[index]=System.nanoTime() - begin;
+                        cpuTimes[index]=threadMXBean.getCurrentThreadCpuTime() - cpu;
+                        if(!"user1".equals(res)) {
+                            errors.incrementAndGet();
+                        }
+                    } catch(Throwable e) {
+                        e.printStackTrace();
+                        errors.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        start.countDown();
+        done.await();
+        cacheHandler.destroy();
+
+        Arrays.sort(latencies);
+        long totalCpu=0;
+        for(long cpuTime: cpuTimes) {
+            totalCpu+=cpuTime;
+        }
+        System.out.println("single flight: callers=" + CALLERS + ", loads=" + dao.calls.size() + ", p50=" + latencies[CALLERS / 2] / 1000000 + "ms, p99=" + latencies[CALLERS * 99 / 100] / 1000000
+            + "ms, total cpu=" + totalCpu / 1000000 + "ms");
+        assertEquals(0, errors.get());
+        assertEquals(1, dao.calls.size());
+    }
+}
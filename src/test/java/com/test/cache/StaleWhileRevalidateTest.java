@@ -0,0 +1,88 @@
+package com.test.cache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+
+import junit.framework.TestCase;
+
+/**
+ * stale-while-revalidate 测试：缓存过期后，在maxStale 时间内直接返回过期数据，并且只有一个后台刷新任务
+ * @author jiayu.qiu
+ */
+public class StaleWhileRevalidateTest extends TestCase {
+
+    private static final int CALLERS=50;
+
+    private static final long LOAD_TIME=500;
+
+    public void testStaleWhileRevalidate() throws Throwable {
+        AutoLoadConfig config=new AutoLoadConfig();
+        HessianSerializer serializer=new HessianSerializer();
+        MapCacheManager cacheManager=new MapCacheManager(config, serializer);
+        cacheManager.setNeedPersist(false);
+        final CacheHandler cacheHandler=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+        final UserDAO dao=new UserDAO();
+        final Cache cache=UserDAO.class.getMethod("getStaleUserName", Long.class).getAnnotation(Cache.class);
+        try {
+            assertEquals("user1_1", cacheHandler.proceed(new MethodProxyChain(dao, "getStaleUserName", 1L), cache));
+            CacheWrapper<Object> wrapper=cacheManager.get(new CacheKeyTO(config.getNamespace(), "staleName_1", null), null, null);
+            assertEquals(60, wrapper.getMaxStale());
+            Thread.sleep(1100);// 逻辑过期
+            dao.loadTime=LOAD_TIME;
+
+            final CountDownLatch start=new CountDownLatch(1);
+            final CountDownLatch done=new CountDownLatch(CALLERS);
+            final AtomicInteger errors=new AtomicInteger(0);
+            final long[] latencies=new long[CALLERS];
+            for(int i=0; i < CALLERS; i++) {
+                final int index=i;
+                Thread thread=new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            long begin=System.nanoTime();
+                            Object res=cacheHandler.proceed(new MethodProxyChain(dao, "getStaleUserName", 1L), cache);
+                            latencies[index]=(System.nanoTime() - begin) / 1000000;
+                            if(!"user1_1".equals(res)) {
+                                errors.incrementAndGet();
+                            }
+                        } catch(Throwable e) {
+                            e.printStackTrace();
+                            errors.incrementAndGet();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            }
+            start.countDown();
+            done.await();
+            long max=0;
+            for(long latency: latencies) {
+                max=Math.max(max, latency);
+            }
+            System.out.println("stale while revalidate: callers=" + CALLERS + ", max latency=" + max + "ms");
+            assertEquals(0, errors.get());
+            assertTrue(max < LOAD_TIME);
+
+            Thread.sleep(LOAD_TIME * 3);// 等待后台刷新完成
+            assertEquals(2, dao.calls.size());
+            assertEquals("user1_2", cacheHandler.proceed(new MethodProxyChain(dao, "getStaleUserName", 1L), cache));
+        } finally {
+            cacheHandler.destroy();
+        }
+    }
+}
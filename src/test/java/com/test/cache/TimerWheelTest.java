@@ -0,0 +1,171 @@
+package com.test.cache;
+
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.map.TimerWheel;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.test.Stopwatch;
+
+import junit.framework.TestCase;
+
+/**
+ * 时间轮过期测试
+ * @author jiayu.qiu
+ */
+public class TimerWheelTest extends TestCase {
+
+    public void testAdvance() {
+        long start=1000000000L;
+        TimerWheel wheel=new TimerWheel(start);
+        long[] delays={500, 3000, 70000, 2 * 3600 * 1000L, 5 * 24 * 3600 * 1000L, 300 * 24 * 3600 * 1000L};
+        for(int i=0; i < delays.length; i++) {
+            wheel.schedule("k" + i, null, start + delays[i]);
+        }
+        wheel.schedule("h", "f", start + 3000);
+        wheel.schedule("k1", null, start + 80000);// 覆盖之前的过期时间
+        wheel.schedule("k3", null, start + 100);
+        wheel.cancel("k3", null);
+
+        assertEquals(0, wheel.advance(start + 100).size());
+        assertEquals(1, wheel.advance(start + 600).size());
+        assertEquals(1, wheel.advance(start + 3500).size());
+        assertEquals(0, wheel.advance(start + 60000).size());
+        List<String[]> expired=wheel.advance(start + 90000);
+        assertEquals(2, expired.size());
+        assertEquals(2, wheel.size());
+        assertEquals(1, wheel.advance(start + 6 * 24 * 3600 * 1000L).size());
+        assertEquals(0, wheel.advance(start + 200 * 24 * 3600 * 1000L).size());
+        assertEquals(1, wheel.advance(start + 301 * 24 * 3600 * 1000L).size());
+        assertEquals(0, wheel.size());
+    }
+
+    public void testAdvanceCost() {
+        long start=System.currentTimeMillis();
+        TimerWheel wheel=new TimerWheel(start);
+        int size=1000000;
+        for(int i=0; i < size; i++) {
+            wheel.schedule("key" + i, null, start + 600000 + (i % 3600) * 1000L);
+        }
+        Stopwatch sw=Stopwatch.begin();
+        int expired=0;
+        for(int second=1; second <= 60; second++) {// 前1分钟没有数据过期
+            expired+=wheel.advance(start + second * 1000L).size();
+        }
+        sw.stop();
+        System.out.println("advance 60 ticks over " + size + " entries with " + expired + " expirations: " + sw + "ms");
+        assertEquals(0, expired);
+        sw=Stopwatch.begin();
+        for(int second=601; second <= 610; second++) {
+            expired+=wheel.advance(start + second * 1000L).size();
+        }
+        sw.stop();
+        System.out.println("advance 10 ticks with " + expired + " expirations: " + sw + "ms");
+        assertTrue(expired >= 2500 && expired <= 3100);
+    }
+
+    public void testConcurrentSchedule() throws Exception {
+        final long start=1000000000L;
+        final TimerWheel wheel=new TimerWheel(start);
+        final int threadCnt=8;
+        final int size=20000;
+        Thread[] threads=new Thread[threadCnt];
+        for(int t=0; t < threadCnt; t++) {
+            final int index=t;
+            threads[t]=new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for(int i=0; i < size; i++) {
+                        String key="t" + index + "_" + i;
+                        wheel.schedule(key, null, start + 1000000L);
+                        wheel.schedule(key, null, start + 2000 + (i % 10) * 1000L);// 以最后一次为准
+                        if(i % 2 == 0) {
+                            wheel.cancel(key, null);
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        assertEquals(threadCnt * size / 2, wheel.size());
+        assertEquals(0, wheel.advance(start + 1000).size());
+        assertEquals(threadCnt * size / 2, wheel.advance(start + 20000).size());
+        assertEquals(0, wheel.size());
+    }
+
+    public void testMapCacheManager() throws Exception {
+        MapCacheManager cacheManager=new MapCacheManager(new AutoLoadConfig(), new HessianSerializer());
+        cacheManager.setNeedPersist(false);
+        for(int i=0; i < 100; i++) {
+            cacheManager.setCache(new CacheKeyTO("test", "short" + i, null), new CacheWrapper<Object>(i, 1), null, null);
+            cacheManager.setCache(new CacheKeyTO("test", "hash", "f" + i), new CacheWrapper<Object>(i, 1), null, null);
+            cacheManager.setCache(new CacheKeyTO("test", "long" + i, null), new CacheWrapper<Object>(i, 600), null, null);
+        }
+        cacheManager.setCache(new CacheKeyTO("test", "forever", null), new CacheWrapper<Object>(1, 0), null, null);
+        assertEquals(300, cacheManager.getExpirableSize());
+        cacheManager.start();
+        try {
+            Thread.sleep(3500);
+            assertEquals(101, cacheManager.getCache().size());
+            assertEquals(100, cacheManager.getExpirableSize());
+        } finally {
+            cacheManager.destroy();
+        }
+    }
+
+    public void testConcurrentPutAndDelete() throws Exception {
+        final MapCacheManager cacheManager=new MapCacheManager(new AutoLoadConfig(), new HessianSerializer());
+        cacheManager.setNeedPersist(false);
+        final int rounds=50000;
+        final CyclicBarrier barrier=new CyclicBarrier(2);
+        Thread[] threads=new Thread[2];
+        for(int t=0; t < threads.length; t++) {
+            final boolean put=t == 0;
+            threads[t]=new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for(int i=0; i < rounds; i++) {// 每一轮同时写入与删除同一个已存在的Key
+                            CacheKeyTO key=new CacheKeyTO("test", "k" + i, null);
+                            if(put) {
+                                cacheManager.setCache(key, new CacheWrapper<Object>(-i, 1), null, null);
+                            }
+                            barrier.await();
+                            if(put) {
+                                cacheManager.setCache(key, new CacheWrapper<Object>(i, 1), null, null);
+                            } else {
+                                cacheManager.delete(key);
+                            }
+                        }
+                    } catch(Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        cacheManager.start();
+        try {
+            long start=System.currentTimeMillis();
+            while(!cacheManager.getCache().isEmpty() && System.currentTimeMillis() - start < 5000) {
+                Thread.sleep(100);
+            }
+            assertEquals(0, cacheManager.getCache().size());// 留在缓存中的数据都能按时清除
+            assertEquals(0, cacheManager.getExpirableSize());
+        } finally {
+            cacheManager.destroy();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.test.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.jarvis.cache.annotation.Cache;
+
+/**
+ * 测试用DAO，记录每次真正调用时的参数
+ * @author jiayu.qiu
+ */
+public class UserDAO {
+
+    public final List<Object> calls=new CopyOnWriteArrayList<Object>();
+
+    @Cache(expire=600, key="'user_'+#args[0]", batchArgIndex=0, batchResultId="#retVal.id")
+    public List<User> getUsers(List<Long> ids) {
+        calls.add(ids);
+        List<User> res=new ArrayList<User>(ids.size());
+        for(Long id: ids) {
+            if(id.longValue() > 0) {
+                res.add(new User(id, "user" + id));
+            }
+        }
+        return res;
+    }
+
+    @Cache(expire=600, key="'userName_'+#args[0]", batchArgIndex=0)
+    public Map<Long, String> getUserNames(Long[] ids) {
+        calls.add(ids);
+        Map<Long, String> res=new LinkedHashMap<Long, String>(ids.length);
+        for(Long id: ids) {
+            res.put(id, "user" + id);
+        }
+        return res;
+    }
+
+    /**
+     * 模拟耗时的数据加载，单位：毫秒
+     */
+    public volatile long loadTime=0;
+
+    @Cache(expire=600, key="'name_'+#args[0]", waitTimeOut=5000)
+    public String getUserName(Long id) throws InterruptedException {
+        calls.add(id);
+        if(loadTime > 0) {
+            Thread.sleep(loadTime);
+        }
+        return "user" + id;
+    }
+
+    @Cache(expire=600, key="'autoName_'+#args[0]", autoload=true)
+    public String getAutoUserName(Long id) {
+        calls.add(id);
+        return "user" + id;
+    }
+
+    @Cache(expire=1, maxStale=60, key="'staleName_'+#args[0]", waitTimeOut=5000)
+    public String getStaleUserName(Long id) throws InterruptedException {
+        calls.add(id);
+        if(loadTime > 0) {
+            Thread.sleep(loadTime);
+        }
+        return "user" + id + "_" + calls.size();
+    }
+
+    @Cache(expire=600, key="'asyncName_'+#args[0]")
+    public CompletableFuture<String> getAsyncUserName(final Long id) {
+        calls.add(id);
+        final CompletableFuture<String> future=new CompletableFuture<String>();
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if(loadTime > 0) {
+                        Thread.sleep(loadTime);
+                    }
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if(id.longValue() < 0) {
+                    future.completeExceptionally(new IllegalArgumentException("id:" + id));
+                } else {
+                    future.complete("user" + id);
+                }
+            }
+        }).start();
+        return future;
+    }
+
+    @Cache(expire=600, key="'bloomUser_'+#args[0]", bloomFilter="bloomUser")
+    public User getUserById(Long id) {
+        calls.add(id);
+        return id.longValue() > 0 ? new User(id, "user" + id) : null;
+    }
+
+    public static class User implements java.io.Serializable {
+
+        private static final long serialVersionUID=1L;
+
+        private final Long id;
+
+        private final String name;
+
+        public User(Long id, String name) {
+            this.id=id;
+            this.name=name;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.test.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.test.Stopwatch;
+
+import junit.framework.TestCase;
+
+/**
+ * MapCacheManager 启动时加载持久化数据的测试
+ * @author jiayu.qiu
+ */
+public class WarmStartTest extends TestCase {
+
+    private static final int SIZE=100000;
+
+    private HessianSerializer serializer;
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        serializer=new HessianSerializer();
+        dir=new File(System.getProperty("java.io.tmpdir"), "autoload-cache-warm-" + System.nanoTime());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files=dir.listFiles();
+        if(null != files) {
+            for(File f: files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private MapCacheManager newCacheManager() {
+        MapCacheManager cacheManager=new MapCacheManager(new AutoLoadConfig(), serializer);
+        cacheManager.setPersistFile(dir.getAbsolutePath() + "/");
+        return cacheManager;
+    }
+
+    private static CacheKeyTO key(String key) {
+        return new CacheKeyTO("test", key, null);
+    }
+
+    private static Object get(MapCacheManager cacheManager, String key) throws Exception {
+        CacheWrapper<Object> wrapper=cacheManager.get(key(key), null, null);
+        return null == wrapper ? null : wrapper.getCacheObject();
+    }
+
+    private void fill(MapCacheManager cacheManager) throws Exception {
+        for(int i=0; i < SIZE; i++) {
+            CacheWrapper<Object> wrapper=new CacheWrapper<Object>("value-" + i, i % 10 == 0 ? 1 : 600);
+            wrapper.setLoadDataUseTime(i % 100);
+            cacheManager.setCache(key("k" + i), wrapper, null, null);
+        }
+    }
+
+    public void testParallelLoad() throws Exception {
+        MapCacheManager cacheManager=newCacheManager();
+        cacheManager.start();
+        assertTrue(cacheManager.awaitLoaded(10000));
+        fill(cacheManager);
+        cacheManager.destroy();
+        Thread.sleep(1100);// 每10个中有1个过期
+
+        MapCacheManager restarted=newCacheManager();
+        Stopwatch sw=Stopwatch.begin();
+        restarted.start();
+        restarted.setCache(key("k1"), new CacheWrapper<Object>("new", 600), null, null);// 加载期间写入的数据不会被旧数据覆盖
+        restarted.delete(key("k2"));
+        int revived=0;
+        for(int i=7; i < SIZE; i+=7) {// 与加载线程同时写入
+            restarted.setCache(key("k" + i), new CacheWrapper<Object>("new", 600), null, null);
+            if(i % 10 == 0) {// 已过期的数据被重新写入
+                revived++;
+            }
+        }
+        assertTrue(restarted.awaitLoaded(30000));
+        sw.stop();
+        System.out.println("parallel load " + SIZE + " caches use time: " + sw);
+        try {
+            assertFalse(restarted.isLoading());
+            assertEquals("new", get(restarted, "k1"));
+            assertEquals("value-3", get(restarted, "k3"));
+            assertEquals(3, restarted.get(key("k3"), null, null).getLoadDataUseTime());
+            assertEquals("value-" + (SIZE - 1), get(restarted, "k" + (SIZE - 1)));
+            for(int i=7; i < SIZE; i+=7) {
+                assertEquals("new", get(restarted, "k" + i));
+            }
+            assertNull(get(restarted, "k10"));
+            assertEquals(SIZE - SIZE / 10 - 1 + revived, restarted.getCache().size());
+        } finally {
+            restarted.setNeedPersist(false);
+            restarted.destroy();
+        }
+    }
+
+    public void testDestroyWhileLoading() throws Exception {
+        MapCacheManager cacheManager=newCacheManager();
+        cacheManager.start();
+        assertTrue(cacheManager.awaitLoaded(10000));
+        fill(cacheManager);
+        cacheManager.destroy();
+
+        MapCacheManager restarted=newCacheManager();
+        restarted.start();
+        restarted.setCache(key("fresh"), new CacheWrapper<Object>("fresh", 600), null, null);
+        restarted.destroy();// 还在加载时关闭，启动后写入的数据不能丢失
+
+        MapCacheManager again=newCacheManager();
+        again.start();
+        assertTrue(again.awaitLoaded(30000));
+        try {
+            assertEquals("fresh", get(again, "fresh"));
+            assertEquals("value-3", get(again, "k3"));
+        } finally {
+            again.setNeedPersist(false);
+            again.destroy();
+        }
+    }
+
+    public void testLongKey() throws Exception {
+        StringBuilder sb=new StringBuilder();
+        while(sb.length() < 70000) {// 超过writeUTF 的64K 限制
+            sb.append("长key-");
+        }
+        String longKey=sb.toString();
+        MapCacheManager cacheManager=newCacheManager();
+        cacheManager.start();
+        assertTrue(cacheManager.awaitLoaded(10000));
+        cacheManager.setCache(key(longKey), new CacheWrapper<Object>("long", 600), null, null);
+        cacheManager.setCache(key("short"), new CacheWrapper<Object>("short", 600), null, null);
+        cacheManager.destroy();
+
+        MapCacheManager restarted=newCacheManager();
+        restarted.start();
+        assertTrue(restarted.awaitLoaded(10000));
+        try {
+            assertEquals("long", get(restarted, longKey));
+            assertEquals("short", get(restarted, "short"));
+        } finally {
+            restarted.setNeedPersist(false);
+            restarted.destroy();
+        }
+    }
+
+    public void testLargeRecord() throws Exception {
+        char[] chars=new char[17 * 1024 * 1024];// 超过单次读取的字节数
+        Arrays.fill(chars, 'v');
+        String large=new String(chars);
+        MapCacheManager cacheManager=newCacheManager();
+        cacheManager.start();
+        assertTrue(cacheManager.awaitLoaded(10000));
+        cacheManager.setCache(key("small"), new CacheWrapper<Object>("small", 600), null, null);
+        cacheManager.setCache(key("large"), new CacheWrapper<Object>(large, 600), null, null);
+        cacheManager.destroy();
+
+        MapCacheManager restarted=newCacheManager();
+        restarted.start();
+        assertTrue(restarted.awaitLoaded(10000));
+        try {
+            assertEquals(large, get(restarted, "large"));
+            assertEquals("small", get(restarted, "small"));
+        } finally {
+            restarted.destroy();// 加载后可以再次替换持久化文件
+        }
+        MapCacheManager again=newCacheManager();
+        again.start();
+        assertTrue(again.awaitLoaded(10000));
+        try {
+            assertEquals(2, again.getCache().size());
+        } finally {
+            again.setNeedPersist(false);
+            again.destroy();
+        }
+    }
+
+    public void testLegacySnapshot() throws Exception {
+        MapCacheManager source=newCacheManager();
+        source.setNeedPersist(false);
+        fill(source);
+        ConcurrentHashMap<String, Object> data=new ConcurrentHashMap<String, Object>();
+        for(int i=0; i < SIZE; i++) {
+            String cacheKey=key("k" + i).getCacheKey();
+            data.put(cacheKey, source.get(key("k" + i), null, null));
+        }
+        dir.mkdirs();
+        FileOutputStream fos=new FileOutputStream(new File(dir, "map.cache"));
+        fos.write(serializer.serialize(data));
+        fos.close();
+        Thread.sleep(1100);
+
+        MapCacheManager legacy=newCacheManager();
+        Stopwatch sw=Stopwatch.begin();
+        legacy.start();
+        assertTrue(legacy.awaitLoaded(30000));
+        sw.stop();
+        System.out.println("legacy load " + SIZE + " caches use time: " + sw);
+        assertEquals(SIZE - SIZE / 10, legacy.getCache().size());
+        assertEquals("value-3", get(legacy, "k3"));
+        legacy.destroy();// 转换为新的格式
+
+        MapCacheManager restarted=newCacheManager();
+        restarted.start();
+        assertTrue(restarted.awaitLoaded(30000));
+        try {
+            assertEquals(SIZE - SIZE / 10, restarted.getCache().size());
+        } finally {
+            restarted.setNeedPersist(false);
+            restarted.destroy();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.test.cache;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jarvis.cache.CacheHandler;
+import com.jarvis.cache.WriteBehindHandler;
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.exception.CacheCenterConnectionException;
+import com.jarvis.cache.map.MapCacheManager;
+import com.jarvis.cache.script.SpringELParser;
+import com.jarvis.cache.serializer.HessianSerializer;
+import com.jarvis.cache.to.AutoLoadConfig;
+import com.jarvis.cache.to.CacheKeyTO;
+import com.jarvis.cache.to.CacheWrapper;
+import com.jarvis.cache.to.MSetParam;
+
+import junit.framework.TestCase;
+
+/**
+ * 异步写缓存测试
+ * @author jiayu.qiu
+ */
+public class WriteBehindTest extends TestCase {
+
+    /**
+     * 写缓存较慢，并且可以阻塞写入的MapCacheManager
+     */
+    static class SlowMapCacheManager extends MapCacheManager {
+
+        volatile CountDownLatch gate=new CountDownLatch(0);
+
+        final AtomicInteger msetCnt=new AtomicInteger(0);
+
+        final AtomicInteger writeCnt=new AtomicInteger(0);
+
+        SlowMapCacheManager(AutoLoadConfig config, HessianSerializer serializer) {
+            super(config, serializer);
+        }
+
+        @Override
+        public void mset(Method method, Collection<MSetParam> params) throws CacheCenterConnectionException {
+            try {
+                gate.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            msetCnt.incrementAndGet();
+            writeCnt.addAndGet(params.size());
+            super.mset(method, params);
+        }
+    }
+
+    private SlowMapCacheManager cacheManager;
+
+    private CacheHandler cacheHandler;
+
+    private AutoLoadConfig config;
+
+    private void init(int queueCapacity, boolean callerRunsOnFull) {
+        config=new AutoLoadConfig();
+        config.setWriteBehind(true);
+        config.setWriteBehindQueueCapacity(queueCapacity);
+        config.setWriteBehindCallerRunsOnFull(callerRunsOnFull);
+        HessianSerializer serializer=new HessianSerializer();
+        cacheManager=new SlowMapCacheManager(config, serializer);
+        cacheManager.setNeedPersist(false);
+        cacheHandler=new CacheHandler(cacheManager, new SpringELParser(), config, serializer);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cacheManager.gate.countDown();
+        cacheHandler.destroy();
+    }
+
+    public void testWriteBehind() throws Throwable {
+        init(1000, true);
+        cacheManager.gate=new CountDownLatch(1);// 阻塞写缓存
+        UserDAO dao=new UserDAO();
+        Cache cache=UserDAO.class.getMethod("getUserName", Long.class).getAnnotation(Cache.class);
+        assertEquals("user1", cacheHandler.proceed(new MethodProxyChain(dao, "getUserName", 1L), cache));// 没有等待写缓存
+        assertEquals(0, cacheManager.writeCnt.get());
+        WriteBehindHandler writeBehindHandler=cacheHandler.getWriteBehindHandler();
+        assertEquals(1, writeBehindHandler.getPendingCnt());
+        // 写入完成之前，使用待写入的数据，不会重复加载
+        assertEquals("user1", cacheHandler.proceed(new MethodProxyChain(dao, "getUserName", 1L), cache));
+        assertEquals(1, dao.calls.size());
+
+        cacheManager.gate.countDown();
+        for(int i=0; i < 100 && writeBehindHandler.getPendingCnt() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, writeBehindHandler.getPendingCnt());
+        assertEquals(1, writeBehindHandler.getWriteCnt());
+        assertNotNull(cacheManager.get(new CacheKeyTO(null, "name_1", null), null, null));
+    }
+
+    public void testCoalesceAndBatch() throws Throwable {
+        init(1000, true);
+        cacheManager.gate=new CountDownLatch(1);
+        WriteBehindHandler writeBehindHandler=cacheHandler.getWriteBehindHandler();
+        Method method=UserDAO.class.getMethod("getUserName", Long.class);
+        writeBehindHandler.write(method, params(0, "v0"), null);
+        for(int i=0; i < 100 && writeBehindHandler.getQueueSize() > 0; i++) {// 等待后台线程取走第一个Key，并阻塞在写缓存中
+            Thread.sleep(10);
+        }
+        for(int id=1; id <= 20; id++) {
+            writeBehindHandler.write(method, params(id, "old"), null);
+        }
+        for(int id=1; id <= 20; id++) {// 相同的Key 会被合并
+            writeBehindHandler.write(method, params(id, "new"), null);
+        }
+        assertEquals(20, writeBehindHandler.getCoalescedCnt());
+        assertEquals("new", cacheHandler.get(key(5), method, null).getCacheObject());
+
+        cacheManager.gate.countDown();
+        for(int i=0; i < 200 && writeBehindHandler.getPendingCnt() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, writeBehindHandler.getPendingCnt());
+        assertEquals(21, cacheManager.writeCnt.get());
+        assertEquals(2, cacheManager.msetCnt.get());// 第一个Key 单独写入，其它Key 一次批量写入
+        assertEquals("new", cacheManager.get(key(5), method, null).getCacheObject());
+    }
+
+    public void testDeleteWhileWriting() throws Throwable {
+        init(1000, true);
+        cacheManager.gate=new CountDownLatch(1);
+        WriteBehindHandler writeBehindHandler=cacheHandler.getWriteBehindHandler();
+        Method method=UserDAO.class.getMethod("getUserName", Long.class);
+        writeBehindHandler.write(method, params(1, "old"), null);
+        for(int i=0; i < 100 && writeBehindHandler.getQueueSize() > 0; i++) {// 等待后台线程取走Key，并阻塞在写缓存中
+            Thread.sleep(10);
+        }
+        cacheHandler.delete(key(1));// 删除先于写入完成
+        assertNull(cacheHandler.get(key(1), method, null));
+
+        cacheManager.gate.countDown();
+        for(int i=0; i < 200 && cacheManager.writeCnt.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, cacheManager.writeCnt.get());
+        for(int i=0; i < 200 && null != cacheManager.get(key(1), method, null); i++) {
+            Thread.sleep(10);
+        }
+        assertNull(cacheManager.get(key(1), method, null));// 旧数据不会在删除之后留在缓存中
+
+        writeBehindHandler.write(method, params(1, "new"), null);// 删除之后的写入不受影响
+        for(int i=0; i < 200 && writeBehindHandler.getPendingCnt() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals("new", cacheManager.get(key(1), method, null).getCacheObject());
+    }
+
+    private CacheKeyTO key(int id) {
+        return new CacheKeyTO(config.getNamespace(), "name_" + id, null);
+    }
+
+    private List<MSetParam> params(int id, String value) {
+        List<MSetParam> params=new ArrayList<MSetParam>(1);
+        params.add(new MSetParam(key(id), new CacheWrapper<Object>(value, 600)));
+        return params;
+    }
+
+    public void testDropOnFull() throws Throwable {
+        init(1, false);
+        cacheManager.gate=new CountDownLatch(1);
+        UserDAO dao=new UserDAO();
+        Cache cache=UserDAO.class.getMethod("getUserName", Long.class).getAnnotation(Cache.class);
+        for(long id=1; id <= 10; id++) {
+            cacheHandler.proceed(new MethodProxyChain(dao, "getUserName", id), cache);
+        }
+        WriteBehindHandler writeBehindHandler=cacheHandler.getWriteBehindHandler();
+        assertTrue(writeBehindHandler.getDroppedCnt() >= 8);
+        assertEquals(0, writeBehindHandler.getCallerRunsCnt());
+        cacheManager.gate.countDown();
+    }
+
+    public void testDropOnFullWithConcurrentWrites() throws Throwable {
+        init(1, false);
+        cacheManager.gate=new CountDownLatch(1);
+        final WriteBehindHandler writeBehindHandler=cacheHandler.getWriteBehindHandler();
+        final Method method=UserDAO.class.getMethod("getUserName", Long.class);
+        writeBehindHandler.write(method, params(0, "v0"), null);
+        for(int i=0; i < 100 && writeBehindHandler.getQueueSize() > 0; i++) {// 等待后台线程取走第一个Key，并阻塞在写缓存中
+            Thread.sleep(10);
+        }
+        writeBehindHandler.write(method, params(1, "v1"), null);// 队列已满
+        assertEquals(1, writeBehindHandler.getQueueSize());
+
+        Thread[] threads=new Thread[4];
+        for(int t=0; t < threads.length; t++) {
+            threads[t]=new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for(int i=0; i < 20000; i++) {// 同一个Key 同时写入，放不进队列的数据都要被丢弃
+                        writeBehindHandler.write(method, params(2, "v" + i), null);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        assertNull(writeBehindHandler.get(key(2)));// 不会留下永远不会写入的数据
+        assertEquals(2, writeBehindHandler.getPendingCnt());
+        assertTrue(writeBehindHandler.getDroppedCnt() > 0);
+    }
+}
@@ -0,0 +1,47 @@
+package com.test.cache;
+
+import java.util.Random;
+
+import com.jarvis.cache.CacheUtil;
+
+import junit.framework.TestCase;
+
+/**
+ * XFetch 概率提前刷新测试
+ * @author jiayu.qiu
+ */
+public class XFetchTest extends TestCase {
+
+    public void testTimeout() {
+        assertEquals(600000L, CacheUtil.getXFetchTimeout(600, 2000, 1.0D, 1.0D));
+        // -ln(1/e)=1，提前量为 loadDataUseTime * beta
+        assertEquals(598000L, CacheUtil.getXFetchTimeout(600, 2000, 1.0D, 1 / Math.E), 1);
+        assertEquals(596000L, CacheUtil.getXFetchTimeout(600, 2000, 2.0D, 1 / Math.E), 1);
+        assertEquals(0L, CacheUtil.getXFetchTimeout(1, 2000, 1.0D, 1 / Math.E));
+    }
+
+    /**
+     * 多个节点各自独立计算刷新时间，刷新时间应该分散开，并且越耗时的数据越早刷新
+     */
+    public void testSpread() {
+        Random random=new Random(1);
+        int nodes=1000;
+        long fastMin=Long.MAX_VALUE;
+        long fastMax=0;
+        long slowSum=0;
+        long fastSum=0;
+        for(int i=0; i < nodes; i++) {
+            long fast=CacheUtil.getXFetchTimeout(600, 1000, 1.0D, 1D - random.nextDouble());
+            long slow=CacheUtil.getXFetchTimeout(600, 10000, 1.0D, 1D - random.nextDouble());
+            fastMin=Math.min(fastMin, fast);
+            fastMax=Math.max(fastMax, fast);
+            fastSum+=fast;
+            slowSum+=slow;
+            assertTrue(fast <= 600000L);
+        }
+        assertTrue(fastMax - fastMin > 3000);
+        // 平均提前量为 loadDataUseTime * beta
+        assertEquals(599000L, fastSum / nodes, 200);
+        assertEquals(590000L, slowSum / nodes, 2000);
+    }
+}
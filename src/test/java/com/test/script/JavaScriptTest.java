@@ -2,10 +2,20 @@ package com.test.script;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.SimpleBindings;
 
 import com.jarvis.cache.script.AbstractScriptParser;
 import com.jarvis.cache.script.JavaScriptParser;
+import com.jarvis.cache.script.SpringELParser;
 import com.test.Simple;
+import com.test.Stopwatch;
 
 import junit.framework.TestCase;
 
@@ -106,4 +116,99 @@ public class JavaScriptTest extends TestCase {
         Boolean rv=scriptParser.getElValue("empty(args[0])", arguments, Boolean.class);
         assertFalse(rv);
     }
+
+    public void testStatements() throws Exception {
+        Object[] arguments=new Object[]{"1111", "2222"};
+        // 包含多条语句的表达式不能包装为函数，使用CompiledScript 执行
+        assertEquals("test_1111", scriptParser.getElValue("var a='test_'; a+args[0]", arguments, String.class));
+        assertEquals("test_2222", scriptParser.getDefinedCacheKey("'test_'+args[1];", arguments, null, false));
+        assertEquals("test_1111", scriptParser.getDefinedCacheKey("'test_'+args[0] // comment", arguments, null, false));
+        try {
+            scriptParser.getElValue("'test_'+args[0", arguments, String.class);
+            fail();
+        } catch(Exception e) {
+        }
+    }
+
+    public void testConcurrent() throws Exception {
+        final String exp="(tmp=args[0]) + '_' + hash(args[1]) + '_' + tmp";// 赋值会写入engine 的全局变量
+        final AtomicInteger errors=new AtomicInteger(0);
+        Thread[] threads=new Thread[8];
+        for(int t=0; t < threads.length; t++) {
+            final String value="t" + t;
+            threads[t]=new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    Object[] arguments=new Object[]{value, value};
+                    try {
+                        String expected=scriptParser.getElValue("args[0] + '_' + hash(args[1])", arguments, String.class) + "_" + value;
+                        for(int i=0; i < 20000; i++) {
+                            if(!expected.equals(scriptParser.getElValue(exp, arguments, String.class))) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } catch(Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        assertEquals(0, errors.get());
+    }
+
+    public void testBenchmark() throws Exception {
+        String[] jsExps=new String[]{"'user_'+args[0]", "'user_'+args[1].name+'_'+hash(args[0])"};
+        String[] spELs=new String[]{"'user_'+#args[0]", "'user_'+#args[1].name+'_'+#hash(#args[0])"};
+        Simple simple=new Simple();
+        simple.setName("test");
+        Object[] arguments=new Object[]{123456L, simple};
+        AbstractScriptParser spELParser=new SpringELParser();
+        ScriptEngine engine=new ScriptEngineManager().getEngineByName("nashorn");
+        String funcs="function hash(obj){return com.jarvis.cache.CacheUtil.getUniqueHashStr(obj);}";
+        int hot=10000;
+        int run=100000;
+        for(int k=0; k < jsExps.length; k++) {
+            String jsExp=jsExps[k];
+            String spEL=spELs[k];
+            assertEquals(spELParser.getElValue(spEL, arguments, String.class), scriptParser.getElValue(jsExp, arguments, String.class));
+            CompiledScript script=((Compilable)engine).compile(funcs + jsExp);
+            for(int i=0; i < hot; i++) {
+                evalWithNewBindings(script, arguments);
+                scriptParser.getElValue(jsExp, arguments, String.class);
+                spELParser.getElValue(spEL, arguments, String.class);
+            }
+            Stopwatch sw=Stopwatch.begin();
+            for(int i=0; i < run; i++) {
+                evalWithNewBindings(script, arguments);
+            }
+            sw.stop();
+            System.out.println(jsExp + " CompiledScript + new Bindings--->" + sw);
+            sw=Stopwatch.begin();
+            for(int i=0; i < run; i++) {
+                scriptParser.getElValue(jsExp, arguments, String.class);
+            }
+            sw.stop();
+            System.out.println(jsExp + " JavaScriptParser--->" + sw);
+            sw=Stopwatch.begin();
+            for(int i=0; i < run; i++) {
+                spELParser.getElValue(spEL, arguments, String.class);
+            }
+            sw.stop();
+            System.out.println(spEL + " SpringELParser--->" + sw);
+        }
+    }
+
+    /**
+     * 每次执行都创建Bindings 并重新定义函数
+     */
+    private static Object evalWithNewBindings(CompiledScript script, Object[] arguments) throws Exception {
+        Bindings bindings=new SimpleBindings();
+        bindings.put("args", arguments);
+        return script.eval(bindings);
+    }
 }
@@ -0,0 +1,98 @@
+package com.test.script;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.jarvis.cache.script.AbstractScriptParser;
+import com.jarvis.cache.script.KeyTemplate;
+import com.jarvis.cache.script.SpringELParser;
+import com.test.Simple;
+import com.test.Stopwatch;
+
+import junit.framework.TestCase;
+
+/**
+ * KeyTemplate 测试：生成的缓存Key 必须与Spring EL 的结果一致
+ * @author jiayu.qiu
+ */
+public class KeyTemplateTest extends TestCase {
+
+    AbstractScriptParser scriptParser=new SpringELParser();
+
+    public void testCompile() {
+        assertNotNull(KeyTemplate.compile("'user_'+#args[0]"));
+        assertNotNull(KeyTemplate.compile("'user_' + #args[0].name + '_' + #retVal.age"));
+        assertNotNull(KeyTemplate.compile("#hash(#args)"));
+        assertNotNull(KeyTemplate.compile("'it''s_'+#hash( #args[1] )"));
+        // 以变量开头时，+ 可能是加法
+        assertNull(KeyTemplate.compile("#args[0]+'_'"));
+        assertNull(KeyTemplate.compile("#args[0]+#args[1]"));
+        // 方法调用、三元运算等由表达式引擎处理
+        assertNull(KeyTemplate.compile("'user_'+#args[0].getName()"));
+        assertNull(KeyTemplate.compile("'user_'+#retVal.get('rid')"));
+        assertNull(KeyTemplate.compile("'user_'+#args[0]?.name"));
+        assertNull(KeyTemplate.compile("'user_'+(#args[0] == null ? 0 : 1)"));
+        assertNull(KeyTemplate.compile("'user_'+#args[0]+"));
+        assertNull(KeyTemplate.compile("'user_"));
+        assertNull(KeyTemplate.compile("'user_'+#argsX"));
+        assertNull(KeyTemplate.compile("user_key"));
+    }
+
+    public void testSameAsSpEL() throws Exception {
+        Simple simple=new Simple();
+        simple.setAge(18);
+        simple.setName("刘德华");
+        simple.setSex(0);
+        Map<String, String> map=new HashMap<String, String>();
+        map.put("name", "map");
+        String[] exps=new String[]{"'user_'+#args[0]", "'user_'+#args[0]+'_'+#args[1]", "'user_' + #args[2].name + '_' + #args[2].age", "'it''s_'+#hash(#args[1])",
+            "#hash(#args)", "'user_'+#retVal", "'user_'+#retVal.name", "'user_'+#args[3]", "'user_'+#args[4]", "'user_'+#args[5]"};
+        Object[][] argsList=new Object[][]{{1L, "a", simple, 1.5d, true, 'c'}, {null, 2, simple, null, null, null}, {"x", 3L, simple, 10, 'b', "s"}};
+        for(String exp: exps) {
+            for(Object[] args: argsList) {
+                String expected=scriptParser.getElValue(exp, args, simple, true, String.class);
+                assertEquals(exp, expected, scriptParser.getDefinedCacheKey(exp, args, simple, true));
+                String key=KeyTemplate.compile(exp).apply(args, simple, true);
+                assertTrue(exp, null == key || expected.equals(key));
+                if(exp.indexOf("#retVal.") == -1) {// 没有返回值时，#retVal.name 会出错
+                    expected=scriptParser.getElValue(exp, args, null, false, String.class);
+                    assertEquals(exp, expected, scriptParser.getDefinedCacheKey(exp, args, simple, false));
+                }
+            }
+        }
+        // 不能确定结果与Spring EL 一致时，返回null，由Spring EL 处理
+        KeyTemplate template=KeyTemplate.compile("'user_'+#args[0]");
+        assertNull(template.apply(new Object[]{simple}, null, false));
+        assertNull(template.apply(new Object[0], null, false));
+        assertNull(KeyTemplate.compile("'user_'+#args[0].name").apply(new Object[]{map}, null, false));
+        assertNull(KeyTemplate.compile("'user_'+#args[0].name").apply(new Object[]{null}, null, false));
+        assertNull(KeyTemplate.compile("'user_'+#args[0].xxx").apply(new Object[]{simple}, null, false));
+        assertEquals("user_" + simple.toString(), scriptParser.getDefinedCacheKey("'user_'+#args[0]", new Object[]{simple}, null, false));
+        assertEquals("user_map", scriptParser.getDefinedCacheKey("'user_'+#args[0]['name']", new Object[]{map}, null, false));
+    }
+
+    public void testBenchmark() throws Exception {
+        String keySpEL="'user_'+#args[0].name+'_'+#args[1]";
+        Simple simple=new Simple();
+        simple.setName("test");
+        Object[] arguments=new Object[]{simple, 123456L};
+        int hot=10000;
+        int run=200000;
+        for(int i=0; i < hot; i++) {
+            scriptParser.getElValue(keySpEL, arguments, String.class);
+            scriptParser.getDefinedCacheKey(keySpEL, arguments, null, false);
+        }
+        Stopwatch sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            scriptParser.getElValue(keySpEL, arguments, String.class);
+        }
+        sw.stop();
+        System.out.println("Spring EL--->" + sw);
+        sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            scriptParser.getDefinedCacheKey(keySpEL, arguments, null, false);
+        }
+        sw.stop();
+        System.out.println("KeyTemplate--->" + sw);
+    }
+}
@@ -0,0 +1,90 @@
+package com.test.script;
+
+import java.util.List;
+
+import com.jarvis.cache.annotation.Cache;
+import com.jarvis.cache.annotation.CacheDelete;
+import com.jarvis.cache.annotation.CacheDeleteKey;
+import com.jarvis.cache.annotation.ExCache;
+import com.jarvis.cache.annotation.LocalCache;
+import com.jarvis.cache.script.AbstractScriptParser;
+import com.jarvis.cache.script.OgnlParser;
+import com.jarvis.cache.script.ScriptPrecompiler;
+import com.jarvis.cache.script.SpringELParser;
+
+import junit.framework.TestCase;
+
+/**
+ * 启动时预编译及检查表达式
+ * @author jiayu.qiu
+ */
+public class ScriptPrecompilerTest extends TestCase {
+
+    public void testSpringEL() throws Exception {
+        AbstractScriptParser scriptParser=new SpringELParser();
+        ScriptPrecompiler precompiler=new ScriptPrecompiler(scriptParser);
+        assertTrue(precompiler.precompile(UserDAO.class, UserDAOImpl.class).isEmpty());
+        precompiler.check(UserDAOImpl.class);
+        assertEquals("user_1", scriptParser.getDefinedCacheKey("'user_'+#args[0]", new Object[]{1L}, null, false));
+
+        List<String> errors=precompiler.precompile(BadDAO.class);
+        assertEquals(2, errors.size());
+        String errorMsg=errors.toString();// 方法的顺序不固定
+        assertTrue(errorMsg, errorMsg.contains(BadDAO.class.getName() + ".getUser @Cache.key: 'user_'+#args[0 -> "));
+        assertTrue(errorMsg, errorMsg.contains(BadDAO.class.getName() + ".deleteUser @CacheDeleteKey.condition: #args[0] > -> "));
+        try {
+            precompiler.check(UserDAO.class, BadDAO.class);
+            fail();
+        } catch(IllegalStateException e) {
+        }
+    }
+
+    public void testOgnl() throws Exception {
+        ScriptPrecompiler precompiler=new ScriptPrecompiler(new OgnlParser());
+        precompiler.setThreadCnt(1);
+        assertTrue(precompiler.precompile(OgnlDAO.class).isEmpty());
+        assertEquals(2, precompiler.precompile(BadDAO.class).size());
+    }
+
+    public interface UserDAO {
+
+        @Cache(expire=600, key="'user_'+#args[0]", condition="#args[0] > 0", autoload=true, autoloadCondition="#args[0] < 100", exCache={@ExCache(expire=600, key="'user_name_'+#retVal.name", condition="null != #retVal")})
+        @LocalCache(expire=60, expireExpression="#retVal == null ? 10 : 60")
+        Object getUser(Long id);
+
+        @CacheDelete({@CacheDeleteKey(value={"'user_'+#args[0]", "'user_list'"}, condition="#args[0] > 0")})
+        void deleteUser(Long id);
+    }
+
+    public static class UserDAOImpl implements UserDAO {
+
+        @Override
+        public Object getUser(Long id) {
+            return null;
+        }
+
+        @Override
+        public void deleteUser(Long id) {
+        }
+
+        @Cache(expire=600, key="'user_list'", hfield="#hash(#args)", expireExpression="#args[0] * 10")
+        public Object getUsers(int page) {
+            return null;
+        }
+    }
+
+    public interface BadDAO {
+
+        @Cache(expire=600, key="'user_'+#args[0")
+        Object getUser(Long id);
+
+        @CacheDelete({@CacheDeleteKey(value="'user_'+#args[0]", condition="#args[0] >")})
+        void deleteUser(Long id);
+    }
+
+    public interface OgnlDAO {
+
+        @Cache(expire=600, key="'user_'+#args[0]", hfield="@@hash(#args)", condition="#args[0] > 0")
+        Object getUser(Long id);
+    }
+}
@@ -3,9 +3,18 @@ package com.test.script;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import com.jarvis.cache.CacheUtil;
 import com.jarvis.cache.script.AbstractScriptParser;
 import com.jarvis.cache.script.SpringELParser;
 import com.test.Simple;
+import com.test.Stopwatch;
 
 import junit.framework.TestCase;
 
@@ -76,4 +85,71 @@ public class SpELTest extends TestCase {
         Boolean rv=scriptParser.getElValue("#empty(#args[0])", arguments, Boolean.class);
         assertFalse(rv);
     }
+
+    public void testCompiled() throws Exception {
+        String keySpEL="'user_'+#args[0]";
+        for(int i=0; i < 200; i++) {// 多次执行后会编译
+            assertEquals("user_" + i, scriptParser.getElValue(keySpEL, new Object[]{(long)i}, String.class));
+        }
+        // 参数类型变化时，编译后的表达式会回退到解释模式
+        assertEquals("user_abc", scriptParser.getElValue(keySpEL, new Object[]{"abc"}, String.class));
+        assertEquals("user_null", scriptParser.getElValue(keySpEL, new Object[]{null}, String.class));
+        for(int i=0; i < 200; i++) {
+            assertEquals(Boolean.valueOf(i % 2 == 0), scriptParser.getElValue("#args[0] % 2 == 0", new Object[]{i}, Boolean.class));
+            assertEquals("1", scriptParser.getElValue("#hash(#args[0])", new Object[]{"1"}, String.class));
+        }
+        assertNull(scriptParser.getDefinedCacheKey("#retVal", new Object[]{1}, "r", false));
+        assertEquals("r", scriptParser.getDefinedCacheKey("#retVal", new Object[]{1}, "r", true));
+    }
+
+    public void testBenchmark() throws Exception {
+        String keySpEL="'user_'+#args[0]";
+        AbstractScriptParser interpreted=new SpringELParser(new SpelParserConfiguration(SpelCompilerMode.OFF, null));
+        ExpressionParser parser=new SpelExpressionParser();
+        Expression expression=parser.parseExpression(keySpEL);
+        Object[] arguments=new Object[]{123456L};
+        int hot=10000;
+        int run=200000;
+        for(int i=0; i < hot; i++) {
+            getValueWithNewContext(expression, arguments);
+            interpreted.getElValue(keySpEL, arguments, String.class);
+            scriptParser.getElValue(keySpEL, arguments, String.class);
+            scriptParser.getDefinedCacheKey(keySpEL, arguments, null, false);
+        }
+        Stopwatch sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            getValueWithNewContext(expression, arguments);
+        }
+        sw.stop();
+        System.out.println("new context + interpreted--->" + sw);
+        sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            interpreted.getElValue(keySpEL, arguments, String.class);
+        }
+        sw.stop();
+        System.out.println("shared context + interpreted--->" + sw);
+        sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            scriptParser.getElValue(keySpEL, arguments, String.class);
+        }
+        sw.stop();
+        System.out.println("shared context + compiled--->" + sw);
+        sw=Stopwatch.begin();
+        for(int i=0; i < run; i++) {
+            scriptParser.getDefinedCacheKey(keySpEL, arguments, null, false);
+        }
+        sw.stop();
+        System.out.println("KeyTemplate--->" + sw);
+    }
+
+    /**
+     * 每次调用都创建上下文并注册函数
+     */
+    private static String getValueWithNewContext(Expression expression, Object[] arguments) throws Exception {
+        StandardEvaluationContext context=new StandardEvaluationContext();
+        context.registerFunction("hash", CacheUtil.class.getDeclaredMethod("getUniqueHashStr", new Class[]{Object.class}));
+        context.registerFunction("empty", CacheUtil.class.getDeclaredMethod("isEmpty", new Class[]{Object.class}));
+        context.setVariable("args", arguments);
+        return expression.getValue(context, String.class);
+    }
 }